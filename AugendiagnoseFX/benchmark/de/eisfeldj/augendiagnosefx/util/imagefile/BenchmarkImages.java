@@ -0,0 +1,180 @@
+package de.eisfeldj.augendiagnosefx.util.imagefile;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import javax.imageio.ImageIO;
+
+import com.sun.javafx.application.PlatformImpl;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Helper providing images and the FX environment for the benchmarks.
+ *
+ * <p>The photo used by a benchmark is given by the parameter "photo". Value {@link #SYNTHETIC} uses a generated eye
+ * image, any other value is interpreted as path of a sample eye JPEG.
+ */
+public final class BenchmarkImages {
+	/**
+	 * Parameter value for a synthetic eye photo.
+	 */
+	public static final String SYNTHETIC = "synthetic";
+
+	/**
+	 * The size of the synthetic eye photos.
+	 */
+	private static final int SYNTHETIC_SIZE = 2048;
+
+	/**
+	 * The file name of the synthetic eye photo, formatted as eye photo file name.
+	 */
+	private static final String SYNTHETIC_FILE_NAME = "Benchmark Person 2018-01-01 rechts.jpg";
+
+	/**
+	 * Flag indicating if the FX platform has been started.
+	 */
+	private static boolean mFxStarted = false;
+
+	/**
+	 * Hide default constructor.
+	 */
+	private BenchmarkImages() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Start the FX platform, if not yet done. Headless runs require Monocle (-Dglass.platform=Monocle
+	 * -Dmonocle.platform=Headless -Dprism.order=sw).
+	 */
+	public static synchronized void startFx() {
+		if (!mFxStarted) {
+			PlatformImpl.startup(new Runnable() {
+				@Override
+				public void run() {
+					// do nothing.
+				}
+			});
+			Platform.setImplicitExit(false);
+			mFxStarted = true;
+		}
+	}
+
+	/**
+	 * Run a task in the FX thread and wait for its result.
+	 *
+	 * @param task The task.
+	 * @param <T> The result type.
+	 * @return The result of the task.
+	 * @throws Exception thrown by the task.
+	 */
+	public static <T> T runOnFxThread(final Callable<T> task) throws Exception {
+		if (Platform.isFxApplicationThread()) {
+			return task.call();
+		}
+		FutureTask<T> futureTask = new FutureTask<>(task);
+		Platform.runLater(futureTask);
+		return futureTask.get();
+	}
+
+	/**
+	 * Create a JPEG file for the benchmark in a temporary folder. For sample photos, a copy is created, so that the
+	 * original is never changed.
+	 *
+	 * @param photo The parameter "photo".
+	 * @return The JPEG file.
+	 * @throws IOException thrown if the file cannot be created.
+	 */
+	public static File createJpegFile(final String photo) throws IOException {
+		File folder = Files.createTempDirectory("augendiagnose-benchmark").toFile();
+		File jpegFile = new File(folder, SYNTHETIC_FILE_NAME);
+		if (SYNTHETIC.equals(photo)) {
+			ImageIO.write(createSyntheticEye(SYNTHETIC_SIZE), "jpg", jpegFile);
+		}
+		else {
+			Files.copy(new File(photo).toPath(), jpegFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		jpegFile.deleteOnExit();
+		folder.deleteOnExit();
+		return jpegFile;
+	}
+
+	/**
+	 * Load the photo for the benchmark in the given maximum size, without using the FX thread. Synthetic photos do not
+	 * require the FX platform.
+	 *
+	 * @param photo The parameter "photo".
+	 * @param maxSize The maximum size.
+	 * @return The image.
+	 * @throws IOException thrown if the image cannot be loaded.
+	 */
+	public static Image loadImage(final String photo, final int maxSize) throws IOException {
+		if (SYNTHETIC.equals(photo)) {
+			return ImageUtil.resizeImage(toFxImage(createSyntheticEye(SYNTHETIC_SIZE)), maxSize, false);
+		}
+		startFx();
+		Image image = new Image(new File(photo).toURI().toURL().toExternalForm(), maxSize, maxSize, true, true);
+		if (image.isError()) {
+			throw new IOException("Cannot load image " + photo, image.getException());
+		}
+		return image;
+	}
+
+	/**
+	 * Create a synthetic eye photo with dark pupil, structured iris and bright sclera.
+	 *
+	 * @param size The size of the image.
+	 * @return The image.
+	 */
+	private static BufferedImage createSyntheticEye(final int size) {
+		BufferedImage image = new BufferedImage(size, size * 3 / 4, BufferedImage.TYPE_INT_RGB); // MAGIC_NUMBER
+		Random random = new Random(size);
+		int xCenter = size / 2;
+		int yCenter = size * 3 / 8; // MAGIC_NUMBER
+		int irisRadius = size / 5; // MAGIC_NUMBER
+		int pupilRadius = size / 16; // MAGIC_NUMBER
+
+		Graphics2D graphics = image.createGraphics();
+		graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		graphics.setColor(new java.awt.Color(225, 215, 210)); // MAGIC_NUMBER
+		graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+		graphics.setColor(new java.awt.Color(70, 100, 140)); // MAGIC_NUMBER
+		graphics.fillOval(xCenter - irisRadius, yCenter - irisRadius, 2 * irisRadius, 2 * irisRadius);
+		for (int i = 0; i < 400; i++) { // MAGIC_NUMBER
+			double angle = random.nextDouble() * 2 * Math.PI;
+			graphics.setColor(new java.awt.Color(random.nextInt(80), 90 + random.nextInt(60), 120 + random.nextInt(80))); // MAGIC_NUMBER
+			graphics.drawLine(xCenter + (int) (pupilRadius * Math.cos(angle)), yCenter + (int) (pupilRadius * Math.sin(angle)),
+					xCenter + (int) (irisRadius * Math.cos(angle)), yCenter + (int) (irisRadius * Math.sin(angle)));
+		}
+		graphics.setColor(new java.awt.Color(15, 15, 20)); // MAGIC_NUMBER
+		graphics.fillOval(xCenter - pupilRadius, yCenter - pupilRadius, 2 * pupilRadius, 2 * pupilRadius);
+		graphics.dispose();
+		return image;
+	}
+
+	/**
+	 * Convert an AWT image into an FX image, without using the FX thread.
+	 *
+	 * @param image The AWT image.
+	 * @return The FX image.
+	 */
+	private static Image toFxImage(final BufferedImage image) {
+		WritableImage fxImage = new WritableImage(image.getWidth(), image.getHeight());
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				fxImage.getPixelWriter().setArgb(x, y, image.getRGB(x, y));
+			}
+		}
+		return fxImage;
+	}
+}
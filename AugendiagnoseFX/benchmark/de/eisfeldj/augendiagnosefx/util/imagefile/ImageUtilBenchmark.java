@@ -0,0 +1,136 @@
+package de.eisfeldj.augendiagnosefx.util.imagefile;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import de.eisfeldj.augendiagnosefx.util.imagefile.EyePhoto.RightLeft;
+import de.eisfeldj.augendiagnosefx.util.imagefile.ImageUtil.Resolution;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+
+/**
+ * Benchmark of the image processing in ImageUtil. Canvas based operations are executed in the FX thread.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ImageUtilBenchmark {
+	/**
+	 * The target size of resizing.
+	 */
+	private static final int TARGET_SIZE = 600;
+
+	/**
+	 * The overlay type used for overlay benchmarks.
+	 */
+	private static final int OVERLAY_TYPE = 1;
+
+	/**
+	 * The photo to be processed - see {@link BenchmarkImages}.
+	 */
+	@Param(BenchmarkImages.SYNTHETIC)
+	private String mPhoto;
+
+	/**
+	 * The size of the processed image.
+	 */
+	@Param({"1024", "2048"})
+	private int mImageSize;
+
+	/**
+	 * The image to be processed.
+	 */
+	private Image mImage;
+
+	/**
+	 * Counter used to vary the pupil size, so that the overlay cache is bypassed.
+	 */
+	private int mInvocationCount = 0;
+
+	/**
+	 * Load the image.
+	 *
+	 * @throws Exception thrown if the image cannot be loaded.
+	 */
+	@Setup
+	public void setup() throws Exception {
+		BenchmarkImages.startFx();
+		mImage = BenchmarkImages.loadImage(mPhoto, mImageSize);
+	}
+
+	/**
+	 * Benchmark resizing via Canvas in the FX thread.
+	 *
+	 * @return The resized image.
+	 * @throws Exception thrown in case of errors.
+	 */
+	@Benchmark
+	public Image resizeImageInFxThread() throws Exception {
+		return BenchmarkImages.runOnFxThread(new Callable<Image>() {
+			@Override
+			public Image call() {
+				return ImageUtil.resizeImage(mImage, TARGET_SIZE, false);
+			}
+		});
+	}
+
+	/**
+	 * Benchmark resizing outside the FX thread.
+	 *
+	 * @return The resized image.
+	 */
+	@Benchmark
+	public Image resizeImageInBackground() {
+		return ImageUtil.resizeImage(mImage, TARGET_SIZE, false);
+	}
+
+	/**
+	 * Benchmark the per-pixel colour adjustment of brightness, contrast, saturation and colour temperature.
+	 *
+	 * @return The adjusted image.
+	 * @throws Exception thrown in case of errors.
+	 */
+	@Benchmark
+	public Image changeColors() throws Exception {
+		return BenchmarkImages.runOnFxThread(new Callable<Image>() {
+			@Override
+			public Image call() {
+				return ImageUtil.getImageWithOverlay(mImage, null, RightLeft.RIGHT, Color.RED, 0, 0, 1, 0, 0, 0.25f, // MAGIC_NUMBER
+						0.1f, 1.2f, 0.9f, 0.1f, Resolution.NORMAL); // MAGIC_NUMBER
+			}
+		});
+	}
+
+	/**
+	 * Benchmark the creation of the overlay warped by pupil size and position, including the displacement map.
+	 *
+	 * @return The overlay image.
+	 * @throws Exception thrown in case of errors.
+	 */
+	@Benchmark
+	public Image getOverlayImage() throws Exception {
+		final float pupilSize = 0.2f + (mInvocationCount++ % 1000) / 10000f; // MAGIC_NUMBER
+		return BenchmarkImages.runOnFxThread(new Callable<Image>() {
+			@Override
+			public Image call() {
+				return ImageUtil.getOverlayImage(OVERLAY_TYPE, RightLeft.RIGHT, Color.RED, 0.05f, 0.05f, pupilSize); // MAGIC_NUMBER
+			}
+		});
+	}
+}
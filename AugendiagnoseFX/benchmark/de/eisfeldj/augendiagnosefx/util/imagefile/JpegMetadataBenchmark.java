@@ -0,0 +1,82 @@
+package de.eisfeldj.augendiagnosefx.util.imagefile;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of reading and writing JPEG metadata. Works on a temporary copy of the photo.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JpegMetadataBenchmark {
+	/**
+	 * The photo to be processed - see {@link BenchmarkImages}.
+	 */
+	@Param(BenchmarkImages.SYNTHETIC)
+	private String mPhoto;
+
+	/**
+	 * The path of the temporary JPEG file.
+	 */
+	private String mPath;
+
+	/**
+	 * The metadata to be stored.
+	 */
+	private JpegMetadata mMetadata;
+
+	/**
+	 * Counter used to vary the stored metadata.
+	 */
+	private int mInvocationCount = 0;
+
+	/**
+	 * Create the temporary JPEG file.
+	 *
+	 * @throws Exception thrown if the file cannot be created.
+	 */
+	@Setup
+	public void setup() throws Exception {
+		File jpegFile = BenchmarkImages.createJpegFile(mPhoto);
+		mPath = jpegFile.getAbsolutePath();
+		mMetadata = JpegMetadataUtil.getMetadata(mPath);
+	}
+
+	/**
+	 * Benchmark reading the metadata.
+	 *
+	 * @return The metadata.
+	 * @throws Exception thrown in case of errors.
+	 */
+	@Benchmark
+	public JpegMetadata getMetadata() throws Exception {
+		return JpegMetadataUtil.getMetadata(mPath);
+	}
+
+	/**
+	 * Benchmark storing changed metadata.
+	 *
+	 * @throws Exception thrown in case of errors.
+	 */
+	@Benchmark
+	public void changeMetadata() throws Exception {
+		mMetadata.setComment("Benchmark comment " + mInvocationCount++);
+		JpegMetadataUtil.changeMetadata(mPath, mMetadata);
+	}
+}
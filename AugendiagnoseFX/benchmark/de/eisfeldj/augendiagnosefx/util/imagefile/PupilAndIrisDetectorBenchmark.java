@@ -0,0 +1,72 @@
+package de.eisfeldj.augendiagnosefx.util.imagefile;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javafx.scene.image.Image;
+
+/**
+ * Benchmark of the pupil and iris detection.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PupilAndIrisDetectorBenchmark {
+	/**
+	 * The photo to be analyzed - see {@link BenchmarkImages}.
+	 */
+	@Param(BenchmarkImages.SYNTHETIC)
+	private String mPhoto;
+
+	/**
+	 * The size in which the photo is analyzed.
+	 */
+	@Param({"1024", "2048"})
+	private int mImageSize;
+
+	/**
+	 * Flag indicating if the candidate pupil centers are evaluated in parallel.
+	 */
+	@Param({"true", "false"})
+	private boolean mParallelSearch;
+
+	/**
+	 * The image to be analyzed.
+	 */
+	private Image mImage;
+
+	/**
+	 * Load the image.
+	 *
+	 * @throws IOException thrown if the image cannot be loaded.
+	 */
+	@Setup
+	public void setup() throws IOException {
+		mImage = BenchmarkImages.loadImage(mPhoto, mImageSize);
+	}
+
+	/**
+	 * Benchmark the construction of the detector, which runs the full detection.
+	 *
+	 * @return The detector.
+	 */
+	@Benchmark
+	public PupilAndIrisDetector detect() {
+		return new PupilAndIrisDetector(mImage, mParallelSearch);
+	}
+}
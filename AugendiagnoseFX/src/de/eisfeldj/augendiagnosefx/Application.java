@@ -1,5 +1,6 @@
 package de.eisfeldj.augendiagnosefx;
 
+import java.io.File;
 import java.io.IOException;
 
 import de.eisfeldj.augendiagnosefx.controller.MainController;
@@ -12,7 +13,9 @@ import de.eisfeldj.augendiagnosefx.util.PreferenceUtil;
 import de.eisfeldj.augendiagnosefx.util.ResourceConstants;
 import de.eisfeldj.augendiagnosefx.util.ResourceUtil;
 import de.eisfeldj.augendiagnosefx.util.VersioningUtil;
+import de.eisfeldj.augendiagnosefx.util.imagefile.JpegMetadataSidecar;
 import de.eisfeldj.augendiagnosefx.util.imagefile.JpegSynchronizationUtil;
+import de.eisfeldj.augendiagnosefx.util.imagefile.PhotoFolderIndex;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
@@ -26,6 +29,7 @@ import javafx.stage.Screen;
 import javafx.stage.Stage;
 import javafx.stage.WindowEvent;
 
+import static de.eisfeldj.augendiagnosefx.util.PreferenceUtil.KEY_FOLDER_PHOTOS;
 import static de.eisfeldj.augendiagnosefx.util.PreferenceUtil.KEY_WINDOW_MAXIMIZED;
 import static de.eisfeldj.augendiagnosefx.util.PreferenceUtil.KEY_WINDOW_SIZE_X;
 import static de.eisfeldj.augendiagnosefx.util.PreferenceUtil.KEY_WINDOW_SIZE_Y;
@@ -41,6 +45,11 @@ public class Application extends javafx.application.Application {
 	 */
 	public static final String APPLICATION_NAME = "Augendiagnose";
 
+	/**
+	 * The maximum time (in milliseconds) to wait for pending metadata changes on exit.
+	 */
+	private static final long SHUTDOWN_FLUSH_TIMEOUT = 10000;
+
 	/**
 	 * The primary scene.
 	 */
@@ -73,6 +82,7 @@ public class Application extends javafx.application.Application {
 			justification = "Intentionally write the stage statically")
 	public final void start(final Stage primaryStage) throws IOException, IllegalAccessException {
 		Application.mStage = primaryStage;
+		PhotoFolderIndex.prepare(new File(PreferenceUtil.getPreferenceString(KEY_FOLDER_PHOTOS)));
 		primaryStage.setTitle(ResourceUtil.getString("app_name"));
 
 		MainController mainController = (MainController) FxmlUtil.getRootFromFxml(FxmlConstants.FXML_MAIN);
@@ -107,6 +117,16 @@ public class Application extends javafx.application.Application {
 		VersioningUtil.checkForNewerVersion(false);
 	}
 
+	@Override
+	public final void stop() throws InterruptedException {
+		// Write the changes from the sidecar index without waiting for the idle delay, and ensure that pending metadata
+		// changes are written before exiting - but do not hang on a stuck write.
+		JpegMetadataSidecar.syncAll();
+		if (!JpegSynchronizationUtil.awaitIdle(SHUTDOWN_FLUSH_TIMEOUT)) {
+			Logger.warning("Exiting with unsaved metadata changes, as saving did not complete in time.");
+		}
+	}
+
 	/**
 	 * Exit the application after asking for confirmation if there are unsaved data.
 	 */
@@ -4,6 +4,8 @@ import java.net.URL;
 import java.util.ResourceBundle;
 
 import de.eisfeldj.augendiagnosefx.fxelements.OverlayImageView;
+import de.eisfeldj.augendiagnosefx.fxelements.RenderScheduler;
+import de.eisfeldj.augendiagnosefx.fxelements.RenderScheduler.RenderListener;
 import de.eisfeldj.augendiagnosefx.fxelements.SizableImageView.MetadataPosition;
 import de.eisfeldj.augendiagnosefx.util.DateUtil;
 import de.eisfeldj.augendiagnosefx.util.FxmlConstants;
@@ -134,8 +136,6 @@ public class DisplayImageController extends BaseController implements Initializa
 
 	/**
 	 * The button for displaying the view in full resolution.
-	 *
-	 * <p>This is a ToggleButton, as it is incompatible with overlays.
 	 */
 	@FXML
 	private ToggleButton mClarityButton;
@@ -225,6 +225,11 @@ public class DisplayImageController extends BaseController implements Initializa
 	 */
 	private Resolution mCurrentResolution = NORMAL;
 
+	/**
+	 * The scheduler rendering the image while sliders are moved.
+	 */
+	private RenderScheduler mRenderScheduler;
+
 	/**
 	 * Storage for the current overlay type.
 	 */
@@ -437,24 +442,26 @@ public class DisplayImageController extends BaseController implements Initializa
 	 * Initialize the sliders for contrast, brightness, saturation and color temperature.
 	 */
 	private void initializeSliders() {
-		// Initialize slider for brightness.
-		mSliderBrightness.valueProperty().addListener(new ChangeListener<Number>() {
+		// While sliders are moved, render in low resolution, and switch to normal resolution when idle.
+		mRenderScheduler = new RenderScheduler(mDisplayImageView, new RenderListener() {
 			@Override
-			public void changed(final ObservableValue<? extends Number> observable, final Number oldValue,
-					final Number newValue) {
-				mDisplayImageView.setColorSettings(newValue.floatValue(), null, null, null, mCurrentResolution);
+			public void onPreview() {
+				mCurrentResolution = THUMB;
+				mClarityButton.setSelected(false);
 			}
-		});
-		mSliderBrightness.setOnMousePressed(new EventHandler<MouseEvent>() {
+
 			@Override
-			public void handle(final MouseEvent event) {
-				updateResolution(THUMB);
+			public void onIdle() {
+				updateResolution(NORMAL);
 			}
 		});
-		mSliderBrightness.setOnMouseReleased(new EventHandler<MouseEvent>() {
+
+		// Initialize slider for brightness.
+		mSliderBrightness.valueProperty().addListener(new ChangeListener<Number>() {
 			@Override
-			public void handle(final MouseEvent event) {
-				updateResolution(NORMAL);
+			public void changed(final ObservableValue<? extends Number> observable, final Number oldValue,
+					final Number newValue) {
+				mRenderScheduler.setColorSettings(newValue.floatValue(), null, null, null);
 			}
 		});
 
@@ -463,19 +470,7 @@ public class DisplayImageController extends BaseController implements Initializa
 			@Override
 			public void changed(final ObservableValue<? extends Number> observable, final Number oldValue,
 					final Number newValue) {
-				mDisplayImageView.setColorSettings(null, newValue.floatValue(), null, null, mCurrentResolution);
-			}
-		});
-		mSliderContrast.setOnMousePressed(new EventHandler<MouseEvent>() {
-			@Override
-			public void handle(final MouseEvent event) {
-				updateResolution(THUMB);
-			}
-		});
-		mSliderContrast.setOnMouseReleased(new EventHandler<MouseEvent>() {
-			@Override
-			public void handle(final MouseEvent event) {
-				updateResolution(NORMAL);
+				mRenderScheduler.setColorSettings(null, newValue.floatValue(), null, null);
 			}
 		});
 
@@ -484,19 +479,7 @@ public class DisplayImageController extends BaseController implements Initializa
 			@Override
 			public void changed(final ObservableValue<? extends Number> observable, final Number oldValue,
 					final Number newValue) {
-				mDisplayImageView.setColorSettings(null, null, newValue.floatValue(), null, mCurrentResolution);
-			}
-		});
-		mSliderSaturation.setOnMousePressed(new EventHandler<MouseEvent>() {
-			@Override
-			public void handle(final MouseEvent event) {
-				updateResolution(THUMB);
-			}
-		});
-		mSliderSaturation.setOnMouseReleased(new EventHandler<MouseEvent>() {
-			@Override
-			public void handle(final MouseEvent event) {
-				updateResolution(NORMAL);
+				mRenderScheduler.setColorSettings(null, null, newValue.floatValue(), null);
 			}
 		});
 
@@ -505,19 +488,7 @@ public class DisplayImageController extends BaseController implements Initializa
 			@Override
 			public void changed(final ObservableValue<? extends Number> observable, final Number oldValue,
 					final Number newValue) {
-				mDisplayImageView.setColorSettings(null, null, null, newValue.floatValue(), mCurrentResolution);
-			}
-		});
-		mSliderColorTemperature.setOnMousePressed(new EventHandler<MouseEvent>() {
-			@Override
-			public void handle(final MouseEvent event) {
-				updateResolution(THUMB);
-			}
-		});
-		mSliderColorTemperature.setOnMouseReleased(new EventHandler<MouseEvent>() {
-			@Override
-			public void handle(final MouseEvent event) {
-				updateResolution(NORMAL);
+				mRenderScheduler.setColorSettings(null, null, null, newValue.floatValue());
 			}
 		});
 
@@ -528,6 +499,14 @@ public class DisplayImageController extends BaseController implements Initializa
 		return mDisplayImage;
 	}
 
+	@Override
+	protected final void removeFromRegistry() {
+		if (mRenderScheduler != null) {
+			mRenderScheduler.stop();
+		}
+		super.removeFromRegistry();
+	}
+
 	/**
 	 * Action method for button "Edit Comment".
 	 *
@@ -594,7 +573,6 @@ public class DisplayImageController extends BaseController implements Initializa
 
 			int overlayType = PreferenceUtil.getIndexedPreferenceInt(KEY_INDEXED_OVERLAY_TYPE, buttonPosition, -1);
 
-			updateResolution(NORMAL);
 			showOverlay(overlayType);
 		}
 		else {
@@ -611,7 +589,6 @@ public class DisplayImageController extends BaseController implements Initializa
 	@FXML
 	public final void btnClarityPressed(final ActionEvent event) {
 		if (mClarityButton.isSelected()) {
-			showOverlay(null);
 			updateResolution(FULL);
 		}
 		else {
@@ -809,9 +786,6 @@ public class DisplayImageController extends BaseController implements Initializa
 	 */
 	public final void showOverlay(final Integer overlayType) {
 		mCurrentOverlayType = overlayType;
-		if (overlayType != null) {
-			mCurrentResolution = NORMAL;
-		}
 		mDisplayImageView.displayOverlay(overlayType, mColorPicker.getValue(), mCurrentResolution);
 	}
 
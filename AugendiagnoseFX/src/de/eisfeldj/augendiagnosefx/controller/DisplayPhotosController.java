@@ -1,35 +1,29 @@
 package de.eisfeldj.augendiagnosefx.controller;
 
 import java.io.File;
-import java.io.FileFilter;
-import java.io.FilenameFilter;
 import java.net.URL;
-import java.text.CollationKey;
-import java.text.Collator;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Comparator;
-import java.util.Date;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
-import java.util.TreeMap;
 
 import de.eisfeldj.augendiagnosefx.fxelements.EyePhotoPairNode;
 import de.eisfeldj.augendiagnosefx.util.DialogUtil;
 import de.eisfeldj.augendiagnosefx.util.DialogUtil.ConfirmDialogListener;
 import de.eisfeldj.augendiagnosefx.util.DialogUtil.ProgressDialog;
-import de.eisfeldj.augendiagnosefx.util.Logger;
 import de.eisfeldj.augendiagnosefx.util.PreferenceUtil;
 import de.eisfeldj.augendiagnosefx.util.ResourceConstants;
 import de.eisfeldj.augendiagnosefx.util.ResourceUtil;
 import de.eisfeldj.augendiagnosefx.util.imagefile.EyePhoto;
 import de.eisfeldj.augendiagnosefx.util.imagefile.EyePhotoPair;
+import de.eisfeldj.augendiagnosefx.util.imagefile.ImageUtil;
+import de.eisfeldj.augendiagnosefx.util.imagefile.ImageUtil.Resolution;
+import de.eisfeldj.augendiagnosefx.util.imagefile.PhotoFolderIndex;
+import de.eisfeldj.augendiagnosefx.util.imagefile.ThumbnailStore;
 
 import javafx.application.Platform;
-import javafx.beans.value.ChangeListener;
-import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
@@ -38,17 +32,20 @@ import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.Parent;
 import javafx.scene.control.ContextMenu;
+import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
 import javafx.scene.control.MenuItem;
 import javafx.scene.control.TextField;
+import javafx.scene.image.Image;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
-import javafx.scene.layout.GridPane;
 import javafx.scene.layout.Pane;
+import javafx.util.Callback;
 
 import static de.eisfeldj.augendiagnosefx.util.PreferenceUtil.KEY_FOLDER_PHOTOS;
 import static de.eisfeldj.augendiagnosefx.util.PreferenceUtil.KEY_LAST_NAME;
+import static de.eisfeldj.augendiagnosefx.util.PreferenceUtil.KEY_THUMBNAIL_PREFETCH_COUNT;
 
 /**
  * BaseController for the "Display Photos" page.
@@ -72,10 +69,20 @@ public class DisplayPhotosController extends BaseController implements Initializ
 	private ListView<String> mListNames;
 
 	/**
-	 * The list of names.
+	 * The list of eye photo pairs.
 	 */
 	@FXML
-	private ListView<GridPane> mListPhotos;
+	private ListView<EyePhotoPair> mListPhotos;
+
+	/**
+	 * The cells of the list of eye photo pairs.
+	 */
+	private final List<EyePhotoPairCell> mPhotoCells = new ArrayList<>();
+
+	/**
+	 * The thumbnails loaded ahead of display, in order of request.
+	 */
+	private final Map<EyePhoto, Image> mPrefetchedThumbnails = new LinkedHashMap<>();
 
 	/**
 	 * The field for searching names.
@@ -85,6 +92,15 @@ public class DisplayPhotosController extends BaseController implements Initializ
 
 	@Override
 	public final void initialize(final URL location, final ResourceBundle resources) {
+		mListPhotos.setCellFactory(new Callback<ListView<EyePhotoPair>, ListCell<EyePhotoPair>>() {
+			@Override
+			public ListCell<EyePhotoPair> call(final ListView<EyePhotoPair> listView) {
+				EyePhotoPairCell cell = new EyePhotoPairCell();
+				mPhotoCells.add(cell);
+				return cell;
+			}
+		});
+
 		initializeNames("", true);
 	}
 
@@ -176,19 +192,32 @@ public class DisplayPhotosController extends BaseController implements Initializ
 
 					@Override
 					public void onDialogPositiveClick() {
-						File folder = new File(new File(PreferenceUtil.getPreferenceString(KEY_FOLDER_PHOTOS)), name);
-						File[] children = folder.listFiles();
-						if (children != null) {
-							for (File child : children) {
-								child.delete();
+						final File folder = new File(new File(PreferenceUtil.getPreferenceString(KEY_FOLDER_PHOTOS)), name);
+						// Delete the folder after its thumbnails, without waiting for pending thumbnail writes.
+						ThumbnailStore.removeFolder(folder, new Runnable() {
+							@Override
+							public void run() {
+								File[] children = folder.listFiles();
+								if (children != null) {
+									for (File child : children) {
+										child.delete();
+									}
+								}
+								folder.delete();
+
+								Platform.runLater(new Runnable() {
+									@Override
+									public void run() {
+										PhotoFolderIndex.invalidate(folder);
+
+										if (name.equals(PreferenceUtil.getPreferenceString(KEY_LAST_NAME))) {
+											PreferenceUtil.removePreference(KEY_LAST_NAME);
+										}
+										initializeNames("", true);
+									}
+								});
 							}
-						}
-						folder.delete();
-
-						if (name.equals(PreferenceUtil.getPreferenceString(KEY_LAST_NAME))) {
-							PreferenceUtil.removePreference(KEY_LAST_NAME);
-						}
-						initializeNames("", true);
+						});
 					}
 
 					@Override
@@ -218,36 +247,15 @@ public class DisplayPhotosController extends BaseController implements Initializ
 
 		EyePhotoPair[] eyePhotos = createEyePhotoList(nameFolder);
 
-		ObservableList<GridPane> valuesPhotos = FXCollections.observableList(new ArrayList<GridPane>());
-
-		for (int i = 0; i < eyePhotos.length; i++) {
-			EyePhotoPairNode eyePhotoPairNode = new EyePhotoPairNode(eyePhotos[i], this);
-			valuesPhotos.add(eyePhotoPairNode);
-
-			// Workaround to ensure that the scrollbar is correctly resized after the images are loaded.
-			eyePhotoPairNode.getImagesLoadedProperty().addListener(new ChangeListener<Boolean>() {
-				@Override
-				public void changed(final ObservableValue<? extends Boolean> observable,
-						final Boolean oldValue,
-						final Boolean newValue) {
-					Platform.runLater(new Runnable() {
-						@Override
-						public void run() {
-							GridPane dummy = new GridPane();
-							valuesPhotos.add(dummy);
-							mListPhotos.layout();
-							valuesPhotos.remove(dummy);
-						}
-					});
-				}
-			});
-		}
+		// Nodes are created only for visible rows by the cell factory.
+		ObservableList<EyePhotoPair> valuesPhotos = FXCollections.observableArrayList(eyePhotos);
 
 		mPreviousName = name;
 
 		Platform.runLater(new Runnable() {
 			@Override
 			public void run() {
+				cancelPrefetching();
 				mListPhotos.setItems(valuesPhotos);
 				dialog.close();
 			}
@@ -257,68 +265,79 @@ public class DisplayPhotosController extends BaseController implements Initializ
 	/**
 	 * Remove the item for one date from the list.
 	 *
-	 * @param node The row to be removed.
+	 * @param pair The eye photo pair to be removed.
 	 */
-	public void removeItem(final EyePhotoPairNode node) {
-		mListPhotos.getItems().remove(node);
+	public void removeItem(final EyePhotoPair pair) {
+		mListPhotos.getItems().remove(pair);
 	}
 
-	// METHODS CLONED FROM ANDROID
-
 	/**
-	 * Get the list of subfolders, using getFileNameForSorting() for ordering.
+	 * Start loading the thumbnails of the rows around a displayed row, so that they are available when scrolling.
 	 *
-	 * @param parentFolder
-	 *            The parent folder.
-	 * @param searchString
-	 *            A search String for the name.
-	 * @return The list of subfolders.
+	 * @param index
+	 *            The index of the displayed row.
 	 */
-	public static final List<String> getFolderNames(final File parentFolder, final String searchString) {
-		File[] folders = parentFolder.listFiles(new FileFilter() {
-			@Override
-			public boolean accept(final File pathname) {
-				return pathname.isDirectory() && nameStartsWith(pathname.getName(), searchString);
+	private void prefetchThumbnails(final int index) {
+		int prefetchCount = PreferenceUtil.getPreferenceInt(KEY_THUMBNAIL_PREFETCH_COUNT);
+		List<EyePhotoPair> items = mListPhotos.getItems();
+
+		for (int i = Math.max(0, index - prefetchCount); i <= Math.min(items.size() - 1, index + prefetchCount); i++) {
+			if (i != index) {
+				prefetchThumbnail(items.get(i).getRightEye());
+				prefetchThumbnail(items.get(i).getLeftEye());
 			}
-		});
+		}
 
-		List<String> folderNames = new ArrayList<>();
-		if (folders == null) {
-			return folderNames;
+		// Cancel the thumbnails requested longest ago, if they are still loading and not displayed.
+		Iterator<Map.Entry<EyePhoto, Image>> iterator = mPrefetchedThumbnails.entrySet().iterator();
+		while (mPrefetchedThumbnails.size() > 4 * prefetchCount && iterator.hasNext()) { // MAGIC_NUMBER
+			Map.Entry<EyePhoto, Image> eldest = iterator.next();
+			iterator.remove();
+			if (!isDisplayed(eldest.getKey())) {
+				eldest.getKey().cancelImageLoading(eldest.getValue(), Resolution.THUMB);
+			}
 		}
+	}
 
-		Collator collator = Collator.getInstance();
-		final Map<File, CollationKey> collationMap = new HashMap<>();
-		for (File folder : folders) {
-			collationMap.put(folder, collator.getCollationKey(getFilenameForSorting(folder)));
+	/**
+	 * Start loading the thumbnail of an eye photo.
+	 *
+	 * @param eyePhoto
+	 *            The eye photo (may be null).
+	 */
+	private void prefetchThumbnail(final EyePhoto eyePhoto) {
+		if (eyePhoto == null || mPrefetchedThumbnails.containsKey(eyePhoto)) {
+			return;
 		}
+		Image image = eyePhoto.getImage(Resolution.THUMB);
+		if (ImageUtil.getLoadProgressProperty(image).get() < 1) {
+			mPrefetchedThumbnails.put(eyePhoto, image);
+		}
+	}
 
-		Arrays.sort(folders, new Comparator<File>() {
-			@Override
-			public int compare(final File f1, final File f2) {
-				return collationMap.get(f1).compareTo(collationMap.get(f2));
+	/**
+	 * Cancel the loading of all prefetched thumbnails which are not displayed.
+	 */
+	private void cancelPrefetching() {
+		for (Map.Entry<EyePhoto, Image> entry : mPrefetchedThumbnails.entrySet()) {
+			if (!isDisplayed(entry.getKey())) {
+				entry.getKey().cancelImageLoading(entry.getValue(), Resolution.THUMB);
 			}
-		});
-		for (File f : folders) {
-			folderNames.add(f.getName());
 		}
-		return folderNames;
+		mPrefetchedThumbnails.clear();
 	}
 
 	/**
-	 * Check if a name part starts with the given String (case insensitive).
+	 * Check if an eye photo is displayed in one of the cells.
 	 *
-	 * @param name
-	 *            The name.
-	 * @param searchString
-	 *            The search string.
-	 * @return True if a name part starts with the given String.
+	 * @param eyePhoto
+	 *            The eye photo.
+	 * @return true if the eye photo is displayed.
 	 */
-	private static boolean nameStartsWith(final String name, final String searchString) {
-		String[] nameParts = name.toLowerCase().split(" ");
-		String searchStringCaseIndependent = searchString.toLowerCase();
-		for (int i = 0; i < nameParts.length; i++) {
-			if (nameParts[i].startsWith(searchStringCaseIndependent)) {
+	public final boolean isDisplayed(final EyePhoto eyePhoto) {
+		for (EyePhotoPairCell cell : mPhotoCells) {
+			EyePhotoPair pair = cell.getItem();
+			if (!cell.isEmpty() && pair != null && (pair.getRightEye() == eyePhoto || pair.getLeftEye() == eyePhoto)) {
 				return true;
 			}
 		}
@@ -326,26 +345,44 @@ public class DisplayPhotosController extends BaseController implements Initializ
 	}
 
 	/**
-	 * Helper method to return the name of the file for sorting.
-	 *
-	 * @param f
-	 *            The file
-	 * @return The name for Sorting
+	 * A cell of the list of eye photo pairs, reusing its node for the displayed pairs.
 	 */
-	private static String getFilenameForSorting(final File f) {
-		String name = f.getName();
-
-		boolean sortByLastName = PreferenceUtil.getPreferenceBoolean(PreferenceUtil.KEY_SORT_BY_LAST_NAME);
-		if (sortByLastName) {
-			int index = name.lastIndexOf(' ');
-			if (index >= 0) {
-				String firstName = name.substring(0, index);
-				String lastName = name.substring(index + 1);
-				name = lastName + " " + firstName;
+	private final class EyePhotoPairCell extends ListCell<EyePhotoPair> {
+		/**
+		 * The node displaying the eye photo pair.
+		 */
+		private final EyePhotoPairNode mNode = new EyePhotoPairNode(DisplayPhotosController.this);
+
+		@Override
+		protected void updateItem(final EyePhotoPair pair, final boolean empty) {
+			super.updateItem(pair, empty);
+			if (empty || pair == null) {
+				mNode.setEyePhotoPair(null);
+				setGraphic(null);
+			}
+			else {
+				mNode.setEyePhotoPair(pair);
+				setGraphic(mNode);
+				mPrefetchedThumbnails.remove(pair.getRightEye());
+				mPrefetchedThumbnails.remove(pair.getLeftEye());
+				prefetchThumbnails(getIndex());
 			}
 		}
+	}
+
+	// METHODS CLONED FROM ANDROID
 
-		return name;
+	/**
+	 * Get the list of subfolders, sorted by name (or by last name, dependent on preferences).
+	 *
+	 * @param parentFolder
+	 *            The parent folder.
+	 * @param searchString
+	 *            A search String for the name.
+	 * @return The list of subfolders.
+	 */
+	public static final List<String> getFolderNames(final File parentFolder, final String searchString) {
+		return PhotoFolderIndex.getNames(parentFolder, searchString);
 	}
 
 	/**
@@ -356,47 +393,7 @@ public class DisplayPhotosController extends BaseController implements Initializ
 	 * @return The list of eye photo pairs.
 	 */
 	private EyePhotoPair[] createEyePhotoList(final File folder) {
-		Map<Date, EyePhotoPair> eyePhotoMap = new TreeMap<>(new Comparator<Date>() {
-			@Override
-			public int compare(final Date lhs, final Date rhs) {
-				return rhs.compareTo(lhs);
-			}
-		});
-
-		File[] files = folder.listFiles(new FilenameFilter() {
-			@Override
-			public boolean accept(final File dir, final String name) {
-				return name.toUpperCase().endsWith(".JPG");
-			}
-		});
-
-		if (files == null) {
-			return new EyePhotoPair[0];
-		}
-
-		for (File f : files) {
-			EyePhoto eyePhoto = EyePhoto.fromFile(f);
-
-			if (eyePhoto.isFormatted()) {
-				Date date = eyePhoto.getDate();
-
-				if (eyePhotoMap.containsKey(date)) {
-					EyePhotoPair eyePhotoPair = eyePhotoMap.get(date);
-					eyePhotoPair.setEyePhoto(eyePhoto);
-				}
-				else {
-					EyePhotoPair eyePhotoPair = new EyePhotoPair();
-					eyePhotoPair.setEyePhoto(eyePhoto);
-					eyePhotoMap.put(date, eyePhotoPair);
-				}
-			}
-			else {
-				Logger.error("Eye photo is not formatted correctly: " + f.getAbsolutePath());
-			}
-
-		}
-
-		return eyePhotoMap.values().toArray(new EyePhotoPair[eyePhotoMap.size()]);
+		return PhotoFolderIndex.getEyePhotoPairs(folder);
 	}
 
 }
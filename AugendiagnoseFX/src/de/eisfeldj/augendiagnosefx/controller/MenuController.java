@@ -5,12 +5,17 @@ import java.util.ResourceBundle;
 
 import de.eisfeldj.augendiagnosefx.Application;
 import de.eisfeldj.augendiagnosefx.util.DialogUtil;
+import de.eisfeldj.augendiagnosefx.util.DialogUtil.ConfirmDialogListener;
+import de.eisfeldj.augendiagnosefx.util.DialogUtil.ProgressDialog;
 import de.eisfeldj.augendiagnosefx.util.FxmlConstants;
 import de.eisfeldj.augendiagnosefx.util.Logger;
 import de.eisfeldj.augendiagnosefx.util.PreferenceUtil;
 import de.eisfeldj.augendiagnosefx.util.ResourceConstants;
 import de.eisfeldj.augendiagnosefx.util.ResourceUtil;
 import de.eisfeldj.augendiagnosefx.util.VersioningUtil;
+import de.eisfeldj.augendiagnosefx.util.imagefile.IrisDetectionBatch;
+import de.eisfeldj.augendiagnosefx.util.imagefile.IrisDetectionBatch.BatchStatus;
+import de.eisfeldj.augendiagnosefx.util.imagefile.IrisDetectionBatch.ProgressListener;
 
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
@@ -21,6 +26,7 @@ import javafx.scene.control.CheckMenuItem;
 import javafx.scene.control.MenuBar;
 import javafx.scene.control.MenuItem;
 
+import static de.eisfeldj.augendiagnosefx.util.PreferenceUtil.KEY_FOLDER_PHOTOS;
 import static de.eisfeldj.augendiagnosefx.util.PreferenceUtil.KEY_SHOW_COMMENT_PANE;
 import static de.eisfeldj.augendiagnosefx.util.PreferenceUtil.KEY_SHOW_OVERLAY_PANE;
 import static de.eisfeldj.augendiagnosefx.util.PreferenceUtil.KEY_SHOW_SPLIT_WINDOW;
@@ -88,6 +94,46 @@ public class MenuController extends BaseController implements Initializable {
 		}
 	}
 
+	/**
+	 * Handler for menu entry "Detect iris positions in all photos".
+	 *
+	 * @param event
+	 *            The action event.
+	 */
+	@FXML
+	public final void detectIrisPositions(final ActionEvent event) {
+		final String photoFolder = PreferenceUtil.getPreferenceString(KEY_FOLDER_PHOTOS);
+
+		ConfirmDialogListener listener = new ConfirmDialogListener() {
+			@Override
+			public void onDialogPositiveClick() {
+				final ProgressDialog dialog =
+						DialogUtil.displayProgressDialog(ResourceConstants.MESSAGE_PROGRESS_DETECTING_IRIS_POSITIONS, photoFolder);
+
+				IrisDetectionBatch.forPhotoFolder(new ProgressListener() {
+					@Override
+					public void onProgress(final BatchStatus status) {
+						dialog.setProgress(status.getProgress());
+					}
+
+					@Override
+					public void onFinished(final BatchStatus status) {
+						dialog.close();
+						DialogUtil.displayInfo(ResourceConstants.MESSAGE_INFO_IRIS_POSITIONS_DETECTED, status.getDetectedCount(),
+								status.getSkippedCount(), status.getFailedCount(), status.getPhotosPerSecond());
+					}
+				}).start();
+			}
+
+			@Override
+			public void onDialogNegativeClick() {
+				// do nothing.
+			}
+		};
+		DialogUtil.displayConfirmationMessage(listener, ResourceConstants.BUTTON_OK,
+				ResourceConstants.MESSAGE_CONFIRM_DETECT_IRIS_POSITIONS, photoFolder);
+	}
+
 	/**
 	 * Handler for menu entry "Exit".
 	 *
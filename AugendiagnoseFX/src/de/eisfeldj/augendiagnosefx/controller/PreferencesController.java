@@ -13,6 +13,7 @@ import de.eisfeldj.augendiagnosefx.util.PreferenceUtil;
 import de.eisfeldj.augendiagnosefx.util.ResourceConstants;
 import de.eisfeldj.augendiagnosefx.util.ResourceUtil;
 import de.eisfeldj.augendiagnosefx.util.SystemUtil;
+import de.eisfeldj.augendiagnosefx.util.imagefile.JpegMetadataSidecar;
 
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -30,6 +31,7 @@ import static de.eisfeldj.augendiagnosefx.util.PreferenceUtil.KEY_LANGUAGE;
 import static de.eisfeldj.augendiagnosefx.util.PreferenceUtil.KEY_MAX_BITMAP_SIZE;
 import static de.eisfeldj.augendiagnosefx.util.PreferenceUtil.KEY_OVERLAY_COLOR;
 import static de.eisfeldj.augendiagnosefx.util.PreferenceUtil.KEY_SORT_BY_LAST_NAME;
+import static de.eisfeldj.augendiagnosefx.util.PreferenceUtil.KEY_STORE_IN_SIDECAR;
 import static de.eisfeldj.augendiagnosefx.util.PreferenceUtil.KEY_THUMBNAIL_SIZE;
 import static de.eisfeldj.augendiagnosefx.util.PreferenceUtil.KEY_UPDATE_AUTOMATICALLY;
 
@@ -98,6 +100,12 @@ public class PreferencesController extends DialogController implements Initializ
 	@FXML
 	private CheckBox mCheckBoxUpdateAutomatically;
 
+	/**
+	 * Checkbox for "store in sidecar" flag.
+	 */
+	@FXML
+	private CheckBox mCheckBoxStoreInSidecar;
+
 	/**
 	 * Color picker for the default overlay color.
 	 */
@@ -137,6 +145,7 @@ public class PreferencesController extends DialogController implements Initializ
 		mOldSortByLastName = PreferenceUtil.getPreferenceBoolean(KEY_SORT_BY_LAST_NAME);
 		mCheckBoxSortByLastName.setSelected(mOldSortByLastName);
 		mCheckBoxUpdateAutomatically.setSelected(PreferenceUtil.getPreferenceBoolean(KEY_UPDATE_AUTOMATICALLY));
+		mCheckBoxStoreInSidecar.setSelected(PreferenceUtil.getPreferenceBoolean(KEY_STORE_IN_SIDECAR));
 
 		// Fill language choice box from LANGUAGE_MAP
 		LANGUAGE_MAP.forEach((key, value) -> mChoiceLanguage.getItems().add(key, value));
@@ -169,6 +178,11 @@ public class PreferencesController extends DialogController implements Initializ
 		PreferenceUtil.setPreference(KEY_OVERLAY_COLOR, mColorPicker.getValue());
 		PreferenceUtil.setPreference(KEY_SORT_BY_LAST_NAME, mCheckBoxSortByLastName.isSelected());
 		PreferenceUtil.setPreference(KEY_UPDATE_AUTOMATICALLY, mCheckBoxUpdateAutomatically.isSelected());
+		if (PreferenceUtil.getPreferenceBoolean(KEY_STORE_IN_SIDECAR) && !mCheckBoxStoreInSidecar.isSelected()) {
+			// Write pending changes from the sidecar index into the photos.
+			JpegMetadataSidecar.syncAll();
+		}
+		PreferenceUtil.setPreference(KEY_STORE_IN_SIDECAR, mCheckBoxStoreInSidecar.isSelected());
 		PreferenceUtil.setPreference(KEY_LANGUAGE, languageStringToId(mChoiceLanguage.getValue()));
 
 		if (requiresRestartApplication()) {
@@ -14,12 +14,14 @@ import de.eisfeldj.augendiagnosefx.util.ResourceConstants;
 import de.eisfeldj.augendiagnosefx.util.ResourceUtil;
 import de.eisfeldj.augendiagnosefx.util.imagefile.EyePhoto;
 import de.eisfeldj.augendiagnosefx.util.imagefile.EyePhotoPair;
+import de.eisfeldj.augendiagnosefx.util.imagefile.ImageUtil;
 import de.eisfeldj.augendiagnosefx.util.imagefile.ImageUtil.Resolution;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.ReadOnlyDoubleProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
@@ -97,29 +99,18 @@ public class EyePhotoPairNode extends GridPane implements Controller {
 	}
 
 	/**
-	 * Constructor given a pair of eye photos.
+	 * Constructor. The eye photo pair is set via {@link #setEyePhotoPair(EyePhotoPair)}, so that the node can be reused
+	 * for different pairs.
 	 *
-	 * @param pair
-	 *            The eye photo pair.
 	 * @param initialParentController
 	 *            The parent controller.
 	 */
 	@SuppressFBWarnings(value = "UR_UNINIT_READ", justification = "Is initialized via fxml")
-	public EyePhotoPairNode(final EyePhotoPair pair, final DisplayPhotosController initialParentController) {
+	public EyePhotoPairNode(final DisplayPhotosController initialParentController) {
 		mParentController = initialParentController;
-		mPair = pair;
 
 		FxmlUtil.loadFromFxml(this, FxmlConstants.FXML_EYE_PHOTO_PAIR_NODE);
 
-		mLabelDate.setText(pair.getDateDisplayString());
-
-		if (pair.getRightEye() != null) {
-			mImageViewRight.setImageView(getImageView(pair.getRightEye()));
-		}
-		if (pair.getLeftEye() != null) {
-			mImageViewLeft.setImageView(getImageView(pair.getLeftEye()));
-		}
-
 		mLabelDate.setOnMouseClicked(new EventHandler<MouseEvent>() {
 			@Override
 			public void handle(final MouseEvent event) {
@@ -130,10 +121,10 @@ public class EyePhotoPairNode extends GridPane implements Controller {
 					return;
 				}
 
-				if (pair.isComplete()) {
+				if (mPair != null && mPair.isComplete()) {
 					DisplayImagePairController controller =
 							(DisplayImagePairController) FxmlUtil.displaySubpage(FxmlConstants.FXML_DISPLAY_IMAGE_PAIR, -1, true);
-					controller.setEyePhotos(pair);
+					controller.setEyePhotos(mPair);
 				}
 			}
 		});
@@ -141,6 +132,54 @@ public class EyePhotoPairNode extends GridPane implements Controller {
 		mLabelDate.setContextMenu(createDateContextMenu());
 	}
 
+	/**
+	 * Display a pair of eye photos. Thumbnails of the previously displayed pair which are still loading are cancelled,
+	 * unless another cell displays them.
+	 *
+	 * @param pair
+	 *            The eye photo pair, or null to display nothing.
+	 */
+	public final void setEyePhotoPair(final EyePhotoPair pair) {
+		if (pair == mPair) {
+			return;
+		}
+		cancelImageLoading(mImageViewRight);
+		cancelImageLoading(mImageViewLeft);
+
+		mPair = pair;
+		mHeightRight = 0;
+		mHeightLeft = 0;
+		mImagesLoadedProperty.set(false);
+
+		mLabelDate.setText(pair == null ? null : pair.getDateDisplayString());
+		mImageViewRight.setImageView(pair == null || pair.getRightEye() == null ? null : getImageView(pair.getRightEye()));
+		mImageViewLeft.setImageView(pair == null || pair.getLeftEye() == null ? null : getImageView(pair.getLeftEye()));
+	}
+
+	/**
+	 * Cancel the loading of the thumbnail displayed in an image view pane, if it is still loading. As the cells are
+	 * updated one by one, the check if another cell displays the eye photo is done after the current update.
+	 *
+	 * @param imageViewPane
+	 *            The image view pane.
+	 */
+	private void cancelImageLoading(final ImageViewPane imageViewPane) {
+		ImageView imageView = imageViewPane.getImageView();
+		if (imageView == null || !(imageView.getUserData() instanceof EyePhoto)) {
+			return;
+		}
+		final EyePhoto eyePhoto = (EyePhoto) imageView.getUserData();
+		final Image image = imageView.getImage();
+		Platform.runLater(new Runnable() {
+			@Override
+			public void run() {
+				if (!mParentController.isDisplayed(eyePhoto)) {
+					eyePhoto.cancelImageLoading(image, Resolution.THUMB);
+				}
+			}
+		});
+	}
+
 	/**
 	 * Create the context menu for the date.
 	 *
@@ -159,8 +198,9 @@ public class EyePhotoPairNode extends GridPane implements Controller {
 
 					@Override
 					public void onDialogPositiveClick() {
-						mParentController.removeItem(EyePhotoPairNode.this);
-						mPair.delete();
+						EyePhotoPair pair = mPair;
+						mParentController.removeItem(pair);
+						pair.delete();
 					}
 
 					@Override
@@ -185,17 +225,22 @@ public class EyePhotoPairNode extends GridPane implements Controller {
 	 */
 	private ImageView getImageView(final EyePhoto eyePhoto) {
 		Image image = eyePhoto.getImage(Resolution.THUMB);
-		image.progressProperty().addListener(new ChangeListener<Number>() {
-			@Override
-			public void changed(final ObservableValue<? extends Number> observable, final Number oldValue,
-					final Number newValue) {
-				if (newValue.doubleValue() == 1) {
-					checkIfImagesLoaded();
+		final ReadOnlyDoubleProperty loadProgress = ImageUtil.getLoadProgressProperty(image);
+		if (loadProgress.get() < 1) {
+			loadProgress.addListener(new ChangeListener<Number>() {
+				@Override
+				public void changed(final ObservableValue<? extends Number> observable, final Number oldValue,
+						final Number newValue) {
+					if (newValue.doubleValue() == 1) {
+						loadProgress.removeListener(this);
+						checkIfImagesLoaded();
+					}
 				}
-			}
-		});
+			});
+		}
 
 		ImageView imageView = new ImageView(image);
+		imageView.setUserData(eyePhoto);
 		imageView.setPreserveRatio(true);
 		imageView.setOnMouseClicked(new EventHandler<MouseEvent>() {
 			@Override
@@ -247,14 +292,23 @@ public class EyePhotoPairNode extends GridPane implements Controller {
 			return true;
 		}
 
-		Image imageRight = mImageViewRight.getImageView().getImage();
-		Image imageLeft = mImageViewRight.getImageView().getImage();
-
-		boolean loaded = imageRight.getProgress() == 1 && imageLeft.getProgress() == 1;
+		boolean loaded = isImageLoaded(mImageViewRight) && isImageLoaded(mImageViewLeft);
 		if (loaded) {
 			mImagesLoadedProperty.set(true);
 		}
 		return loaded;
 	}
 
+	/**
+	 * Check if the thumbnail of an image view pane is loaded.
+	 *
+	 * @param imageViewPane
+	 *            The image view pane.
+	 * @return true if there is no thumbnail, or if it is loaded.
+	 */
+	private static boolean isImageLoaded(final ImageViewPane imageViewPane) {
+		ImageView imageView = imageViewPane.getImageView();
+		return imageView == null || ImageUtil.getLoadProgressProperty(imageView.getImage()).get() == 1;
+	}
+
 }
@@ -1,10 +1,13 @@
 package de.eisfeldj.augendiagnosefx.fxelements;
 
+import de.eisfeldj.augendiagnosefx.util.imagefile.EyePhoto;
 import de.eisfeldj.augendiagnosefx.util.imagefile.ImageUtil;
 import de.eisfeldj.augendiagnosefx.util.imagefile.ImageUtil.Resolution;
 import de.eisfeldj.augendiagnosefx.util.imagefile.JpegMetadata;
+import de.eisfeldj.augendiagnosefx.util.imagefile.OverlayWarp;
 
 import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
 
 /**
@@ -56,6 +59,30 @@ public class OverlayImageView extends SizableImageView {
 	 */
 	private double mCurrentImageWidth;
 
+	/**
+	 * The pending request for preparation of the overlay.
+	 */
+	private OverlayWarp.Request mOverlayRequest = null;
+
+	/**
+	 * The image created by the last redisplay, which may be overwritten by the next redisplay.
+	 */
+	private WritableImage mReusableImage = null;
+
+	/**
+	 * The layer displaying the image in full resolution with color settings and overlay.
+	 */
+	private final TiledImageLayer mTileLayer;
+
+	/**
+	 * Constructor without initialization of image.
+	 */
+	public OverlayImageView() {
+		super();
+		mTileLayer = new TiledImageLayer(this);
+		addImageLayer(mTileLayer);
+	}
+
 	/**
 	 * Display the overlay.
 	 *
@@ -132,8 +159,36 @@ public class OverlayImageView extends SizableImageView {
 	 *            Indicator of the resolution of the image.
 	 */
 	public final void redisplay(final Resolution resolution) {
-		Image newImage = ImageUtil.getImageForDisplay(getEyePhoto(), mOverlayType, mOverlayColor,
-				mBrightness, mContrast, mSaturation, mColorTemperature, resolution);
+		if (mOverlayRequest != null) {
+			mOverlayRequest.cancel();
+			mOverlayRequest = null;
+		}
+
+		// If an image is displayed already, keep it until the overlay has been prepared in the background.
+		if (resolution != Resolution.FULL && getImageView().getImage() != null) {
+			mOverlayRequest = ImageUtil.prepareOverlayForDisplay(getEyePhoto(), mOverlayType, mOverlayColor,
+					new Runnable() {
+						@Override
+						public void run() {
+							mOverlayRequest = null;
+							redisplay(resolution);
+						}
+					});
+			if (mOverlayRequest != null) {
+				return;
+			}
+		}
+
+		Image baseImage = getEyePhoto().getImage(resolution);
+		Image newImage = ImageUtil.getImageForDisplay(getEyePhoto(), baseImage, mOverlayType, mOverlayColor,
+				mBrightness, mContrast, mSaturation, mColorTemperature, resolution, mReusableImage);
+		if (resolution != Resolution.FULL && newImage instanceof WritableImage && newImage != baseImage) {
+			mReusableImage = (WritableImage) newImage;
+		}
+		else {
+			// Do not overwrite the image of the eye photo, which may be cached.
+			mReusableImage = null;
+		}
 		if (resolution != mCurrentResolution) {
 			multiplyZoomProperty(mCurrentImageWidth / newImage.getWidth());
 			mCurrentImageWidth = newImage.getWidth();
@@ -141,6 +196,39 @@ public class OverlayImageView extends SizableImageView {
 		}
 
 		getImageView().setImage(newImage);
+		updateTileRenderer(resolution, newImage);
+	}
+
+	/**
+	 * Update the rendering of tiles. Tiles are required only in full resolution, as the full resolution image is too
+	 * big for applying color settings and overlay to the whole image.
+	 *
+	 * @param resolution
+	 *            Indicator of the resolution of the image.
+	 * @param image
+	 *            The displayed image.
+	 */
+	private void updateTileRenderer(final Resolution resolution, final Image image) {
+		boolean hasOriginalColors = mBrightness == 0 && mContrast == 1 && mSaturation == 1 && mColorTemperature == 0;
+		if (resolution != Resolution.FULL || (hasOriginalColors && mOverlayType == null)) {
+			mTileLayer.setRenderer(null);
+			return;
+		}
+
+		final EyePhoto eyePhoto = getEyePhoto();
+		final Integer overlayType = mOverlayType;
+		final Color overlayColor = mOverlayColor;
+		final float brightness = mBrightness;
+		final float contrast = mContrast;
+		final float saturation = mSaturation;
+		final float colorTemperature = mColorTemperature;
+		mTileLayer.setRenderer(new TiledImageLayer.TileRenderer() {
+			@Override
+			public Image renderTile(final int x, final int y, final int width, final int height) {
+				return ImageUtil.getTileForDisplay(eyePhoto, image, x, y, width, height, overlayType, overlayColor,
+						brightness, contrast, saturation, colorTemperature);
+			}
+		});
 	}
 
 	/*
@@ -157,6 +245,8 @@ public class OverlayImageView extends SizableImageView {
 				mBrightness, mContrast, mSaturation, mColorTemperature, Resolution.NORMAL);
 		mCurrentResolution = Resolution.NORMAL;
 		mCurrentImageWidth = enhancedImage.getWidth();
+		mReusableImage = null;
+		mTileLayer.setRenderer(null);
 
 		super.displayImage(enhancedImage);
 	}
@@ -165,6 +255,8 @@ public class OverlayImageView extends SizableImageView {
 	public final void setImage(final JpegMetadata metadata, final Image image) {
 		super.setImage(metadata, image);
 		mCurrentResolution = Resolution.NORMAL;
+		mReusableImage = null;
+		mTileLayer.setRenderer(null);
 		mCurrentImageWidth = image.getWidth();
 	}
 
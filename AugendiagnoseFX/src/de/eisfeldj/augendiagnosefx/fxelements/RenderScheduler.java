@@ -0,0 +1,172 @@
+package de.eisfeldj.augendiagnosefx.fxelements;
+
+import de.eisfeldj.augendiagnosefx.util.imagefile.ImageUtil.Resolution;
+
+import javafx.animation.AnimationTimer;
+
+/**
+ * Scheduler for the rendering of an OverlayImageView while color settings are changed via sliders.
+ *
+ * <p>Changes are coalesced, so that at most one render happens per frame. While changes arrive, the image is rendered
+ * in low resolution. As soon as there were no changes for {@link #IDLE_DELAY} milliseconds, the image is rendered once
+ * in high resolution.
+ */
+public class RenderScheduler {
+	/**
+	 * The time without changes (in milliseconds) after which the image is rendered in high resolution.
+	 */
+	private static final long IDLE_DELAY = 200;
+
+	/**
+	 * The number of nanoseconds per millisecond.
+	 */
+	private static final long NANOS_PER_MILLI = 1000000;
+
+	/**
+	 * The view to be rendered.
+	 */
+	private final OverlayImageView mView;
+
+	/**
+	 * The listener informed about the rendering.
+	 */
+	private final RenderListener mListener;
+
+	// JAVADOC:OFF
+	// The color settings not yet rendered. null means unchanged.
+	private Float mBrightness = null;
+	private Float mContrast = null;
+	private Float mSaturation = null;
+	private Float mColorTemperature = null;
+
+	// JAVADOC:ON
+
+	/**
+	 * Flag indicating if there are changes not yet rendered.
+	 */
+	private boolean mHasPendingChanges = false;
+
+	/**
+	 * Flag indicating if the image is currently rendered in low resolution.
+	 */
+	private boolean mHasPreview = false;
+
+	/**
+	 * The time (in nanoseconds) of the last change.
+	 */
+	private long mLastChangeTime;
+
+	/**
+	 * The timer triggering the rendering once per frame.
+	 */
+	private final AnimationTimer mTimer = new AnimationTimer() {
+		@Override
+		public void handle(final long now) {
+			onFrame(now);
+		}
+	};
+
+	/**
+	 * Constructor.
+	 *
+	 * @param view
+	 *            The view to be rendered.
+	 * @param listener
+	 *            The listener informed about the rendering.
+	 */
+	public RenderScheduler(final OverlayImageView view, final RenderListener listener) {
+		mView = view;
+		mListener = listener;
+	}
+
+	/**
+	 * Schedule a change of color settings. Must be called in the FX thread.
+	 *
+	 * @param brightness
+	 *            The brightness (null if unchanged).
+	 * @param contrast
+	 *            The contrast from slider (null if unchanged).
+	 * @param saturation
+	 *            The saturation from slider (null if unchanged).
+	 * @param colorTemperature
+	 *            The color temperature (null if unchanged).
+	 */
+	public final void setColorSettings(final Float brightness, final Float contrast, final Float saturation,
+			final Float colorTemperature) {
+		if (brightness != null) {
+			mBrightness = brightness;
+		}
+		if (contrast != null) {
+			mContrast = contrast;
+		}
+		if (saturation != null) {
+			mSaturation = saturation;
+		}
+		if (colorTemperature != null) {
+			mColorTemperature = colorTemperature;
+		}
+		mHasPendingChanges = true;
+		mLastChangeTime = System.nanoTime();
+		mTimer.start();
+	}
+
+	/**
+	 * Stop the scheduler, discarding changes not yet rendered.
+	 */
+	public final void stop() {
+		mTimer.stop();
+		mHasPendingChanges = false;
+		mHasPreview = false;
+		clearColorSettings();
+	}
+
+	/**
+	 * Render the pending changes in low resolution, or the final image in high resolution if there were no changes
+	 * for some time.
+	 *
+	 * @param now
+	 *            The timestamp of the current frame in nanoseconds.
+	 */
+	private void onFrame(final long now) {
+		if (mHasPendingChanges) {
+			mHasPendingChanges = false;
+			mHasPreview = true;
+			mListener.onPreview();
+			mView.setColorSettings(mBrightness, mContrast, mSaturation, mColorTemperature, Resolution.THUMB);
+			clearColorSettings();
+		}
+		else if (now - mLastChangeTime >= IDLE_DELAY * NANOS_PER_MILLI) {
+			mTimer.stop();
+			if (mHasPreview) {
+				mHasPreview = false;
+				mListener.onIdle();
+			}
+		}
+	}
+
+	/**
+	 * Clear the color settings not yet rendered.
+	 */
+	private void clearColorSettings() {
+		mBrightness = null;
+		mContrast = null;
+		mSaturation = null;
+		mColorTemperature = null;
+	}
+
+	/**
+	 * Listener informed about the rendering.
+	 */
+	public interface RenderListener {
+		/**
+		 * Callback before the image is rendered in low resolution.
+		 */
+		void onPreview();
+
+		/**
+		 * Callback after there were no changes for some time. The listener should render the image in high
+		 * resolution.
+		 */
+		void onIdle();
+	}
+}
@@ -8,6 +8,7 @@ import de.eisfeldj.augendiagnosefx.util.DialogUtil;
 import de.eisfeldj.augendiagnosefx.util.DialogUtil.ProgressDialog;
 import de.eisfeldj.augendiagnosefx.util.ResourceConstants;
 import de.eisfeldj.augendiagnosefx.util.imagefile.EyePhoto;
+import de.eisfeldj.augendiagnosefx.util.imagefile.ImageUtil;
 import de.eisfeldj.augendiagnosefx.util.imagefile.ImageUtil.Resolution;
 import de.eisfeldj.augendiagnosefx.util.imagefile.JpegMetadata;
 
@@ -20,6 +21,7 @@ import javafx.event.Event;
 import javafx.event.EventDispatchChain;
 import javafx.event.EventDispatcher;
 import javafx.event.EventHandler;
+import javafx.scene.Node;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
@@ -29,6 +31,7 @@ import javafx.scene.input.TouchEvent;
 import javafx.scene.input.TouchPoint;
 import javafx.scene.input.ZoomEvent;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.StackPane;
 
 /**
  * Pane containing an image that can be resized.
@@ -104,6 +107,21 @@ public class SizableImageView extends ScrollPane {
 		return mImageView;
 	}
 
+	/**
+	 * The pane holding the image view and additional layers on top of it.
+	 */
+	private StackPane mImageStack;
+
+	/**
+	 * Add a layer on top of the image view. The layer is centered in the same way as the image view.
+	 *
+	 * @param layer
+	 *            The layer.
+	 */
+	protected final void addImageLayer(final Node layer) {
+		mImageStack.getChildren().add(layer);
+	}
+
 	/**
 	 * The displayed eye photo.
 	 */
@@ -129,7 +147,8 @@ public class SizableImageView extends ScrollPane {
 	public SizableImageView() {
 		mImageView = new ImageView();
 		mImageView.setPreserveRatio(true);
-		setContent(new BorderPane(mImageView));
+		mImageStack = new StackPane(mImageView);
+		setContent(new BorderPane(mImageStack));
 
 		setPannable(true);
 		setFitToHeight(true);
@@ -291,7 +310,7 @@ public class SizableImageView extends ScrollPane {
 		this.mEyePhoto = eyePhoto;
 
 		Image image = eyePhoto.getImage(Resolution.NORMAL);
-		if (image.getProgress() == 1) {
+		if (ImageUtil.getLoadProgressProperty(image).get() == 1) {
 			// image is already loaded from the start.
 			Platform.runLater(new Runnable() {
 				@Override
@@ -306,7 +325,7 @@ public class SizableImageView extends ScrollPane {
 					.displayProgressDialog(ResourceConstants.MESSAGE_PROGRESS_LOADING_PHOTO,
 							eyePhoto.getFilename());
 
-			image.progressProperty().addListener(new ChangeListener<Number>() {
+			ImageUtil.getLoadProgressProperty(image).addListener(new ChangeListener<Number>() {
 				@Override
 				public void changed(final ObservableValue<? extends Number> observable, final Number oldValue,
 						final Number newValue) {
@@ -0,0 +1,303 @@
+package de.eisfeldj.augendiagnosefx.fxelements;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.geometry.Bounds;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.Pane;
+
+/**
+ * Layer on top of the image view of a SizableImageView, displaying rendered tiles of the image in full resolution.
+ *
+ * <p>Only the tiles visible at the current zoom and scroll position are rendered. Rendered tiles are kept in a cache
+ * bounded by memory, so that scrolling back does not require rendering again. Rendering is spread over several pulses,
+ * so that the FX thread stays responsive.
+ */
+class TiledImageLayer extends Pane {
+	/**
+	 * The size of a tile (in pixels of the image).
+	 */
+	private static final int TILE_SIZE = 512;
+
+	/**
+	 * The maximum memory (in bytes) used by the cached tiles.
+	 */
+	private static final long MAX_CACHE_BYTES = 128L * 1024 * 1024; // MAGIC_NUMBER
+
+	/**
+	 * The maximum number of tiles rendered in one pulse.
+	 */
+	private static final int MAX_TILES_PER_PULSE = 4;
+
+	/**
+	 * The number of bytes per pixel.
+	 */
+	private static final int BYTES_PER_PIXEL = 4;
+
+	/**
+	 * The view on which the tiles are displayed.
+	 */
+	private final SizableImageView mView;
+
+	/**
+	 * The renderer of the tiles. If null, no tiles are displayed.
+	 */
+	private TileRenderer mRenderer = null;
+
+	/**
+	 * The cached tiles, in order of access.
+	 */
+	private final Map<Long, Image> mTileCache = new LinkedHashMap<>(16, 0.75f, true); // MAGIC_NUMBER
+
+	/**
+	 * The memory used by the cached tiles.
+	 */
+	private long mCacheSizeInBytes = 0;
+
+	/**
+	 * The currently displayed tiles.
+	 */
+	private final Map<Long, ImageView> mTileViews = new HashMap<>();
+
+	/**
+	 * Flag indicating if an update of the tiles is scheduled.
+	 */
+	private boolean mIsUpdateScheduled = false;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param view
+	 *            The view on which the tiles are displayed.
+	 */
+	TiledImageLayer(final SizableImageView view) {
+		mView = view;
+		setMouseTransparent(true);
+
+		InvalidationListener listener = new InvalidationListener() {
+			@Override
+			public void invalidated(final Observable observable) {
+				scheduleUpdate();
+			}
+		};
+		ImageView imageView = view.getImageView();
+		view.hvalueProperty().addListener(listener);
+		view.vvalueProperty().addListener(listener);
+		view.widthProperty().addListener(listener);
+		view.heightProperty().addListener(listener);
+		imageView.fitWidthProperty().addListener(listener);
+		imageView.fitHeightProperty().addListener(listener);
+		imageView.imageProperty().addListener(listener);
+	}
+
+	/**
+	 * Set the renderer of the tiles. Tiles rendered by a previous renderer are discarded.
+	 *
+	 * @param renderer
+	 *            The renderer, or null if no tiles should be displayed.
+	 */
+	final void setRenderer(final TileRenderer renderer) {
+		mRenderer = renderer;
+		mTileCache.clear();
+		mCacheSizeInBytes = 0;
+		mTileViews.clear();
+		getChildren().clear();
+		setVisible(renderer != null);
+		scheduleUpdate();
+	}
+
+	/**
+	 * Schedule an update of the displayed tiles.
+	 */
+	private void scheduleUpdate() {
+		if (mRenderer == null || mIsUpdateScheduled) {
+			return;
+		}
+		mIsUpdateScheduled = true;
+		Platform.runLater(new Runnable() {
+			@Override
+			public void run() {
+				mIsUpdateScheduled = false;
+				updateTiles();
+			}
+		});
+	}
+
+	/**
+	 * Display the tiles visible in the view, rendering missing tiles.
+	 */
+	private void updateTiles() {
+		ImageView imageView = mView.getImageView();
+		Image image = imageView.getImage();
+		if (mRenderer == null || image == null || image.getWidth() == 0) {
+			return;
+		}
+		int imageWidth = (int) image.getWidth();
+		int imageHeight = (int) image.getHeight();
+
+		// Size the layer like the image view, so that it is positioned in the same way.
+		Bounds displayBounds = imageView.getLayoutBounds();
+		setMinSize(displayBounds.getWidth(), displayBounds.getHeight());
+		setPrefSize(displayBounds.getWidth(), displayBounds.getHeight());
+		setMaxSize(displayBounds.getWidth(), displayBounds.getHeight());
+		double scale = displayBounds.getWidth() / imageWidth;
+
+		// Visible area in image coordinates.
+		Bounds visibleBounds = imageView.sceneToLocal(mView.localToScene(mView.getLayoutBounds()));
+		if (visibleBounds == null || scale <= 0) {
+			return;
+		}
+		int minColumn = Math.max(0, (int) (visibleBounds.getMinX() / scale / TILE_SIZE));
+		int maxColumn = Math.min((imageWidth - 1) / TILE_SIZE, (int) (visibleBounds.getMaxX() / scale / TILE_SIZE));
+		int minRow = Math.max(0, (int) (visibleBounds.getMinY() / scale / TILE_SIZE));
+		int maxRow = Math.min((imageHeight - 1) / TILE_SIZE, (int) (visibleBounds.getMaxY() / scale / TILE_SIZE));
+
+		// Remove tiles which are no longer visible.
+		Iterator<Map.Entry<Long, ImageView>> iterator = mTileViews.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<Long, ImageView> entry = iterator.next();
+			int column = getColumn(entry.getKey());
+			int row = getRow(entry.getKey());
+			if (column < minColumn || column > maxColumn || row < minRow || row > maxRow) {
+				getChildren().remove(entry.getValue());
+				iterator.remove();
+			}
+		}
+
+		int renderedTiles = 0;
+		boolean hasMissingTiles = false;
+		for (int row = minRow; row <= maxRow; row++) {
+			for (int column = minColumn; column <= maxColumn; column++) {
+				long key = getKey(column, row);
+				int x = column * TILE_SIZE;
+				int y = row * TILE_SIZE;
+				int width = Math.min(TILE_SIZE, imageWidth - x);
+				int height = Math.min(TILE_SIZE, imageHeight - y);
+
+				Image tile = mTileCache.get(key);
+				if (tile == null) {
+					if (renderedTiles >= MAX_TILES_PER_PULSE) {
+						hasMissingTiles = true;
+						continue;
+					}
+					tile = mRenderer.renderTile(x, y, width, height);
+					renderedTiles++;
+					cacheTile(key, tile);
+				}
+
+				ImageView tileView = mTileViews.get(key);
+				if (tileView == null) {
+					tileView = new ImageView(tile);
+					mTileViews.put(key, tileView);
+					getChildren().add(tileView);
+				}
+
+				// Position on full display pixels, slightly overlapping to avoid gaps.
+				double left = Math.floor(x * scale);
+				double top = Math.floor(y * scale);
+				tileView.setFitWidth(Math.ceil((x + width) * scale) - left);
+				tileView.setFitHeight(Math.ceil((y + height) * scale) - top);
+				tileView.relocate(left, top);
+			}
+		}
+
+		if (hasMissingTiles) {
+			scheduleUpdate();
+		}
+	}
+
+	/**
+	 * Store a tile in the cache, removing least recently used tiles if the cache is full.
+	 *
+	 * @param key
+	 *            The key of the tile.
+	 * @param tile
+	 *            The tile.
+	 */
+	private void cacheTile(final long key, final Image tile) {
+		mTileCache.put(key, tile);
+		mCacheSizeInBytes += getSizeInBytes(tile);
+
+		Iterator<Map.Entry<Long, Image>> iterator = mTileCache.entrySet().iterator();
+		while (mCacheSizeInBytes > MAX_CACHE_BYTES && iterator.hasNext()) {
+			Map.Entry<Long, Image> eldest = iterator.next();
+			if (!mTileViews.containsKey(eldest.getKey())) {
+				mCacheSizeInBytes -= getSizeInBytes(eldest.getValue());
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Get the memory used by a tile.
+	 *
+	 * @param tile
+	 *            The tile.
+	 * @return The memory in bytes.
+	 */
+	private static long getSizeInBytes(final Image tile) {
+		return (long) tile.getWidth() * (long) tile.getHeight() * BYTES_PER_PIXEL;
+	}
+
+	/**
+	 * Get the key of a tile.
+	 *
+	 * @param column
+	 *            The column of the tile.
+	 * @param row
+	 *            The row of the tile.
+	 * @return The key.
+	 */
+	private static long getKey(final int column, final int row) {
+		return ((long) row << Integer.SIZE) | column;
+	}
+
+	/**
+	 * Get the column of a tile from its key.
+	 *
+	 * @param key
+	 *            The key.
+	 * @return The column.
+	 */
+	private static int getColumn(final long key) {
+		return (int) key;
+	}
+
+	/**
+	 * Get the row of a tile from its key.
+	 *
+	 * @param key
+	 *            The key.
+	 * @return The row.
+	 */
+	private static int getRow(final long key) {
+		return (int) (key >>> Integer.SIZE);
+	}
+
+	/**
+	 * Renderer of the tiles of an image.
+	 */
+	interface TileRenderer {
+		/**
+		 * Render a tile of the image in full resolution.
+		 *
+		 * @param x
+		 *            The x coordinate of the tile in the image.
+		 * @param y
+		 *            The y coordinate of the tile in the image.
+		 * @param width
+		 *            The width of the tile.
+		 * @param height
+		 *            The height of the tile.
+		 * @return The rendered tile.
+		 */
+		Image renderTile(int x, int y, int width, int height);
+	}
+}
@@ -18,6 +18,11 @@ public final class PreferenceUtil {
 	 */
 	public static final String KEY_STORE_OPTION = "key_store_option";
 
+	/**
+	 * Preference key for the flag indicating if metadata changes should be stored in a sidecar index first.
+	 */
+	public static final String KEY_STORE_IN_SIDECAR = "key_store_in_sidecar";
+
 	/**
 	 * Preference key for the Window width.
 	 */
@@ -68,6 +73,11 @@ public final class PreferenceUtil {
 	 */
 	public static final String KEY_THUMBNAIL_SIZE = "thumbnail_size";
 
+	/**
+	 * Preference key for the number of rows for which thumbnails are loaded ahead while scrolling.
+	 */
+	public static final String KEY_THUMBNAIL_PREFETCH_COUNT = "key_thumbnail_prefetch_count";
+
 	/**
 	 * Preference key for default overlay color.
 	 */
@@ -110,6 +120,7 @@ public final class PreferenceUtil {
 
 	static {
 		DEFAULT_MAP.put(KEY_STORE_OPTION, 2);
+		DEFAULT_MAP.put(KEY_STORE_IN_SIDECAR, false);
 		DEFAULT_MAP.put(KEY_WINDOW_SIZE_X, 1024.0); // MAGIC_NUMBER
 		DEFAULT_MAP.put(KEY_WINDOW_SIZE_Y, 720.0); // MAGIC_NUMBER
 		DEFAULT_MAP.put(KEY_WINDOW_MAXIMIZED, false);
@@ -120,6 +131,7 @@ public final class PreferenceUtil {
 		DEFAULT_MAP.put(KEY_FOLDER_PHOTOS, "D:\\");
 		DEFAULT_MAP.put(KEY_MAX_BITMAP_SIZE, 2048); // MAGIC_NUMBER
 		DEFAULT_MAP.put(KEY_THUMBNAIL_SIZE, 1024); // MAGIC_NUMBER
+		DEFAULT_MAP.put(KEY_THUMBNAIL_PREFETCH_COUNT, 4); // MAGIC_NUMBER
 		DEFAULT_MAP.put(KEY_OVERLAY_COLOR, "#FF0000FF"); // RED
 		DEFAULT_MAP.put(KEY_SORT_BY_LAST_NAME, false);
 		DEFAULT_MAP.put(KEY_UPDATE_AUTOMATICALLY, false);
@@ -43,6 +43,7 @@ public final class ResourceConstants {
 	public static final String MENU_CLOSE = "menu_close";
 	public static final String MENU_COMMENT_PANE = "menu_comment_pane";
 	public static final String MENU_DELETE_IMAGES = "menu_delete_images";
+	public static final String MENU_DETECT_IRIS_POSITIONS = "menu_detect_iris_positions";
 	public static final String MENU_DISPLAY_FULL = "menu_display_full";
 	public static final String MENU_EXIT = "menu_exit";
 	public static final String MENU_FILE = "menu_file";
@@ -59,6 +60,7 @@ public final class ResourceConstants {
 	public static final String MENU_UNINSTALL = "menu_uninstall";
 	public static final String MENU_VIEW = "menu_view";
 	public static final String MENU_WINDOW = "menu_window";
+	public static final String MESSAGE_CONFIRM_DETECT_IRIS_POSITIONS = "message_confirm_detect_iris_positions";
 	public static final String MESSAGE_CONFIRM_EXIT_UNSAVED = "message_confirm_exit_unsaved";
 	public static final String MESSAGE_CONFIRM_NEW_VERSION = "message_confirm_new_version";
 	public static final String MESSAGE_DIALOG_CONFIRM_DELETE_DATE = "message_dialog_confirm_delete_date";
@@ -67,8 +69,10 @@ public final class ResourceConstants {
 	public static final String MESSAGE_ERROR_FAILED_TO_STORE_METADATA = "message_error_failed_to_store_metadata";
 	public static final String MESSAGE_ERROR_UNKNOWN_ERROR = "message_error_unknown_error";
 	public static final String MESSAGE_INFO_APP_ABOUT = "message_info_app_about";
+	public static final String MESSAGE_INFO_IRIS_POSITIONS_DETECTED = "message_info_iris_positions_detected";
 	public static final String MESSAGE_INFO_NO_NEW_VERSION = "message_info_no_new_version";
 	public static final String MESSAGE_INFO_SAVING_PHOTO = "message_info_saving_photo";
+	public static final String MESSAGE_PROGRESS_DETECTING_IRIS_POSITIONS = "message_progress_detecting_iris_positions";
 	public static final String MESSAGE_PROGRESS_LOADING_PHOTO = "message_progress_loading_photo";
 	public static final String MESSAGE_PROGRESS_LOADING_PHOTOS = "message_progress_loading_photos";
 	public static final String MESSAGE_PROGRESS_LOADING_UPDATE = "message_progress_loading_update";
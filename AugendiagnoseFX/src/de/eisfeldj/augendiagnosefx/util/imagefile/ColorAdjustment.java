@@ -0,0 +1,255 @@
+package de.eisfeldj.augendiagnosefx.util.imagefile;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritablePixelFormat;
+import javafx.scene.paint.Color;
+
+/**
+ * Adjustment of brightness, contrast, saturation and color temperature of an image.
+ *
+ * <p>The adjustment is affine per channel. Therefore the contribution of each input channel value to each output channel
+ * is precalculated in lookup tables, so that each pixel requires only table lookups and additions. The logic simulates
+ * the logic from android OverlayPinchImageView.changeBitmapContrastBrightness.
+ */
+final class ColorAdjustment {
+	/**
+	 * The number of bytes per pixel.
+	 */
+	private static final int FOUR = 4;
+
+	/**
+	 * The size of a byte.
+	 */
+	private static final int BYTE = 0xFF;
+
+	/**
+	 * The number of values of a color channel.
+	 */
+	private static final int TABLE_SIZE = 256;
+
+	/**
+	 * The number of rows processed in one stripe.
+	 */
+	private static final int ROWS_PER_STRIPE = 64;
+
+	/**
+	 * The maximum number of pixel buffers kept for reuse.
+	 */
+	private static final int MAX_POOLED_BUFFERS = 2;
+
+	/**
+	 * The pixel buffers available for reuse.
+	 */
+	private static final Deque<byte[]> BUFFER_POOL = new ArrayDeque<>();
+
+	// JAVADOC:OFF
+	// Lookup tables - contribution of input channel (first color) to output channel (second color).
+	private final float[] mBlueToBlue = new float[TABLE_SIZE];
+	private final float[] mGreenToBlue = new float[TABLE_SIZE];
+	private final float[] mRedToBlue = new float[TABLE_SIZE];
+	private final float[] mBlueToGreen = new float[TABLE_SIZE];
+	private final float[] mGreenToGreen = new float[TABLE_SIZE];
+	private final float[] mRedToGreen = new float[TABLE_SIZE];
+	private final float[] mBlueToRed = new float[TABLE_SIZE];
+	private final float[] mGreenToRed = new float[TABLE_SIZE];
+	private final float[] mRedToRed = new float[TABLE_SIZE];
+
+	// JAVADOC:ON
+
+	/**
+	 * The offset added to each channel.
+	 */
+	private final float mOffset;
+
+	/**
+	 * Create the adjustment for the given color settings.
+	 *
+	 * @param brightness
+	 *            The brightness of the image.
+	 * @param contrast
+	 *            The contrast of the image.
+	 * @param saturation
+	 *            The saturation of the image.
+	 * @param colorTemperature
+	 *            The color temperature of the image.
+	 */
+	ColorAdjustment(final float brightness, final float contrast, final float saturation, final float colorTemperature) {
+		Color temperatureColor = convertTemperatureToColor(colorTemperature);
+		float factorBlue = 1 / (float) temperatureColor.getBlue();
+		float factorGreen = 1 / (float) temperatureColor.getGreen();
+		float factorRed = 1 / (float) temperatureColor.getRed();
+		float correctionFactor = (float) Math.pow(factorRed * factorGreen * factorBlue, -1f / 3); // MAGIC_NUMBER
+		factorBlue *= correctionFactor * contrast;
+		factorGreen *= correctionFactor * contrast;
+		factorRed *= correctionFactor * contrast;
+		mOffset = BYTE / 2f * (1 - contrast + brightness * contrast + brightness);
+		float oppositeSaturation = (1 - saturation) / 2;
+
+		for (int value = 0; value < TABLE_SIZE; value++) {
+			float blueIn = value * factorBlue;
+			float greenIn = value * factorGreen;
+			float redIn = value * factorRed;
+
+			mBlueToBlue[value] = saturation * blueIn;
+			mGreenToBlue[value] = oppositeSaturation * greenIn;
+			mRedToBlue[value] = oppositeSaturation * redIn;
+			mBlueToGreen[value] = oppositeSaturation * blueIn;
+			mGreenToGreen[value] = saturation * greenIn;
+			mRedToGreen[value] = oppositeSaturation * redIn;
+			mBlueToRed[value] = oppositeSaturation * blueIn;
+			mGreenToRed[value] = oppositeSaturation * greenIn;
+			mRedToRed[value] = saturation * redIn;
+		}
+	}
+
+	/**
+	 * Apply the adjustment to an image.
+	 *
+	 * @param baseImage
+	 *            The original image.
+	 * @param pixelWriter
+	 *            The writer receiving the adjusted pixels.
+	 * @param parallel
+	 *            Flag indicating if the rows should be processed in parallel.
+	 */
+	void apply(final Image baseImage, final PixelWriter pixelWriter, final boolean parallel) {
+		apply(baseImage, 0, 0, (int) baseImage.getWidth(), (int) baseImage.getHeight(), pixelWriter, parallel);
+	}
+
+	/**
+	 * Apply the adjustment to a region of an image.
+	 *
+	 * @param baseImage
+	 *            The original image.
+	 * @param x
+	 *            The x coordinate of the region.
+	 * @param y
+	 *            The y coordinate of the region.
+	 * @param width
+	 *            The width of the region.
+	 * @param height
+	 *            The height of the region.
+	 * @param pixelWriter
+	 *            The writer receiving the adjusted pixels of the region at position (0,0).
+	 * @param parallel
+	 *            Flag indicating if the rows should be processed in parallel.
+	 */
+	void apply(final Image baseImage, final int x, final int y, final int width, final int height, // SUPPRESS_CHECKSTYLE
+			final PixelWriter pixelWriter, final boolean parallel) {
+		WritablePixelFormat<ByteBuffer> pixelFormat = PixelFormat.getByteBgraInstance();
+		final byte[] buffer = obtainBuffer(FOUR * width * height);
+		try {
+			baseImage.getPixelReader().getPixels(x, y, width, height, pixelFormat, buffer, 0, FOUR * width);
+
+			if (parallel) {
+				ParallelRows.run(height, ROWS_PER_STRIPE, new ParallelRows.StripeTask() {
+					@Override
+					public void processRows(final int startRow, final int endRow) {
+						applyToRows(buffer, width, startRow, endRow);
+					}
+				});
+			}
+			else {
+				applyToRows(buffer, width, 0, height);
+			}
+
+			pixelWriter.setPixels(0, 0, width, height, pixelFormat, buffer, 0, FOUR * width);
+		}
+		finally {
+			releaseBuffer(buffer);
+		}
+	}
+
+	/**
+	 * Apply the adjustment to some rows of a pixel buffer in BGRA format.
+	 *
+	 * @param buffer
+	 *            The pixel buffer.
+	 * @param width
+	 *            The width of the image.
+	 * @param startRow
+	 *            The first row to be adjusted.
+	 * @param endRow
+	 *            The row after the last row to be adjusted.
+	 */
+	void applyToRows(final byte[] buffer, final int width, final int startRow, final int endRow) {
+		int end = FOUR * width * endRow;
+		for (int i = FOUR * width * startRow; i < end; i += FOUR) {
+			int blue = buffer[i] & BYTE;
+			int green = buffer[i + 1] & BYTE;
+			int red = buffer[i + 2] & BYTE;
+
+			buffer[i] = toColorByte(mBlueToBlue[blue] + mGreenToBlue[green] + mRedToBlue[red] + mOffset);
+			buffer[i + 1] = toColorByte(mBlueToGreen[blue] + mGreenToGreen[green] + mRedToGreen[red] + mOffset);
+			buffer[i + 2] = toColorByte(mBlueToRed[blue] + mGreenToRed[green] + mRedToRed[red] + mOffset);
+		}
+	}
+
+	/**
+	 * Convert a number into a byte (ensuring the appropriate range).
+	 *
+	 * @param number The number.
+	 * @return The resulting byte.
+	 */
+	private static byte toColorByte(final float number) {
+		return (byte) Math.min(BYTE, Math.max(0, number));
+	}
+
+	/**
+	 * Convert a temperature into a color value representing the color of this temperature.
+	 *
+	 * @param temperature The temperature value (in the range -1..1).
+	 * @return The color value.
+	 */
+	private static Color convertTemperatureToColor(final double temperature) {
+		if (temperature >= 0) {
+			return Color.rgb((int) (BYTE - 150 * temperature), (int) (BYTE - 105 * temperature), BYTE); // MAGIC_NUMBER
+		}
+		else {
+			return Color.rgb(BYTE, (int) (BYTE + 80 * temperature), (int) (BYTE + 145 * temperature)); // MAGIC_NUMBER
+		}
+	}
+
+	/**
+	 * Get a pixel buffer of the given size, reusing a released buffer if possible.
+	 *
+	 * @param size
+	 *            The size of the buffer.
+	 * @return The buffer.
+	 */
+	private static byte[] obtainBuffer(final int size) {
+		synchronized (BUFFER_POOL) {
+			Iterator<byte[]> iterator = BUFFER_POOL.iterator();
+			while (iterator.hasNext()) {
+				byte[] buffer = iterator.next();
+				if (buffer.length == size) {
+					iterator.remove();
+					return buffer;
+				}
+			}
+		}
+		return new byte[size];
+	}
+
+	/**
+	 * Release a pixel buffer for reuse.
+	 *
+	 * @param buffer
+	 *            The buffer.
+	 */
+	private static void releaseBuffer(final byte[] buffer) {
+		synchronized (BUFFER_POOL) {
+			BUFFER_POOL.push(buffer);
+			if (BUFFER_POOL.size() > MAX_POOLED_BUFFERS) {
+				BUFFER_POOL.removeLast();
+			}
+		}
+	}
+}
@@ -1,11 +1,10 @@
 package de.eisfeldj.augendiagnosefx.util.imagefile;
 
 import java.io.File;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Locale;
 
 import de.eisfeldj.augendiagnosefx.util.DateUtil;
@@ -24,10 +23,6 @@ public class EyePhoto {
 	 * The date format used for the file name.
 	 */
 	private static final String DATE_FORMAT = "yyyy-MM-dd";
-	/**
-	 * The maximum size of the image cache.
-	 */
-	private static final int MAX_IMAGE_CACHE = 4;
 
 	/**
 	 * Indicator if the file has already a formatted name.
@@ -64,27 +59,17 @@ public class EyePhoto {
 	 */
 	private String mSuffix;
 
-	/**
-	 * A cache of the bitmap (to avoid too frequent generation).
-	 */
-	private Image mCachedImage;
-
-	/**
-	 * A cache of the thumbnail.
-	 */
-	private Image mCachedThumbnail;
-
-	/**
-	 * The list of eye photos having a cached image.
-	 */
-	private static final List<WeakReference<EyePhoto>> CACHED_EYE_PHOTOS = new ArrayList<>();
-
 	/**
 	 * A map from path to EyePhoto objects - for reuse.
 	 *
 	 * <p>Note: WeakHashMap cannot be used, as the garbage collection should be dependent on values, not on keys.
 	 */
-	private static final HashMap<String, WeakReference<EyePhoto>> EYE_PHOTO_MAP = new HashMap<>();
+	private static final HashMap<String, PathReference> EYE_PHOTO_MAP = new HashMap<>();
+
+	/**
+	 * The queue of references in EYE_PHOTO_MAP whose EyePhoto objects have been garbage collected.
+	 */
+	private static final ReferenceQueue<EyePhoto> EYE_PHOTO_QUEUE = new ReferenceQueue<>();
 
 	/**
 	 * Create the EyePhoto, giving a file resource.
@@ -113,6 +98,7 @@ public class EyePhoto {
 	 */
 	public static EyePhoto fromFile(final File file) {
 		synchronized (EYE_PHOTO_MAP) {
+			purgeEyePhotoMap();
 			EyePhoto eyePhoto = null;
 			WeakReference<EyePhoto> eyePhotoReference = EYE_PHOTO_MAP.get(file.getAbsolutePath());
 			if (eyePhotoReference != null) {
@@ -120,12 +106,25 @@ public class EyePhoto {
 			}
 			if (eyePhoto == null) {
 				eyePhoto = new EyePhoto(file);
-				EYE_PHOTO_MAP.put(file.getAbsolutePath(), new WeakReference<>(eyePhoto));
+				EYE_PHOTO_MAP.put(file.getAbsolutePath(), new PathReference(file.getAbsolutePath(), eyePhoto));
 			}
 			return eyePhoto;
 		}
 	}
 
+	/**
+	 * Remove the entries of garbage collected EyePhoto objects from EYE_PHOTO_MAP.
+	 */
+	private static void purgeEyePhotoMap() {
+		PathReference reference = (PathReference) EYE_PHOTO_QUEUE.poll();
+		while (reference != null) {
+			if (EYE_PHOTO_MAP.get(reference.mPath) == reference) {
+				EYE_PHOTO_MAP.remove(reference.mPath);
+			}
+			reference = (PathReference) EYE_PHOTO_QUEUE.poll();
+		}
+	}
+
 	/**
 	 * Retrieve the filename (excluding path).
 	 *
@@ -316,7 +315,15 @@ public class EyePhoto {
 	 * @return true if the deletion was successful.
 	 */
 	public final boolean delete() {
-		return getFile().delete();
+		JpegMetadataCache.invalidate(getAbsolutePath());
+		EyePhotoImageCache.invalidate(getAbsolutePath());
+		ThumbnailStore.remove(getFile());
+		boolean success = getFile().delete();
+		if (success) {
+			JpegMetadataSidecar.remove(getAbsolutePath());
+			PhotoFolderIndex.invalidate(getFile().getParentFile());
+		}
+		return success;
 	}
 
 	/**
@@ -332,7 +339,16 @@ public class EyePhoto {
 			return false;
 		}
 
-		return getFile().renameTo(target.getFile());
+		JpegMetadataCache.invalidate(getAbsolutePath());
+		EyePhotoImageCache.invalidate(getAbsolutePath());
+		ThumbnailStore.remove(getFile());
+		boolean success = getFile().renameTo(target.getFile());
+		if (success) {
+			JpegMetadataSidecar.move(getAbsolutePath(), target.getAbsolutePath());
+			PhotoFolderIndex.invalidate(getFile().getParentFile());
+			PhotoFolderIndex.invalidate(target.getFile().getParentFile());
+		}
+		return success;
 	}
 
 	/**
@@ -355,7 +371,16 @@ public class EyePhoto {
 			return false;
 		}
 
-		return getFile().renameTo(targetFile);
+		JpegMetadataCache.invalidate(getAbsolutePath());
+		EyePhotoImageCache.invalidate(getAbsolutePath());
+		ThumbnailStore.remove(getFile());
+		boolean success = getFile().renameTo(targetFile);
+		if (success) {
+			JpegMetadataSidecar.move(getAbsolutePath(), targetFile.getAbsolutePath());
+			PhotoFolderIndex.invalidate(getFile().getParentFile());
+			PhotoFolderIndex.invalidate(folder);
+		}
+		return success;
 	}
 
 	/**
@@ -371,7 +396,12 @@ public class EyePhoto {
 			return false;
 		}
 
-		return FileUtil.copyFile(getFile(), target.getFile());
+		boolean success = FileUtil.copyFile(getFile(), target.getFile());
+		if (success) {
+			JpegMetadataSidecar.copy(getAbsolutePath(), target.getAbsolutePath());
+			PhotoFolderIndex.invalidate(target.getFile().getParentFile());
+		}
+		return success;
 	}
 
 	/**
@@ -384,43 +414,13 @@ public class EyePhoto {
 	public final Image getImage(final Resolution resolution) {
 		switch (resolution) {
 		case THUMB:
-			if (mCachedThumbnail == null) {
-				mCachedThumbnail = ImageUtil.getImage(getFile(), Resolution.THUMB);
-			}
-			return mCachedThumbnail;
 		case NORMAL:
-			Image result = mCachedImage;
-			if (result == null) {
-				result = ImageUtil.getImage(getFile(), Resolution.NORMAL);
-				synchronized (CACHED_EYE_PHOTOS) {
-					mCachedImage = result;
-					CACHED_EYE_PHOTOS.add(new WeakReference<>(this));
-					// Ensure that not too many images are cached
-					if (CACHED_EYE_PHOTOS.size() > MAX_IMAGE_CACHE) {
-						EyePhoto firstInList = CACHED_EYE_PHOTOS.get(0).get();
-						if (firstInList != null) {
-							firstInList.mCachedImage = null;
-						}
-						CACHED_EYE_PHOTOS.remove(0);
-					}
-				}
+			Image image = EyePhotoImageCache.get(getAbsolutePath(), resolution);
+			if (image == null) {
+				image = ImageUtil.getImage(getFile(), resolution);
+				EyePhotoImageCache.put(getAbsolutePath(), resolution, image);
 			}
-			else {
-				synchronized (CACHED_EYE_PHOTOS) {
-					int index = -1;
-					for (int i = 0; i < CACHED_EYE_PHOTOS.size(); i++) {
-						if (CACHED_EYE_PHOTOS.get(i).get() == this) {
-							index = i;
-							break;
-						}
-					}
-					if (index >= 0) {
-						CACHED_EYE_PHOTOS.remove(index);
-						CACHED_EYE_PHOTOS.add(new WeakReference<>(this));
-					}
-				}
-			}
-			return result;
+			return image;
 		case FULL:
 			// Full size image is not cached.
 			return ImageUtil.getImage(getFile(), Resolution.FULL);
@@ -429,6 +429,22 @@ public class EyePhoto {
 		}
 	}
 
+	/**
+	 * Cancel the loading of an image of this photo, if it is still loading in the background. The image is removed from
+	 * the cache, so that it is loaded again when requested again.
+	 *
+	 * @param image
+	 *            The image retrieved via getImage().
+	 * @param resolution
+	 *            The resolution of the image.
+	 */
+	public final void cancelImageLoading(final Image image, final Resolution resolution) {
+		if (ImageUtil.getLoadProgressProperty(image).get() < 1) {
+			EyePhotoImageCache.remove(getAbsolutePath(), resolution, image);
+			image.cancel();
+		}
+	}
+
 	/**
 	 * Change the personName renaming the file (keeping the path).
 	 *
@@ -562,6 +578,29 @@ public class EyePhoto {
 		return getAbsolutePath().hashCode();
 	}
 
+	/**
+	 * A weak reference to an EyePhoto in EYE_PHOTO_MAP, remembering its key for removal after garbage collection.
+	 */
+	private static final class PathReference extends WeakReference<EyePhoto> {
+		/**
+		 * The absolute path used as key.
+		 */
+		private final String mPath;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param path
+		 *            The absolute path used as key.
+		 * @param eyePhoto
+		 *            The referenced EyePhoto.
+		 */
+		private PathReference(final String path, final EyePhoto eyePhoto) {
+			super(eyePhoto, EYE_PHOTO_QUEUE);
+			mPath = path;
+		}
+	}
+
 	/**
 	 * Enumeration for left eye vs. right eye.
 	 */
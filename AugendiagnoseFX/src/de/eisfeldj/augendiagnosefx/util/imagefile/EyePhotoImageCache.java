@@ -0,0 +1,400 @@
+package de.eisfeldj.augendiagnosefx.util.imagefile;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.eisfeldj.augendiagnosefx.util.PreferenceUtil;
+import de.eisfeldj.augendiagnosefx.util.imagefile.ImageUtil.Resolution;
+
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.scene.image.Image;
+
+/**
+ * In-memory cache of the thumbnails and normal size images of eye photos.
+ *
+ * <p>Entries are keyed by the absolute path. Thumbnails and images have separate budgets for the memory used, and least
+ * recently used entries are removed first. Images still loading in the background are accounted with their maximum
+ * size, until their actual size is known.
+ */
+public final class EyePhotoImageCache {
+	/**
+	 * The maximum memory (in bytes) used by the cached thumbnails.
+	 */
+	private static final long MAX_THUMBNAIL_BYTES = 128L * 1024 * 1024; // MAGIC_NUMBER
+
+	/**
+	 * The maximum memory (in bytes) used by the cached normal size images.
+	 */
+	private static final long MAX_IMAGE_BYTES = 64L * 1024 * 1024; // MAGIC_NUMBER
+
+	/**
+	 * The number of bytes per pixel.
+	 */
+	private static final int BYTES_PER_PIXEL = 4;
+
+	/**
+	 * The cached thumbnails.
+	 */
+	private static final Bucket THUMBNAILS = new Bucket(MAX_THUMBNAIL_BYTES, PreferenceUtil.KEY_THUMBNAIL_SIZE);
+
+	/**
+	 * The cached normal size images.
+	 */
+	private static final Bucket IMAGES = new Bucket(MAX_IMAGE_BYTES, PreferenceUtil.KEY_MAX_BITMAP_SIZE);
+
+	/**
+	 * Hide default constructor.
+	 */
+	private EyePhotoImageCache() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Get a cached image.
+	 *
+	 * @param pathname
+	 *            The path of the eye photo.
+	 * @param resolution
+	 *            The resolution of the image. Full resolution images are not cached.
+	 * @return The cached image, or null if not cached.
+	 */
+	static Image get(final String pathname, final Resolution resolution) {
+		Bucket bucket = getBucket(resolution);
+		return bucket == null ? null : bucket.get(pathname);
+	}
+
+	/**
+	 * Store an image in the cache.
+	 *
+	 * @param pathname
+	 *            The path of the eye photo.
+	 * @param resolution
+	 *            The resolution of the image. Full resolution images are not cached.
+	 * @param image
+	 *            The image.
+	 */
+	static void put(final String pathname, final Resolution resolution, final Image image) {
+		Bucket bucket = getBucket(resolution);
+		if (bucket != null) {
+			bucket.put(pathname, image);
+		}
+	}
+
+	/**
+	 * Remove an image from the cache, if it is still cached.
+	 *
+	 * @param pathname
+	 *            The path of the eye photo.
+	 * @param resolution
+	 *            The resolution of the image.
+	 * @param image
+	 *            The image.
+	 */
+	static void remove(final String pathname, final Resolution resolution, final Image image) {
+		Bucket bucket = getBucket(resolution);
+		if (bucket != null) {
+			bucket.remove(pathname, image);
+		}
+	}
+
+	/**
+	 * Remove the cached images of an eye photo, as the file has changed.
+	 *
+	 * @param pathname
+	 *            The path of the eye photo.
+	 */
+	public static void invalidate(final String pathname) {
+		THUMBNAILS.remove(pathname);
+		IMAGES.remove(pathname);
+	}
+
+	/**
+	 * Clear the cache.
+	 */
+	public static void clear() {
+		THUMBNAILS.clear();
+		IMAGES.clear();
+	}
+
+	/**
+	 * Get the memory currently used by the cached images.
+	 *
+	 * @param resolution
+	 *            The resolution of the images.
+	 * @return The memory in bytes.
+	 */
+	public static long getSizeInBytes(final Resolution resolution) {
+		Bucket bucket = getBucket(resolution);
+		if (bucket == null) {
+			return 0;
+		}
+		synchronized (bucket) {
+			return bucket.mSizeInBytes;
+		}
+	}
+
+	/**
+	 * Get the number of cache hits.
+	 *
+	 * @param resolution
+	 *            The resolution of the images.
+	 * @return The number of cache hits.
+	 */
+	public static long getHitCount(final Resolution resolution) {
+		Bucket bucket = getBucket(resolution);
+		if (bucket == null) {
+			return 0;
+		}
+		synchronized (bucket) {
+			return bucket.mHitCount;
+		}
+	}
+
+	/**
+	 * Get the number of cache misses.
+	 *
+	 * @param resolution
+	 *            The resolution of the images.
+	 * @return The number of cache misses.
+	 */
+	public static long getMissCount(final Resolution resolution) {
+		Bucket bucket = getBucket(resolution);
+		if (bucket == null) {
+			return 0;
+		}
+		synchronized (bucket) {
+			return bucket.mMissCount;
+		}
+	}
+
+	/**
+	 * Get the number of images removed from the cache due to the memory limit.
+	 *
+	 * @param resolution
+	 *            The resolution of the images.
+	 * @return The number of evictions.
+	 */
+	public static long getEvictionCount(final Resolution resolution) {
+		Bucket bucket = getBucket(resolution);
+		if (bucket == null) {
+			return 0;
+		}
+		synchronized (bucket) {
+			return bucket.mEvictionCount;
+		}
+	}
+
+	/**
+	 * Get the cache bucket for a resolution.
+	 *
+	 * @param resolution
+	 *            The resolution.
+	 * @return The bucket, or null if images of this resolution are not cached.
+	 */
+	private static Bucket getBucket(final Resolution resolution) {
+		switch (resolution) {
+		case THUMB:
+			return THUMBNAILS;
+		case NORMAL:
+			return IMAGES;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * The cached images of one resolution.
+	 */
+	private static final class Bucket {
+		/**
+		 * The maximum memory (in bytes) used by the cached images.
+		 */
+		private final long mMaxBytes;
+
+		/**
+		 * The preference key of the maximum size of the images.
+		 */
+		private final String mMaxSizePreference;
+
+		/**
+		 * The cached images, in order of access.
+		 */
+		private final Map<String, Image> mImages = new LinkedHashMap<>(16, 0.75f, true); // MAGIC_NUMBER
+
+		/**
+		 * The memory accounted for each cached image.
+		 */
+		private final Map<String, Long> mImageSizes = new HashMap<>();
+
+		/**
+		 * The memory currently used by the cached images.
+		 */
+		private long mSizeInBytes = 0;
+
+		/**
+		 * The number of cache hits.
+		 */
+		private long mHitCount = 0;
+
+		/**
+		 * The number of cache misses.
+		 */
+		private long mMissCount = 0;
+
+		/**
+		 * The number of images removed due to the memory limit.
+		 */
+		private long mEvictionCount = 0;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param maxBytes
+		 *            The maximum memory (in bytes) used by the cached images.
+		 * @param maxSizePreference
+		 *            The preference key of the maximum size of the images.
+		 */
+		private Bucket(final long maxBytes, final String maxSizePreference) {
+			mMaxBytes = maxBytes;
+			mMaxSizePreference = maxSizePreference;
+		}
+
+		/**
+		 * Get a cached image.
+		 *
+		 * @param pathname
+		 *            The path of the eye photo.
+		 * @return The cached image, or null if not cached.
+		 */
+		private synchronized Image get(final String pathname) {
+			Image image = mImages.get(pathname);
+			if (image == null) {
+				mMissCount++;
+			}
+			else {
+				mHitCount++;
+			}
+			return image;
+		}
+
+		/**
+		 * Store an image, removing least recently used images if the budget is exceeded.
+		 *
+		 * @param pathname
+		 *            The path of the eye photo.
+		 * @param image
+		 *            The image.
+		 */
+		private void put(final String pathname, final Image image) {
+			synchronized (this) {
+				remove(pathname);
+				mImages.put(pathname, image);
+				long imageSize = getSizeInBytes(image);
+				mImageSizes.put(pathname, imageSize);
+				mSizeInBytes += imageSize;
+				trim();
+			}
+
+			if (image.getWidth() == 0 || image.getHeight() == 0) {
+				// Image is loading in the background - account the actual size as soon as it is known.
+				InvalidationListener sizeListener = new InvalidationListener() {
+					@Override
+					public void invalidated(final Observable observable) {
+						if (image.getWidth() > 0 && image.getHeight() > 0) {
+							image.widthProperty().removeListener(this);
+							image.heightProperty().removeListener(this);
+							updateSize(pathname, image);
+						}
+					}
+				};
+				image.widthProperty().addListener(sizeListener);
+				image.heightProperty().addListener(sizeListener);
+			}
+		}
+
+		/**
+		 * Update the memory accounted for an image after its size has become known.
+		 *
+		 * @param pathname
+		 *            The path of the eye photo.
+		 * @param image
+		 *            The image.
+		 */
+		private synchronized void updateSize(final String pathname, final Image image) {
+			if (mImages.get(pathname) != image) {
+				return;
+			}
+			long imageSize = getSizeInBytes(image);
+			mSizeInBytes += imageSize - mImageSizes.put(pathname, imageSize);
+			trim();
+		}
+
+		/**
+		 * Remove an image.
+		 *
+		 * @param pathname
+		 *            The path of the eye photo.
+		 */
+		private synchronized void remove(final String pathname) {
+			if (mImages.remove(pathname) != null) {
+				mSizeInBytes -= mImageSizes.remove(pathname);
+			}
+		}
+
+		/**
+		 * Remove an image, if it is still cached for the path.
+		 *
+		 * @param pathname
+		 *            The path of the eye photo.
+		 * @param image
+		 *            The image.
+		 */
+		private synchronized void remove(final String pathname, final Image image) {
+			if (mImages.get(pathname) == image) {
+				remove(pathname);
+			}
+		}
+
+		/**
+		 * Remove all images.
+		 */
+		private synchronized void clear() {
+			mImages.clear();
+			mImageSizes.clear();
+			mSizeInBytes = 0;
+		}
+
+		/**
+		 * Remove least recently used images until the budget is kept. The most recent image is always kept.
+		 */
+		private void trim() {
+			Iterator<String> iterator = mImages.keySet().iterator();
+			while (mSizeInBytes > mMaxBytes && mImages.size() > 1 && iterator.hasNext()) {
+				String eldest = iterator.next();
+				iterator.remove();
+				mSizeInBytes -= mImageSizes.remove(eldest);
+				mEvictionCount++;
+			}
+		}
+
+		/**
+		 * Get the memory used by an image. If the image is not yet loaded, the maximum size is assumed.
+		 *
+		 * @param image
+		 *            The image.
+		 * @return The memory in bytes.
+		 */
+		private long getSizeInBytes(final Image image) {
+			if (image.getWidth() > 0 && image.getHeight() > 0) {
+				return (long) image.getWidth() * (long) image.getHeight() * BYTES_PER_PIXEL;
+			}
+			else {
+				long maxSize = PreferenceUtil.getPreferenceInt(mMaxSizePreference);
+				return maxSize * maxSize * BYTES_PER_PIXEL;
+			}
+		}
+	}
+}
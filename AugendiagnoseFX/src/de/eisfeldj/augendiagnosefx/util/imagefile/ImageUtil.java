@@ -1,15 +1,21 @@
 package de.eisfeldj.augendiagnosefx.util.imagefile;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.ByteBuffer;
 
 import de.eisfeldj.augendiagnosefx.util.Logger;
 import de.eisfeldj.augendiagnosefx.util.PreferenceUtil;
 import de.eisfeldj.augendiagnosefx.util.ResourceUtil;
 import de.eisfeldj.augendiagnosefx.util.imagefile.EyePhoto.RightLeft;
 
+import org.apache.commons.imaging.ImageReadException;
+import org.apache.commons.imaging.Imaging;
+import org.apache.commons.imaging.java.awt.Dimension;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyDoubleProperty;
 import javafx.scene.SnapshotParameters;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
@@ -20,7 +26,8 @@ import javafx.scene.effect.DisplacementMap;
 import javafx.scene.effect.FloatMap;
 import javafx.scene.image.Image;
 import javafx.scene.image.PixelFormat;
-import javafx.scene.image.WritablePixelFormat;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
 
 import static de.eisfeldj.augendiagnosefx.util.ResourceConstants.OVERLAY_10_PREFIX;
@@ -41,7 +48,7 @@ public final class ImageUtil {
 	/**
 	 * The size of the overlays (in pixels).
 	 */
-	private static final int OVERLAY_SIZE = 1024;
+	static final int OVERLAY_SIZE = 1024;
 
 	/**
 	 * The relative radius of the iris on the overlay.
@@ -53,29 +60,11 @@ public final class ImageUtil {
 	 */
 	private static final float[] ORIG_PUPIL_SIZES = {0.25f, 0.28f, 0.28f, 0.21f, 0.24f, 0.24f, 0.21f, 0.24f, 0.16f, 0.24f, 0.23f};
 
-	/**
-	 * The number four.
-	 */
-	private static final int FOUR = 4;
 	/**
 	 * The size of a byte.
 	 */
 	private static final int BYTE = 0xFF;
 
-	/**
-	 * A cache of one overlay - to prevent frequent recalculation while sliding brightness and contrast.
-	 */
-	// JAVADOC:OFF
-	private static Image mCachedOverlay;
-	private static Integer mCachedOverlayType = null;
-	private static RightLeft mCachedOverlaySide;
-	private static Color mCachedOverlayColor;
-	private static float mCachedPupilSize;
-	private static float mCachedPupilXOffset;
-	private static float mCachedPupilYOffset;
-
-	// JAVADOC:ON
-
 	/**
 	 * Do not allow instantiation.
 	 */
@@ -106,6 +95,34 @@ public final class ImageUtil {
 				? PreferenceUtil.getPreferenceInt(PreferenceUtil.KEY_THUMBNAIL_SIZE)
 				: PreferenceUtil.getPreferenceInt(PreferenceUtil.KEY_MAX_BITMAP_SIZE);
 
+		if (resolution == Resolution.THUMB) {
+			File thumbnailFile = ThumbnailStore.getThumbnailFile(file, maxSize);
+			if (thumbnailFile != null) {
+				return new Image(thumbnailFile.toURI().toString(), maxSize, maxSize, true, true, true);
+			}
+			Image thumbnail = getImage(url, file, maxSize, resolution);
+			ThumbnailStore.storeWhenLoaded(file, maxSize, thumbnail);
+			return thumbnail;
+		}
+		else {
+			return getImage(url, file, maxSize, resolution);
+		}
+	}
+
+	/**
+	 * Get an image from a file, decoding the file.
+	 *
+	 * @param url
+	 *            The URL of the image file.
+	 * @param file
+	 *            The image file.
+	 * @param maxSize
+	 *            The maximum size of the image, if not in full resolution.
+	 * @param resolution
+	 *            Indicator of the resolution in which the image should be returned.
+	 * @return the image.
+	 */
+	private static Image getImage(final URL url, final File file, final int maxSize, final Resolution resolution) {
 		int rotation = JpegMetadataUtil.getExifOrientationAngle(file);
 
 		if (rotation == 0) {
@@ -116,46 +133,46 @@ public final class ImageUtil {
 				return new Image(url.toExternalForm(), maxSize, maxSize, true, true, true);
 			}
 		}
+		else if (resolution == Resolution.FULL) {
+			// Full resolution is loaded synchronously, as in the unrotated case.
+			return rotateImage(new Image(url.toExternalForm()), rotation);
+		}
 		else {
-			// need to load in foreground and apply rotation.
-			Image image;
-			if (resolution == Resolution.FULL) {
-				image = new Image(url.toExternalForm());
+			// Decode and rotate in the background. The size of the result is determined upfront from the JPEG header.
+			int sourceWidth;
+			int sourceHeight;
+			try {
+				Dimension imageSize = Imaging.getImageSize(file);
+				sourceWidth = imageSize.width;
+				sourceHeight = imageSize.height;
 			}
-			else {
-				image = new Image(url.toExternalForm(), maxSize, maxSize, true, true);
+			catch (ImageReadException | IOException e) {
+				Logger.warning("Could not read image size of " + file.getName() + " - loading in foreground.");
+				return rotateImage(new Image(url.toExternalForm(), maxSize, maxSize, true, true), rotation);
 			}
 
-			double width = image.getWidth();
-			double height = image.getHeight();
-
-			Canvas canvas;
-			GraphicsContext gc;
+			double scale = Math.min((double) maxSize / sourceWidth, (double) maxSize / sourceHeight);
+			sourceWidth = Math.max(1, (int) Math.round(sourceWidth * scale));
+			sourceHeight = Math.max(1, (int) Math.round(sourceHeight * scale));
 
-			switch (rotation) {
-			case 90: // MAGIC_NUMBER
-				canvas = new Canvas(height, width);
-				gc = canvas.getGraphicsContext2D();
-				gc.setTransform(0, 1, -1, 0, height, 0);
-				break;
-			case 180: // MAGIC_NUMBER
-				canvas = new Canvas(width, height);
-				gc = canvas.getGraphicsContext2D();
-				gc.setTransform(-1, 0, 0, -1, width, height);
-				break;
-			case 270: // MAGIC_NUMBER
-				canvas = new Canvas(height, width);
-				gc = canvas.getGraphicsContext2D();
-				gc.setTransform(0, -1, 1, 0, 0, width);
-				break;
-			default:
-				canvas = new Canvas(width, height);
-				gc = canvas.getGraphicsContext2D();
-			}
-
-			gc.drawImage(image, 0, 0);
+			return new RotatedImage(url.toExternalForm(), sourceWidth, sourceHeight, rotation);
+		}
+	}
 
-			return canvas.snapshot(null, null);
+	/**
+	 * Get the loading progress of an image retrieved via {@link #getImage(File, Resolution)}. In contrast to
+	 * Image.progressProperty(), this also covers the rotation of rotated images.
+	 *
+	 * @param image
+	 *            The image.
+	 * @return The loading progress.
+	 */
+	public static ReadOnlyDoubleProperty getLoadProgressProperty(final Image image) {
+		if (image instanceof RotatedImage) {
+			return ((RotatedImage) image).loadProgressProperty();
+		}
+		else {
+			return image.progressProperty();
 		}
 	}
 
@@ -284,17 +301,90 @@ public final class ImageUtil {
 	 *            The relative size of the pupil.
 	 * @return The overlay image.
 	 */
-	private static Image getOverlayImage(final int overlayType, final RightLeft side, final Color color,
+	static Image getOverlayImage(final int overlayType, final RightLeft side, final Color color,
 			final float pupilXOffset, final float pupilYOffset, final float pupilSize) {
-		if (mCachedOverlayType != null && overlayType == mCachedOverlayType // BOOLEAN_EXPRESSION_COMPLEXITY
-				&& side == mCachedOverlaySide && color.equals(mCachedOverlayColor)
-				&& pupilXOffset == mCachedPupilXOffset && pupilYOffset == mCachedPupilYOffset && pupilSize == mCachedPupilSize) {
-			return mCachedOverlay;
+		Image cachedOverlay = OverlayImageCache.get(overlayType, side, color, pupilXOffset, pupilYOffset, pupilSize);
+		if (cachedOverlay != null) {
+			return cachedOverlay;
 		}
 
+		float[] displacement = OverlayWarp.computeDisplacement(overlayType, pupilXOffset, pupilYOffset, pupilSize, null);
+		try {
+			return createWarpedOverlayImage(overlayType, side, color, pupilXOffset, pupilYOffset, pupilSize, displacement);
+		}
+		finally {
+			OverlayWarp.releaseBuffer(displacement);
+		}
+	}
+
+	/**
+	 * Create the warped overlay image from a precalculated displacement field, and store it in the overlay cache. Must
+	 * be called in the FX thread.
+	 *
+	 * @param overlayType
+	 *            The overlay type.
+	 * @param side
+	 *            The side of the eye.
+	 * @param color
+	 *            The overlay color.
+	 * @param pupilXOffset
+	 *            The horizontal offset of the pupil.
+	 * @param pupilYOffset
+	 *            The vertical offset of the pupil.
+	 * @param pupilSize
+	 *            The relative size of the pupil.
+	 * @param displacement
+	 *            The displacement field, as calculated by {@link #computeOverlayDisplacement}.
+	 * @return The overlay image.
+	 */
+	static Image createWarpedOverlayImage(final int overlayType, final RightLeft side, // SUPPRESS_CHECKSTYLE
+			final Color color, final float pupilXOffset, final float pupilYOffset, final float pupilSize,
+			final float[] displacement) {
 		Image originalImage = getOverlayImage(overlayType, side, color);
 		Canvas canvas = new Canvas(OVERLAY_SIZE, OVERLAY_SIZE);
 
+		FloatMap floatMap = new FloatMap(OVERLAY_SIZE, OVERLAY_SIZE);
+		int index = 0;
+		for (int y = 0; y < OVERLAY_SIZE; y++) {
+			for (int x = 0; x < OVERLAY_SIZE; x++) {
+				floatMap.setSamples(x, y, displacement[index], displacement[index + 1]);
+				index += 2;
+			}
+		}
+		DisplacementMap displacementMap = new DisplacementMap(floatMap);
+		canvas.getGraphicsContext2D().setEffect(displacementMap);
+		canvas.getGraphicsContext2D().drawImage(originalImage, 0, 0, OVERLAY_SIZE, OVERLAY_SIZE);
+
+		SnapshotParameters parameters = new SnapshotParameters();
+		parameters.setFill(Color.TRANSPARENT);
+
+		Image overlay = canvas.snapshot(parameters, null);
+		OverlayImageCache.put(overlayType, side, color, pupilXOffset, pupilYOffset, pupilSize, overlay);
+		return overlay;
+	}
+
+	/**
+	 * Calculate the displacement field warping the overlay due to pupil size and position, for a range of rows. The
+	 * field has two samples per pixel, stored row by row. This method does not require the FX thread.
+	 *
+	 * @param overlayType
+	 *            The overlay type.
+	 * @param pupilXOffset
+	 *            The horizontal offset of the pupil.
+	 * @param pupilYOffset
+	 *            The vertical offset of the pupil.
+	 * @param pupilSize
+	 *            The relative size of the pupil.
+	 * @param displacement
+	 *            The array to be filled with the displacement field.
+	 * @param startRow
+	 *            The first row to be calculated.
+	 * @param endRow
+	 *            The row after the last row to be calculated.
+	 */
+	static void computeOverlayDisplacement(final int overlayType, // SUPPRESS_CHECKSTYLE
+			final float pupilXOffset, final float pupilYOffset, final float pupilSize,
+			final float[] displacement, final int startRow, final int endRow) {
 		int overlayHalfSize = OVERLAY_SIZE / 2;
 		int irisRadius = (int) (OVERLAY_CIRCLE_RATIO * overlayHalfSize);
 		long irisRadiusSquare = irisRadius * irisRadius;
@@ -304,23 +394,25 @@ public final class ImageUtil {
 		float linTransM = pupilSize == 1 ? 0 : (1 - origPupilSize) / (1 - pupilSize);
 		float linTransB = 1 - linTransM;
 
-		FloatMap floatMap = new FloatMap(OVERLAY_SIZE, OVERLAY_SIZE);
-		for (int x = 0; x < OVERLAY_SIZE; x++) {
-			int xPos = x - overlayHalfSize;
-			float xPosP = xPos - pupilXCenter;
+		for (int y = startRow; y < endRow; y++) {
+			int yPos = y - overlayHalfSize;
+			float yPosP = yPos - pupilYCenter;
+			int index = 2 * y * OVERLAY_SIZE;
 
-			for (int y = 0; y < OVERLAY_SIZE; y++) {
-				int yPos = y - overlayHalfSize;
-				float yPosP = yPos - pupilYCenter;
+			for (int x = 0; x < OVERLAY_SIZE; x++) {
+				int xPos = x - overlayHalfSize;
+				float xPosP = xPos - pupilXCenter;
 
 				long centerDistSquare = xPos * xPos + yPos * yPos;
 				float pupilCenterDistSquare = xPosP * xPosP + yPosP * yPosP;
 
 				if (centerDistSquare >= irisRadiusSquare) {
-					floatMap.setSamples(x, y, 0, 0);
+					displacement[index] = 0;
+					displacement[index + 1] = 0;
 				}
 				else if (pupilCenterDistSquare == 0) {
-					floatMap.setSamples(x, y, -xPos / OVERLAY_SIZE, -yPos / OVERLAY_SIZE);
+					displacement[index] = -xPos / OVERLAY_SIZE;
+					displacement[index + 1] = -yPos / OVERLAY_SIZE;
 				}
 				else {
 					// Determine corresponding iris boundary point via quadratic equation
@@ -344,26 +436,12 @@ public final class ImageUtil {
 					float sourceX = xBound * sourceRelativeDistance;
 					float sourceY = yBound * sourceRelativeDistance;
 
-					floatMap.setSamples(x, y, (sourceX - xPos) / OVERLAY_SIZE, (sourceY - yPos) / OVERLAY_SIZE);
+					displacement[index] = (sourceX - xPos) / OVERLAY_SIZE;
+					displacement[index + 1] = (sourceY - yPos) / OVERLAY_SIZE;
 				}
-
+				index += 2;
 			}
 		}
-		DisplacementMap displacementMap = new DisplacementMap(floatMap);
-		canvas.getGraphicsContext2D().setEffect(displacementMap);
-		canvas.getGraphicsContext2D().drawImage(originalImage, 0, 0, OVERLAY_SIZE, OVERLAY_SIZE);
-
-		SnapshotParameters parameters = new SnapshotParameters();
-		parameters.setFill(Color.TRANSPARENT);
-
-		mCachedOverlay = canvas.snapshot(parameters, null);
-		mCachedOverlayType = overlayType;
-		mCachedOverlaySide = side;
-		mCachedOverlayColor = color;
-		mCachedPupilSize = pupilSize;
-		mCachedPupilXOffset = pupilXOffset;
-		mCachedPupilYOffset = pupilYOffset;
-		return mCachedOverlay;
 	}
 
 	/**
@@ -401,12 +479,60 @@ public final class ImageUtil {
 	 *            Indicator of the resolution of the image.
 	 * @return The image with overlay.
 	 */
-	private static Image getImageWithOverlay( // SUPPRESS_CHECKSTYLE Too many parameters
+	static Image getImageWithOverlay( // SUPPRESS_CHECKSTYLE Too many parameters
 			final Image baseImage, final Integer overlayType, final RightLeft side,
 			final Color color, final float xPosition, final float yPosition, final float scaleFactor,
 			final float pupilXOffset, final float pupilYOffset, final float pupilSize,
 			final float brightness, final float contrast,
 			final float saturation, final float colorTemperature, final Resolution resolution) {
+		return getImageWithOverlay(baseImage, overlayType, side, color, xPosition, yPosition, scaleFactor,
+				pupilXOffset, pupilYOffset, pupilSize, brightness, contrast, saturation, colorTemperature, resolution, null);
+	}
+
+	/**
+	 * Get an image with a displayed overlay, writing into a reusable image if possible.
+	 *
+	 * @param baseImage
+	 *            the base image.
+	 * @param overlayType
+	 *            The overlay type.
+	 * @param side
+	 *            The side of the eye.
+	 * @param color
+	 *            The overlay color.
+	 * @param xPosition
+	 *            The x position of the overlay.
+	 * @param yPosition
+	 *            The y position of the overlay.
+	 * @param scaleFactor
+	 *            The scale factor of the overlay.
+	 * @param pupilXOffset
+	 *            The horizontal offset of the pupil.
+	 * @param pupilYOffset
+	 *            The vertical offset of the pupil.
+	 * @param pupilSize
+	 *            The relative size of the pupil.
+	 * @param brightness
+	 *            The brightness of the image.
+	 * @param contrast
+	 *            The contrast of the imabe.
+	 * @param saturation
+	 *            The saturation of the image.
+	 * @param colorTemperature
+	 *            The color temperature of the imabe.
+	 * @param resolution
+	 *            Indicator of the resolution of the image.
+	 * @param reusableImage
+	 *            An image returned by a previous call, which may be overwritten. May be null.
+	 * @return The image with overlay.
+	 */
+	static Image getImageWithOverlay( // SUPPRESS_CHECKSTYLE Too many parameters
+			final Image baseImage, final Integer overlayType, final RightLeft side,
+			final Color color, final float xPosition, final float yPosition, final float scaleFactor,
+			final float pupilXOffset, final float pupilYOffset, final float pupilSize,
+			final float brightness, final float contrast,
+			final float saturation, final float colorTemperature, final Resolution resolution,
+			final WritableImage reusableImage) {
 		boolean hasOriginalColors = brightness == 0 && contrast == 1 && saturation == 1 && colorTemperature == 0;
 		if (hasOriginalColors && overlayType == null) {
 			return baseImage;
@@ -416,8 +542,23 @@ public final class ImageUtil {
 		int height = (int) baseImage.getHeight();
 		double overlaySize = Math.max(width, height) * scaleFactor;
 
-		// logic of brightness and contrast does not work very well. Therefore, simulating logic from android
-		// OverlayPinghImageView.changeBitmapContrastBrightness
+		// Never overwrite the base image, as it may be cached.
+		WritableImage targetImage;
+		if (reusableImage != null && reusableImage != baseImage
+				&& reusableImage.getWidth() == width && reusableImage.getHeight() == height) {
+			targetImage = reusableImage;
+		}
+		else {
+			targetImage = new WritableImage(width, height);
+		}
+		boolean parallel = resolution == Resolution.NORMAL;
+
+		if (overlayType == null) {
+			new ColorAdjustment(brightness, contrast, saturation, colorTemperature)
+					.apply(baseImage, targetImage.getPixelWriter(), parallel);
+			return targetImage;
+		}
+
 		Canvas canvas = new Canvas(width, height);
 		GraphicsContext gc = canvas.getGraphicsContext2D();
 
@@ -425,42 +566,15 @@ public final class ImageUtil {
 			gc.drawImage(baseImage, 0, 0, width, height);
 		}
 		else {
-			Color temperatureColor = convertTemperatureToColor(colorTemperature);
-			float factorBlue = 1 / (float) temperatureColor.getBlue();
-			float factorGreen = 1 / (float) temperatureColor.getGreen();
-			float factorRed = 1 / (float) temperatureColor.getRed();
-			float correctionFactor = (float) Math.pow(factorRed * factorGreen * factorBlue, -1f / 3); // MAGIC_NUMBER
-			factorBlue *= correctionFactor * contrast;
-			factorGreen *= correctionFactor * contrast;
-			factorRed *= correctionFactor * contrast;
-			float offset = BYTE / 2f * (1 - contrast + brightness * contrast + brightness);
-			float oppositeSaturation = (1 - saturation) / 2;
-
-			WritablePixelFormat<ByteBuffer> pixelFormat = PixelFormat.getByteBgraInstance();
-			byte[] buffer = new byte[FOUR * width * height];
-
-			baseImage.getPixelReader().getPixels(0, 0, width, height, pixelFormat, buffer, 0, FOUR * width);
-
-			for (int i = 0; i < buffer.length; i += FOUR) {
-				float blueIn = (buffer[i] & BYTE) * factorBlue;
-				float greenIn = (buffer[i + 1] & BYTE) * factorGreen;
-				float redIn = (buffer[i + 2] & BYTE) * factorRed;
-
-				buffer[i] = toColorByte(saturation * blueIn + oppositeSaturation * greenIn + oppositeSaturation * redIn + offset);
-				buffer[i + 1] = toColorByte(oppositeSaturation * blueIn + saturation * greenIn + oppositeSaturation * redIn + offset);
-				buffer[i + 2] = toColorByte(oppositeSaturation * blueIn + oppositeSaturation * greenIn + saturation * redIn + offset);
-			}
-
-			gc.getPixelWriter().setPixels(0, 0, width, height, pixelFormat, buffer, 0, FOUR * width);
+			new ColorAdjustment(brightness, contrast, saturation, colorTemperature)
+					.apply(baseImage, gc.getPixelWriter(), parallel);
 		}
 
-		if (overlayType != null) {
-			Image overlayImage = getOverlayImage(overlayType, side, color, pupilXOffset, pupilYOffset, pupilSize);
-			gc.setEffect(null);
-			gc.setGlobalBlendMode(BlendMode.SRC_OVER);
-			gc.drawImage(overlayImage, xPosition * width - overlaySize / 2,
-					yPosition * height - overlaySize / 2, overlaySize, overlaySize);
-		}
+		Image overlayImage = getOverlayImage(overlayType, side, color, pupilXOffset, pupilYOffset, pupilSize);
+		gc.setEffect(null);
+		gc.setGlobalBlendMode(BlendMode.SRC_OVER);
+		gc.drawImage(overlayImage, xPosition * width - overlaySize / 2,
+				yPosition * height - overlaySize / 2, overlaySize, overlaySize);
 
 //		PupilAndIrisDetector detector = new PupilAndIrisDetector(baseImage);
 //		gc.setStroke(Color.RED);
@@ -474,39 +588,45 @@ public final class ImageUtil {
 //		int pupilYCenter = (int) (detector.getPupilYCenter() * baseImage.getHeight());
 //		gc.strokeOval(pupilXCenter - pupilRadius, pupilYCenter - pupilRadius, 2 * pupilRadius, 2 * pupilRadius);
 
-		return canvas.snapshot(null, null);
+		return canvas.snapshot(null, targetImage);
 	}
 
 	/**
-	 * Convert a number into a byte (ensuring the appropriate range).
-	 *
-	 * @param number The number.
-	 * @return The resulting byte.
-	 */
-	private static byte toColorByte(final float number) {
-		return (byte) Math.min(BYTE, Math.max(0, number));
-	}
-
-	/**
-	 * Convert a temperature into a color value representing the color of this temperature.
+	 * Get an eye photo image with a displayed overlay, positioned via the metadata.
 	 *
-	 * @param temperature The temperature value (in the range -1..1).
-	 * @return The color value.
+	 * @param eyePhoto
+	 *            The eye photo image.
+	 * @param overlayType
+	 *            The overlay type.
+	 * @param color
+	 *            The overlay color.
+	 * @param brightness
+	 *            The brightness of the image.
+	 * @param contrast
+	 *            The contrast of the image.
+	 * @param saturation
+	 *            The saturation of the image.
+	 * @param colorTemperature
+	 *            The color temperature of the image.
+	 * @param resolution
+	 *            Indicator of the resolution of the image.
+	 * @return The image with overlay.
 	 */
-	private static Color convertTemperatureToColor(final double temperature) {
-		if (temperature >= 0) {
-			return Color.rgb((int) (BYTE - 150 * temperature), (int) (BYTE - 105 * temperature), BYTE); // MAGIC_NUMBER
-		}
-		else {
-			return Color.rgb(BYTE, (int) (BYTE + 80 * temperature), (int) (BYTE + 145 * temperature)); // MAGIC_NUMBER
-		}
+	public static Image getImageForDisplay(final EyePhoto eyePhoto, // SUPPRESS_CHECKSTYLE Too many parameters
+			final Integer overlayType, final Color color, final float brightness, final float contrast,
+			final float saturation, final float colorTemperature, final Resolution resolution) {
+		return getImageForDisplay(eyePhoto, eyePhoto.getImage(resolution), overlayType, color, brightness, contrast,
+				saturation, colorTemperature, resolution, null);
 	}
 
 	/**
-	 * Get an eye photo image with a displayed overlay, positioned via the metadata.
+	 * Get an eye photo image with a displayed overlay, positioned via the metadata, writing into a reusable image if
+	 * possible.
 	 *
 	 * @param eyePhoto
 	 *            The eye photo image.
+	 * @param image
+	 *            The image of the eye photo in the given resolution. It is never overwritten.
 	 * @param overlayType
 	 *            The overlay type.
 	 * @param color
@@ -521,33 +641,202 @@ public final class ImageUtil {
 	 *            The color temperature of the image.
 	 * @param resolution
 	 *            Indicator of the resolution of the image.
+	 * @param reusableImage
+	 *            An image returned by a previous call, which may be overwritten. May be null.
 	 * @return The image with overlay.
 	 */
 	public static Image getImageForDisplay(final EyePhoto eyePhoto, // SUPPRESS_CHECKSTYLE Too many parameters
-			final Integer overlayType, final Color color, final float brightness, final float contrast,
-			final float saturation, final float colorTemperature, final Resolution resolution) {
-		Image image = eyePhoto.getImage(resolution);
+			final Image image, final Integer overlayType, final Color color, final float brightness,
+			final float contrast, final float saturation, final float colorTemperature, final Resolution resolution,
+			final WritableImage reusableImage) {
 		JpegMetadata metadata = eyePhoto.getImageMetadata();
 		if (resolution == Resolution.FULL) {
-			// Full resolution does not allow use of Canvas to set brightness, contrast and overlay.
+			// Full resolution is too big for a Canvas - brightness, contrast and overlay are applied per tile.
 			return image;
 		}
 		else if (metadata != null && metadata.hasOverlayPosition() && overlayType != null) {
 			if (metadata.getPupilSize() == null) {
 				return ImageUtil.getImageWithOverlay(image, overlayType, eyePhoto.getRightLeft(), color,
 						metadata.getXCenter(), metadata.getYCenter(), metadata.getOverlayScaleFactor(),
-						0, 0, 0.25f, brightness, contrast, saturation, colorTemperature, resolution); // MAGIC_NUMBER
+						0, 0, 0.25f, brightness, contrast, saturation, colorTemperature, resolution, reusableImage); // MAGIC_NUMBER
 			}
 			else {
 				return ImageUtil.getImageWithOverlay(image, overlayType, eyePhoto.getRightLeft(), color,
 						metadata.getXCenter(), metadata.getYCenter(), metadata.getOverlayScaleFactor(),
 						metadata.getPupilXOffset(), metadata.getPupilYOffset(), metadata.getPupilSize(),
-						brightness, contrast, saturation, colorTemperature, resolution);
+						brightness, contrast, saturation, colorTemperature, resolution, reusableImage);
 			}
 		}
 		else {
 			return ImageUtil.getImageWithOverlay(image, null, eyePhoto.getRightLeft(), color,
-					0, 0, 1, 0, 0, 0.25f, brightness, contrast, saturation, colorTemperature, resolution); // MAGIC_NUMBER
+					0, 0, 1, 0, 0, 0.25f, brightness, contrast, saturation, colorTemperature, resolution, reusableImage); // MAGIC_NUMBER
+		}
+	}
+
+	/**
+	 * Get a tile of an eye photo image in full resolution with a displayed overlay, positioned via the metadata.
+	 *
+	 * @param eyePhoto
+	 *            The eye photo image.
+	 * @param fullImage
+	 *            The image of the eye photo in full resolution.
+	 * @param x
+	 *            The x coordinate of the tile.
+	 * @param y
+	 *            The y coordinate of the tile.
+	 * @param width
+	 *            The width of the tile.
+	 * @param height
+	 *            The height of the tile.
+	 * @param overlayType
+	 *            The overlay type.
+	 * @param color
+	 *            The overlay color.
+	 * @param brightness
+	 *            The brightness of the image.
+	 * @param contrast
+	 *            The contrast of the image.
+	 * @param saturation
+	 *            The saturation of the image.
+	 * @param colorTemperature
+	 *            The color temperature of the image.
+	 * @return The tile with overlay.
+	 */
+	public static Image getTileForDisplay(final EyePhoto eyePhoto, final Image fullImage, // SUPPRESS_CHECKSTYLE
+			final int x, final int y, final int width, final int height,
+			final Integer overlayType, final Color color, final float brightness, final float contrast,
+			final float saturation, final float colorTemperature) {
+		JpegMetadata metadata = eyePhoto.getImageMetadata();
+		if (metadata != null && metadata.hasOverlayPosition() && overlayType != null) {
+			if (metadata.getPupilSize() == null) {
+				return getTileWithOverlay(fullImage, x, y, width, height, overlayType, eyePhoto.getRightLeft(), color,
+						metadata.getXCenter(), metadata.getYCenter(), metadata.getOverlayScaleFactor(),
+						0, 0, 0.25f, brightness, contrast, saturation, colorTemperature); // MAGIC_NUMBER
+			}
+			else {
+				return getTileWithOverlay(fullImage, x, y, width, height, overlayType, eyePhoto.getRightLeft(), color,
+						metadata.getXCenter(), metadata.getYCenter(), metadata.getOverlayScaleFactor(),
+						metadata.getPupilXOffset(), metadata.getPupilYOffset(), metadata.getPupilSize(),
+						brightness, contrast, saturation, colorTemperature);
+			}
+		}
+		else {
+			return getTileWithOverlay(fullImage, x, y, width, height, null, eyePhoto.getRightLeft(), color,
+					0, 0, 1, 0, 0, 0.25f, brightness, contrast, saturation, colorTemperature); // MAGIC_NUMBER
+		}
+	}
+
+	/**
+	 * Get a tile of an image with a displayed overlay.
+	 *
+	 * @param baseImage
+	 *            the base image.
+	 * @param x
+	 *            The x coordinate of the tile.
+	 * @param y
+	 *            The y coordinate of the tile.
+	 * @param width
+	 *            The width of the tile.
+	 * @param height
+	 *            The height of the tile.
+	 * @param overlayType
+	 *            The overlay type.
+	 * @param side
+	 *            The side of the eye.
+	 * @param color
+	 *            The overlay color.
+	 * @param xPosition
+	 *            The x position of the overlay.
+	 * @param yPosition
+	 *            The y position of the overlay.
+	 * @param scaleFactor
+	 *            The scale factor of the overlay.
+	 * @param pupilXOffset
+	 *            The horizontal offset of the pupil.
+	 * @param pupilYOffset
+	 *            The vertical offset of the pupil.
+	 * @param pupilSize
+	 *            The relative size of the pupil.
+	 * @param brightness
+	 *            The brightness of the image.
+	 * @param contrast
+	 *            The contrast of the image.
+	 * @param saturation
+	 *            The saturation of the image.
+	 * @param colorTemperature
+	 *            The color temperature of the image.
+	 * @return The tile with overlay.
+	 */
+	static Image getTileWithOverlay( // SUPPRESS_CHECKSTYLE Too many parameters
+			final Image baseImage, final int x, final int y, final int width, final int height,
+			final Integer overlayType, final RightLeft side,
+			final Color color, final float xPosition, final float yPosition, final float scaleFactor,
+			final float pupilXOffset, final float pupilYOffset, final float pupilSize,
+			final float brightness, final float contrast,
+			final float saturation, final float colorTemperature) {
+		boolean hasOriginalColors = brightness == 0 && contrast == 1 && saturation == 1 && colorTemperature == 0;
+		int imageWidth = (int) baseImage.getWidth();
+		int imageHeight = (int) baseImage.getHeight();
+		double overlaySize = Math.max(imageWidth, imageHeight) * scaleFactor;
+
+		WritableImage tile = new WritableImage(width, height);
+		PixelWriter pixelWriter;
+		Canvas canvas = null;
+		if (overlayType == null) {
+			pixelWriter = tile.getPixelWriter();
+		}
+		else {
+			canvas = new Canvas(width, height);
+			pixelWriter = canvas.getGraphicsContext2D().getPixelWriter();
+		}
+
+		if (hasOriginalColors) {
+			pixelWriter.setPixels(0, 0, width, height, baseImage.getPixelReader(), x, y);
+		}
+		else {
+			new ColorAdjustment(brightness, contrast, saturation, colorTemperature)
+					.apply(baseImage, x, y, width, height, pixelWriter, false);
+		}
+
+		if (canvas == null) {
+			return tile;
+		}
+
+		Image overlayImage = getOverlayImage(overlayType, side, color, pupilXOffset, pupilYOffset, pupilSize);
+		GraphicsContext gc = canvas.getGraphicsContext2D();
+		gc.setEffect(null);
+		gc.setGlobalBlendMode(BlendMode.SRC_OVER);
+		gc.drawImage(overlayImage, xPosition * imageWidth - overlaySize / 2 - x,
+				yPosition * imageHeight - overlaySize / 2 - y, overlaySize, overlaySize);
+		return canvas.snapshot(null, tile);
+	}
+
+	/**
+	 * Prepare the warped overlay of an eye photo in the background, so that a subsequent call of
+	 * {@link #getImageForDisplay} does not need to calculate it in the FX thread.
+	 *
+	 * @param eyePhoto
+	 *            The eye photo image.
+	 * @param overlayType
+	 *            The overlay type.
+	 * @param color
+	 *            The overlay color.
+	 * @param onReady
+	 *            Action executed in the FX thread when the overlay is prepared.
+	 * @return The request preparing the overlay, or null if no preparation is required.
+	 */
+	public static OverlayWarp.Request prepareOverlayForDisplay(final EyePhoto eyePhoto, final Integer overlayType,
+			final Color color, final Runnable onReady) {
+		JpegMetadata metadata = eyePhoto.getImageMetadata();
+		if (metadata == null || !metadata.hasOverlayPosition() || overlayType == null) {
+			return null;
+		}
+		else if (metadata.getPupilSize() == null) {
+			return OverlayWarp.request(overlayType, eyePhoto.getRightLeft(), color, 0, 0, 0.25f, onReady); // MAGIC_NUMBER
+		}
+		else {
+			return OverlayWarp.request(overlayType, eyePhoto.getRightLeft(), color,
+					metadata.getPupilXOffset(), metadata.getPupilYOffset(), metadata.getPupilSize(), onReady);
 		}
 	}
 
@@ -577,11 +866,123 @@ public final class ImageUtil {
 			targetHeight = targetSize;
 		}
 
+		if (!Platform.isFxApplicationThread()) {
+			// Canvas snapshots are only possible in the FX thread.
+			return resizeImageByPixels(baseImage, targetWidth, targetHeight);
+		}
+
 		Canvas canvas = new Canvas(targetWidth, targetHeight);
 		canvas.getGraphicsContext2D().drawImage(baseImage, 0, 0, targetWidth, targetHeight);
 		return canvas.snapshot(null, null);
 	}
 
+	/**
+	 * Resize an image by averaging the source pixels covered by each target pixel. This does not require the FX thread.
+	 *
+	 * @param baseImage The original image.
+	 * @param targetWidth The target width.
+	 * @param targetHeight The target height.
+	 * @return the resized image.
+	 */
+	private static Image resizeImageByPixels(final Image baseImage, final int targetWidth, final int targetHeight) {
+		int width = (int) baseImage.getWidth();
+		int height = (int) baseImage.getHeight();
+		int[] sourcePixels = new int[width * height];
+		baseImage.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), sourcePixels, 0, width);
+
+		int[] targetPixels = new int[targetWidth * targetHeight];
+		for (int y = 0; y < targetHeight; y++) {
+			int yStart = y * height / targetHeight;
+			int yEnd = Math.max(yStart + 1, (y + 1) * height / targetHeight);
+			for (int x = 0; x < targetWidth; x++) {
+				int xStart = x * width / targetWidth;
+				int xEnd = Math.max(xStart + 1, (x + 1) * width / targetWidth);
+
+				int alpha = 0;
+				int red = 0;
+				int green = 0;
+				int blue = 0;
+				for (int sourceY = yStart; sourceY < yEnd; sourceY++) {
+					for (int sourceX = xStart; sourceX < xEnd; sourceX++) {
+						int pixel = sourcePixels[sourceY * width + sourceX];
+						alpha += pixel >>> 24; // MAGIC_NUMBER
+						red += (pixel >> 16) & BYTE; // MAGIC_NUMBER
+						green += (pixel >> 8) & BYTE; // MAGIC_NUMBER
+						blue += pixel & BYTE;
+					}
+				}
+				int count = (yEnd - yStart) * (xEnd - xStart);
+				targetPixels[y * targetWidth + x] =
+						(alpha / count) << 24 | (red / count) << 16 | (green / count) << 8 | (blue / count); // MAGIC_NUMBER
+			}
+		}
+
+		WritableImage targetImage = new WritableImage(targetWidth, targetHeight);
+		targetImage.getPixelWriter().setPixels(0, 0, targetWidth, targetHeight, PixelFormat.getIntArgbInstance(), targetPixels, 0,
+				targetWidth);
+		return targetImage;
+	}
+
+	/**
+	 * Rotate an image by a multiple of 90 degrees, by remapping its pixels. This does not require the FX thread.
+	 *
+	 * @param baseImage The original image.
+	 * @param rotation The clockwise rotation angle (0, 90, 180 or 270).
+	 * @return the rotated image.
+	 */
+	public static Image rotateImage(final Image baseImage, final int rotation) {
+		if (rotation != 90 && rotation != 180 && rotation != 270) { // MAGIC_NUMBER
+			return baseImage;
+		}
+		int width = (int) baseImage.getWidth();
+		int height = (int) baseImage.getHeight();
+		int targetWidth = rotation == 180 ? width : height; // MAGIC_NUMBER
+		int targetHeight = rotation == 180 ? height : width; // MAGIC_NUMBER
+		int[] targetPixels = getRotatedPixels(baseImage, rotation);
+
+		WritableImage targetImage = new WritableImage(targetWidth, targetHeight);
+		targetImage.getPixelWriter().setPixels(0, 0, targetWidth, targetHeight, PixelFormat.getIntArgbInstance(), targetPixels, 0,
+				targetWidth);
+		return targetImage;
+	}
+
+	/**
+	 * Get the pixels of an image rotated by a multiple of 90 degrees, in ARGB format. This does not require the FX
+	 * thread.
+	 *
+	 * @param baseImage The original image.
+	 * @param rotation The clockwise rotation angle (90, 180 or 270).
+	 * @return the pixels of the rotated image, row by row.
+	 */
+	static int[] getRotatedPixels(final Image baseImage, final int rotation) {
+		int width = (int) baseImage.getWidth();
+		int height = (int) baseImage.getHeight();
+		int[] sourcePixels = new int[width * height];
+		baseImage.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), sourcePixels, 0, width);
+
+		int targetWidth = rotation == 180 ? width : height; // MAGIC_NUMBER
+		int[] targetPixels = new int[width * height];
+
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int targetIndex;
+				switch (rotation) {
+				case 90: // MAGIC_NUMBER
+					targetIndex = x * targetWidth + height - 1 - y;
+					break;
+				case 180: // MAGIC_NUMBER
+					targetIndex = (height - 1 - y) * targetWidth + width - 1 - x;
+					break;
+				default:
+					targetIndex = (width - 1 - x) * targetWidth + y;
+					break;
+				}
+				targetPixels[targetIndex] = sourcePixels[y * width + x];
+			}
+		}
+		return targetPixels;
+	}
+
 	/**
 	 * Enumeration indicating the resolution with which the image should be displayed.
 	 */
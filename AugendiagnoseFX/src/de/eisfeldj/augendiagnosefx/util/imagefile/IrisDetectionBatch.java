@@ -0,0 +1,435 @@
+package de.eisfeldj.augendiagnosefx.util.imagefile;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.eisfeldj.augendiagnosefx.util.Logger;
+import de.eisfeldj.augendiagnosefx.util.PreferenceUtil;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+
+/**
+ * Batch job determining the iris and pupil position for all photos below a folder and storing it in the metadata.
+ *
+ * <p>Photos are processed on a bounded pool of worker threads. Photos whose overlay position has already been determined
+ * automatically or has been set manually are skipped.
+ */
+public final class IrisDetectionBatch {
+	/**
+	 * The maximum number of worker threads. Limited to keep memory consumption and disk load in bounds.
+	 */
+	private static final int MAX_THREAD_COUNT = 4;
+
+	/**
+	 * The number of processed photos after which progress is reported.
+	 */
+	private static final int PROGRESS_INTERVAL = 10;
+
+	/**
+	 * The root folder of the photos.
+	 */
+	private final File mRootFolder;
+
+	/**
+	 * The number of worker threads.
+	 */
+	private final int mThreadCount;
+
+	/**
+	 * The listener informed about progress.
+	 */
+	private final ProgressListener mListener;
+
+	/**
+	 * The number of photos found.
+	 */
+	private volatile int mTotalCount = 0;
+
+	/**
+	 * The number of photos for which the position has been determined and stored.
+	 */
+	private final AtomicInteger mDetectedCount = new AtomicInteger();
+
+	/**
+	 * The number of skipped photos.
+	 */
+	private final AtomicInteger mSkippedCount = new AtomicInteger();
+
+	/**
+	 * The number of photos for which detection failed.
+	 */
+	private final AtomicInteger mFailedCount = new AtomicInteger();
+
+	/**
+	 * The start time of the batch.
+	 */
+	private long mStartTime;
+
+	/**
+	 * Create a batch job using the default number of worker threads.
+	 *
+	 * @param rootFolder The root folder of the photos.
+	 * @param listener The listener informed about progress. May be null.
+	 */
+	public IrisDetectionBatch(final File rootFolder, final ProgressListener listener) {
+		this(rootFolder, Math.min(Runtime.getRuntime().availableProcessors(), MAX_THREAD_COUNT), listener);
+	}
+
+	/**
+	 * Create a batch job.
+	 *
+	 * @param rootFolder The root folder of the photos.
+	 * @param threadCount The number of worker threads.
+	 * @param listener The listener informed about progress. May be null.
+	 */
+	public IrisDetectionBatch(final File rootFolder, final int threadCount, final ProgressListener listener) {
+		mRootFolder = rootFolder;
+		mThreadCount = Math.max(1, threadCount);
+		mListener = listener;
+	}
+
+	/**
+	 * Create a batch job for the eye photos folder from the preferences.
+	 *
+	 * @param listener The listener informed about progress. May be null.
+	 * @return The batch job.
+	 */
+	public static IrisDetectionBatch forPhotoFolder(final ProgressListener listener) {
+		return new IrisDetectionBatch(new File(PreferenceUtil.getPreferenceString(PreferenceUtil.KEY_FOLDER_PHOTOS)), listener);
+	}
+
+	/**
+	 * Start the batch in the background.
+	 */
+	public void start() {
+		Thread batchThread = new Thread() {
+			@Override
+			public void run() {
+				runBatch();
+			}
+		};
+		batchThread.setDaemon(true);
+		batchThread.start();
+	}
+
+	/**
+	 * Get the current status of the batch.
+	 *
+	 * @return The status.
+	 */
+	public BatchStatus getStatus() {
+		return new BatchStatus(mTotalCount, mDetectedCount.get(), mSkippedCount.get(), mFailedCount.get(),
+				System.currentTimeMillis() - mStartTime);
+	}
+
+	/**
+	 * Collect all photos and process them on the worker pool.
+	 */
+	private void runBatch() {
+		mStartTime = System.currentTimeMillis();
+		List<File> photos = collectPhotos(mRootFolder);
+		mTotalCount = photos.size();
+		Logger.info("Starting iris detection for " + mTotalCount + " photos in " + mRootFolder.getAbsolutePath());
+
+		ExecutorService executor = Executors.newFixedThreadPool(mThreadCount, new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				Thread thread = new Thread(runnable, "IrisDetectionBatch");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+
+		for (final File photo : photos) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					processPhoto(photo);
+					reportProgress();
+				}
+			});
+		}
+		executor.shutdown();
+
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		final BatchStatus status = getStatus();
+		Logger.info("Finished iris detection. " + status);
+		if (mListener != null) {
+			Platform.runLater(new Runnable() {
+				@Override
+				public void run() {
+					mListener.onFinished(status);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Report the progress to the listener in regular intervals.
+	 */
+	private void reportProgress() {
+		if (mListener == null) {
+			return;
+		}
+		final BatchStatus status = getStatus();
+		if (status.getProcessedCount() % PROGRESS_INTERVAL == 0 || status.getProcessedCount() == status.getTotalCount()) {
+			Platform.runLater(new Runnable() {
+				@Override
+				public void run() {
+					mListener.onProgress(status);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Collect all JPEG files below a folder. Hidden folders, such as the folders of the thumbnail store, are skipped.
+	 *
+	 * @param rootFolder The root folder.
+	 * @return The JPEG files.
+	 */
+	static List<File> collectPhotos(final File rootFolder) {
+		final Path rootPath = rootFolder.toPath();
+		final List<File> photos = new ArrayList<>();
+		try {
+			Files.walkFileTree(rootPath, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+					if (dir.equals(rootPath)) {
+						return FileVisitResult.CONTINUE;
+					}
+					String name = dir.getFileName().toString();
+					if (ThumbnailStore.THUMBNAIL_DIR_NAME.equals(name) || name.startsWith(".") || Files.isHidden(dir)) {
+						return FileVisitResult.SKIP_SUBTREE;
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+					if (attrs.isRegularFile() && file.getFileName().toString().toUpperCase().endsWith(".JPG")) {
+						photos.add(file.toFile());
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+					Logger.warning("Cannot access " + file + ": " + e.getMessage());
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+		catch (IOException e) {
+			Logger.error("Failed to list photos in " + rootFolder.getAbsolutePath(), e);
+		}
+		return photos;
+	}
+
+	/**
+	 * Check if the overlay position may be determined automatically for a photo.
+	 *
+	 * @param metadata The metadata of the photo.
+	 * @return true if the overlay position has neither been determined automatically nor set manually.
+	 */
+	private static boolean requiresDetection(final JpegMetadata metadata) {
+		return metadata != null
+				&& !metadata.hasFlag(JpegMetadata.FLAG_OVERLAY_POSITION_DETERMINED_AUTOMATICALLY)
+				&& (!metadata.hasOverlayPosition() || metadata.hasFlag(JpegMetadata.FLAG_OVERLAY_SET_BY_CAMERA_ACTIVITY));
+	}
+
+	/**
+	 * Determine the iris position of a photo and store it in the metadata.
+	 *
+	 * @param photo The photo file.
+	 */
+	private void processPhoto(final File photo) {
+		String path = photo.getAbsolutePath();
+		try {
+			if (!requiresDetection(JpegSynchronizationUtil.getJpegMetadata(path))) {
+				mSkippedCount.incrementAndGet();
+				return;
+			}
+
+			Image image = loadImage(photo);
+			if (image.isError()) {
+				throw new IOException("Cannot load image", image.getException());
+			}
+			PupilAndIrisDetector detector = new PupilAndIrisDetector(image, false);
+
+			// re-check, as the position may have been set manually in the meantime.
+			JpegMetadata metadata = JpegSynchronizationUtil.getJpegMetadata(path);
+			if (!requiresDetection(metadata)) {
+				mSkippedCount.incrementAndGet();
+				return;
+			}
+			detector.updateMetadata(metadata);
+			if (metadata.hasFlag(JpegMetadata.FLAG_OVERLAY_POSITION_DETERMINED_AUTOMATICALLY)) {
+				JpegSynchronizationUtil.storeJpegMetadata(path, metadata);
+				mDetectedCount.incrementAndGet();
+			}
+			else {
+				Logger.warning("Could not determine iris position for " + path);
+				mFailedCount.incrementAndGet();
+			}
+		}
+		catch (Exception e) {
+			Logger.error("Failed to find iris and pupil position for file " + path, e);
+			mFailedCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Load a photo in normal resolution and apply the EXIF rotation, without using the FX thread.
+	 *
+	 * @param photo The photo file.
+	 * @return The image.
+	 * @throws MalformedURLException thrown if the file cannot be converted to URL.
+	 */
+	private static Image loadImage(final File photo) throws MalformedURLException {
+		int maxSize = PreferenceUtil.getPreferenceInt(PreferenceUtil.KEY_MAX_BITMAP_SIZE);
+		Image image = new Image(photo.toURI().toURL().toExternalForm(), maxSize, maxSize, true, true);
+		return ImageUtil.rotateImage(image, JpegMetadataUtil.getExifOrientationAngle(photo));
+	}
+
+	/**
+	 * The status of a batch job.
+	 */
+	public static final class BatchStatus {
+		/**
+		 * The number of photos found.
+		 */
+		private final int mTotalCount;
+		/**
+		 * The number of photos for which the position has been determined and stored.
+		 */
+		private final int mDetectedCount;
+		/**
+		 * The number of skipped photos.
+		 */
+		private final int mSkippedCount;
+		/**
+		 * The number of photos for which detection failed.
+		 */
+		private final int mFailedCount;
+		/**
+		 * The elapsed time in milliseconds.
+		 */
+		private final long mElapsedTime;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param totalCount The number of photos found.
+		 * @param detectedCount The number of photos for which the position has been determined and stored.
+		 * @param skippedCount The number of skipped photos.
+		 * @param failedCount The number of photos for which detection failed.
+		 * @param elapsedTime The elapsed time in milliseconds.
+		 */
+		private BatchStatus(final int totalCount, final int detectedCount, final int skippedCount, final int failedCount,
+				final long elapsedTime) {
+			mTotalCount = totalCount;
+			mDetectedCount = detectedCount;
+			mSkippedCount = skippedCount;
+			mFailedCount = failedCount;
+			mElapsedTime = elapsedTime;
+		}
+
+		// JAVADOC:OFF
+		public int getTotalCount() {
+			return mTotalCount;
+		}
+
+		public int getDetectedCount() {
+			return mDetectedCount;
+		}
+
+		public int getSkippedCount() {
+			return mSkippedCount;
+		}
+
+		public int getFailedCount() {
+			return mFailedCount;
+		}
+
+		public long getElapsedTime() {
+			return mElapsedTime;
+		}
+
+		// JAVADOC:ON
+
+		/**
+		 * Get the number of processed photos.
+		 *
+		 * @return The number of processed photos.
+		 */
+		public int getProcessedCount() {
+			return mDetectedCount + mSkippedCount + mFailedCount;
+		}
+
+		/**
+		 * Get the progress as fraction of the photos found.
+		 *
+		 * @return The progress (in the interval [0,1]).
+		 */
+		public double getProgress() {
+			return mTotalCount == 0 ? 1 : (double) getProcessedCount() / mTotalCount;
+		}
+
+		/**
+		 * Get the throughput.
+		 *
+		 * @return The number of processed photos per second.
+		 */
+		public double getPhotosPerSecond() {
+			return mElapsedTime == 0 ? 0 : getProcessedCount() * 1000.0 / mElapsedTime; // MAGIC_NUMBER
+		}
+
+		@Override
+		public String toString() {
+			return "Processed " + getProcessedCount() + " of " + mTotalCount + " photos (detected: " + mDetectedCount + ", skipped: "
+					+ mSkippedCount + ", failed: " + mFailedCount + ") in " + mElapsedTime / 1000.0 // MAGIC_NUMBER
+					+ " seconds, " + String.format("%.2f", getPhotosPerSecond()) + " photos per second.";
+		}
+	}
+
+	/**
+	 * Listener informed about the progress of a batch job. Callbacks are made on the FX application thread.
+	 */
+	public interface ProgressListener {
+		/**
+		 * Callback in regular intervals while photos are processed.
+		 *
+		 * @param status The current status.
+		 */
+		void onProgress(BatchStatus status);
+
+		/**
+		 * Callback after all photos have been processed.
+		 *
+		 * @param status The final status.
+		 */
+		void onFinished(BatchStatus status);
+	}
+}
@@ -0,0 +1,676 @@
+package de.eisfeldj.augendiagnosefx.util.imagefile;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import de.eisfeldj.augendiagnosefx.util.Logger;
+
+/**
+ * The header data of a JPEG file, as far as relevant for the application.
+ *
+ * <p>The header is retrieved by a single sequential read of the marker segments up to the start of the image data
+ * (SOS marker), so that the JPEG validity check, the EXIF orientation, the EXIF text fields and the XMP packet can be
+ * determined without parsing the file several times.
+ */
+public final class JpegHeader {
+	/**
+	 * The JPEG marker "start of image".
+	 */
+	private static final int MARKER_SOI = 0xD8;
+	/**
+	 * The JPEG marker "end of image".
+	 */
+	private static final int MARKER_EOI = 0xD9;
+	/**
+	 * The JPEG marker "start of scan".
+	 */
+	private static final int MARKER_SOS = 0xDA;
+	/**
+	 * The JPEG marker APP1, containing EXIF and XMP data.
+	 */
+	private static final int MARKER_APP1 = 0xE1;
+	/**
+	 * The JPEG marker "temporary", having no segment data.
+	 */
+	private static final int MARKER_TEM = 0x01;
+	/**
+	 * The first JPEG marker "restart", having no segment data.
+	 */
+	private static final int MARKER_RST0 = 0xD0;
+	/**
+	 * The last JPEG marker "restart", having no segment data.
+	 */
+	private static final int MARKER_RST7 = 0xD7;
+	/**
+	 * The first JPEG marker "start of frame".
+	 */
+	private static final int MARKER_SOF0 = 0xC0;
+	/**
+	 * The last JPEG marker "start of frame".
+	 */
+	private static final int MARKER_SOF15 = 0xCF;
+	/**
+	 * The JPEG marker "define Huffman table", in the range of the SOF markers.
+	 */
+	private static final int MARKER_DHT = 0xC4;
+	/**
+	 * The JPEG marker "JPG extension", in the range of the SOF markers.
+	 */
+	private static final int MARKER_JPG = 0xC8;
+	/**
+	 * The JPEG marker "define arithmetic coding", in the range of the SOF markers.
+	 */
+	private static final int MARKER_DAC = 0xCC;
+
+	/**
+	 * The identifier of an APP1 segment containing EXIF data.
+	 */
+	private static final byte[] EXIF_IDENTIFIER = "Exif\0\0".getBytes(StandardCharsets.ISO_8859_1);
+	/**
+	 * The identifier of an APP1 segment containing XMP data.
+	 */
+	private static final byte[] XMP_IDENTIFIER = "http://ns.adobe.com/xap/1.0/\0".getBytes(StandardCharsets.ISO_8859_1);
+
+	/**
+	 * The TIFF tag of the image description.
+	 */
+	private static final int TAG_IMAGE_DESCRIPTION = 0x010E;
+	/**
+	 * The TIFF tag of the orientation.
+	 */
+	private static final int TAG_ORIENTATION = 0x0112;
+	/**
+	 * The TIFF tag pointing to the EXIF directory.
+	 */
+	private static final int TAG_EXIF_OFFSET = 0x8769;
+	/**
+	 * The EXIF tag of the user comment.
+	 */
+	private static final int TAG_USER_COMMENT = 0x9286;
+	/**
+	 * The Microsoft tag of the comment.
+	 */
+	private static final int TAG_XP_COMMENT = 0x9C9C;
+	/**
+	 * The Microsoft tag of the subject.
+	 */
+	private static final int TAG_XP_SUBJECT = 0x9C9F;
+
+	/**
+	 * The TIFF field type "byte".
+	 */
+	private static final int TYPE_BYTE = 1;
+	/**
+	 * The TIFF field type "short".
+	 */
+	private static final int TYPE_SHORT = 3;
+	/**
+	 * The TIFF field type "long".
+	 */
+	private static final int TYPE_LONG = 4;
+	/**
+	 * The sizes of the TIFF field types, indexed by the type.
+	 */
+	private static final int[] TYPE_SIZES = {0, 1, 1, 2, 4, 8, 1, 1, 2, 4, 8, 4, 8};
+
+	/**
+	 * The length of the character code prefix of the EXIF user comment.
+	 */
+	private static final int USER_COMMENT_PREFIX_LENGTH = 8;
+	/**
+	 * The character code prefix of an ASCII user comment.
+	 */
+	private static final String USER_COMMENT_PREFIX_ASCII = "ASCII\0\0\0";
+	/**
+	 * The character code prefix of an Unicode user comment.
+	 */
+	private static final String USER_COMMENT_PREFIX_UNICODE = "UNICODE\0";
+	/**
+	 * The character code prefix of an user comment with undefined encoding.
+	 */
+	private static final String USER_COMMENT_PREFIX_UNDEFINED = "\0\0\0\0\0\0\0\0";
+
+	/**
+	 * The EXIF orientation value "horizontal (normal)".
+	 */
+	public static final int ORIENTATION_NORMAL = 1;
+
+	/**
+	 * Flag indicating if the file is a valid JPEG file.
+	 */
+	private boolean mIsJpeg = false;
+	/**
+	 * The width of the image.
+	 */
+	private int mWidth = 0;
+	/**
+	 * The height of the image.
+	 */
+	private int mHeight = 0;
+	/**
+	 * The position of the SOS marker in the file, i.e. the end of the header.
+	 */
+	private long mImageDataOffset = 0;
+	/**
+	 * The EXIF orientation value.
+	 */
+	private int mOrientation = ORIENTATION_NORMAL;
+	/**
+	 * The EXIF image description.
+	 */
+	private String mImageDescription = null;
+	/**
+	 * The EXIF user comment.
+	 */
+	private String mUserComment = null;
+	/**
+	 * The Microsoft EXIF comment.
+	 */
+	private String mXpComment = null;
+	/**
+	 * The Microsoft EXIF subject.
+	 */
+	private String mXpSubject = null;
+	/**
+	 * The raw XMP packet.
+	 */
+	private String mXmpXml = null;
+
+	/**
+	 * Hide default constructor. Instances are created via {@link #read(File)}.
+	 */
+	private JpegHeader() {
+	}
+
+	/**
+	 * Read the header of a file.
+	 *
+	 * @param file
+	 *            the file.
+	 * @return the header. If the file is no JPEG file, then the header is returned with isJpeg() returning false.
+	 * @throws IOException
+	 *             thrown if the file cannot be read.
+	 */
+	public static JpegHeader read(final File file) throws IOException {
+		JpegHeader header = new JpegHeader();
+		try (CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			header.readSegments(new DataInputStream(counter), counter);
+		}
+		return header;
+	}
+
+	/**
+	 * Read the marker segments of the file up to the start of the image data.
+	 *
+	 * @param in
+	 *            the stream positioned at the start of the file.
+	 * @param counter
+	 *            the underlying stream, counting the bytes read.
+	 * @throws IOException
+	 *             thrown if the file cannot be read.
+	 */
+	private void readSegments(final DataInputStream in, final CountingInputStream counter) throws IOException {
+		if (in.read() != 0xFF || in.read() != MARKER_SOI) { // MAGIC_NUMBER
+			return;
+		}
+
+		boolean hasFrame = false;
+		boolean hasExif = false;
+		while (true) {
+			long markerPosition = counter.mPosition;
+			int marker = readMarker(in);
+			if (marker < 0 || marker == MARKER_EOI) {
+				return;
+			}
+			if (marker == MARKER_SOS) {
+				mImageDataOffset = markerPosition;
+				mIsJpeg = hasFrame;
+				return;
+			}
+			if (marker == MARKER_TEM || marker >= MARKER_RST0 && marker <= MARKER_RST7) {
+				continue;
+			}
+
+			int length = in.readUnsignedShort() - 2;
+			if (length < 0) {
+				return;
+			}
+
+			if (isStartOfFrame(marker)) {
+				byte[] data = readFully(in, length);
+				if (data.length >= 5) { // MAGIC_NUMBER
+					mHeight = (data[1] & 0xFF) << 8 | data[2] & 0xFF; // MAGIC_NUMBER
+					mWidth = (data[3] & 0xFF) << 8 | data[4] & 0xFF; // MAGIC_NUMBER
+				}
+				hasFrame = true;
+			}
+			else if (marker == MARKER_APP1) {
+				byte[] data = readFully(in, length);
+				if (startsWith(data, EXIF_IDENTIFIER)) {
+					if (!hasExif) {
+						readExif(data, EXIF_IDENTIFIER.length);
+						hasExif = true;
+					}
+				}
+				else if (startsWith(data, XMP_IDENTIFIER)) {
+					if (mXmpXml == null) {
+						mXmpXml = new String(data, XMP_IDENTIFIER.length, data.length - XMP_IDENTIFIER.length,
+								StandardCharsets.UTF_8);
+					}
+				}
+			}
+			else {
+				skipFully(in, length);
+			}
+		}
+	}
+
+	/**
+	 * Read the next marker, skipping fill bytes.
+	 *
+	 * @param in
+	 *            the stream.
+	 * @return the marker, or -1 if there is no valid marker.
+	 * @throws IOException
+	 *             thrown if the file cannot be read.
+	 */
+	private static int readMarker(final InputStream in) throws IOException {
+		if (in.read() != 0xFF) { // MAGIC_NUMBER
+			return -1;
+		}
+		int marker = in.read();
+		while (marker == 0xFF) { // MAGIC_NUMBER
+			marker = in.read();
+		}
+		return marker;
+	}
+
+	/**
+	 * Check if a marker is a "start of frame" marker.
+	 *
+	 * @param marker
+	 *            the marker.
+	 * @return true if the marker is a "start of frame" marker.
+	 */
+	private static boolean isStartOfFrame(final int marker) {
+		return marker >= MARKER_SOF0 && marker <= MARKER_SOF15
+				&& marker != MARKER_DHT && marker != MARKER_JPG && marker != MARKER_DAC;
+	}
+
+	/**
+	 * Parse the TIFF structure of an EXIF segment.
+	 *
+	 * @param data
+	 *            the segment data.
+	 * @param tiffStart
+	 *            the start of the TIFF structure within the segment data.
+	 */
+	private void readExif(final byte[] data, final int tiffStart) {
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(data, tiffStart, data.length - tiffStart).slice();
+			if (buffer.get(0) == 'I' && buffer.get(1) == 'I') {
+				buffer.order(ByteOrder.LITTLE_ENDIAN);
+			}
+			else if (buffer.get(0) == 'M' && buffer.get(1) == 'M') {
+				buffer.order(ByteOrder.BIG_ENDIAN);
+			}
+			else {
+				Logger.warning("Error when retrieving Exif data: invalid byte order");
+				return;
+			}
+
+			int exifOffset = readDirectory(buffer, buffer.getInt(4)); // MAGIC_NUMBER
+			if (exifOffset > 0) {
+				readDirectory(buffer, exifOffset);
+			}
+		}
+		catch (RuntimeException e) {
+			Logger.warning("Error when retrieving Exif data: " + e.toString());
+		}
+	}
+
+	/**
+	 * Parse a TIFF directory, retrieving the relevant fields.
+	 *
+	 * @param buffer
+	 *            the TIFF structure.
+	 * @param offset
+	 *            the offset of the directory.
+	 * @return the offset of the EXIF directory, if referenced from this directory. Otherwise 0.
+	 */
+	private int readDirectory(final ByteBuffer buffer, final int offset) {
+		int exifOffset = 0;
+		int count = buffer.getShort(offset) & 0xFFFF; // MAGIC_NUMBER
+
+		for (int i = 0; i < count; i++) {
+			int entry = offset + 2 + 12 * i; // MAGIC_NUMBER
+			int tag = buffer.getShort(entry) & 0xFFFF; // MAGIC_NUMBER
+			int type = buffer.getShort(entry + 2) & 0xFFFF; // MAGIC_NUMBER
+			int valueCount = buffer.getInt(entry + 4); // MAGIC_NUMBER
+			if (type >= TYPE_SIZES.length || valueCount < 0) {
+				continue;
+			}
+			int size = TYPE_SIZES[type] * valueCount;
+			int valueOffset = size <= 4 ? entry + 8 : buffer.getInt(entry + 8); // MAGIC_NUMBER
+
+			switch (tag) {
+			case TAG_ORIENTATION:
+				mOrientation = getIntValue(buffer, type, valueOffset);
+				break;
+			case TAG_EXIF_OFFSET:
+				exifOffset = getIntValue(buffer, type, valueOffset);
+				break;
+			case TAG_IMAGE_DESCRIPTION:
+				mImageDescription = stripNulls(new String(getBytes(buffer, valueOffset, size), StandardCharsets.UTF_8));
+				break;
+			case TAG_USER_COMMENT:
+				mUserComment = decodeUserComment(getBytes(buffer, valueOffset, size));
+				break;
+			case TAG_XP_COMMENT:
+				mXpComment = stripNulls(new String(getBytes(buffer, valueOffset, size), StandardCharsets.UTF_16LE));
+				break;
+			case TAG_XP_SUBJECT:
+				mXpSubject = stripNulls(new String(getBytes(buffer, valueOffset, size), StandardCharsets.UTF_16LE));
+				break;
+			default:
+				break;
+			}
+		}
+		return exifOffset;
+	}
+
+	/**
+	 * Get the integer value of a TIFF field.
+	 *
+	 * @param buffer
+	 *            the TIFF structure.
+	 * @param type
+	 *            the field type.
+	 * @param valueOffset
+	 *            the offset of the value.
+	 * @return the value.
+	 */
+	private static int getIntValue(final ByteBuffer buffer, final int type, final int valueOffset) {
+		switch (type) {
+		case TYPE_BYTE:
+			return buffer.get(valueOffset) & 0xFF; // MAGIC_NUMBER
+		case TYPE_SHORT:
+			return buffer.getShort(valueOffset) & 0xFFFF; // MAGIC_NUMBER
+		case TYPE_LONG:
+			return buffer.getInt(valueOffset);
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * Get the raw bytes of a TIFF field.
+	 *
+	 * @param buffer
+	 *            the TIFF structure.
+	 * @param valueOffset
+	 *            the offset of the value.
+	 * @param size
+	 *            the size of the value.
+	 * @return the bytes.
+	 */
+	private static byte[] getBytes(final ByteBuffer buffer, final int valueOffset, final int size) {
+		byte[] bytes = new byte[size];
+		for (int i = 0; i < size; i++) {
+			bytes[i] = buffer.get(valueOffset + i);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Decode the EXIF user comment, which is prefixed by its character code.
+	 *
+	 * @param bytes
+	 *            the raw bytes of the field.
+	 * @return the comment.
+	 */
+	private static String decodeUserComment(final byte[] bytes) {
+		if (bytes.length < USER_COMMENT_PREFIX_LENGTH) {
+			return new String(bytes, StandardCharsets.US_ASCII);
+		}
+		String prefix = new String(bytes, 0, USER_COMMENT_PREFIX_LENGTH, StandardCharsets.ISO_8859_1);
+		Charset charset;
+		if (USER_COMMENT_PREFIX_ASCII.equals(prefix)) {
+			charset = StandardCharsets.US_ASCII;
+		}
+		else if (USER_COMMENT_PREFIX_UNICODE.equals(prefix)) {
+			charset = StandardCharsets.UTF_16LE;
+		}
+		else if (USER_COMMENT_PREFIX_UNDEFINED.equals(prefix)) {
+			charset = StandardCharsets.ISO_8859_1;
+		}
+		else {
+			return new String(bytes, StandardCharsets.US_ASCII);
+		}
+		return new String(bytes, USER_COMMENT_PREFIX_LENGTH, bytes.length - USER_COMMENT_PREFIX_LENGTH, charset);
+	}
+
+	/**
+	 * Remove trailing null characters from a String.
+	 *
+	 * @param value
+	 *            the String.
+	 * @return the String without trailing null characters.
+	 */
+	private static String stripNulls(final String value) {
+		int end = value.length();
+		while (end > 0 && value.charAt(end - 1) == 0) {
+			end--;
+		}
+		return value.substring(0, end);
+	}
+
+	/**
+	 * Check if a byte array starts with a given prefix.
+	 *
+	 * @param data
+	 *            the byte array.
+	 * @param prefix
+	 *            the prefix.
+	 * @return true if the byte array starts with the prefix.
+	 */
+	private static boolean startsWith(final byte[] data, final byte[] prefix) {
+		if (data.length < prefix.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if (data[i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Read a given number of bytes from the stream.
+	 *
+	 * @param in
+	 *            the stream.
+	 * @param length
+	 *            the number of bytes.
+	 * @return the bytes.
+	 * @throws IOException
+	 *             thrown if the bytes cannot be read.
+	 */
+	private static byte[] readFully(final DataInputStream in, final int length) throws IOException {
+		byte[] data = new byte[length];
+		in.readFully(data);
+		return data;
+	}
+
+	/**
+	 * Skip a given number of bytes from the stream.
+	 *
+	 * @param in
+	 *            the stream.
+	 * @param length
+	 *            the number of bytes.
+	 * @throws IOException
+	 *             thrown if the bytes cannot be skipped.
+	 */
+	private static void skipFully(final DataInputStream in, final int length) throws IOException {
+		int remaining = length;
+		while (remaining > 0) {
+			int skipped = in.skipBytes(remaining);
+			if (skipped <= 0) {
+				throw new IOException("Unexpected end of JPEG segment");
+			}
+			remaining -= skipped;
+		}
+	}
+
+	/**
+	 * Get the information if the file is a valid JPEG file.
+	 *
+	 * @return true if the file is a JPEG file.
+	 */
+	public boolean isJpeg() {
+		return mIsJpeg;
+	}
+
+	/**
+	 * Get the width of the image (without applying the orientation).
+	 *
+	 * @return the width.
+	 */
+	public int getWidth() {
+		return mWidth;
+	}
+
+	/**
+	 * Get the height of the image (without applying the orientation).
+	 *
+	 * @return the height.
+	 */
+	public int getHeight() {
+		return mHeight;
+	}
+
+	/**
+	 * Get the position of the SOS marker in the file. The bytes before this position contain all metadata, the bytes
+	 * starting at this position contain the image data.
+	 *
+	 * @return the position of the SOS marker.
+	 */
+	public long getImageDataOffset() {
+		return mImageDataOffset;
+	}
+
+	/**
+	 * Get the EXIF orientation value.
+	 *
+	 * @return the orientation value.
+	 */
+	public int getOrientation() {
+		return mOrientation;
+	}
+
+	/**
+	 * Get the EXIF image description.
+	 *
+	 * @return the image description, or null if not existing.
+	 */
+	public String getImageDescription() {
+		return mImageDescription;
+	}
+
+	/**
+	 * Get the EXIF user comment.
+	 *
+	 * @return the user comment, or null if not existing.
+	 */
+	public String getUserComment() {
+		return mUserComment;
+	}
+
+	/**
+	 * Get the Microsoft EXIF comment.
+	 *
+	 * @return the comment, or null if not existing.
+	 */
+	public String getXpComment() {
+		return mXpComment;
+	}
+
+	/**
+	 * Get the Microsoft EXIF subject.
+	 *
+	 * @return the subject, or null if not existing.
+	 */
+	public String getXpSubject() {
+		return mXpSubject;
+	}
+
+	/**
+	 * Get the raw XMP packet.
+	 *
+	 * @return the XMP packet, or null if not existing.
+	 */
+	public String getXmpXml() {
+		return mXmpXml;
+	}
+
+	/**
+	 * Input stream counting the bytes read.
+	 */
+	private static final class CountingInputStream extends FilterInputStream {
+		/**
+		 * The number of bytes read so far.
+		 */
+		private long mPosition = 0;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param in
+		 *            the underlying stream.
+		 */
+		private CountingInputStream(final InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int result = super.read();
+			if (result >= 0) {
+				mPosition++;
+			}
+			return result;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			int result = super.read(b, off, len);
+			if (result > 0) {
+				mPosition += result;
+			}
+			return result;
+		}
+
+		@Override
+		public long skip(final long n) throws IOException {
+			long result = super.skip(n);
+			mPosition += result;
+			return result;
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+	}
+}
@@ -1,5 +1,8 @@
 package de.eisfeldj.augendiagnosefx.util.imagefile;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Date;
 
 import de.eisfeldj.augendiagnosefx.util.imagefile.EyePhoto.RightLeft;
@@ -12,6 +15,10 @@ public final class JpegMetadata {
 	 * Flag indicating that the overlay size has been set automatically by camera activity ant not by user.
 	 */
 	public static final int FLAG_OVERLAY_SET_BY_CAMERA_ACTIVITY = 0b10;
+	/**
+	 * Flag indicating that the overlay size has been determined automatically by PupilAndIrisDetector.
+	 */
+	public static final int FLAG_OVERLAY_POSITION_DETERMINED_AUTOMATICALLY = 0b100;
 
 	// JAVADOC:OFF
 	private static final String LINE_BREAK = "\n";
@@ -401,6 +408,138 @@ public final class JpegMetadata {
 		return (mFlags & flag) != 0;
 	}
 
+	/**
+	 * Create a copy of this metadata, which can be changed independently.
+	 *
+	 * @return The copy.
+	 */
+	public JpegMetadata copy() {
+		JpegMetadata result = new JpegMetadata();
+		result.mTitle = mTitle;
+		result.mDescription = mDescription;
+		result.mSubject = mSubject;
+		result.mComment = mComment;
+		result.mPerson = mPerson;
+		result.mXCenter = mXCenter;
+		result.mYCenter = mYCenter;
+		result.mOverlayScaleFactor = mOverlayScaleFactor;
+		result.mXPosition = mXPosition;
+		result.mYPosition = mYPosition;
+		result.mZoomFactor = mZoomFactor;
+		result.mOrganizeDate = mOrganizeDate == null ? null : new Date(mOrganizeDate.getTime());
+		result.mRightLeft = mRightLeft;
+		result.mBrightness = mBrightness;
+		result.mContrast = mContrast;
+		result.mSaturation = mSaturation;
+		result.mColorTemperature = mColorTemperature;
+		result.mPupilSize = mPupilSize;
+		result.mPupilXOffset = mPupilXOffset;
+		result.mPupilYOffset = mPupilYOffset;
+		result.mOverlayColor = mOverlayColor;
+		result.mFlags = mFlags;
+		return result;
+	}
+
+	/**
+	 * Write this metadata in compact binary form.
+	 *
+	 * @param out
+	 *            the stream to write to.
+	 * @throws IOException
+	 *             thrown if writing fails.
+	 */
+	void writeTo(final DataOutputStream out) throws IOException {
+		writeString(out, mTitle);
+		writeString(out, mDescription);
+		writeString(out, mSubject);
+		writeString(out, mComment);
+		writeString(out, mPerson);
+		writeString(out, getXCenterString());
+		writeString(out, getYCenterString());
+		writeString(out, getOverlayScaleFactorString());
+		writeString(out, getXPositionString());
+		writeString(out, getYPositionString());
+		writeString(out, getZoomFactorString());
+		writeString(out, mOrganizeDate == null ? null : Long.toString(mOrganizeDate.getTime()));
+		writeString(out, getRightLeftString());
+		writeString(out, getBrightnessString());
+		writeString(out, getContrastString());
+		writeString(out, getSaturationString());
+		writeString(out, getColorTemperatureString());
+		writeString(out, getOverlayColorString());
+		writeString(out, getPupilSizeString());
+		writeString(out, getPupilXOffsetString());
+		writeString(out, getPupilYOffsetString());
+		out.writeInt(mFlags);
+	}
+
+	/**
+	 * Read metadata written via {@link #writeTo(DataOutputStream)}.
+	 *
+	 * @param in
+	 *            the stream to read from.
+	 * @return the metadata.
+	 * @throws IOException
+	 *             thrown if reading fails.
+	 */
+	static JpegMetadata readFrom(final DataInputStream in) throws IOException {
+		JpegMetadata result = new JpegMetadata();
+		result.mTitle = readString(in);
+		result.mDescription = readString(in);
+		result.mSubject = readString(in);
+		result.mComment = readString(in);
+		result.mPerson = readString(in);
+		result.setXCenter(readString(in));
+		result.setYCenter(readString(in));
+		result.setOverlayScaleFactor(readString(in));
+		result.setXPosition(readString(in));
+		result.setYPosition(readString(in));
+		result.setZoomFactor(readString(in));
+		String organizeDate = readString(in);
+		result.mOrganizeDate = organizeDate == null ? null : new Date(Long.parseLong(organizeDate));
+		result.setRightLeft(readString(in));
+		result.setBrightness(readString(in));
+		result.setContrast(readString(in));
+		result.setSaturation(readString(in));
+		result.setColorTemperature(readString(in));
+		result.setOverlayColor(readString(in));
+		result.setPupilSize(readString(in));
+		result.setPupilXOffset(readString(in));
+		result.setPupilYOffset(readString(in));
+		result.mFlags = in.readInt();
+		return result;
+	}
+
+	/**
+	 * Write a String which may be null.
+	 *
+	 * @param out
+	 *            the stream to write to.
+	 * @param value
+	 *            the String.
+	 * @throws IOException
+	 *             thrown if writing fails.
+	 */
+	private static void writeString(final DataOutputStream out, final String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	/**
+	 * Read a String written via {@link #writeString(DataOutputStream, String)}.
+	 *
+	 * @param in
+	 *            the stream to read from.
+	 * @return the String.
+	 * @throws IOException
+	 *             thrown if reading fails.
+	 */
+	private static String readString(final DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
 	@Override
 	public String toString() {
 		StringBuffer str = new StringBuffer();
@@ -0,0 +1,220 @@
+package de.eisfeldj.augendiagnosefx.util.imagefile;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory cache of the metadata of JPEG files, to avoid parsing the same file repeatedly.
+ *
+ * <p>Entries are keyed by the absolute path and are valid only as long as last modification date and size of the file
+ * are unchanged. To avoid file system access on frequent reads (e.g. while dragging sliders), this file stamp is checked
+ * at most once within {@link #VALIDATION_INTERVAL}. The cache returns copies, so that callers may change the metadata.
+ */
+public final class JpegMetadataCache {
+	/**
+	 * The maximum number of cached entries.
+	 */
+	private static final int MAX_ENTRIES = 1000;
+
+	/**
+	 * The interval (in milliseconds) within which a cached entry is used without checking the file stamp again.
+	 */
+	private static final long VALIDATION_INTERVAL = 2000;
+
+	/**
+	 * The cache entries, in order of access.
+	 */
+	private static final Map<String, CacheEntry> CACHE = new LinkedHashMap<String, CacheEntry>(MAX_ENTRIES, 0.75f, true) { // MAGIC_NUMBER
+		/**
+		 * The default serial version id.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, CacheEntry> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	/**
+	 * The number of cache hits.
+	 */
+	private static long mHitCount = 0;
+
+	/**
+	 * The number of cache misses.
+	 */
+	private static long mMissCount = 0;
+
+	/**
+	 * Hide default constructor.
+	 */
+	private JpegMetadataCache() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Get the cached metadata of a file, if it is still valid.
+	 *
+	 * @param pathname
+	 *            the path of the jpg file.
+	 * @return A copy of the cached metadata, or null if there is no valid cache entry.
+	 */
+	public static JpegMetadata get(final String pathname) {
+		String key = getKey(pathname);
+		CacheEntry entry;
+		synchronized (CACHE) {
+			entry = CACHE.get(key);
+		}
+		if (entry == null) {
+			return miss();
+		}
+
+		long now = System.currentTimeMillis();
+		if (now - entry.mValidationTime > VALIDATION_INTERVAL) {
+			File file = new File(key);
+			if (file.lastModified() != entry.mLastModified || file.length() != entry.mSize) {
+				invalidate(key);
+				return miss();
+			}
+			entry.mValidationTime = now;
+		}
+
+		synchronized (CACHE) {
+			mHitCount++;
+		}
+		return entry.mMetadata.copy();
+	}
+
+	/**
+	 * Store metadata in the cache, valid for the state of the file in which it was read. The file stamp has to be taken
+	 * before reading the metadata. If the file has been changed meanwhile, then nothing is cached.
+	 *
+	 * @param pathname
+	 *            the path of the jpg file.
+	 * @param metadata
+	 *            the metadata of the file.
+	 * @param lastModified
+	 *            the last modification date of the file before reading the metadata.
+	 * @param size
+	 *            the size of the file before reading the metadata.
+	 */
+	public static void put(final String pathname, final JpegMetadata metadata, final long lastModified,
+			final long size) {
+		String key = getKey(pathname);
+		File file = new File(key);
+		if (file.lastModified() != lastModified || file.length() != size) {
+			invalidate(key);
+			return;
+		}
+
+		CacheEntry entry = new CacheEntry(metadata.copy(), lastModified, size);
+		synchronized (CACHE) {
+			CACHE.put(key, entry);
+		}
+	}
+
+	/**
+	 * Remove the cached metadata of a file.
+	 *
+	 * @param pathname
+	 *            the path of the jpg file.
+	 */
+	public static void invalidate(final String pathname) {
+		String key = getKey(pathname);
+		synchronized (CACHE) {
+			CACHE.remove(key);
+		}
+	}
+
+	/**
+	 * Clear the cache.
+	 */
+	public static void clear() {
+		synchronized (CACHE) {
+			CACHE.clear();
+		}
+	}
+
+	/**
+	 * Get the number of cache hits.
+	 *
+	 * @return The number of cache hits.
+	 */
+	public static long getHitCount() {
+		synchronized (CACHE) {
+			return mHitCount;
+		}
+	}
+
+	/**
+	 * Get the number of cache misses.
+	 *
+	 * @return The number of cache misses.
+	 */
+	public static long getMissCount() {
+		synchronized (CACHE) {
+			return mMissCount;
+		}
+	}
+
+	/**
+	 * Get the cache key of a file, so that relative and absolute paths of the same file share one entry.
+	 *
+	 * @param pathname
+	 *            the path of the jpg file.
+	 * @return The absolute path.
+	 */
+	private static String getKey(final String pathname) {
+		return new File(pathname).getAbsolutePath();
+	}
+
+	/**
+	 * Count a cache miss.
+	 *
+	 * @return null.
+	 */
+	private static JpegMetadata miss() {
+		synchronized (CACHE) {
+			mMissCount++;
+		}
+		return null;
+	}
+
+	/**
+	 * An entry of the cache.
+	 */
+	private static final class CacheEntry {
+		/**
+		 * The cached metadata.
+		 */
+		private final JpegMetadata mMetadata;
+		/**
+		 * The last modification date of the file when the metadata was cached.
+		 */
+		private final long mLastModified;
+		/**
+		 * The size of the file when the metadata was cached.
+		 */
+		private final long mSize;
+		/**
+		 * The time of the last check of the file stamp.
+		 */
+		private volatile long mValidationTime;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param metadata The cached metadata.
+		 * @param lastModified The last modification date of the file.
+		 * @param size The size of the file.
+		 */
+		private CacheEntry(final JpegMetadata metadata, final long lastModified, final long size) {
+			mMetadata = metadata;
+			mLastModified = lastModified;
+			mSize = size;
+			mValidationTime = System.currentTimeMillis();
+		}
+	}
+}
@@ -0,0 +1,482 @@
+package de.eisfeldj.augendiagnosefx.util.imagefile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import de.eisfeldj.augendiagnosefx.util.Logger;
+import de.eisfeldj.augendiagnosefx.util.PreferenceUtil;
+
+/**
+ * Storage of JPEG metadata in an index file per folder ("sidecar"), avoiding to rewrite the JPEG file on each change.
+ *
+ * <p>Changes are appended as records to the index file. The index file is compacted when it contains too many
+ * obsolete records. When no changes have been stored for some time, the metadata is written into the JPEG files in
+ * the background, and then removed from the index.
+ */
+public final class JpegMetadataSidecar {
+	/**
+	 * The name of the index file within the photo folder.
+	 */
+	public static final String SIDECAR_FILE_NAME = ".augendiagnose-metadata";
+
+	/**
+	 * The header identifying the format of the index file.
+	 */
+	private static final int FILE_HEADER = 0x41444D31; // MAGIC_NUMBER
+
+	/**
+	 * Record type for storing metadata of a file.
+	 */
+	private static final byte RECORD_STORE = 1;
+
+	/**
+	 * Record type for removing the metadata of a file.
+	 */
+	private static final byte RECORD_REMOVE = 2;
+
+	/**
+	 * The number of obsolete records in an index file which triggers a compaction.
+	 */
+	private static final int COMPACTION_THRESHOLD = 100;
+
+	/**
+	 * The time (in milliseconds) without changes after which the metadata is written into the JPEG files.
+	 */
+	private static final long SYNC_IDLE_DELAY = 30000;
+
+	/**
+	 * The loaded indices, by folder path.
+	 */
+	private static final Map<String, FolderIndex> INDICES = new HashMap<>();
+
+	/**
+	 * The metadata passed for writing into the JPEG files, by path. The first element is the copy passed to the writer,
+	 * the second element the entry of the index at that time.
+	 */
+	private static final Map<String, JpegMetadata[]> SYNC_REQUESTS = new HashMap<>();
+
+	/**
+	 * The executor for writing the metadata into the JPEG files.
+	 */
+	private static final ScheduledExecutorService SYNC_EXECUTOR =
+			Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					Thread thread = new Thread(runnable, "JpegMetadataSidecar");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	/**
+	 * The scheduled synchronization into the JPEG files.
+	 */
+	private static ScheduledFuture<?> mSyncFuture = null;
+
+	/**
+	 * Hide default constructor.
+	 */
+	private JpegMetadataSidecar() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Check if metadata changes should be stored in the index file.
+	 *
+	 * @return true if the sidecar mode is enabled.
+	 */
+	public static boolean isEnabled() {
+		return PreferenceUtil.getPreferenceBoolean(PreferenceUtil.KEY_STORE_IN_SIDECAR);
+	}
+
+	/**
+	 * Get the metadata of a file stored in the index, if not yet written into the file.
+	 *
+	 * @param pathname
+	 *            the path of the jpg file.
+	 * @return A copy of the metadata, or null if there is no metadata in the index.
+	 */
+	public static JpegMetadata get(final String pathname) {
+		File file = new File(pathname);
+		synchronized (INDICES) {
+			JpegMetadata metadata = getIndex(file).mEntries.get(file.getName());
+			return metadata == null ? null : metadata.copy();
+		}
+	}
+
+	/**
+	 * Store the metadata of a file in the index.
+	 *
+	 * @param pathname
+	 *            the path of the jpg file.
+	 * @param metadata
+	 *            the metadata.
+	 * @return true if successful.
+	 */
+	public static boolean put(final String pathname, final JpegMetadata metadata) {
+		File file = new File(pathname);
+		synchronized (INDICES) {
+			FolderIndex index = getIndex(file);
+			try {
+				index.append(RECORD_STORE, file.getName(), metadata);
+			}
+			catch (IOException e) {
+				Logger.error("Failed to store metadata of file " + pathname + " in index", e);
+				return false;
+			}
+			index.mEntries.put(file.getName(), metadata.copy());
+		}
+		scheduleSync();
+		return true;
+	}
+
+	/**
+	 * Remove the metadata of a file from the index.
+	 *
+	 * @param pathname
+	 *            the path of the jpg file.
+	 * @return the removed metadata, or null if there was no metadata in the index.
+	 */
+	public static JpegMetadata remove(final String pathname) {
+		File file = new File(pathname);
+		synchronized (INDICES) {
+			FolderIndex index = getIndex(file);
+			JpegMetadata metadata = index.mEntries.remove(file.getName());
+			if (metadata != null) {
+				try {
+					if (index.mEntries.isEmpty()) {
+						// Delete the index file.
+						index.compact();
+					}
+					else {
+						index.append(RECORD_REMOVE, file.getName(), null);
+					}
+				}
+				catch (IOException e) {
+					Logger.error("Failed to remove metadata of file " + pathname + " from index", e);
+				}
+			}
+			return metadata;
+		}
+	}
+
+	/**
+	 * Transfer the metadata stored in the index after a file has been moved.
+	 *
+	 * @param sourcePathname
+	 *            the old path of the jpg file.
+	 * @param targetPathname
+	 *            the new path of the jpg file.
+	 */
+	public static void move(final String sourcePathname, final String targetPathname) {
+		JpegMetadata metadata = remove(sourcePathname);
+		if (metadata != null) {
+			put(targetPathname, metadata);
+		}
+	}
+
+	/**
+	 * Copy the metadata stored in the index after a file has been copied.
+	 *
+	 * @param sourcePathname
+	 *            the path of the source file.
+	 * @param targetPathname
+	 *            the path of the target file.
+	 */
+	public static void copy(final String sourcePathname, final String targetPathname) {
+		JpegMetadata metadata = get(sourcePathname);
+		if (metadata != null) {
+			put(targetPathname, metadata);
+		}
+	}
+
+	/**
+	 * Write all metadata stored in the loaded indices into the JPEG files. The files are written asynchronously, and
+	 * the metadata is removed from the index as soon as the file is written. Indices which are not loaded are
+	 * synchronized when their folder is accessed next time.
+	 */
+	public static void syncAll() {
+		List<String> pathnames = new ArrayList<>();
+		List<JpegMetadata> metadataList = new ArrayList<>();
+		synchronized (INDICES) {
+			if (!JpegMetadataUtil.changeJpegAllowed()) {
+				for (FolderIndex index : INDICES.values()) {
+					if (!index.mEntries.isEmpty()) {
+						Logger.info("Keeping metadata in index " + index.mFile.getAbsolutePath()
+								+ ", as changing JPEG files is not allowed.");
+					}
+				}
+				return;
+			}
+
+			for (FolderIndex index : INDICES.values()) {
+				for (Map.Entry<String, JpegMetadata> entry : index.mEntries.entrySet()) {
+					String pathname = new File(index.mFolder, entry.getKey()).getAbsolutePath();
+					JpegMetadata metadata = entry.getValue().copy();
+					SYNC_REQUESTS.put(pathname, new JpegMetadata[] {metadata, entry.getValue()});
+					pathnames.add(pathname);
+					metadataList.add(metadata);
+				}
+			}
+		}
+
+		for (int i = 0; i < pathnames.size(); i++) {
+			String pathname = pathnames.get(i);
+			if (new File(pathname).exists()) {
+				JpegSynchronizationUtil.queueSaveRequest(pathname, metadataList.get(i));
+			}
+			else {
+				remove(pathname);
+			}
+		}
+	}
+
+	/**
+	 * Inform that metadata has been written into a JPEG file. If this was triggered by {@link #syncAll()} and the index
+	 * still contains the same metadata for this file, then it is removed from the index.
+	 *
+	 * @param pathname
+	 *            the path of the jpg file.
+	 * @param metadata
+	 *            the metadata which has been written.
+	 */
+	protected static void onFileWritten(final String pathname, final JpegMetadata metadata) {
+		File file = new File(pathname);
+		synchronized (INDICES) {
+			JpegMetadata[] syncRequest = SYNC_REQUESTS.get(file.getAbsolutePath());
+			if (syncRequest == null) {
+				return;
+			}
+			if (syncRequest[0] != metadata) {
+				// The written metadata was superseded by a coalesced save, so the index entry still has to be synchronized.
+				scheduleSync();
+				return;
+			}
+			SYNC_REQUESTS.remove(file.getAbsolutePath());
+			if (getIndex(file).mEntries.get(file.getName()) != syncRequest[1]) {
+				return;
+			}
+			remove(pathname);
+		}
+	}
+
+	/**
+	 * Schedule the synchronization into the JPEG files after the idle delay, replacing any earlier schedule.
+	 */
+	private static void scheduleSync() {
+		synchronized (INDICES) {
+			if (mSyncFuture != null) {
+				mSyncFuture.cancel(false);
+			}
+			mSyncFuture = SYNC_EXECUTOR.schedule(new Runnable() {
+				@Override
+				public void run() {
+					syncAll();
+				}
+			}, SYNC_IDLE_DELAY, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Get the index of the folder of a file, loading it if required. Must be called within synchronization on
+	 * INDICES.
+	 *
+	 * @param file
+	 *            the jpg file.
+	 * @return the index of its folder.
+	 */
+	private static FolderIndex getIndex(final File file) {
+		File folder = file.getAbsoluteFile().getParentFile();
+		FolderIndex index = INDICES.get(folder.getAbsolutePath());
+		if (index == null) {
+			index = new FolderIndex(folder);
+			index.load();
+			INDICES.put(folder.getAbsolutePath(), index);
+			if (index.mEntries.size() > 0) {
+				scheduleSync();
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * The index of one folder.
+	 */
+	private static final class FolderIndex {
+		/**
+		 * The folder.
+		 */
+		private final File mFolder;
+
+		/**
+		 * The index file.
+		 */
+		private final File mFile;
+
+		/**
+		 * The current metadata, by file name.
+		 */
+		private final Map<String, JpegMetadata> mEntries = new LinkedHashMap<>();
+
+		/**
+		 * The number of records in the index file.
+		 */
+		private int mRecordCount = 0;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param folder
+		 *            the folder.
+		 */
+		private FolderIndex(final File folder) {
+			mFolder = folder;
+			mFile = new File(folder, SIDECAR_FILE_NAME);
+		}
+
+		/**
+		 * Load the entries from the index file.
+		 */
+		private void load() {
+			if (!mFile.exists()) {
+				return;
+			}
+
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)))) {
+				if (in.readInt() != FILE_HEADER) {
+					// The file is replaced by the next compaction.
+					Logger.warning("Ignoring index file with unknown format: " + mFile.getAbsolutePath());
+					mRecordCount += COMPACTION_THRESHOLD;
+					return;
+				}
+				while (true) {
+					int recordType = in.read();
+					if (recordType < 0) {
+						break;
+					}
+					String filename = in.readUTF();
+					if (recordType == RECORD_STORE) {
+						mEntries.put(filename, JpegMetadata.readFrom(in));
+					}
+					else {
+						mEntries.remove(filename);
+					}
+					mRecordCount++;
+				}
+			}
+			catch (EOFException e) {
+				// An incomplete last record is ignored, and removed by the next compaction.
+				Logger.warning("Incomplete record in index file " + mFile.getAbsolutePath());
+				mRecordCount += COMPACTION_THRESHOLD;
+			}
+			catch (IOException e) {
+				Logger.error("Failed to read index file " + mFile.getAbsolutePath(), e);
+			}
+		}
+
+		/**
+		 * Append a record to the index file, and compact the file if required.
+		 *
+		 * @param recordType
+		 *            the record type.
+		 * @param filename
+		 *            the name of the jpg file.
+		 * @param metadata
+		 *            the metadata, if storing metadata.
+		 * @throws IOException
+		 *             thrown if the index file cannot be written.
+		 */
+		private void append(final byte recordType, final String filename, final JpegMetadata metadata)
+				throws IOException {
+			if (mRecordCount - mEntries.size() >= COMPACTION_THRESHOLD) {
+				compact();
+			}
+
+			boolean isNewFile = !mFile.exists();
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(buffer);
+			if (isNewFile) {
+				out.writeInt(FILE_HEADER);
+				mRecordCount = 0;
+			}
+			writeRecord(out, recordType, filename, metadata);
+			out.flush();
+
+			// The record is written at once, so that incomplete records can only occur at the end of the file.
+			try (FileOutputStream fileOut = new FileOutputStream(mFile, true)) {
+				buffer.writeTo(fileOut);
+			}
+			mRecordCount++;
+		}
+
+		/**
+		 * Rewrite the index file, containing only the current entries.
+		 *
+		 * @throws IOException
+		 *             thrown if the index file cannot be written.
+		 */
+		private void compact() throws IOException {
+			if (mEntries.isEmpty()) {
+				if (mFile.exists() && !mFile.delete()) {
+					throw new IOException("Failed to delete index file " + mFile.getAbsolutePath());
+				}
+				mRecordCount = 0;
+				return;
+			}
+
+			File tempFile = new File(mFolder, SIDECAR_FILE_NAME + ".temp");
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+				out.writeInt(FILE_HEADER);
+				for (Map.Entry<String, JpegMetadata> entry : mEntries.entrySet()) {
+					writeRecord(out, RECORD_STORE, entry.getKey(), entry.getValue());
+				}
+			}
+			if (!FileUtil.moveFile(tempFile, mFile)) {
+				throw new IOException("Failed to rename file " + tempFile.getAbsolutePath() + " to "
+						+ mFile.getAbsolutePath());
+			}
+			mRecordCount = mEntries.size();
+		}
+
+		/**
+		 * Write a record.
+		 *
+		 * @param out
+		 *            the stream to write to.
+		 * @param recordType
+		 *            the record type.
+		 * @param filename
+		 *            the name of the jpg file.
+		 * @param metadata
+		 *            the metadata, if storing metadata.
+		 * @throws IOException
+		 *             thrown if writing fails.
+		 */
+		private static void writeRecord(final DataOutputStream out, final byte recordType, final String filename,
+				final JpegMetadata metadata) throws IOException {
+			out.writeByte(recordType);
+			out.writeUTF(filename);
+			if (recordType == RECORD_STORE) {
+				metadata.writeTo(out);
+			}
+		}
+	}
+}
@@ -1,10 +1,13 @@
 package de.eisfeldj.augendiagnosefx.util.imagefile;
 
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.List;
 
 import com.adobe.xmp.XMPException;
@@ -19,22 +22,21 @@ import org.apache.commons.imaging.common.IImageMetadata;
 import org.apache.commons.imaging.formats.jpeg.JpegImageMetadata;
 import org.apache.commons.imaging.formats.jpeg.exif.ExifRewriter;
 import org.apache.commons.imaging.formats.jpeg.xmp.JpegXmpRewriter;
-import org.apache.commons.imaging.formats.tiff.TiffField;
 import org.apache.commons.imaging.formats.tiff.TiffImageMetadata;
 import org.apache.commons.imaging.formats.tiff.constants.ExifTagConstants;
 import org.apache.commons.imaging.formats.tiff.constants.MicrosoftTagConstants;
-import org.apache.commons.imaging.formats.tiff.constants.TiffDirectoryType;
 import org.apache.commons.imaging.formats.tiff.constants.TiffTagConstants;
-import org.apache.commons.imaging.formats.tiff.taginfos.TagInfo;
-import org.apache.commons.imaging.formats.tiff.taginfos.TagInfoShort;
 import org.apache.commons.imaging.formats.tiff.write.TiffOutputDirectory;
 import org.apache.commons.imaging.formats.tiff.write.TiffOutputSet;
-import org.apache.commons.imaging.util.IoUtils;
 
 /**
  * Helper clase to retrieve and save metadata in a JPEG file.
  */
 public final class JpegMetadataUtil {
+	/**
+	 * The JPEG marker "start of scan", which starts the image data.
+	 */
+	private static final byte[] SOS_MARKER = {(byte) 0xFF, (byte) 0xDA};
 
 	/**
 	 * Hide default constructor.
@@ -85,33 +87,7 @@ public final class JpegMetadataUtil {
 	 */
 	protected static int getExifOrientation(final File imageFile) {
 		try {
-			final IImageMetadata metadata = Imaging.getMetadata(imageFile);
-			TiffImageMetadata tiffImageMetadata = null;
-
-			if (metadata instanceof JpegImageMetadata) {
-				tiffImageMetadata = ((JpegImageMetadata) metadata).getExif();
-			}
-			else if (metadata instanceof TiffImageMetadata) {
-				tiffImageMetadata = (TiffImageMetadata) metadata;
-			}
-			else {
-				return TiffTagConstants.ORIENTATION_VALUE_HORIZONTAL_NORMAL;
-			}
-
-			TiffField field = tiffImageMetadata.findField(TiffTagConstants.TIFF_TAG_ORIENTATION);
-			if (field != null) {
-				return field.getIntValue();
-			}
-			else {
-				TagInfo tagInfo = new TagInfoShort("Orientation", 274, 1, TiffDirectoryType.TIFF_DIRECTORY_IFD0); // MAGIC_NUMBER
-				field = tiffImageMetadata.findField(tagInfo);
-				if (field != null) {
-					return field.getIntValue();
-				}
-				else {
-					return TiffTagConstants.ORIENTATION_VALUE_HORIZONTAL_NORMAL;
-				}
-			}
+			return JpegHeader.read(imageFile).getOrientation();
 		}
 		catch (Exception e) {
 			return TiffTagConstants.ORIENTATION_VALUE_HORIZONTAL_NORMAL;
@@ -165,17 +141,16 @@ public final class JpegMetadataUtil {
 	 *
 	 * @param jpegImageFileName
 	 *            the file to be validated.
+	 * @return the header of the file, which may be used for retrieving the metadata without reading the file again.
 	 * @throws IOException
 	 *             thrown if the file is no jpg.
-	 * @throws ImageReadException
-	 *             thrown if the metadata cannot be read.
 	 */
-	protected static void checkJpeg(final String jpegImageFileName) throws IOException, ImageReadException {
-		File file = new File(jpegImageFileName);
-		String mimeType = Imaging.getImageInfo(file).getMimeType();
-		if (!"image/jpeg".equals(mimeType)) {
-			throw new IOException("Bad MIME type " + mimeType + " - can handle metadata only for image/jpeg.");
+	protected static JpegHeader checkJpeg(final String jpegImageFileName) throws IOException {
+		JpegHeader header = JpegHeader.read(new File(jpegImageFileName));
+		if (!header.isJpeg()) {
+			throw new IOException("Bad file " + jpegImageFileName + " - can handle metadata only for image/jpeg.");
 		}
+		return header;
 	}
 
 	/**
@@ -190,13 +165,21 @@ public final class JpegMetadataUtil {
 	 *             thrown in case of other errors while reading metadata.
 	 */
 	public static JpegMetadata getMetadata(final String jpegImageFileName) throws ImageReadException, IOException {
-		checkJpeg(jpegImageFileName);
+		return getMetadata(checkJpeg(jpegImageFileName));
+	}
+
+	/**
+	 * Retrieve the relevant metadata of an image file from its header.
+	 *
+	 * @param header
+	 *            the header of the file, as retrieved via checkJpeg.
+	 * @return the metadata of the file.
+	 */
+	protected static JpegMetadata getMetadata(final JpegHeader header) {
 		JpegMetadata result = new JpegMetadata();
-		final File imageFile = new File(jpegImageFileName);
 
 		// Retrieve XMP data
-		String xmpString = Imaging.getXmpXml(imageFile);
-		XmpHandler parser = new XmpHandler(xmpString);
+		XmpHandler parser = new XmpHandler(header.getXmpXml());
 
 		// Standard fields are pre-filled with custom data
 		result.setTitle(parser.getJeItem(XmpHandler.ITEM_TITLE));
@@ -240,46 +223,27 @@ public final class JpegMetadataUtil {
 			result.setComment(parser.getUserComment());
 		}
 
-		// Retrieve EXIF data
-		try {
-			final IImageMetadata metadata = Imaging.getMetadata(imageFile);
-
-			TiffImageMetadata tiffImageMetadata = null;
-			if (metadata instanceof JpegImageMetadata) {
-				tiffImageMetadata = ((JpegImageMetadata) metadata).getExif();
-			}
-			else if (metadata instanceof TiffImageMetadata) {
-				tiffImageMetadata = (TiffImageMetadata) metadata;
-			}
-			else {
-				return result;
-			}
-
-			// EXIF data have precedence only if saving EXIF is allowed
-			TiffField title = tiffImageMetadata.findField(TiffTagConstants.TIFF_TAG_IMAGE_DESCRIPTION);
-			if (title != null && (changeExifAllowed() || result.getTitle() == null)) {
-				result.setTitle(title.getStringValue().trim());
-			}
-			String exifComment = null;
-			TiffField comment = tiffImageMetadata.findField(ExifTagConstants.EXIF_TAG_USER_COMMENT);
-			if (comment != null && comment.getStringValue().trim().length() > 0) {
-				exifComment = comment.getStringValue().trim();
-			}
-			TiffField comment2 = tiffImageMetadata.findField(MicrosoftTagConstants.EXIF_TAG_XPCOMMENT);
-			if (comment2 != null && comment2.getStringValue().trim().length() > 0) {
-				// XPComment takes precedence if existing
-				exifComment = comment2.getStringValue().trim();
-			}
-			if (exifComment != null && (changeExifAllowed() || result.getComment() == null)) {
-				result.setComment(exifComment);
-			}
-			TiffField subject = tiffImageMetadata.findField(MicrosoftTagConstants.EXIF_TAG_XPSUBJECT);
-			if (subject != null && (changeExifAllowed() || result.getSubject() == null)) {
-				result.setSubject(subject.getStringValue().trim());
-			}
+		// Retrieve EXIF data - EXIF data have precedence only if saving EXIF is allowed
+		String title = header.getImageDescription();
+		if (title != null && (changeExifAllowed() || result.getTitle() == null)) {
+			result.setTitle(title.trim());
 		}
-		catch (Exception e) {
-			Logger.warning("Error when retrieving Exif data: " + e.toString());
+		String exifComment = null;
+		String comment = header.getUserComment();
+		if (comment != null && comment.trim().length() > 0) {
+			exifComment = comment.trim();
+		}
+		String comment2 = header.getXpComment();
+		if (comment2 != null && comment2.trim().length() > 0) {
+			// XPComment takes precedence if existing
+			exifComment = comment2.trim();
+		}
+		if (exifComment != null && (changeExifAllowed() || result.getComment() == null)) {
+			result.setComment(exifComment);
+		}
+		String subject = header.getXpSubject();
+		if (subject != null && (changeExifAllowed() || result.getSubject() == null)) {
+			result.setSubject(subject.trim());
 		}
 
 		// If fields are still null, try to get them from custom XMP
@@ -305,6 +269,9 @@ public final class JpegMetadataUtil {
 	/**
 	 * Change metadata of the image (EXIF and XMP as far as applicable).
 	 *
+	 * <p>The metadata segments are rebuilt in memory from the header of the file, so that the file is written only
+	 * once, copying the image data unchanged.
+	 *
 	 * @param jpegImageFileName
 	 *            the file for which metadata should be changed.
 	 * @param metadata
@@ -321,22 +288,91 @@ public final class JpegMetadataUtil {
 	public static void changeMetadata(final String jpegImageFileName, final JpegMetadata metadata) throws IOException,
 			ImageReadException, ImageWriteException, XMPException {
 		if (changeJpegAllowed()) {
-			checkJpeg(jpegImageFileName);
-			changeXmpMetadata(jpegImageFileName, metadata);
+			JpegHeader header = checkJpeg(jpegImageFileName);
+			File jpegImageFile = new File(jpegImageFileName);
+
+			byte[] headerBytes = readHeaderBytes(jpegImageFile, header.getImageDataOffset());
+			headerBytes = changeXmpMetadata(headerBytes, header.getXmpXml(), metadata);
 
 			if (changeExifAllowed()) {
-				changeExifMetadata(jpegImageFileName, metadata);
+				headerBytes = changeExifMetadata(headerBytes, metadata);
+			}
+
+			writeJpegFile(jpegImageFile, headerBytes, header.getImageDataOffset());
+		}
+	}
+
+	/**
+	 * Read the header of a JPEG file, up to the image data. The header is terminated with an SOS marker, so that it can
+	 * be processed like a JPEG file without image data.
+	 *
+	 * @param jpegImageFile
+	 *            the file.
+	 * @param imageDataOffset
+	 *            the position of the SOS marker.
+	 * @return the header bytes, including the SOS marker.
+	 * @throws IOException
+	 *             thrown if the file cannot be read.
+	 */
+	private static byte[] readHeaderBytes(final File jpegImageFile, final long imageDataOffset) throws IOException {
+		byte[] headerBytes = new byte[(int) imageDataOffset + SOS_MARKER.length];
+		try (DataInputStream in = new DataInputStream(new FileInputStream(jpegImageFile))) {
+			in.readFully(headerBytes, 0, (int) imageDataOffset);
+		}
+		System.arraycopy(SOS_MARKER, 0, headerBytes, (int) imageDataOffset, SOS_MARKER.length);
+		return headerBytes;
+	}
+
+	/**
+	 * Write a JPEG file from a new header and the image data of the existing file. The file is written to a temporary
+	 * file which then replaces the original file.
+	 *
+	 * @param jpegImageFile
+	 *            the file.
+	 * @param headerBytes
+	 *            the new header, including the SOS marker.
+	 * @param imageDataOffset
+	 *            the position of the SOS marker in the existing file.
+	 * @throws IOException
+	 *             thrown if the file cannot be written.
+	 */
+	private static void writeJpegFile(final File jpegImageFile, final byte[] headerBytes, final long imageDataOffset)
+			throws IOException {
+		int headerLength = headerBytes.length - SOS_MARKER.length;
+		for (int i = 0; i < SOS_MARKER.length; i++) {
+			if (headerLength < 0 || headerBytes[headerLength + i] != SOS_MARKER[i]) {
+				throw new IOException("Failed to create JPEG header for file " + jpegImageFile.getAbsolutePath());
+			}
+		}
+
+		File tempFile = new File(jpegImageFile.getAbsolutePath() + ".temp");
+		verifyTempFile(tempFile);
+
+		try (FileChannel inChannel = new FileInputStream(jpegImageFile).getChannel();
+				FileChannel outChannel = new FileOutputStream(tempFile).getChannel()) {
+			outChannel.write(ByteBuffer.wrap(headerBytes, 0, headerLength));
+
+			long position = imageDataOffset;
+			long size = inChannel.size();
+			while (position < size) {
+				position += inChannel.transferTo(position, size - position, outChannel);
 			}
 		}
+
+		if (!FileUtil.moveFile(tempFile, jpegImageFile)) {
+			throw new IOException("Failed to rename file " + tempFile.getAbsolutePath() + " to "
+					+ jpegImageFile.getAbsolutePath());
+		}
 	}
 
 	/**
 	 * Change the EXIF metadata.
 	 *
-	 * @param jpegImageFileName
-	 *            the file for which metadata should be changed.
+	 * @param headerBytes
+	 *            the header of the file for which metadata should be changed.
 	 * @param metadata
 	 *            the new metadata
+	 * @return the changed header.
 	 * @throws ImageReadException
 	 *             thrown if the metadata cannot be read.
 	 * @throws ImageWriteException
@@ -344,89 +380,71 @@ public final class JpegMetadataUtil {
 	 * @throws IOException
 	 *             thrown in case of other errors while reading metadata.
 	 */
-	@SuppressWarnings("resource")
-	private static void changeExifMetadata(final String jpegImageFileName, final JpegMetadata metadata)
+	private static byte[] changeExifMetadata(final byte[] headerBytes, final JpegMetadata metadata)
 			throws IOException, ImageReadException, ImageWriteException {
-		File jpegImageFile = new File(jpegImageFileName);
-		String tempFileName = jpegImageFileName + ".temp";
-		File tempFile = new File(tempFileName);
+		TiffOutputSet outputSet = null;
 
-		verifyTempFile(tempFile);
-
-		OutputStream os = null;
-		try {
-			TiffOutputSet outputSet = null;
-
-			// note that metadata might be null if no metadata is found.
-			final IImageMetadata imageMetadata = Imaging.getMetadata(jpegImageFile);
-			final JpegImageMetadata jpegMetadata = (JpegImageMetadata) imageMetadata;
-			if (jpegMetadata != null) {
-				// note that exif might be null if no Exif metadata is found.
-				final TiffImageMetadata exif = jpegMetadata.getExif();
-
-				if (exif != null) {
-					outputSet = exif.getOutputSet();
-				}
-			}
+		// note that metadata might be null if no metadata is found.
+		final IImageMetadata imageMetadata = Imaging.getMetadata(headerBytes);
+		final JpegImageMetadata jpegMetadata = (JpegImageMetadata) imageMetadata;
+		if (jpegMetadata != null) {
+			// note that exif might be null if no Exif metadata is found.
+			final TiffImageMetadata exif = jpegMetadata.getExif();
 
-			if (outputSet == null) {
-				outputSet = new TiffOutputSet();
+			if (exif != null) {
+				outputSet = exif.getOutputSet();
 			}
+		}
 
-			final TiffOutputDirectory rootDirectory = outputSet.getOrCreateRootDirectory();
-			final TiffOutputDirectory exifDirectory = outputSet.getOrCreateExifDirectory();
-
-			if (metadata.getTitle() != null) {
-				rootDirectory.removeField(MicrosoftTagConstants.EXIF_TAG_XPTITLE);
-				rootDirectory.add(MicrosoftTagConstants.EXIF_TAG_XPTITLE, metadata.getTitle());
+		if (outputSet == null) {
+			outputSet = new TiffOutputSet();
+		}
 
-				rootDirectory.removeField(TiffTagConstants.TIFF_TAG_IMAGE_DESCRIPTION);
-				rootDirectory.add(TiffTagConstants.TIFF_TAG_IMAGE_DESCRIPTION, metadata.getTitle());
-			}
+		final TiffOutputDirectory rootDirectory = outputSet.getOrCreateRootDirectory();
+		final TiffOutputDirectory exifDirectory = outputSet.getOrCreateExifDirectory();
 
-			if (metadata.getComment() != null) {
-				rootDirectory.removeField(MicrosoftTagConstants.EXIF_TAG_XPCOMMENT);
-				rootDirectory.add(MicrosoftTagConstants.EXIF_TAG_XPCOMMENT, metadata.getComment());
-				exifDirectory.removeField(ExifTagConstants.EXIF_TAG_USER_COMMENT);
-				exifDirectory.add(ExifTagConstants.EXIF_TAG_USER_COMMENT, metadata.getComment());
-			}
+		if (metadata.getTitle() != null) {
+			rootDirectory.removeField(MicrosoftTagConstants.EXIF_TAG_XPTITLE);
+			rootDirectory.add(MicrosoftTagConstants.EXIF_TAG_XPTITLE, metadata.getTitle());
 
-			if (metadata.getSubject() != null) {
-				rootDirectory.removeField(MicrosoftTagConstants.EXIF_TAG_XPSUBJECT);
-				rootDirectory.add(MicrosoftTagConstants.EXIF_TAG_XPSUBJECT, metadata.getSubject());
-			}
+			rootDirectory.removeField(TiffTagConstants.TIFF_TAG_IMAGE_DESCRIPTION);
+			rootDirectory.add(TiffTagConstants.TIFF_TAG_IMAGE_DESCRIPTION, metadata.getTitle());
+		}
 
-			try {
-				os = new FileOutputStream(tempFile);
-				os = new BufferedOutputStream(os);
-				new ExifRewriter().updateExifMetadataLossless(jpegImageFile, os, outputSet);
-			}
-			catch (Exception e) {
-				Logger.warning("Error storing EXIF data lossless - try lossy approach");
-				os = new FileOutputStream(tempFile);
-				os = new BufferedOutputStream(os);
-				new ExifRewriter().updateExifMetadataLossy(jpegImageFile, os, outputSet);
-			}
+		if (metadata.getComment() != null) {
+			rootDirectory.removeField(MicrosoftTagConstants.EXIF_TAG_XPCOMMENT);
+			rootDirectory.add(MicrosoftTagConstants.EXIF_TAG_XPCOMMENT, metadata.getComment());
+			exifDirectory.removeField(ExifTagConstants.EXIF_TAG_USER_COMMENT);
+			exifDirectory.add(ExifTagConstants.EXIF_TAG_USER_COMMENT, metadata.getComment());
+		}
 
-			IoUtils.closeQuietly(true, os);
+		if (metadata.getSubject() != null) {
+			rootDirectory.removeField(MicrosoftTagConstants.EXIF_TAG_XPSUBJECT);
+			rootDirectory.add(MicrosoftTagConstants.EXIF_TAG_XPSUBJECT, metadata.getSubject());
+		}
 
-			if (!FileUtil.moveFile(tempFile, jpegImageFile)) {
-				throw new IOException("Failed to rename file " + tempFileName + " to " + jpegImageFileName);
-			}
+		ByteArrayOutputStream os = new ByteArrayOutputStream(headerBytes.length);
+		try {
+			new ExifRewriter().updateExifMetadataLossless(headerBytes, os, outputSet);
 		}
-		finally {
-			IoUtils.closeQuietly(false, os);
+		catch (Exception e) {
+			Logger.warning("Error storing EXIF data lossless - try lossy approach");
+			os.reset();
+			new ExifRewriter().updateExifMetadataLossy(headerBytes, os, outputSet);
 		}
-
+		return os.toByteArray();
 	}
 
 	/**
 	 * Change the XMP metadata.
 	 *
-	 * @param jpegImageFileName
-	 *            the file for which metadata should be changed.
+	 * @param headerBytes
+	 *            the header of the file for which metadata should be changed.
+	 * @param xmpString
+	 *            the current XMP data of the file.
 	 * @param metadata
 	 *            the new metadata.
+	 * @return the changed header.
 	 *
 	 * @throws ImageReadException
 	 *             thrown if the metadata cannot be read.
@@ -437,68 +455,46 @@ public final class JpegMetadataUtil {
 	 * @throws XMPException
 	 *             thrown in case of issues with XML handling.
 	 */
-	@SuppressWarnings("resource")
-	private static void changeXmpMetadata(final String jpegImageFileName, final JpegMetadata metadata)
-			throws IOException, ImageReadException, ImageWriteException, XMPException {
-		File jpegImageFile = new File(jpegImageFileName);
-		String tempFileName = jpegImageFileName + ".temp";
-		File tempFile = new File(tempFileName);
-
-		verifyTempFile(tempFile);
-
-		OutputStream os = null;
-		try {
-			final String xmpString = Imaging.getXmpXml(jpegImageFile);
-
-			XmpHandler parser = new XmpHandler(xmpString);
-
-			if (changeExifAllowed()) {
-				// Change standard fields only if EXIF allowed
-				parser.setDcTitle(metadata.getTitle());
-				parser.setDcDescription(metadata.getDescription());
-				parser.setDcSubject(metadata.getSubject());
-				parser.setUserComment(metadata.getComment());
-				parser.setMicrosoftPerson(metadata.getPerson());
-			}
+	private static byte[] changeXmpMetadata(final byte[] headerBytes, final String xmpString,
+			final JpegMetadata metadata) throws IOException, ImageReadException, ImageWriteException, XMPException {
+		XmpHandler parser = new XmpHandler(xmpString);
 
-			parser.setJeItem(XmpHandler.ITEM_TITLE, metadata.getTitle());
-			parser.setJeItem(XmpHandler.ITEM_DESCRIPTION, metadata.getDescription());
-			parser.setJeItem(XmpHandler.ITEM_SUBJECT, metadata.getSubject());
-			parser.setJeItem(XmpHandler.ITEM_COMMENT, metadata.getComment());
-			parser.setJeItem(XmpHandler.ITEM_PERSON, metadata.getPerson());
-
-			parser.setJeItem(XmpHandler.ITEM_X_CENTER, metadata.getXCenterString());
-			parser.setJeItem(XmpHandler.ITEM_Y_CENTER, metadata.getYCenterString());
-			parser.setJeItem(XmpHandler.ITEM_OVERLAY_SCALE_FACTOR, metadata.getOverlayScaleFactorString());
-			parser.setJeItem(XmpHandler.ITEM_X_POSITION, metadata.getXPositionString());
-			parser.setJeItem(XmpHandler.ITEM_Y_POSITION, metadata.getYPositionString());
-			parser.setJeItem(XmpHandler.ITEM_ZOOM_FACTOR, metadata.getZoomFactorString());
-			parser.setJeDate(XmpHandler.ITEM_ORGANIZE_DATE, metadata.getOrganizeDate());
-			parser.setJeItem(XmpHandler.ITEM_RIGHT_LEFT, metadata.getRightLeftString());
-			parser.setJeItem(XmpHandler.ITEM_BRIGHTNESS, metadata.getBrightnessString());
-			parser.setJeItem(XmpHandler.ITEM_CONTRAST, metadata.getContrastString());
-			parser.setJeItem(XmpHandler.ITEM_SATURATION, metadata.getSaturationString());
-			parser.setJeItem(XmpHandler.ITEM_COLOR_TEMPERATURE, metadata.getColorTemperatureString());
-			parser.setJeItem(XmpHandler.ITEM_OVERLAY_COLOR, metadata.getOverlayColorString());
-			parser.setJeItem(XmpHandler.ITEM_PUPIL_SIZE, metadata.getPupilSizeString());
-			parser.setJeItem(XmpHandler.ITEM_PUPIL_X_OFFSET, metadata.getPupilXOffsetString());
-			parser.setJeItem(XmpHandler.ITEM_PUPIL_Y_OFFSET, metadata.getPupilYOffsetString());
-			parser.setJeInt(XmpHandler.ITEM_FLAGS, metadata.getFlags());
-
-			os = new FileOutputStream(tempFile);
-			os = new BufferedOutputStream(os);
-
-			new JpegXmpRewriter().updateXmpXml(jpegImageFile, os, parser.getXmpString());
-
-			IoUtils.closeQuietly(true, os);
-
-			if (!FileUtil.moveFile(tempFile, jpegImageFile)) {
-				throw new IOException("Failed to rename file " + tempFileName + " to " + jpegImageFileName);
-			}
-		}
-		finally {
-			IoUtils.closeQuietly(false, os);
+		if (changeExifAllowed()) {
+			// Change standard fields only if EXIF allowed
+			parser.setDcTitle(metadata.getTitle());
+			parser.setDcDescription(metadata.getDescription());
+			parser.setDcSubject(metadata.getSubject());
+			parser.setUserComment(metadata.getComment());
+			parser.setMicrosoftPerson(metadata.getPerson());
 		}
+
+		parser.setJeItem(XmpHandler.ITEM_TITLE, metadata.getTitle());
+		parser.setJeItem(XmpHandler.ITEM_DESCRIPTION, metadata.getDescription());
+		parser.setJeItem(XmpHandler.ITEM_SUBJECT, metadata.getSubject());
+		parser.setJeItem(XmpHandler.ITEM_COMMENT, metadata.getComment());
+		parser.setJeItem(XmpHandler.ITEM_PERSON, metadata.getPerson());
+
+		parser.setJeItem(XmpHandler.ITEM_X_CENTER, metadata.getXCenterString());
+		parser.setJeItem(XmpHandler.ITEM_Y_CENTER, metadata.getYCenterString());
+		parser.setJeItem(XmpHandler.ITEM_OVERLAY_SCALE_FACTOR, metadata.getOverlayScaleFactorString());
+		parser.setJeItem(XmpHandler.ITEM_X_POSITION, metadata.getXPositionString());
+		parser.setJeItem(XmpHandler.ITEM_Y_POSITION, metadata.getYPositionString());
+		parser.setJeItem(XmpHandler.ITEM_ZOOM_FACTOR, metadata.getZoomFactorString());
+		parser.setJeDate(XmpHandler.ITEM_ORGANIZE_DATE, metadata.getOrganizeDate());
+		parser.setJeItem(XmpHandler.ITEM_RIGHT_LEFT, metadata.getRightLeftString());
+		parser.setJeItem(XmpHandler.ITEM_BRIGHTNESS, metadata.getBrightnessString());
+		parser.setJeItem(XmpHandler.ITEM_CONTRAST, metadata.getContrastString());
+		parser.setJeItem(XmpHandler.ITEM_SATURATION, metadata.getSaturationString());
+		parser.setJeItem(XmpHandler.ITEM_COLOR_TEMPERATURE, metadata.getColorTemperatureString());
+		parser.setJeItem(XmpHandler.ITEM_OVERLAY_COLOR, metadata.getOverlayColorString());
+		parser.setJeItem(XmpHandler.ITEM_PUPIL_SIZE, metadata.getPupilSizeString());
+		parser.setJeItem(XmpHandler.ITEM_PUPIL_X_OFFSET, metadata.getPupilXOffsetString());
+		parser.setJeItem(XmpHandler.ITEM_PUPIL_Y_OFFSET, metadata.getPupilYOffsetString());
+		parser.setJeInt(XmpHandler.ITEM_FLAGS, metadata.getFlags());
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream(headerBytes.length);
+		new JpegXmpRewriter().updateXmpXml(headerBytes, os, parser.getXmpString());
+		return os.toByteArray();
 	}
 
 	/**
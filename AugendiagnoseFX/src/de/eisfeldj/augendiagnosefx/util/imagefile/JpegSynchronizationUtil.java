@@ -1,6 +1,11 @@
 package de.eisfeldj.augendiagnosefx.util.imagefile;
 
+import java.io.File;
 import java.util.HashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import de.eisfeldj.augendiagnosefx.controller.MainController;
 import de.eisfeldj.augendiagnosefx.util.DialogUtil;
@@ -12,6 +17,9 @@ import javafx.application.Platform;
 /**
  * Utility class to help storing metadata in jpg files in a synchronized way, preventing to store the same file twice in
  * parallel.
+ *
+ * <p>Files are written by a small pool of writer threads. Requests on the same file are coalesced, so that only the
+ * latest metadata queued for a file is written.
  */
 public final class JpegSynchronizationUtil {
 
@@ -22,36 +30,75 @@ public final class JpegSynchronizationUtil {
 		throw new UnsupportedOperationException();
 	}
 
+	/**
+	 * The number of threads writing jpg files in parallel.
+	 */
+	private static final int WRITER_THREAD_COUNT = 2;
+
+	/**
+	 * The maximum number of files with queued save requests. If this number is reached, then further requests from
+	 * background threads wait until requests have been processed.
+	 */
+	private static final int MAX_QUEUED_SAVE_REQUESTS = 32;
+
+	/**
+	 * The time (in milliseconds) after which idle writer threads terminate.
+	 */
+	private static final long WRITER_KEEP_ALIVE_TIME = 1000;
+
+	/**
+	 * Lock object for the save requests.
+	 */
+	private static final Object LOCK = new Object();
+
 	/**
 	 * Storage for currently running save tasks.
 	 */
 	private static HashMap<String, JpegMetadata> mRunningSaveRequests = new HashMap<>();
 	/**
-	 * Storage for queued save tasks.
+	 * Storage for queued save tasks. Only the latest request per file is kept.
 	 */
 	private static HashMap<String, JpegMetadata> mQueuedSaveRequests = new HashMap<>();
 
 	/**
-	 * This method handles a request to retrieve metadata for a file. If there is no running async task to update
-	 * metadata for this file, then the data is taken directly from the file. Otherwise, it is taken from the last
-	 * metadata to be stored for this file.
+	 * The executor writing the jpg files. The threads are daemon threads, so that exiting is not blocked by a stuck
+	 * write. Pending writes are awaited on exit for a limited time. (As files are written via a temporary file, an
+	 * interrupted write does not damage the file.)
+	 */
+	private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(WRITER_THREAD_COUNT,
+			WRITER_THREAD_COUNT, WRITER_KEEP_ALIVE_TIME, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+			new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					Thread thread = new Thread(runnable, "JpegSaver");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	static {
+		EXECUTOR.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * This method handles a request to retrieve metadata for a file. If there is a running async task to update
+	 * metadata for this file, then it is taken from the last metadata to be stored for this file. Otherwise, it is taken
+	 * from the metadata cache, if the file is unchanged since it was cached, or else directly from the file. Metadata
+	 * stored in the sidecar index has precedence over all of these.
 	 *
 	 * @param pathname
 	 *            the path of the jpg file.
 	 * @return null for non-JPEG files. The metadata from the file if readable. Otherwise empty metadata.
 	 */
 	public static JpegMetadata getJpegMetadata(final String pathname) {
-		JpegMetadata cachedMetadata = null;
-
-		try {
-			JpegMetadataUtil.checkJpeg(pathname);
-		}
-		catch (Exception e) {
-			Logger.warning(e.getMessage());
-			return null;
+		// Metadata in the sidecar index is more recent than the metadata in the file. This applies also if sidecar mode
+		// has been disabled, as long as the index contains changes which are not yet written into the file.
+		JpegMetadata cachedMetadata = JpegMetadataSidecar.get(pathname);
+		if (cachedMetadata != null) {
+			return cachedMetadata;
 		}
 
-		synchronized (JpegSynchronizationUtil.class) {
+		synchronized (LOCK) {
 			if (mQueuedSaveRequests.containsKey(pathname)) {
 				cachedMetadata = mQueuedSaveRequests.get(pathname);
 			}
@@ -64,20 +111,41 @@ public final class JpegSynchronizationUtil {
 			Logger.info("Retrieve cached metadata for file " + pathname);
 			return cachedMetadata;
 		}
-		else {
-			try {
-				return JpegMetadataUtil.getMetadata(pathname);
-			}
-			catch (Exception e) {
-				Logger.error("Failed to retrieve metadata for file " + pathname, e);
-				return new JpegMetadata();
-			}
+
+		// Only metadata of valid JPEG files is cached.
+		cachedMetadata = JpegMetadataCache.get(pathname);
+		if (cachedMetadata != null) {
+			return cachedMetadata;
+		}
+
+		// Take the file stamp before reading, so that metadata is not cached for a file changed while reading.
+		File file = new File(pathname);
+		long lastModified = file.lastModified();
+		long size = file.length();
+
+		JpegHeader header;
+		try {
+			header = JpegMetadataUtil.checkJpeg(pathname);
+		}
+		catch (Exception e) {
+			Logger.warning(e.getMessage());
+			return null;
+		}
+
+		try {
+			JpegMetadata metadata = JpegMetadataUtil.getMetadata(header);
+			JpegMetadataCache.put(pathname, metadata, lastModified, size);
+			return metadata;
+		}
+		catch (Exception e) {
+			Logger.error("Failed to retrieve metadata for file " + pathname, e);
+			return new JpegMetadata();
 		}
 	}
 
 	/**
-	 * This method handles a request to update metadata on a file. If no such request on the file is in process, then an
-	 * async task is started to update the metadata. Otherwise, it is put on the queue.
+	 * This method handles a request to update metadata on a file. In sidecar mode, the metadata is stored in the sidecar
+	 * index. Otherwise, it is queued for writing into the file.
 	 *
 	 * @param pathname
 	 *            the path of the jpg file.
@@ -93,16 +161,57 @@ public final class JpegSynchronizationUtil {
 			return;
 		}
 
-		synchronized (JpegSynchronizationUtil.class) {
-			MainController.setSaveIconVisibility(true);
+		if (JpegMetadataSidecar.isEnabled()) {
+			if (JpegMetadataSidecar.put(pathname, metadata)) {
+				return;
+			}
+		}
+		else {
+			// The metadata written into the file replaces the metadata in the sidecar index.
+			JpegMetadataSidecar.remove(pathname);
+		}
+
+		queueSaveRequest(pathname, metadata);
+	}
+
+	/**
+	 * Queue a request to write metadata into a file. If no such request on the file is in process, then the file is
+	 * queued for the writer threads. Otherwise, the metadata replaces any metadata already queued for the file.
+	 *
+	 * <p>If called from a background thread while too many files are queued, then this method waits until requests
+	 * have been processed. The JavaFX application thread is never blocked.
+	 *
+	 * @param pathname
+	 *            the path of the jpg file.
+	 * @param metadata
+	 *            the metadata.
+	 */
+	static void queueSaveRequest(final String pathname, final JpegMetadata metadata) {
+		synchronized (LOCK) {
+			if (!Platform.isFxApplicationThread()) {
+				while (mQueuedSaveRequests.size() >= MAX_QUEUED_SAVE_REQUESTS
+						&& !mQueuedSaveRequests.containsKey(pathname)) {
+					try {
+						LOCK.wait();
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+			}
 
-			if (mRunningSaveRequests.containsKey(pathname)) {
-				mQueuedSaveRequests.put(pathname, metadata);
+			boolean isQueued = mQueuedSaveRequests.containsKey(pathname);
+			mQueuedSaveRequests.put(pathname, metadata);
+			if (isQueued) {
+				Logger.info("Replacing queued store request for file " + pathname);
 			}
-			else {
-				triggerJpegSaverTask(pathname, metadata);
+			else if (!mRunningSaveRequests.containsKey(pathname)) {
+				EXECUTOR.execute(new JpegSaverTask(pathname));
 			}
 		}
+
+		updateSaveIconVisibility();
 	}
 
 	/**
@@ -111,88 +220,121 @@ public final class JpegSynchronizationUtil {
 	 * @return true if there is a running or pending save request.
 	 */
 	public static boolean hasRunningSaveRequests() {
-		return mRunningSaveRequests.size() > 0 || mQueuedSaveRequests.size() > 0;
+		synchronized (LOCK) {
+			return mRunningSaveRequests.size() > 0 || mQueuedSaveRequests.size() > 0;
+		}
 	}
 
 	/**
-	 * Do cleanup from the last JpegSaverThread and trigger the next task on the same file, if existing.
+	 * Wait until all running and pending save requests are completed.
 	 *
-	 * @param pathname
-	 *            The path of the jpg file.
+	 * @throws InterruptedException
+	 *             thrown if the thread is interrupted while waiting.
 	 */
-	private static void triggerNextFromQueue(final String pathname) {
-		synchronized (JpegSynchronizationUtil.class) {
-			mRunningSaveRequests.remove(pathname);
-			if (mQueuedSaveRequests.containsKey(pathname)) {
-				Logger.info("Executing queued store request for file " + pathname);
-				JpegMetadata newMetadata = mQueuedSaveRequests.get(pathname);
-				mQueuedSaveRequests.remove(pathname);
-				triggerJpegSaverTask(pathname, newMetadata);
-			}
-			if (!hasRunningSaveRequests()) {
-				Platform.runLater(new Runnable() {
-					@Override
-					public void run() {
-						MainController.setSaveIconVisibility(false);
-					}
-				});
+	public static void flush() throws InterruptedException {
+		synchronized (LOCK) {
+			while (hasRunningSaveRequests()) {
+				LOCK.wait();
 			}
 		}
 	}
 
 	/**
-	 * Utility method to start the JpegSaverThread so save a jpg file with metadata.
+	 * Wait until all running and pending save requests are completed, but at most for the given time.
 	 *
-	 * @param pathname
-	 *            the path of the jpg file.
-	 * @param metadata
-	 *            the metadata.
+	 * @param timeout
+	 *            the maximum waiting time in milliseconds.
+	 * @return true if there are no more running or pending save requests.
+	 * @throws InterruptedException
+	 *             thrown if the thread is interrupted while waiting.
+	 */
+	public static boolean awaitIdle(final long timeout) throws InterruptedException {
+		long endTime = System.currentTimeMillis() + timeout;
+		synchronized (LOCK) {
+			while (hasRunningSaveRequests()) {
+				long remainingTime = endTime - System.currentTimeMillis();
+				if (remainingTime <= 0) {
+					return false;
+				}
+				LOCK.wait(remainingTime);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Update the visibility of the save icon in the JavaFX application thread, based on the state at that time.
 	 */
-	private static void triggerJpegSaverTask(final String pathname, final JpegMetadata metadata) {
-		mRunningSaveRequests.put(pathname, metadata);
-		JpegSaverThread thread = new JpegSaverThread(pathname, metadata);
-		thread.start();
+	private static void updateSaveIconVisibility() {
+		Platform.runLater(new Runnable() {
+			@Override
+			public void run() {
+				MainController.setSaveIconVisibility(hasRunningSaveRequests());
+			}
+		});
 	}
 
 	/**
-	 * Thread to save a JPEG file asynchronously with changed metadata.
+	 * Task to save a JPEG file asynchronously with the latest metadata queued for this file.
 	 */
-	private static final class JpegSaverThread extends Thread {
+	private static final class JpegSaverTask implements Runnable {
 		/**
 		 * The path of the jpg file.
 		 */
-		private String mPathname;
-		/**
-		 * The changed metadata.
-		 */
-		private JpegMetadata mMetadata;
+		private final String mPathname;
 
 		/**
 		 * Constructor for the task.
 		 *
 		 * @param pathname
 		 *            the path of the jpg file.
-		 * @param metadata
-		 *            the metadata.
 		 */
-		private JpegSaverThread(final String pathname, final JpegMetadata metadata) {
+		private JpegSaverTask(final String pathname) {
 			this.mPathname = pathname;
-			this.mMetadata = metadata;
 		}
 
 		@Override
 		public void run() {
-			Logger.info("Starting thread to save file " + mPathname);
+			JpegMetadata metadata;
+			synchronized (LOCK) {
+				metadata = mQueuedSaveRequests.remove(mPathname);
+				if (metadata == null) {
+					return;
+				}
+				mRunningSaveRequests.put(mPathname, metadata);
+				LOCK.notifyAll();
+			}
+
+			Logger.info("Starting to save file " + mPathname);
 
 			try {
-				JpegMetadataUtil.changeMetadata(mPathname, mMetadata);
+				JpegMetadataUtil.changeMetadata(mPathname, metadata);
 				Logger.info("Successfully saved file " + mPathname);
+				if (JpegMetadataUtil.changeJpegAllowed()) {
+					File file = new File(mPathname);
+					JpegMetadataCache.put(mPathname, metadata, file.lastModified(), file.length());
+					JpegMetadataSidecar.onFileWritten(mPathname, metadata);
+				}
+				else {
+					JpegMetadataCache.invalidate(mPathname);
+				}
 			}
 			catch (Exception e) {
+				JpegMetadataCache.invalidate(mPathname);
 				Logger.error("Failed to save file " + mPathname, e);
 				DialogUtil.displayError(ResourceConstants.MESSAGE_ERROR_FAILED_TO_STORE_METADATA, mPathname);
 			}
-			triggerNextFromQueue(mPathname);
+
+			synchronized (LOCK) {
+				mRunningSaveRequests.remove(mPathname);
+				if (mQueuedSaveRequests.containsKey(mPathname)) {
+					Logger.info("Executing queued store request for file " + mPathname);
+					EXECUTOR.execute(new JpegSaverTask(mPathname));
+				}
+				LOCK.notifyAll();
+			}
+
+			updateSaveIconVisibility();
 		}
 	}
 
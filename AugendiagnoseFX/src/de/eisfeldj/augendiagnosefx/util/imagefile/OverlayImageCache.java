@@ -0,0 +1,274 @@
+package de.eisfeldj.augendiagnosefx.util.imagefile;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.eisfeldj.augendiagnosefx.util.imagefile.EyePhoto.RightLeft;
+
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+
+/**
+ * In-memory cache of warped overlay images, to prevent frequent recalculation while sliding brightness and contrast,
+ * and while displaying several eye photos with overlays at the same time.
+ *
+ * <p>The cache is bounded by the memory used by the cached images. Least recently used images are removed first.
+ */
+public final class OverlayImageCache {
+	/**
+	 * The maximum memory (in bytes) used by the cached images.
+	 */
+	private static final long MAX_BYTES = 64L * 1024 * 1024; // MAGIC_NUMBER
+
+	/**
+	 * The number of bytes per pixel.
+	 */
+	private static final int BYTES_PER_PIXEL = 4;
+
+	/**
+	 * The cache entries, in order of access.
+	 */
+	private static final Map<Key, Image> CACHE = new LinkedHashMap<>(16, 0.75f, true); // MAGIC_NUMBER
+
+	/**
+	 * The memory currently used by the cached images.
+	 */
+	private static long mSizeInBytes = 0;
+
+	/**
+	 * The number of cache hits.
+	 */
+	private static long mHitCount = 0;
+
+	/**
+	 * The number of cache misses.
+	 */
+	private static long mMissCount = 0;
+
+	/**
+	 * Hide default constructor.
+	 */
+	private OverlayImageCache() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Get a cached overlay image.
+	 *
+	 * @param overlayType
+	 *            The overlay type.
+	 * @param side
+	 *            The side of the eye.
+	 * @param color
+	 *            The overlay color.
+	 * @param pupilXOffset
+	 *            The horizontal offset of the pupil.
+	 * @param pupilYOffset
+	 *            The vertical offset of the pupil.
+	 * @param pupilSize
+	 *            The relative size of the pupil.
+	 * @return The cached overlay image, or null if not cached.
+	 */
+	static Image get(final int overlayType, final RightLeft side, final Color color,
+			final float pupilXOffset, final float pupilYOffset, final float pupilSize) {
+		Key key = new Key(overlayType, side, color, pupilXOffset, pupilYOffset, pupilSize);
+		synchronized (CACHE) {
+			Image image = CACHE.get(key);
+			if (image == null) {
+				mMissCount++;
+			}
+			else {
+				mHitCount++;
+			}
+			return image;
+		}
+	}
+
+	/**
+	 * Check if an overlay image is cached, without counting this as cache access.
+	 *
+	 * @param overlayType
+	 *            The overlay type.
+	 * @param side
+	 *            The side of the eye.
+	 * @param color
+	 *            The overlay color.
+	 * @param pupilXOffset
+	 *            The horizontal offset of the pupil.
+	 * @param pupilYOffset
+	 *            The vertical offset of the pupil.
+	 * @param pupilSize
+	 *            The relative size of the pupil.
+	 * @return true if the overlay image is cached.
+	 */
+	static boolean contains(final int overlayType, final RightLeft side, final Color color,
+			final float pupilXOffset, final float pupilYOffset, final float pupilSize) {
+		Key key = new Key(overlayType, side, color, pupilXOffset, pupilYOffset, pupilSize);
+		synchronized (CACHE) {
+			return CACHE.containsKey(key);
+		}
+	}
+
+	/**
+	 * Store an overlay image in the cache.
+	 *
+	 * @param overlayType
+	 *            The overlay type.
+	 * @param side
+	 *            The side of the eye.
+	 * @param color
+	 *            The overlay color.
+	 * @param pupilXOffset
+	 *            The horizontal offset of the pupil.
+	 * @param pupilYOffset
+	 *            The vertical offset of the pupil.
+	 * @param pupilSize
+	 *            The relative size of the pupil.
+	 * @param image
+	 *            The overlay image.
+	 */
+	static void put(final int overlayType, final RightLeft side, final Color color, // SUPPRESS_CHECKSTYLE
+			final float pupilXOffset, final float pupilYOffset, final float pupilSize, final Image image) {
+		Key key = new Key(overlayType, side, color, pupilXOffset, pupilYOffset, pupilSize);
+		long imageSize = getSizeInBytes(image);
+		if (imageSize > MAX_BYTES) {
+			return;
+		}
+
+		synchronized (CACHE) {
+			Image oldImage = CACHE.put(key, image);
+			if (oldImage != null) {
+				mSizeInBytes -= getSizeInBytes(oldImage);
+			}
+			mSizeInBytes += imageSize;
+
+			Iterator<Map.Entry<Key, Image>> iterator = CACHE.entrySet().iterator();
+			while (mSizeInBytes > MAX_BYTES && iterator.hasNext()) {
+				Map.Entry<Key, Image> eldest = iterator.next();
+				mSizeInBytes -= getSizeInBytes(eldest.getValue());
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Clear the cache.
+	 */
+	public static void clear() {
+		synchronized (CACHE) {
+			CACHE.clear();
+			mSizeInBytes = 0;
+		}
+	}
+
+	/**
+	 * Get the memory currently used by the cached images.
+	 *
+	 * @return The memory in bytes.
+	 */
+	public static long getSizeInBytes() {
+		synchronized (CACHE) {
+			return mSizeInBytes;
+		}
+	}
+
+	/**
+	 * Get the number of cache hits.
+	 *
+	 * @return The number of cache hits.
+	 */
+	public static long getHitCount() {
+		synchronized (CACHE) {
+			return mHitCount;
+		}
+	}
+
+	/**
+	 * Get the number of cache misses.
+	 *
+	 * @return The number of cache misses.
+	 */
+	public static long getMissCount() {
+		synchronized (CACHE) {
+			return mMissCount;
+		}
+	}
+
+	/**
+	 * Get the memory used by an image.
+	 *
+	 * @param image
+	 *            The image.
+	 * @return The memory in bytes.
+	 */
+	private static long getSizeInBytes(final Image image) {
+		return (long) image.getWidth() * (long) image.getHeight() * BYTES_PER_PIXEL;
+	}
+
+	/**
+	 * The key of a cached overlay image, consisting of all parameters of the overlay.
+	 */
+	private static final class Key {
+		// JAVADOC:OFF
+		private final int mOverlayType;
+		private final RightLeft mSide;
+		private final Color mColor;
+		private final float mPupilXOffset;
+		private final float mPupilYOffset;
+		private final float mPupilSize;
+
+		// JAVADOC:ON
+
+		/**
+		 * Constructor.
+		 *
+		 * @param overlayType
+		 *            The overlay type.
+		 * @param side
+		 *            The side of the eye.
+		 * @param color
+		 *            The overlay color.
+		 * @param pupilXOffset
+		 *            The horizontal offset of the pupil.
+		 * @param pupilYOffset
+		 *            The vertical offset of the pupil.
+		 * @param pupilSize
+		 *            The relative size of the pupil.
+		 */
+		private Key(final int overlayType, final RightLeft side, final Color color,
+				final float pupilXOffset, final float pupilYOffset, final float pupilSize) {
+			mOverlayType = overlayType;
+			mSide = side;
+			mColor = color;
+			mPupilXOffset = pupilXOffset;
+			mPupilYOffset = pupilYOffset;
+			mPupilSize = pupilSize;
+		}
+
+		@Override
+		public boolean equals(final Object other) {
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key otherKey = (Key) other;
+			return mOverlayType == otherKey.mOverlayType // BOOLEAN_EXPRESSION_COMPLEXITY
+					&& mSide == otherKey.mSide
+					&& mColor.equals(otherKey.mColor)
+					&& Float.compare(mPupilXOffset, otherKey.mPupilXOffset) == 0
+					&& Float.compare(mPupilYOffset, otherKey.mPupilYOffset) == 0
+					&& Float.compare(mPupilSize, otherKey.mPupilSize) == 0;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = mOverlayType;
+			result = 31 * result + (mSide == null ? 0 : mSide.hashCode()); // MAGIC_NUMBER
+			result = 31 * result + mColor.hashCode(); // MAGIC_NUMBER
+			result = 31 * result + Float.floatToIntBits(mPupilXOffset); // MAGIC_NUMBER
+			result = 31 * result + Float.floatToIntBits(mPupilYOffset); // MAGIC_NUMBER
+			result = 31 * result + Float.floatToIntBits(mPupilSize); // MAGIC_NUMBER
+			return result;
+		}
+	}
+}
@@ -0,0 +1,216 @@
+package de.eisfeldj.augendiagnosefx.util.imagefile;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import de.eisfeldj.augendiagnosefx.util.imagefile.EyePhoto.RightLeft;
+
+import javafx.application.Platform;
+import javafx.scene.paint.Color;
+
+import static de.eisfeldj.augendiagnosefx.util.imagefile.ImageUtil.OVERLAY_SIZE;
+
+/**
+ * Calculation of the displacement field warping the overlays due to pupil size and position.
+ *
+ * <p>The field is calculated in row stripes in parallel, into reusable buffers. Asynchronous requests are calculated
+ * outside the FX thread, so that the FX thread only needs to upload the finished field into the overlay image. Requests
+ * superseded by newer parameters can be cancelled.
+ */
+public final class OverlayWarp {
+	/**
+	 * The number of rows calculated in one stripe.
+	 */
+	private static final int ROWS_PER_STRIPE = 64;
+
+	/**
+	 * The size of a displacement buffer - two samples per pixel.
+	 */
+	private static final int BUFFER_SIZE = 2 * OVERLAY_SIZE * OVERLAY_SIZE;
+
+	/**
+	 * The maximum number of buffers kept for reuse.
+	 */
+	private static final int MAX_POOLED_BUFFERS = 2;
+
+	/**
+	 * The executor handling the asynchronous requests one after the other.
+	 */
+	private static final ExecutorService REQUEST_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			Thread thread = new Thread(runnable, "OverlayWarpRequest");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/**
+	 * The buffers available for reuse.
+	 */
+	private static final Deque<float[]> BUFFER_POOL = new ArrayDeque<>();
+
+	/**
+	 * Hide default constructor.
+	 */
+	private OverlayWarp() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Request the warped overlay image. The displacement field is calculated in the background, and then the overlay
+	 * image is created in the FX thread and stored in the overlay cache.
+	 *
+	 * @param overlayType
+	 *            The overlay type.
+	 * @param side
+	 *            The side of the eye.
+	 * @param color
+	 *            The overlay color.
+	 * @param pupilXOffset
+	 *            The horizontal offset of the pupil.
+	 * @param pupilYOffset
+	 *            The vertical offset of the pupil.
+	 * @param pupilSize
+	 *            The relative size of the pupil.
+	 * @param onReady
+	 *            Action executed in the FX thread after the overlay image has been cached.
+	 * @return The request, or null if the overlay image is already cached.
+	 */
+	public static Request request(final int overlayType, final RightLeft side, final Color color, // SUPPRESS_CHECKSTYLE
+			final float pupilXOffset, final float pupilYOffset, final float pupilSize, final Runnable onReady) {
+		if (OverlayImageCache.contains(overlayType, side, color, pupilXOffset, pupilYOffset, pupilSize)) {
+			return null;
+		}
+
+		final Request request = new Request();
+		REQUEST_EXECUTOR.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (request.isCancelled()) {
+					return;
+				}
+				final float[] displacement = computeDisplacement(overlayType, pupilXOffset, pupilYOffset, pupilSize, request);
+				if (displacement == null) {
+					return;
+				}
+
+				Platform.runLater(new Runnable() {
+					@Override
+					public void run() {
+						if (request.isCancelled()) {
+							releaseBuffer(displacement);
+							return;
+						}
+						try {
+							ImageUtil.createWarpedOverlayImage(overlayType, side, color,
+									pupilXOffset, pupilYOffset, pupilSize, displacement);
+						}
+						finally {
+							releaseBuffer(displacement);
+						}
+						if (onReady != null) {
+							onReady.run();
+						}
+					}
+				});
+			}
+		});
+		return request;
+	}
+
+	/**
+	 * Calculate the displacement field in parallel stripes. The calling thread waits for the result.
+	 *
+	 * @param overlayType
+	 *            The overlay type.
+	 * @param pupilXOffset
+	 *            The horizontal offset of the pupil.
+	 * @param pupilYOffset
+	 *            The vertical offset of the pupil.
+	 * @param pupilSize
+	 *            The relative size of the pupil.
+	 * @param request
+	 *            The request triggering the calculation, used for cancellation. May be null.
+	 * @return The displacement field, or null if the request was cancelled. The buffer should be released via
+	 *         {@link #releaseBuffer(float[])} after use.
+	 */
+	static float[] computeDisplacement(final int overlayType,
+			final float pupilXOffset, final float pupilYOffset, final float pupilSize, final Request request) {
+		final float[] displacement = obtainBuffer();
+
+		ParallelRows.run(OVERLAY_SIZE, ROWS_PER_STRIPE, new ParallelRows.StripeTask() {
+			@Override
+			public void processRows(final int startRow, final int endRow) {
+				if (request == null || !request.isCancelled()) {
+					ImageUtil.computeOverlayDisplacement(overlayType, pupilXOffset, pupilYOffset, pupilSize,
+							displacement, startRow, endRow);
+				}
+			}
+		});
+
+		if (request != null && request.isCancelled()) {
+			releaseBuffer(displacement);
+			return null;
+		}
+		return displacement;
+	}
+
+	/**
+	 * Get a buffer for the displacement field, reusing a released buffer if possible.
+	 *
+	 * @return The buffer.
+	 */
+	private static float[] obtainBuffer() {
+		synchronized (BUFFER_POOL) {
+			float[] buffer = BUFFER_POOL.poll();
+			if (buffer != null) {
+				return buffer;
+			}
+		}
+		return new float[BUFFER_SIZE];
+	}
+
+	/**
+	 * Release a buffer for reuse.
+	 *
+	 * @param buffer
+	 *            The buffer.
+	 */
+	static void releaseBuffer(final float[] buffer) {
+		synchronized (BUFFER_POOL) {
+			if (BUFFER_POOL.size() < MAX_POOLED_BUFFERS) {
+				BUFFER_POOL.push(buffer);
+			}
+		}
+	}
+
+	/**
+	 * A request for a warped overlay image.
+	 */
+	public static final class Request {
+		/**
+		 * Flag indicating if the request has been cancelled.
+		 */
+		private volatile boolean mCancelled = false;
+
+		/**
+		 * Cancel the request, e.g. because newer parameters have arrived.
+		 */
+		public void cancel() {
+			mCancelled = true;
+		}
+
+		/**
+		 * Check if the request has been cancelled.
+		 *
+		 * @return true if cancelled.
+		 */
+		public boolean isCancelled() {
+			return mCancelled;
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package de.eisfeldj.augendiagnosefx.util.imagefile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Utility for processing the rows of an image in parallel stripes on a shared worker pool.
+ */
+final class ParallelRows {
+	/**
+	 * The executor processing the stripes.
+	 */
+	private static final ExecutorService EXECUTOR =
+			Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					Thread thread = new Thread(runnable, "ParallelRows");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	/**
+	 * Hide default constructor.
+	 */
+	private ParallelRows() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Process rows in parallel stripes. The calling thread waits until all stripes are processed.
+	 *
+	 * @param rowCount
+	 *            The number of rows.
+	 * @param rowsPerStripe
+	 *            The number of rows processed in one stripe.
+	 * @param task
+	 *            The task processing a stripe.
+	 */
+	static void run(final int rowCount, final int rowsPerStripe, final StripeTask task) {
+		List<Future<?>> futures = new ArrayList<>();
+		for (int startRow = 0; startRow < rowCount; startRow += rowsPerStripe) {
+			final int stripeStartRow = startRow;
+			final int stripeEndRow = Math.min(startRow + rowsPerStripe, rowCount);
+			futures.add(EXECUTOR.submit(new Runnable() {
+				@Override
+				public void run() {
+					task.processRows(stripeStartRow, stripeEndRow);
+				}
+			}));
+		}
+
+		// Wait for all stripes even if interrupted or if a stripe failed, as they may write into buffers of the caller.
+		boolean interrupted = false;
+		Throwable failure = null;
+		for (Future<?> future : futures) {
+			boolean done = false;
+			while (!done) {
+				try {
+					future.get();
+					done = true;
+				}
+				catch (InterruptedException e) {
+					interrupted = true;
+				}
+				catch (ExecutionException e) {
+					if (failure == null) {
+						failure = e.getCause();
+					}
+					done = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (failure != null) {
+			throw new RuntimeException("Failed to process image rows", failure);
+		}
+	}
+
+	/**
+	 * Task processing a stripe of rows.
+	 */
+	interface StripeTask {
+		/**
+		 * Process a stripe of rows.
+		 *
+		 * @param startRow
+		 *            The first row of the stripe.
+		 * @param endRow
+		 *            The row after the last row of the stripe.
+		 */
+		void processRows(int startRow, int endRow);
+	}
+}
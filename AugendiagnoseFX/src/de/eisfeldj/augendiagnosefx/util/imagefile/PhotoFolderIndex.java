@@ -0,0 +1,613 @@
+package de.eisfeldj.augendiagnosefx.util.imagefile;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import de.eisfeldj.augendiagnosefx.util.Logger;
+import de.eisfeldj.augendiagnosefx.util.PreferenceUtil;
+
+/**
+ * In-memory index of the photo folder, containing the names (with their collation keys) and the eye photo pairs per
+ * name.
+ *
+ * <p>The names are indexed once in the background. Searching a name is a prefix lookup in a sorted map of name parts.
+ * The eye photo pairs of a name are indexed when first requested. The index is refreshed incrementally via a
+ * WatchService. As file system events are not reliable on network shares, the modification date of a folder is checked
+ * in addition when accessing it.
+ */
+public final class PhotoFolderIndex {
+	/**
+	 * The lock for all index data.
+	 */
+	private static final Object LOCK = new Object();
+
+	/**
+	 * The executor building the index of names.
+	 */
+	private static final ExecutorService BUILD_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			Thread thread = new Thread(runnable, "PhotoFolderIndex");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/**
+	 * The indexed root folder.
+	 */
+	private static File mRootFolder = null;
+
+	/**
+	 * The modification date of the root folder when the names were indexed.
+	 */
+	private static long mRootLastModified = 0;
+
+	/**
+	 * The sort order used for the collation keys.
+	 */
+	private static boolean mSortByLastName = false;
+
+	/**
+	 * The build of the index of names, if running.
+	 */
+	private static Future<?> mBuildFuture = null;
+
+	/**
+	 * The names, in sort order.
+	 */
+	private static final List<String> SORTED_NAMES = new ArrayList<>();
+
+	/**
+	 * The collation keys of the names.
+	 */
+	private static final Map<String, CollationKey> COLLATION_KEYS = new HashMap<>();
+
+	/**
+	 * The names, by lower case name parts.
+	 */
+	private static final TreeMap<String, List<String>> NAME_PARTS = new TreeMap<>();
+
+	/**
+	 * The indexed eye photo pairs, by name.
+	 */
+	private static final Map<String, IndexedPhotos> PHOTOS = new HashMap<>();
+
+	/**
+	 * The service watching the root folder and the indexed name folders.
+	 */
+	private static WatchService mWatchService = null;
+
+	/**
+	 * The watched folders, by watch key. The name is null for the root folder.
+	 */
+	private static final Map<WatchKey, String> WATCH_KEYS = new HashMap<>();
+
+	/**
+	 * Hide default constructor.
+	 */
+	private PhotoFolderIndex() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Start building the index of a root folder in the background.
+	 *
+	 * @param rootFolder
+	 *            The root folder containing one folder per name.
+	 */
+	public static void prepare(final File rootFolder) {
+		synchronized (LOCK) {
+			if (rootFolder.equals(mRootFolder)) {
+				return;
+			}
+			clear();
+			mRootFolder = rootFolder;
+			mBuildFuture = BUILD_EXECUTOR.submit(new Runnable() {
+				@Override
+				public void run() {
+					buildNames(rootFolder);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Get the names in the root folder matching a search string, in sort order.
+	 *
+	 * @param rootFolder
+	 *            The root folder containing one folder per name.
+	 * @param searchString
+	 *            A search string. A name matches if one of its parts starts with the search string (case insensitive).
+	 * @return The matching names.
+	 */
+	public static List<String> getNames(final File rootFolder, final String searchString) {
+		prepare(rootFolder);
+		awaitBuild();
+
+		boolean isOutdated;
+		synchronized (LOCK) {
+			if (!rootFolder.equals(mRootFolder)) {
+				// Index of another root folder has been requested in the meantime.
+				clear();
+				mRootFolder = rootFolder;
+				isOutdated = true;
+			}
+			else {
+				isOutdated = rootFolder.lastModified() != mRootLastModified
+						|| mSortByLastName != PreferenceUtil.getPreferenceBoolean(PreferenceUtil.KEY_SORT_BY_LAST_NAME);
+			}
+		}
+		if (isOutdated) {
+			buildNames(rootFolder);
+		}
+
+		synchronized (LOCK) {
+			String prefix = searchString.toLowerCase();
+			if (prefix.length() == 0) {
+				return new ArrayList<>(SORTED_NAMES);
+			}
+
+			Set<String> matchingNames = new LinkedHashSet<>();
+			for (List<String> names : NAME_PARTS.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values()) {
+				matchingNames.addAll(names);
+			}
+			List<String> result = new ArrayList<>(matchingNames);
+			Collections.sort(result, new Comparator<String>() {
+				@Override
+				public int compare(final String name1, final String name2) {
+					return COLLATION_KEYS.get(name1).compareTo(COLLATION_KEYS.get(name2));
+				}
+			});
+			return result;
+		}
+	}
+
+	/**
+	 * Get the eye photo pairs of a name folder, ordered by date descending.
+	 *
+	 * @param folder
+	 *            The name folder.
+	 * @return The eye photo pairs.
+	 */
+	public static EyePhotoPair[] getEyePhotoPairs(final File folder) {
+		String name = folder.getName();
+		long lastModified = folder.lastModified();
+		synchronized (LOCK) {
+			IndexedPhotos indexedPhotos = isIndexed(folder) ? PHOTOS.get(name) : null;
+			if (indexedPhotos != null && indexedPhotos.mLastModified == lastModified) {
+				return indexedPhotos.mPairs.clone();
+			}
+		}
+
+		// List the folder without holding the lock, as this may take long on network shares.
+		EyePhotoPair[] pairs = createEyePhotoList(folder);
+
+		synchronized (LOCK) {
+			if (isIndexed(folder)) {
+				if (!WATCH_KEYS.containsValue(name)) {
+					watch(folder, name);
+				}
+				PHOTOS.put(name, new IndexedPhotos(pairs, lastModified));
+			}
+		}
+		return pairs.clone();
+	}
+
+	/**
+	 * Update the index after a folder has been changed by the application.
+	 *
+	 * @param folder
+	 *            The changed name folder.
+	 */
+	public static void invalidate(final File folder) {
+		synchronized (LOCK) {
+			if (folder.getParentFile() == null || !folder.getParentFile().equals(mRootFolder)) {
+				return;
+			}
+			PHOTOS.remove(folder.getName());
+			updateName(folder.getName());
+			mRootLastModified = mRootFolder.lastModified();
+		}
+	}
+
+	/**
+	 * Clear the index and stop watching.
+	 */
+	private static void clear() {
+		for (WatchKey watchKey : WATCH_KEYS.keySet()) {
+			watchKey.cancel();
+		}
+		WATCH_KEYS.clear();
+		if (mBuildFuture != null) {
+			mBuildFuture.cancel(false);
+			mBuildFuture = null;
+		}
+		mRootFolder = null;
+		mRootLastModified = 0;
+		SORTED_NAMES.clear();
+		COLLATION_KEYS.clear();
+		NAME_PARTS.clear();
+		PHOTOS.clear();
+	}
+
+	/**
+	 * Wait until the index of names is built.
+	 */
+	private static void awaitBuild() {
+		Future<?> buildFuture;
+		synchronized (LOCK) {
+			buildFuture = mBuildFuture;
+		}
+		if (buildFuture == null) {
+			return;
+		}
+		try {
+			buildFuture.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e) {
+			Logger.error("Failed to index the photo folder", e);
+		}
+		catch (CancellationException e) {
+			// Index of another root folder has been requested in the meantime.
+		}
+	}
+
+	/**
+	 * Check if a folder is a name folder of the indexed root folder. Must be called while holding the lock.
+	 *
+	 * @param folder
+	 *            The folder.
+	 * @return true if the folder is indexed.
+	 */
+	private static boolean isIndexed(final File folder) {
+		return folder.getParentFile() != null && folder.getParentFile().equals(mRootFolder);
+	}
+
+	/**
+	 * Build the index of names of the root folder. The folder is listed without holding the lock, and the result
+	 * replaces the index only if the root folder is still indexed. Must not be called while holding the lock.
+	 *
+	 * @param rootFolder
+	 *            The root folder.
+	 */
+	private static void buildNames(final File rootFolder) {
+		// Take the modification date before listing, so that changes during listing trigger another build.
+		long lastModified = rootFolder.lastModified();
+		boolean sortByLastName = PreferenceUtil.getPreferenceBoolean(PreferenceUtil.KEY_SORT_BY_LAST_NAME);
+		synchronized (LOCK) {
+			if (!rootFolder.equals(mRootFolder)) {
+				return;
+			}
+			if (!WATCH_KEYS.containsValue(null)) {
+				watch(rootFolder, null);
+			}
+		}
+
+		File[] folders = rootFolder.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(final File pathname) {
+				return pathname.isDirectory();
+			}
+		});
+		Map<String, CollationKey> collationKeys = new HashMap<>();
+		if (folders != null) {
+			Collator collator = Collator.getInstance();
+			for (File folder : folders) {
+				String name = folder.getName();
+				collationKeys.put(name, collator.getCollationKey(getNameForSorting(name, sortByLastName)));
+			}
+		}
+
+		synchronized (LOCK) {
+			if (!rootFolder.equals(mRootFolder)) {
+				return;
+			}
+			mRootLastModified = lastModified;
+			mSortByLastName = sortByLastName;
+			SORTED_NAMES.clear();
+			COLLATION_KEYS.clear();
+			NAME_PARTS.clear();
+			for (Map.Entry<String, CollationKey> entry : collationKeys.entrySet()) {
+				addName(entry.getKey(), entry.getValue());
+			}
+
+			// Remove pairs of names which do not exist anymore.
+			PHOTOS.keySet().retainAll(COLLATION_KEYS.keySet());
+		}
+	}
+
+	/**
+	 * Add or remove a name in the index, dependent on the existence of its folder. Must be called while holding the
+	 * lock.
+	 *
+	 * @param name
+	 *            The name.
+	 */
+	private static void updateName(final String name) {
+		boolean exists = new File(mRootFolder, name).isDirectory();
+		if (exists && !COLLATION_KEYS.containsKey(name)) {
+			addName(name, Collator.getInstance().getCollationKey(getNameForSorting(name, mSortByLastName)));
+		}
+		else if (!exists && COLLATION_KEYS.containsKey(name)) {
+			removeName(name);
+		}
+	}
+
+	/**
+	 * Add a name to the index. Must be called while holding the lock.
+	 *
+	 * @param name
+	 *            The name.
+	 * @param collationKey
+	 *            The collation key of the name.
+	 */
+	private static void addName(final String name, final CollationKey collationKey) {
+		COLLATION_KEYS.put(name, collationKey);
+
+		int index = Collections.binarySearch(SORTED_NAMES, name, new Comparator<String>() {
+			@Override
+			public int compare(final String name1, final String name2) {
+				return COLLATION_KEYS.get(name1).compareTo(COLLATION_KEYS.get(name2));
+			}
+		});
+		SORTED_NAMES.add(index < 0 ? -index - 1 : index, name);
+
+		for (String namePart : getNameParts(name)) {
+			List<String> names = NAME_PARTS.get(namePart);
+			if (names == null) {
+				names = new ArrayList<>();
+				NAME_PARTS.put(namePart, names);
+			}
+			if (!names.contains(name)) {
+				names.add(name);
+			}
+		}
+	}
+
+	/**
+	 * Remove a name from the index. Must be called while holding the lock.
+	 *
+	 * @param name
+	 *            The name.
+	 */
+	private static void removeName(final String name) {
+		COLLATION_KEYS.remove(name);
+		SORTED_NAMES.remove(name);
+		PHOTOS.remove(name);
+		for (String namePart : getNameParts(name)) {
+			List<String> names = NAME_PARTS.get(namePart);
+			if (names != null) {
+				names.remove(name);
+				if (names.isEmpty()) {
+					NAME_PARTS.remove(namePart);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the lower case parts of a name.
+	 *
+	 * @param name
+	 *            The name.
+	 * @return The name parts.
+	 */
+	private static String[] getNameParts(final String name) {
+		return name.toLowerCase().split(" ");
+	}
+
+	/**
+	 * Helper method to return the name of a folder for sorting.
+	 *
+	 * @param name
+	 *            The name of the folder.
+	 * @param sortByLastName
+	 *            Flag indicating if the names are sorted by last name.
+	 * @return The name for sorting.
+	 */
+	private static String getNameForSorting(final String name, final boolean sortByLastName) {
+		if (sortByLastName) {
+			int index = name.lastIndexOf(' ');
+			if (index >= 0) {
+				String firstName = name.substring(0, index);
+				String lastName = name.substring(index + 1);
+				return lastName + " " + firstName;
+			}
+		}
+		return name;
+	}
+
+	/**
+	 * Create the list of eye photo pairs for display. Photos are arranged in pairs (right-left) by date.
+	 *
+	 * @param folder
+	 *            the folder where the photos are located.
+	 * @return The list of eye photo pairs.
+	 */
+	private static EyePhotoPair[] createEyePhotoList(final File folder) {
+		Map<Date, EyePhotoPair> eyePhotoMap = new TreeMap<>(new Comparator<Date>() {
+			@Override
+			public int compare(final Date lhs, final Date rhs) {
+				return rhs.compareTo(lhs);
+			}
+		});
+
+		File[] files = folder.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(final File dir, final String name) {
+				return name.toUpperCase().endsWith(".JPG");
+			}
+		});
+
+		if (files == null) {
+			return new EyePhotoPair[0];
+		}
+
+		for (File f : files) {
+			EyePhoto eyePhoto = EyePhoto.fromFile(f);
+
+			if (eyePhoto.isFormatted()) {
+				Date date = eyePhoto.getDate();
+
+				if (eyePhotoMap.containsKey(date)) {
+					EyePhotoPair eyePhotoPair = eyePhotoMap.get(date);
+					eyePhotoPair.setEyePhoto(eyePhoto);
+				}
+				else {
+					EyePhotoPair eyePhotoPair = new EyePhotoPair();
+					eyePhotoPair.setEyePhoto(eyePhoto);
+					eyePhotoMap.put(date, eyePhotoPair);
+				}
+			}
+			else {
+				Logger.error("Eye photo is not formatted correctly: " + f.getAbsolutePath());
+			}
+
+		}
+
+		return eyePhotoMap.values().toArray(new EyePhotoPair[eyePhotoMap.size()]);
+	}
+
+	/**
+	 * Start watching a folder. Must be called while holding the lock.
+	 *
+	 * @param folder
+	 *            The folder.
+	 * @param name
+	 *            The name, or null for the root folder.
+	 */
+	private static void watch(final File folder, final String name) {
+		try {
+			if (mWatchService == null) {
+				mWatchService = FileSystems.getDefault().newWatchService();
+				Thread watchThread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						processWatchEvents(mWatchService);
+					}
+				}, "PhotoFolderWatch");
+				watchThread.setDaemon(true);
+				watchThread.start();
+			}
+			WatchKey watchKey = folder.toPath().register(mWatchService, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_DELETE);
+			WATCH_KEYS.put(watchKey, name);
+		}
+		catch (IOException e) {
+			Logger.warning("Cannot watch folder " + folder.getAbsolutePath() + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Update the index from the events of the watch service, until the thread is interrupted.
+	 *
+	 * @param watchService
+	 *            The watch service.
+	 */
+	private static void processWatchEvents(final WatchService watchService) {
+		while (true) {
+			WatchKey watchKey;
+			try {
+				watchKey = watchService.take();
+			}
+			catch (InterruptedException e) {
+				return;
+			}
+
+			File rebuildFolder = null;
+			synchronized (LOCK) {
+				if (!WATCH_KEYS.containsKey(watchKey)) {
+					// Folder is no longer indexed.
+					watchKey.cancel();
+					continue;
+				}
+				String name = WATCH_KEYS.get(watchKey);
+
+				for (WatchEvent<?> event : watchKey.pollEvents()) {
+					if (name != null) {
+						// Changed photos in name folder - pairs are indexed again when requested.
+						PHOTOS.remove(name);
+					}
+					else if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+						rebuildFolder = mRootFolder;
+					}
+					else {
+						updateName(((Path) event.context()).getFileName().toString());
+					}
+				}
+				if (name == null && rebuildFolder == null) {
+					mRootLastModified = mRootFolder.lastModified();
+				}
+
+				if (!watchKey.reset()) {
+					WATCH_KEYS.remove(watchKey);
+					if (name != null) {
+						PHOTOS.remove(name);
+					}
+				}
+			}
+
+			if (rebuildFolder != null) {
+				buildNames(rebuildFolder);
+			}
+		}
+	}
+
+	/**
+	 * The indexed eye photo pairs of a name.
+	 */
+	private static final class IndexedPhotos {
+		/**
+		 * The eye photo pairs.
+		 */
+		private final EyePhotoPair[] mPairs;
+
+		/**
+		 * The modification date of the folder when indexed.
+		 */
+		private final long mLastModified;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param pairs
+		 *            The eye photo pairs.
+		 * @param lastModified
+		 *            The modification date of the folder when indexed.
+		 */
+		private IndexedPhotos(final EyePhotoPair[] pairs, final long lastModified) {
+			mPairs = pairs;
+			mLastModified = lastModified;
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package de.eisfeldj.augendiagnosefx.util.imagefile;
 
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -7,10 +8,12 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.PixelReader;
-import javafx.scene.paint.Color;
+import javafx.scene.image.WritablePixelFormat;
 
 /**
  * Class that serves to detect the pupil and iris within an eye photo.
@@ -88,6 +91,10 @@ public class PupilAndIrisDetector {
 	 * The minimum number of boundary points needed to refine the iris position.
 	 */
 	private static final float IRIS_BOUNDARY_MIN_BOUNDARY_POINTS = 10;
+	/**
+	 * The maximum value of a color channel, used for normalizing brightnesses to the interval [0,1] per channel.
+	 */
+	private static final float MAX_COLOR_VALUE = 255f;
 
 	/**
 	 * The number of points on the boundaries of circles of sizes 0 - 2000.
@@ -195,11 +202,27 @@ public class PupilAndIrisDetector {
 			12408, 12472, 12380, 12584, 12456, 12404, 12472, 12512, 12528, 12476, 12344, 12656, 12452, 12528, 12592, 12560, 12564, 12480, 12608,
 			12492, 12640};
 
+	/**
+	 * The start indices of the circles of sizes 0 - 2000 within an array containing the points of all circles.
+	 */
+	private static final int[] CIRCLE_STARTS = new int[CIRCLE_SIZES.length + 1];
+
+	static {
+		for (int i = 0; i < CIRCLE_SIZES.length; i++) {
+			CIRCLE_STARTS[i + 1] = CIRCLE_STARTS[i] + CIRCLE_SIZES[i];
+		}
+	}
+
 	/**
 	 * The image to be analyzed.
 	 */
 	private Image mImage;
 
+	/**
+	 * Flag indicating if the candidate pupil centers are evaluated in parallel.
+	 */
+	private boolean mParallelSearch;
+
 	/**
 	 * The horizontal center of the pupil (in the interval [0,1]).
 	 */
@@ -285,12 +308,24 @@ public class PupilAndIrisDetector {
 	}
 
 	/**
-	 * Create a detector for a certain image.
+	 * Create a detector for a certain image, evaluating candidate pupil centers in parallel.
 	 *
 	 * @param image The image to be analyzed.
 	 */
 	public PupilAndIrisDetector(final Image image) {
+		this(image, true);
+	}
+
+	/**
+	 * Create a detector for a certain image.
+	 *
+	 * @param image The image to be analyzed.
+	 * @param parallelSearch Flag indicating if the candidate pupil centers should be evaluated on all processor cores. Should be
+	 *            false if several detectors are run in parallel anyway.
+	 */
+	public PupilAndIrisDetector(final Image image, final boolean parallelSearch) {
 		mImage = image;
+		mParallelSearch = parallelSearch;
 		determineInitialParameterValues();
 
 		for (int i = 1; i < PUPIL_SEARCH_RESOLUTIONS.length; i++) {
@@ -309,13 +344,18 @@ public class PupilAndIrisDetector {
 	 * @param metadata The metadata to be updated.
 	 */
 	public final void updateMetadata(final JpegMetadata metadata) {
-		metadata.setXCenter(mIrisXCenter);
-		metadata.setYCenter(mIrisYCenter);
-		metadata.setOverlayScaleFactor(mIrisRadius * 8 / 3); // MAGIC_NUMBER
+		if (mPupilRadius > 0 && mIrisRadius > mPupilRadius) {
+			metadata.setXCenter(mIrisXCenter);
+			metadata.setYCenter(mIrisYCenter);
+			metadata.setOverlayScaleFactor(mIrisRadius * 8 / 3); // MAGIC_NUMBER
+
+			metadata.setPupilXOffset((mPupilXCenter - mIrisXCenter) / (2 * mIrisRadius));
+			metadata.setPupilYOffset((mPupilYCenter - mIrisYCenter) / (2 * mIrisRadius));
+			metadata.setPupilSize(mPupilRadius / mIrisRadius);
 
-		metadata.setPupilXOffset((mPupilXCenter - mIrisXCenter) / (2 * mIrisRadius));
-		metadata.setPupilYOffset((mPupilYCenter - mIrisYCenter) / (2 * mIrisRadius));
-		metadata.setPupilSize(mPupilRadius / mIrisRadius);
+			metadata.addFlag(JpegMetadata.FLAG_OVERLAY_POSITION_DETERMINED_AUTOMATICALLY);
+			metadata.removeFlag(JpegMetadata.FLAG_OVERLAY_SET_BY_CAMERA_ACTIVITY);
+		}
 	}
 
 	/**
@@ -323,25 +363,21 @@ public class PupilAndIrisDetector {
 	 */
 	private void determineInitialParameterValues() {
 		Image image = ImageUtil.resizeImage(mImage, PUPIL_SEARCH_RESOLUTIONS[0], false);
+		BrightnessPlane brightnessPlane = new BrightnessPlane(image, BrightnessPlane.Type.PUPIL);
 		List<PupilCenterInfo> pupilCenterInfoList = new ArrayList<>();
 
 		for (int x = (int) image.getWidth() / 4; x < image.getWidth() * 3 / 4; x++) { // MAGIC_NUMBER
 			for (int y = (int) image.getHeight() / 4; y < image.getHeight() * 3 / 4; y++) { // MAGIC_NUMBER
-				PupilCenterInfo pupilCenterInfo = new PupilCenterInfo(image, x, y, PupilCenterInfo.Phase.INITIAL);
-				pupilCenterInfo.collectCircleInfo(Integer.MAX_VALUE);
-				pupilCenterInfoList.add(pupilCenterInfo);
+				pupilCenterInfoList.add(new PupilCenterInfo(brightnessPlane, x, y, PupilCenterInfo.Phase.INITIAL));
 			}
 		}
 
-		float maxLeapValue = Float.MIN_VALUE;
-		PupilCenterInfo bestPupilCenter = null;
-		for (PupilCenterInfo pupilCenterInfo : pupilCenterInfoList) {
+		forEachCandidate(pupilCenterInfoList, pupilCenterInfo -> {
+			pupilCenterInfo.collectCircleInfo(Integer.MAX_VALUE);
 			pupilCenterInfo.calculateStatistics(0);
-			if (pupilCenterInfo.mLeapValue > maxLeapValue) {
-				maxLeapValue = pupilCenterInfo.mLeapValue;
-				bestPupilCenter = pupilCenterInfo;
-			}
-		}
+		});
+
+		PupilCenterInfo bestPupilCenter = getBestCandidate(pupilCenterInfoList);
 		if (bestPupilCenter != null) {
 			mPupilXCenter = bestPupilCenter.mXCenter / (float) image.getWidth();
 			mPupilYCenter = bestPupilCenter.mYCenter / (float) image.getHeight();
@@ -359,6 +395,7 @@ public class PupilAndIrisDetector {
 	 */
 	private void refinePupilPosition(final int resolution) {
 		Image image = ImageUtil.resizeImage(mImage, resolution, false);
+		BrightnessPlane brightnessPlane = new BrightnessPlane(image, BrightnessPlane.Type.PUPIL);
 		List<PupilCenterInfo> pupilCenterInfoList = new ArrayList<>();
 
 		int pupilXCenter = (int) Math.round(mPupilXCenter * image.getWidth());
@@ -368,23 +405,21 @@ public class PupilAndIrisDetector {
 		boolean isStable = false;
 
 		for (int step = 0; step < MAX_REFINEMENT_STEPS && !isStable; step++) {
+			List<PupilCenterInfo> newPupilCenterInfoList = new ArrayList<>();
 			for (int x = pupilXCenter - 1; x <= pupilXCenter + 1; x++) {
 				for (int y = pupilYCenter - 1; y <= pupilYCenter + 1; y++) {
-					PupilCenterInfo pupilCenterInfo = new PupilCenterInfo(image, x, y, PupilCenterInfo.Phase.PUPIL_REFINEMENT);
-					pupilCenterInfo.collectCircleInfo((int) (pupilRadius + MAX_REFINEMENT_STEPS + MAX_LEAP_WIDTH * resolution));
-					pupilCenterInfoList.add(pupilCenterInfo);
+					newPupilCenterInfoList.add(new PupilCenterInfo(brightnessPlane, x, y, PupilCenterInfo.Phase.PUPIL_REFINEMENT));
 				}
 			}
 
-			float maxLeapValue = Float.MIN_VALUE;
-			PupilCenterInfo bestPupilCenter = null;
-			for (PupilCenterInfo pupilCenterInfo : pupilCenterInfoList) {
-				pupilCenterInfo.calculateStatistics(pupilRadius);
-				if (pupilCenterInfo.mLeapValue > maxLeapValue) {
-					maxLeapValue = pupilCenterInfo.mLeapValue;
-					bestPupilCenter = pupilCenterInfo;
-				}
-			}
+			final int maxRelevantRadius = (int) (pupilRadius + MAX_REFINEMENT_STEPS + MAX_LEAP_WIDTH * resolution);
+			forEachCandidate(newPupilCenterInfoList, pupilCenterInfo -> pupilCenterInfo.collectCircleInfo(maxRelevantRadius));
+			pupilCenterInfoList.addAll(newPupilCenterInfoList);
+
+			final int baseRadius = pupilRadius;
+			forEachCandidate(pupilCenterInfoList, pupilCenterInfo -> pupilCenterInfo.calculateStatistics(baseRadius));
+
+			PupilCenterInfo bestPupilCenter = getBestCandidate(pupilCenterInfoList);
 
 			isStable = bestPupilCenter == null
 					|| (bestPupilCenter.mXCenter == pupilXCenter && bestPupilCenter.mYCenter == pupilYCenter
@@ -401,6 +436,40 @@ public class PupilAndIrisDetector {
 		mPupilRadius = pupilRadius / (float) Math.max(image.getWidth(), image.getHeight());
 	}
 
+	/**
+	 * Apply an action to all candidate pupil centers - in parallel if configured.
+	 *
+	 * @param candidates The candidate pupil centers.
+	 * @param action The action to be applied. It must modify only the candidate on which it is applied.
+	 */
+	private void forEachCandidate(final List<PupilCenterInfo> candidates, final Consumer<PupilCenterInfo> action) {
+		if (mParallelSearch) {
+			candidates.parallelStream().forEach(action);
+		}
+		else {
+			candidates.forEach(action);
+		}
+	}
+
+	/**
+	 * Get the candidate pupil center with the highest leap value. The statistics of the candidates must have been calculated
+	 * before.
+	 *
+	 * @param candidates The candidate pupil centers.
+	 * @return The best candidate. In case of equal leap values, the first one in the list.
+	 */
+	private static PupilCenterInfo getBestCandidate(final List<PupilCenterInfo> candidates) {
+		float maxLeapValue = Float.MIN_VALUE;
+		PupilCenterInfo bestPupilCenter = null;
+		for (PupilCenterInfo pupilCenterInfo : candidates) {
+			if (pupilCenterInfo.mLeapValue > maxLeapValue) {
+				maxLeapValue = pupilCenterInfo.mLeapValue;
+				bestPupilCenter = pupilCenterInfo;
+			}
+		}
+		return bestPupilCenter;
+	}
+
 	/**
 	 * Refine the iris position based on the previously found position.
 	 */
@@ -438,18 +507,31 @@ public class PupilAndIrisDetector {
 		 */
 		private int mIrisRadius = 0;
 		/**
-		 * The image.
+		 * The brightnesses of the image.
 		 */
-		private Image mImage;
+		private BrightnessPlane mBrightnessPlane;
 		/**
 		 * The phase in which the info is used.
 		 */
 		private Phase mPhase;
 
 		/**
-		 * The information about the circles around this point.
+		 * The number of circles around this point (i.e. the maximum radius plus one).
+		 */
+		private int mCircleCount = 0;
+		/**
+		 * The brightnesses of the circles around this point. The brightnesses of the circle with radius r are stored from index
+		 * CIRCLE_STARTS[r] to CIRCLE_STARTS[r + 1] - 1.
 		 */
-		private Map<Integer, CircleInfo> mCircleInfos = new HashMap<>();
+		private float[] mBrightnesses;
+		/**
+		 * The brightness leaps at each radius used for pupil identification.
+		 */
+		private float[] mPupilLeapValues;
+		/**
+		 * The brightness leaps at each radius used for iris identification.
+		 */
+		private float[] mIrisLeapValues;
 
 		/**
 		 * The brightness leap value for this center.
@@ -459,15 +541,15 @@ public class PupilAndIrisDetector {
 		/**
 		 * Create a PupilCenterInfo with certain coordinates.
 		 *
-		 * @param image the image.
+		 * @param brightnessPlane the brightnesses of the image.
 		 * @param xCoord The x coordinate.
 		 * @param yCoord The y coordinate.
 		 * @param phase The phase in which the info is used.
 		 */
-		private PupilCenterInfo(final Image image, final int xCoord, final int yCoord, final Phase phase) {
+		private PupilCenterInfo(final BrightnessPlane brightnessPlane, final int xCoord, final int yCoord, final Phase phase) {
 			mXCenter = xCoord;
 			mYCenter = yCoord;
-			mImage = image;
+			mBrightnessPlane = brightnessPlane;
 			mPhase = phase;
 		}
 
@@ -477,52 +559,33 @@ public class PupilAndIrisDetector {
 		 * @param maxRelevantRadius The maximal circle radius considered
 		 */
 		private void collectCircleInfo(final int maxRelevantRadius) {
-			PixelReader pixelReader = mImage.getPixelReader();
-			int maxPossibleRadius = (int) Math.min(
-					Math.min(mImage.getWidth() - 1 - mXCenter, mXCenter),
-					Math.min(mImage.getHeight() - 1 - mYCenter, mYCenter));
+			int maxPossibleRadius = Math.min(
+					Math.min(mBrightnessPlane.mWidth - 1 - mXCenter, mXCenter),
+					Math.min(mBrightnessPlane.mHeight - 1 - mYCenter, mYCenter));
 			int maxRadius = Math.min(maxRelevantRadius, maxPossibleRadius);
-			// For iris refinement, ignore points on top and bottom
+			RingOffsets ringOffsets = RingOffsets.getInstance(maxRadius + 1);
+			mBrightnesses = new float[CIRCLE_STARTS[maxRadius + 2]];
+
+			// All circles up to maxRadius are complete.
+			for (int i = 0; i < CIRCLE_STARTS[maxRadius + 1]; i++) {
+				mBrightnesses[i] = mBrightnessPlane.getBrightness(mXCenter + ringOffsets.mXOffsets[i], mYCenter + ringOffsets.mYOffsets[i]);
+			}
+			mCircleCount = maxRadius + 1;
+
+			// The next circle is considered only partially - its remaining brightnesses stay 0.
 			long maxRadius2 = (maxRadius + 1) * (maxRadius + 1);
-			for (int x = mXCenter - maxRadius; x <= mXCenter + maxRadius; x++) {
-				for (int y = mYCenter - maxRadius; y <= mYCenter + maxRadius; y++) {
-					long d2 = (x - mXCenter) * (x - mXCenter) + (y - mYCenter) * (y - mYCenter);
-					if (d2 <= maxRadius2) {
-						int d = (int) Math.round(Math.sqrt(d2));
-						float brightness = getBrightness(pixelReader.getColor(x, y));
-						addInfo(d, brightness);
-					}
+			int index = CIRCLE_STARTS[maxRadius + 1];
+			for (int i = CIRCLE_STARTS[maxRadius + 1]; i < CIRCLE_STARTS[maxRadius + 2]; i++) {
+				int xOffset = ringOffsets.mXOffsets[i];
+				int yOffset = ringOffsets.mYOffsets[i];
+				if (xOffset * xOffset + yOffset * yOffset <= maxRadius2 && Math.abs(xOffset) <= maxRadius && Math.abs(yOffset) <= maxRadius) {
+					mBrightnesses[index++] = mBrightnessPlane.getBrightness(mXCenter + xOffset, mYCenter + yOffset);
+					mCircleCount = maxRadius + 2;
 				}
 			}
 
-		}
-
-		/**
-		 * Get a brightness value from a color.
-		 *
-		 * @param color The color
-		 * @return The brightness value.
-		 */
-		private static float getBrightness(final Color color) {
-			float min = (float) Math.min(Math.min(color.getRed(), color.getGreen()), color.getBlue());
-			float sum = (float) (color.getRed() + color.getGreen() + color.getBlue());
-			// Ensure that colors count more than dark grey, but white counts more then colors.
-			return sum - min;
-		}
-
-		/**
-		 * Add pixel info for another pixel.
-		 *
-		 * @param distance The distance of the pixel.
-		 * @param brightness The brightness of the pixel.
-		 */
-		private void addInfo(final int distance, final float brightness) {
-			CircleInfo circleInfo = mCircleInfos.get(distance);
-			if (circleInfo == null) {
-				circleInfo = new CircleInfo(distance);
-				mCircleInfos.put(distance, circleInfo);
-			}
-			circleInfo.addBrightness(brightness);
+			mPupilLeapValues = new float[mCircleCount];
+			mIrisLeapValues = new float[mCircleCount];
 		}
 
 		/**
@@ -532,32 +595,34 @@ public class PupilAndIrisDetector {
 		 */
 		private void calculateStatistics(final int baseRadius) {
 			// Base calculations for each circle.
-			for (CircleInfo circleInfo : mCircleInfos.values()) {
-				circleInfo.calculateStatistics();
+			for (int radius = 0; radius < mCircleCount; radius++) {
+				Arrays.sort(mBrightnesses, CIRCLE_STARTS[radius], CIRCLE_STARTS[radius + 1]);
 			}
 
-			int resolution = (int) Math.max(mImage.getWidth(), mImage.getHeight());
+			int resolution = Math.max(mBrightnessPlane.mWidth, mBrightnessPlane.mHeight);
 			int maxRadius = mPhase == Phase.INITIAL
-					? mCircleInfos.size() - 1
-					: Math.min(mCircleInfos.size() - 1, baseRadius + MAX_REFINEMENT_STEPS + (int) (MAX_LEAP_WIDTH * resolution));
+					? mCircleCount - 1
+					: Math.min(mCircleCount - 1, baseRadius + MAX_REFINEMENT_STEPS + (int) (MAX_LEAP_WIDTH * resolution));
 			int minRadius = mPhase == Phase.INITIAL ? 0
 					: Math.max(0, baseRadius - MAX_REFINEMENT_STEPS - (int) (MAX_LEAP_WIDTH * resolution));
 
 			// Calculate the minimum of medians outside each circle.
 			float innerQuantileSum = 0;
-			float[] innerDarkness = new float[mCircleInfos.size()];
+			float[] innerDarkness = new float[mCircleCount];
 
 			for (int i = minRadius; i <= maxRadius; i++) {
-				float currentQuantile = mCircleInfos.get(Integer.valueOf(i)).getQuantile(MIN_BLACK_QUOTA);
+				float currentQuantile = getQuantile(i, MIN_BLACK_QUOTA);
 				innerQuantileSum += currentQuantile * i;
 				innerDarkness[i] = i == 0 ? 0 : 2 * innerQuantileSum / (i * (i + 1));
 			}
 
-			List<CircleInfo> relevantPupilCircles = new ArrayList<>();
-			List<CircleInfo> relevantIrisCircles = new ArrayList<>();
+			int[] relevantPupilRadii = new int[mCircleCount];
+			int relevantPupilRadiusCount = 0;
+			int[] relevantIrisRadii = new int[mCircleCount];
+			int relevantIrisRadiusCount = 0;
 			maxRadius = mPhase == Phase.INITIAL
-					? mCircleInfos.size() - 2
-					: Math.min(mCircleInfos.size() - 2, baseRadius + MAX_REFINEMENT_STEPS);
+					? mCircleCount - 2
+					: Math.min(mCircleCount - 2, baseRadius + MAX_REFINEMENT_STEPS);
 			minRadius = mPhase == Phase.INITIAL ? (int) (resolution * MIN_PUPIL_RADIUS)
 					: Math.max(1, baseRadius - MAX_REFINEMENT_STEPS);
 
@@ -566,7 +631,7 @@ public class PupilAndIrisDetector {
 				for (int i = minRadius; i <= maxRadius; i++) {
 					float pupilLeapValue = 0;
 					int maxLeapDistance = Math.min(Math.round(MAX_LEAP_WIDTH * resolution),
-							Math.min(i / 2, (mCircleInfos.size() - 1 - i) / 2));
+							Math.min(i / 2, (mCircleCount - 1 - i) / 2));
 					for (int j = 1; j <= maxLeapDistance; j++) {
 						float diff = mPhase == Phase.INITIAL
 								? (ASSUMED_PUPIL_BRIGHTNESS + getMinMaxQuantile(MAX_BLACK_QUOTA, i + j, i + j + maxLeapDistance, false))
@@ -586,10 +651,9 @@ public class PupilAndIrisDetector {
 						}
 					}
 					if (pupilLeapValue > 0) {
-						CircleInfo circleInfo = mCircleInfos.get(Integer.valueOf(i));
 						// prefer big, dark circles
-						circleInfo.mPupilLeapValue = (float) (Math.sqrt(i) * pupilLeapValue / innerDarkness[i]);
-						relevantPupilCircles.add(circleInfo);
+						mPupilLeapValues[i] = (float) (Math.sqrt(i) * pupilLeapValue / innerDarkness[i]);
+						relevantPupilRadii[relevantPupilRadiusCount++] = i;
 					}
 				}
 			}
@@ -600,13 +664,13 @@ public class PupilAndIrisDetector {
 					float irisLeapValue = 0;
 					float irisQuantileSum = 0;
 					int maxLeapDistance = Math.min(Math.round(MAX_LEAP_WIDTH * resolution),
-							Math.min(i, mCircleInfos.size() - 1 - i));
+							Math.min(i, mCircleCount - 1 - i));
 					for (int j = 1; j <= maxLeapDistance; j++) {
 						irisQuantileSum +=
-								(mCircleInfos.get(Integer.valueOf(i + j)).getQuantile(1 - MIN_WHITE_QUOTA)
-										- mCircleInfos.get(Integer.valueOf(i - j)).getQuantile(1 - MIN_WHITE_QUOTA)
-										+ mCircleInfos.get(Integer.valueOf(i + j)).getQuantile(1 - MIN_WHITE_QUOTA2)
-										- mCircleInfos.get(Integer.valueOf(i - j)).getQuantile(1 - MIN_WHITE_QUOTA2))
+								(getQuantile(i + j, 1 - MIN_WHITE_QUOTA)
+										- getQuantile(i - j, 1 - MIN_WHITE_QUOTA)
+										+ getQuantile(i + j, 1 - MIN_WHITE_QUOTA2)
+										- getQuantile(i - j, 1 - MIN_WHITE_QUOTA2))
 										/ (2 * Math.sqrt(j));
 						if (irisQuantileSum > 0) {
 							// prefer big jumps in small radius difference.
@@ -617,53 +681,66 @@ public class PupilAndIrisDetector {
 						}
 					}
 					if (irisLeapValue > 0) {
-						CircleInfo circleInfo = mCircleInfos.get(Integer.valueOf(i));
 						// prefer big radius in order to prevent selection of small spots.
 						// prefer dark inner area
-						circleInfo.mIrisLeapValue = irisLeapValue;
-						relevantIrisCircles.add(circleInfo);
+						mIrisLeapValues[i] = irisLeapValue;
+						relevantIrisRadii[relevantIrisRadiusCount++] = i;
 					}
 				}
 			}
 
 			switch (mPhase) {
 			case INITIAL:
-				for (CircleInfo pupilCircleInfo : relevantPupilCircles) {
-					for (CircleInfo irisCircleInfo : relevantIrisCircles) {
-						if (irisCircleInfo.mRadius - pupilCircleInfo.mRadius >= resolution
-								* MIN_IRIS_PUPIL_DISTANCE) {
-							float newLeapValue = pupilCircleInfo.mPupilLeapValue * (1 + irisCircleInfo.mIrisLeapValue);
+				for (int p = 0; p < relevantPupilRadiusCount; p++) {
+					int pupilRadius = relevantPupilRadii[p];
+					for (int q = 0; q < relevantIrisRadiusCount; q++) {
+						int irisRadius = relevantIrisRadii[q];
+						if (irisRadius - pupilRadius >= resolution * MIN_IRIS_PUPIL_DISTANCE) {
+							float newLeapValue = mPupilLeapValues[pupilRadius] * (1 + mIrisLeapValues[irisRadius]);
 							if (newLeapValue > mLeapValue) {
 								mLeapValue = newLeapValue;
-								mPupilRadius = pupilCircleInfo.mRadius;
-								mIrisRadius = irisCircleInfo.mRadius;
+								mPupilRadius = pupilRadius;
+								mIrisRadius = irisRadius;
 							}
 						}
 					}
 				}
 				break;
 			case PUPIL_REFINEMENT:
-				for (CircleInfo pupilCircleInfo : relevantPupilCircles) {
-					float newLeapValue = pupilCircleInfo.mPupilLeapValue;
+				for (int p = 0; p < relevantPupilRadiusCount; p++) {
+					int pupilRadius = relevantPupilRadii[p];
+					float newLeapValue = mPupilLeapValues[pupilRadius];
 					if (newLeapValue > mLeapValue) {
 						mLeapValue = newLeapValue;
-						mPupilRadius = pupilCircleInfo.mRadius;
+						mPupilRadius = pupilRadius;
 					}
 				}
 				break;
 			case IRIS_REFINEMENT:
 			default:
-				for (CircleInfo irisCircleInfo : relevantIrisCircles) {
-					float newLeapValue = irisCircleInfo.mIrisLeapValue;
+				for (int q = 0; q < relevantIrisRadiusCount; q++) {
+					int irisRadius = relevantIrisRadii[q];
+					float newLeapValue = mIrisLeapValues[irisRadius];
 					if (newLeapValue > mLeapValue) {
 						mLeapValue = newLeapValue;
-						mIrisRadius = irisCircleInfo.mRadius;
+						mIrisRadius = irisRadius;
 					}
 				}
 				break;
 			}
 		}
 
+		/**
+		 * Get the p-quantile of the brightnesses of a circle. Prerequisite: calculateStatistics must have been run before.
+		 *
+		 * @param radius The radius of the circle.
+		 * @param p the quantile parameter.
+		 * @return the p-quantile of the brightnesses (not considering equality).
+		 */
+		private float getQuantile(final int radius, final float p) {
+			return mBrightnesses[CIRCLE_STARTS[radius] + (int) (CIRCLE_SIZES[radius] * p)];
+		}
+
 		/**
 		 * Get the minimum p-quantile for a certain set of radii.
 		 *
@@ -676,7 +753,7 @@ public class PupilAndIrisDetector {
 		private float getMinMaxQuantile(final float p, final int fromRadius, final int toRadius, final boolean max) {
 			float result = max ? Float.MIN_VALUE : Float.MAX_VALUE;
 			for (int radius = fromRadius; radius <= toRadius; radius++) {
-				float newValue = mCircleInfos.get(Integer.valueOf(radius)).getQuantile(p);
+				float newValue = getQuantile(radius, p);
 				if ((!max && newValue < result) || (max && newValue > result)) {
 					result = newValue;
 				}
@@ -704,66 +781,69 @@ public class PupilAndIrisDetector {
 	}
 
 	/**
-	 * Class for storing information about a circle of points.
+	 * Table of the offsets of all points around a center, grouped by their rounded distance from the center. The offsets of the
+	 * circle with radius r are stored from index CIRCLE_STARTS[r] to CIRCLE_STARTS[r + 1] - 1.
 	 */
-	private static final class CircleInfo {
+	private static final class RingOffsets {
 		/**
-		 * Create a pixelInfo with certain coordinates.
-		 *
-		 * @param radius The radius.
+		 * The table covering the biggest radius requested so far.
 		 */
-		private CircleInfo(final int radius) {
-			mRadius = radius;
-			mBrightnesses = new float[CIRCLE_SIZES[radius]];
-			mCurrentIndex = 0;
-		}
+		private static volatile RingOffsets mInstance = null;
 
 		/**
-		 * The radius.
-		 */
-		private int mRadius;
-		/**
-		 * The brightnesses.
-		 */
-		private float[] mBrightnesses;
-		/**
-		 * The current index on the brightness array.
+		 * The maximum radius covered by the table.
 		 */
-		private int mCurrentIndex;
-
+		private final int mMaxRadius;
 		/**
-		 * The brightness leap at this radius used for pupil identification.
+		 * The horizontal offsets.
 		 */
-		private float mPupilLeapValue;
+		private final int[] mXOffsets;
 		/**
-		 * The brightness leap at this radius used for iris identification.
+		 * The vertical offsets.
 		 */
-		private float mIrisLeapValue;
+		private final int[] mYOffsets;
 
 		/**
-		 * Add a brightness to the information of this circle.
+		 * Create the table of offsets.
 		 *
-		 * @param brightness the brightness.
+		 * @param maxRadius The maximum radius to be covered.
 		 */
-		private void addBrightness(final float brightness) {
-			mBrightnesses[mCurrentIndex++] = brightness;
-		}
-
-		/**
-		 * Do statistical calculations after all brightnesses are available. Here, only sorting is required.
-		 */
-		private void calculateStatistics() {
-			Arrays.sort(mBrightnesses);
+		private RingOffsets(final int maxRadius) {
+			mMaxRadius = maxRadius;
+			mXOffsets = new int[CIRCLE_STARTS[maxRadius + 1]];
+			mYOffsets = new int[CIRCLE_STARTS[maxRadius + 1]];
+
+			int[] nextIndex = Arrays.copyOf(CIRCLE_STARTS, maxRadius + 1);
+			for (int x = -maxRadius; x <= maxRadius; x++) {
+				for (int y = -maxRadius; y <= maxRadius; y++) {
+					int d = (int) Math.round(Math.sqrt(x * x + y * y));
+					if (d <= maxRadius) {
+						mXOffsets[nextIndex[d]] = x;
+						mYOffsets[nextIndex[d]] = y;
+						nextIndex[d]++;
+					}
+				}
+			}
 		}
 
 		/**
-		 * Get the p-quantile of the brightnesses. Prerequisite: calculateStatistics must have been run before.
+		 * Get a table of offsets covering at least the given radius.
 		 *
-		 * @param p the quantile parameter.
-		 * @return the p-quantile of the brightnesses (not considering equality).
+		 * @param maxRadius The maximum radius to be covered.
+		 * @return The table.
 		 */
-		private float getQuantile(final float p) {
-			return mBrightnesses[(int) (mBrightnesses.length * p)];
+		private static RingOffsets getInstance(final int maxRadius) {
+			RingOffsets instance = mInstance;
+			if (instance == null || instance.mMaxRadius < maxRadius) {
+				synchronized (RingOffsets.class) {
+					instance = mInstance;
+					if (instance == null || instance.mMaxRadius < maxRadius) {
+						instance = new RingOffsets(maxRadius);
+						mInstance = instance;
+					}
+				}
+			}
+			return instance;
 		}
 	}
 
@@ -775,6 +855,10 @@ public class PupilAndIrisDetector {
 		 * The image.
 		 */
 		private Image mImage;
+		/**
+		 * The brightnesses of the image rows relevant for the boundary search.
+		 */
+		private BrightnessPlane mBrightnessPlane;
 
 		/**
 		 * The x coordinate of the center.
@@ -817,31 +901,32 @@ public class PupilAndIrisDetector {
 		 * Search points on the iris boundary.
 		 */
 		private void determineBoundaryPoints() {
-			PixelReader pixelReader = mImage.getPixelReader();
+			mBrightnessPlane = new BrightnessPlane(mImage, BrightnessPlane.Type.IRIS,
+					(int) Math.floor(mYCenter - mRadius * IRIS_BOUNDARY_SEARCH_RANGE),
+					(int) Math.ceil(mYCenter + mRadius * IRIS_BOUNDARY_SEARCH_RANGE));
 
 			for (int yCoord = mYCenter; yCoord <= mYCenter + mRadius * IRIS_BOUNDARY_SEARCH_RANGE && yCoord < mImage.getHeight(); yCoord++) {
-				determineBoundaryPoints(pixelReader, yCoord);
+				determineBoundaryPoints(yCoord);
 			}
 
 			for (int yCoord = mYCenter - 1; yCoord >= mYCenter - mRadius * IRIS_BOUNDARY_SEARCH_RANGE && yCoord >= 0; yCoord--) {
-				determineBoundaryPoints(pixelReader, yCoord);
+				determineBoundaryPoints(yCoord);
 			}
 		}
 
 		/**
 		 * Determine the boundary points for a certain y coordinate.
 		 *
-		 * @param pixelReader The pixel reader.
 		 * @param yCoord The y coordinate for which to find the boundary points.
 		 * @return true if a boundary point has been found.
 		 */
-		private boolean determineBoundaryPoints(final PixelReader pixelReader, final int yCoord) {
+		private boolean determineBoundaryPoints(final int yCoord) {
 			int xDistanceRange = Math.round(IRIS_BOUNDARY_UNCERTAINTY_FACTOR * mRadius);
 			int xDistanceMinRange = Math.round(IRIS_BOUNDARY_MIN_RANGE * mRadius);
 			boolean found = false;
 
 			while (!found && xDistanceRange >= xDistanceMinRange) {
-				found = determineBoundaryPoints(pixelReader, yCoord, xDistanceRange);
+				found = determineBoundaryPoints(yCoord, xDistanceRange);
 				xDistanceRange *= IRIS_BOUNDARY_RETRY_FACTOR;
 			}
 			return found;
@@ -850,12 +935,11 @@ public class PupilAndIrisDetector {
 		/**
 		 * Determine the boundary points for a certain y coordinate.
 		 *
-		 * @param pixelReader The pixel reader.
 		 * @param yCoord The y coordinate for which to find the boundary points.
 		 * @param xDistanceRange the horizontal range which is considered.
 		 * @return true if a boundary point has been found.
 		 */
-		private boolean determineBoundaryPoints(final PixelReader pixelReader, final int yCoord, final int xDistanceRange) {
+		private boolean determineBoundaryPoints(final int yCoord, final int xDistanceRange) {
 			int yDiff = yCoord - mYCenter;
 			if (Math.abs(yDiff) > IRIS_BOUNDARY_SEARCH_RANGE * mRadius) {
 				return false;
@@ -868,7 +952,7 @@ public class PupilAndIrisDetector {
 			int leftBoundary = Math.max(mXCenter - expectedXDistance - xDistanceRange, 0);
 			int rightBoundary = Math.min(mXCenter - expectedXDistance + xDistanceRange, (int) mImage.getWidth() - 1);
 			for (int x = leftBoundary; x <= rightBoundary; x++) {
-				brightnessSum += getBrightness(pixelReader.getColor(x, yCoord));
+				brightnessSum += mBrightnessPlane.getBrightness(x, yCoord);
 			}
 			float avgBrightness = brightnessSum / (2 * xDistanceRange + 1);
 
@@ -877,12 +961,12 @@ public class PupilAndIrisDetector {
 			int rightCounter = 0;
 			while (leftBoundary < rightBoundary) {
 				if (rightCounter > leftCounter) {
-					if (getBrightness(pixelReader.getColor(leftBoundary++, yCoord)) < avgBrightness) {
+					if (mBrightnessPlane.getBrightness(leftBoundary++, yCoord) < avgBrightness) {
 						leftCounter++;
 					}
 				}
 				else {
-					if (getBrightness(pixelReader.getColor(rightBoundary--, yCoord)) > avgBrightness) {
+					if (mBrightnessPlane.getBrightness(rightBoundary--, yCoord) > avgBrightness) {
 						rightCounter++;
 					}
 				}
@@ -896,7 +980,7 @@ public class PupilAndIrisDetector {
 			int leftBoundary2 = Math.max(mXCenter + expectedXDistance - xDistanceRange, 0);
 			int rightBoundary2 = Math.min(mXCenter + expectedXDistance + xDistanceRange, (int) mImage.getWidth() - 1);
 			for (int x = leftBoundary2; x <= rightBoundary2; x++) {
-				brightnessSum2 += getBrightness(pixelReader.getColor(x, yCoord));
+				brightnessSum2 += mBrightnessPlane.getBrightness(x, yCoord);
 			}
 			float avgBrightness2 = brightnessSum2 / (2 * xDistanceRange + 1);
 
@@ -905,12 +989,12 @@ public class PupilAndIrisDetector {
 			int rightCounter2 = 0;
 			while (leftBoundary2 < rightBoundary2) {
 				if (leftCounter2 > rightCounter2) {
-					if (getBrightness(pixelReader.getColor(rightBoundary2--, yCoord)) < avgBrightness2) {
+					if (mBrightnessPlane.getBrightness(rightBoundary2--, yCoord) < avgBrightness2) {
 						rightCounter2++;
 					}
 				}
 				else {
-					if (getBrightness(pixelReader.getColor(leftBoundary2++, yCoord)) > avgBrightness2) {
+					if (mBrightnessPlane.getBrightness(leftBoundary2++, yCoord) > avgBrightness2) {
 						leftCounter2++;
 					}
 				}
@@ -1010,18 +1094,120 @@ public class PupilAndIrisDetector {
 
 			mRadius = Math.round(sum / (2 * mLeftPoints.size()));
 		}
+	}
+
+	/**
+	 * The brightnesses of the pixels of an image, extracted in a single pass, so that the searches need not access the
+	 * image pixel by pixel.
+	 */
+	private static final class BrightnessPlane {
+		/**
+		 * The width of the image.
+		 */
+		private final int mWidth;
+		/**
+		 * The height of the image.
+		 */
+		private final int mHeight;
+		/**
+		 * The first image row contained in the plane.
+		 */
+		private final int mMinY;
+		/**
+		 * The brightnesses, row by row.
+		 */
+		private final float[] mBrightnesses;
+
+		/**
+		 * Extract the brightnesses of a complete image.
+		 *
+		 * @param image The image.
+		 * @param type The way in which the brightness is calculated.
+		 */
+		private BrightnessPlane(final Image image, final Type type) {
+			this(image, type, 0, (int) image.getHeight() - 1);
+		}
 
 		/**
-		 * Get a brightness value from a color.
+		 * Extract the brightnesses of a range of rows of an image.
+		 *
+		 * @param image The image.
+		 * @param type The way in which the brightness is calculated.
+		 * @param minY The first row to be extracted.
+		 * @param maxY The last row to be extracted.
+		 */
+		private BrightnessPlane(final Image image, final Type type, final int minY, final int maxY) {
+			mWidth = (int) image.getWidth();
+			mHeight = (int) image.getHeight();
+			mMinY = Math.max(minY, 0);
+			int rowCount = Math.max(Math.min(maxY, mHeight - 1) - mMinY + 1, 0);
+			mBrightnesses = new float[mWidth * rowCount];
+
+			PixelReader pixelReader = image.getPixelReader();
+			WritablePixelFormat<IntBuffer> pixelFormat = PixelFormat.getIntArgbInstance();
+			int[] rowPixels = new int[mWidth];
+			for (int row = 0; row < rowCount; row++) {
+				pixelReader.getPixels(0, mMinY + row, mWidth, 1, pixelFormat, rowPixels, 0, mWidth);
+				int offset = row * mWidth;
+				for (int x = 0; x < mWidth; x++) {
+					mBrightnesses[offset + x] = type == Type.PUPIL ? getPupilBrightness(rowPixels[x]) : getIrisBrightness(rowPixels[x]);
+				}
+			}
+		}
+
+		/**
+		 * Get the brightness of a pixel.
+		 *
+		 * @param x The x coordinate.
+		 * @param y The y coordinate.
+		 * @return The brightness value.
+		 */
+		private float getBrightness(final int x, final int y) {
+			return mBrightnesses[(y - mMinY) * mWidth + x];
+		}
+
+		/**
+		 * Get a brightness value from an ARGB color, as used for pupil detection.
 		 *
 		 * @param color The color
 		 * @return The brightness value.
 		 */
-		private static float getBrightness(final Color color) {
+		private static float getPupilBrightness(final int color) {
+			int red = (color >> 16) & 0xFF; // MAGIC_NUMBER
+			int green = (color >> 8) & 0xFF; // MAGIC_NUMBER
+			int blue = color & 0xFF; // MAGIC_NUMBER
+			int min = Math.min(Math.min(red, green), blue);
+			// Ensure that colors count more than dark grey, but white counts more then colors.
+			return (red + green + blue - min) / MAX_COLOR_VALUE;
+		}
+
+		/**
+		 * Get a brightness value from an ARGB color, as used for iris boundary detection.
+		 *
+		 * @param color The color
+		 * @return The brightness value.
+		 */
+		private static float getIrisBrightness(final int color) {
+			int red = (color >> 16) & 0xFF; // MAGIC_NUMBER
+			int green = (color >> 8) & 0xFF; // MAGIC_NUMBER
+			int blue = color & 0xFF; // MAGIC_NUMBER
 			// Blue seems to be particulary helpful in the separation.
-			return (float) (Math.min(Math.min(color.getRed(), color.getGreen()), color.getBlue()) + color.getBlue());
+			return (Math.min(Math.min(red, green), blue) + blue) / MAX_COLOR_VALUE;
 		}
 
+		/**
+		 * The way in which the brightness of a pixel is calculated.
+		 */
+		private enum Type {
+			/**
+			 * Brightness used for pupil detection.
+			 */
+			PUPIL,
+			/**
+			 * Brightness used for iris boundary detection.
+			 */
+			IRIS
+		}
 	}
 
 }
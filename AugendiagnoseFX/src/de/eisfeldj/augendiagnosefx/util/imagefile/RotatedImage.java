@@ -0,0 +1,147 @@
+package de.eisfeldj.augendiagnosefx.util.imagefile;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import de.eisfeldj.augendiagnosefx.util.Logger;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+/**
+ * An image rotated by a multiple of 90 degrees, which is decoded and rotated in the background.
+ *
+ * <p>The image has its final size from the start. The original image is decoded by the background loader of JavaFX,
+ * then its pixels are rotated by index remapping in a background thread, and finally written into this image in the FX
+ * thread. As the progress of a WritableImage cannot be changed, the loading progress is provided by
+ * {@link #loadProgressProperty()}.
+ */
+final class RotatedImage extends WritableImage {
+	/**
+	 * The executor rotating the decoded images.
+	 */
+	private static final ExecutorService ROTATION_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			Thread thread = new Thread(runnable, "ImageRotation");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/**
+	 * The URL of the original image.
+	 */
+	private final String mUrl;
+
+	/**
+	 * The clockwise rotation angle (90, 180 or 270).
+	 */
+	private final int mRotation;
+
+	/**
+	 * The decoded original image. It is released once the rotation has started.
+	 */
+	private Image mDecodedImage;
+
+	/**
+	 * The loading progress, including the rotation.
+	 */
+	private final ReadOnlyDoubleWrapper mLoadProgress = new ReadOnlyDoubleWrapper(0);
+
+	/**
+	 * Start loading a rotated image. Must be called in the FX thread.
+	 *
+	 * @param url
+	 *            The URL of the original image.
+	 * @param sourceWidth
+	 *            The width in which the original image is decoded.
+	 * @param sourceHeight
+	 *            The height in which the original image is decoded.
+	 * @param rotation
+	 *            The clockwise rotation angle (90, 180 or 270).
+	 */
+	RotatedImage(final String url, final int sourceWidth, final int sourceHeight, final int rotation) {
+		super(rotation == 180 ? sourceWidth : sourceHeight, rotation == 180 ? sourceHeight : sourceWidth); // MAGIC_NUMBER
+		mUrl = url;
+		mRotation = rotation;
+
+		mDecodedImage = new Image(url, sourceWidth, sourceHeight, false, true, true);
+		if (mDecodedImage.getProgress() == 1) {
+			startRotation();
+		}
+		else {
+			mDecodedImage.progressProperty().addListener(new ChangeListener<Number>() {
+				@Override
+				public void changed(final ObservableValue<? extends Number> observable, final Number oldValue,
+						final Number newValue) {
+					if (newValue.doubleValue() == 1) {
+						startRotation();
+					}
+					else {
+						mLoadProgress.set(newValue.doubleValue());
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Get the loading progress of the image, including the rotation. It is updated in the FX thread and reaches 1
+	 * when the rotated pixels are available.
+	 *
+	 * @return The loading progress.
+	 */
+	public ReadOnlyDoubleProperty loadProgressProperty() {
+		return mLoadProgress.getReadOnlyProperty();
+	}
+
+	@Override
+	public void cancel() {
+		if (mDecodedImage != null) {
+			mDecodedImage.cancel();
+			mDecodedImage = null;
+		}
+	}
+
+	/**
+	 * Rotate the decoded image in the background, and write the result into this image.
+	 */
+	private void startRotation() {
+		final Image decodedImage = mDecodedImage;
+		if (decodedImage == null) {
+			return;
+		}
+		mDecodedImage = null;
+
+		if (decodedImage.isError()) {
+			Logger.warning("Could not load image " + mUrl);
+			mLoadProgress.set(1);
+			return;
+		}
+
+		ROTATION_EXECUTOR.execute(new Runnable() {
+			@Override
+			public void run() {
+				final int[] pixels = ImageUtil.getRotatedPixels(decodedImage, mRotation);
+				final int width = (int) getWidth();
+				final int height = (int) getHeight();
+
+				Platform.runLater(new Runnable() {
+					@Override
+					public void run() {
+						getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+						mLoadProgress.set(1);
+					}
+				});
+			}
+		});
+	}
+}
@@ -0,0 +1,268 @@
+package de.eisfeldj.augendiagnosefx.util.imagefile;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.imageio.ImageIO;
+
+import de.eisfeldj.augendiagnosefx.util.Logger;
+
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+
+/**
+ * Persistent storage of thumbnails, avoiding to decode the full size photos each time a folder is opened.
+ *
+ * <p>The thumbnails are stored as small JPEG files in a hidden directory within the photo folder, already rotated
+ * according to the EXIF orientation. The name of a thumbnail file contains the name, length and modification date of
+ * the photo and the thumbnail size, so that a thumbnail is validated by a single check for existence.
+ */
+public final class ThumbnailStore {
+	/**
+	 * The name of the thumbnail directory within the photo folder.
+	 */
+	public static final String THUMBNAIL_DIR_NAME = ".augendiagnose-thumbnails";
+
+	/**
+	 * The separator between the parts of the name of a thumbnail file.
+	 */
+	private static final String SEPARATOR = "_";
+
+	/**
+	 * The file suffix of the thumbnail files.
+	 */
+	private static final String SUFFIX = ".jpg";
+
+	/**
+	 * The executor writing the thumbnail files.
+	 */
+	private static final ExecutorService WRITE_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			Thread thread = new Thread(runnable, "ThumbnailStore");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/**
+	 * The photo folders whose thumbnail directory has been removed. No thumbnails are written into these folders, until
+	 * a photo in the folder is displayed again.
+	 */
+	private static final Set<File> REMOVED_FOLDERS = new HashSet<>();
+
+	/**
+	 * Hide default constructor.
+	 */
+	private ThumbnailStore() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Get the stored thumbnail of a photo, if it is valid.
+	 *
+	 * @param photoFile
+	 *            The photo file.
+	 * @param thumbnailSize
+	 *            The maximum size of the thumbnail.
+	 * @return The thumbnail file, or null if there is no valid stored thumbnail.
+	 */
+	public static File getThumbnailFile(final File photoFile, final int thumbnailSize) {
+		File thumbnailFile = getThumbnailFileName(photoFile, thumbnailSize);
+		return thumbnailFile.isFile() ? thumbnailFile : null;
+	}
+
+	/**
+	 * Store the thumbnail of a photo in the background, as soon as it is loaded.
+	 *
+	 * @param photoFile
+	 *            The photo file.
+	 * @param thumbnailSize
+	 *            The maximum size of the thumbnail.
+	 * @param thumbnail
+	 *            The thumbnail, as retrieved via ImageUtil.getImage().
+	 */
+	public static void storeWhenLoaded(final File photoFile, final int thumbnailSize, final Image thumbnail) {
+		final File thumbnailFile = getThumbnailFileName(photoFile, thumbnailSize);
+		if (photoFile.isFile()) {
+			synchronized (REMOVED_FOLDERS) {
+				REMOVED_FOLDERS.remove(photoFile.getAbsoluteFile().getParentFile());
+			}
+		}
+		final ReadOnlyDoubleProperty loadProgress = ImageUtil.getLoadProgressProperty(thumbnail);
+
+		if (loadProgress.get() == 1) {
+			store(photoFile, thumbnailFile, thumbnail);
+		}
+		else {
+			loadProgress.addListener(new ChangeListener<Number>() {
+				@Override
+				public void changed(final ObservableValue<? extends Number> observable, final Number oldValue,
+						final Number newValue) {
+					if (newValue.doubleValue() == 1) {
+						loadProgress.removeListener(this);
+						store(photoFile, thumbnailFile, thumbnail);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Remove the stored thumbnails of a photo.
+	 *
+	 * @param photoFile
+	 *            The photo file.
+	 */
+	public static void remove(final File photoFile) {
+		File[] thumbnailFiles = getThumbnailFiles(photoFile);
+		if (thumbnailFiles != null) {
+			for (File thumbnailFile : thumbnailFiles) {
+				if (!thumbnailFile.delete()) {
+					Logger.warning("Failed to delete thumbnail " + thumbnailFile.getAbsolutePath());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remove the thumbnail directory of a photo folder in the background, e.g. before deleting the folder. Pending
+	 * writes into the folder are skipped. The continuation is run on the writer thread after removing the thumbnail
+	 * directory, so that the writer cannot recreate it while the continuation deletes the folder.
+	 *
+	 * @param folder
+	 *            The photo folder.
+	 * @param continuation
+	 *            The action to be run after removing the thumbnail directory. May be null.
+	 */
+	public static void removeFolder(final File folder, final Runnable continuation) {
+		synchronized (REMOVED_FOLDERS) {
+			REMOVED_FOLDERS.add(folder.getAbsoluteFile());
+		}
+
+		final File thumbnailDir = new File(folder, THUMBNAIL_DIR_NAME);
+		WRITE_EXECUTOR.execute(new Runnable() {
+			@Override
+			public void run() {
+				File[] thumbnailFiles = thumbnailDir.listFiles();
+				if (thumbnailFiles != null) {
+					for (File thumbnailFile : thumbnailFiles) {
+						if (!thumbnailFile.delete()) {
+							Logger.warning("Failed to delete thumbnail " + thumbnailFile.getAbsolutePath());
+						}
+					}
+				}
+				if (thumbnailDir.exists() && !thumbnailDir.delete()) {
+					Logger.warning("Failed to delete thumbnail directory " + thumbnailDir.getAbsolutePath());
+				}
+
+				if (continuation != null) {
+					continuation.run();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Write a loaded thumbnail in the background, replacing outdated thumbnails of the photo.
+	 *
+	 * @param photoFile
+	 *            The photo file.
+	 * @param thumbnailFile
+	 *            The thumbnail file.
+	 * @param thumbnail
+	 *            The loaded thumbnail.
+	 */
+	private static void store(final File photoFile, final File thumbnailFile, final Image thumbnail) {
+		if (thumbnail.isError() || thumbnail.getWidth() == 0 || thumbnail.getHeight() == 0) {
+			return;
+		}
+
+		WRITE_EXECUTOR.execute(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (REMOVED_FOLDERS) {
+					if (REMOVED_FOLDERS.contains(photoFile.getAbsoluteFile().getParentFile())) {
+						return;
+					}
+				}
+				if (!photoFile.isFile()) {
+					// The photo has been deleted meanwhile.
+					return;
+				}
+
+				int width = (int) thumbnail.getWidth();
+				int height = (int) thumbnail.getHeight();
+				int[] pixels = new int[width * height];
+				thumbnail.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+				BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+				bufferedImage.setRGB(0, 0, width, height, pixels, 0, width);
+
+				remove(photoFile);
+				File thumbnailDir = thumbnailFile.getParentFile();
+				// Do not use mkdirs, in order not to recreate a deleted photo folder.
+				if (!thumbnailDir.isDirectory() && !thumbnailDir.mkdir()) {
+					Logger.warning("Failed to create thumbnail directory " + thumbnailDir.getAbsolutePath());
+					return;
+				}
+
+				// Write into temporary file first, so that incomplete thumbnails are never used.
+				File tempFile = new File(thumbnailDir, thumbnailFile.getName() + ".tmp");
+				try {
+					if (ImageIO.write(bufferedImage, "jpg", tempFile) && tempFile.renameTo(thumbnailFile)) {
+						return;
+					}
+					Logger.warning("Failed to store thumbnail " + thumbnailFile.getAbsolutePath());
+				}
+				catch (IOException e) {
+					Logger.warning("Failed to store thumbnail " + thumbnailFile.getAbsolutePath() + ": " + e.getMessage());
+				}
+				if (tempFile.exists() && !tempFile.delete()) {
+					Logger.warning("Failed to delete temporary thumbnail " + tempFile.getAbsolutePath());
+				}
+			}
+		});
+	}
+
+	/**
+	 * Get the name of the thumbnail file of a photo in its current state.
+	 *
+	 * @param photoFile
+	 *            The photo file.
+	 * @param thumbnailSize
+	 *            The maximum size of the thumbnail.
+	 * @return The thumbnail file.
+	 */
+	private static File getThumbnailFileName(final File photoFile, final int thumbnailSize) {
+		String name = photoFile.getName() + SEPARATOR + thumbnailSize + SEPARATOR + photoFile.length() + SEPARATOR
+				+ photoFile.lastModified() + SUFFIX;
+		return new File(new File(photoFile.getParentFile(), THUMBNAIL_DIR_NAME), name);
+	}
+
+	/**
+	 * Get all stored thumbnail files of a photo.
+	 *
+	 * @param photoFile
+	 *            The photo file.
+	 * @return The thumbnail files, or null if there is no thumbnail directory.
+	 */
+	private static File[] getThumbnailFiles(final File photoFile) {
+		final String prefix = photoFile.getName() + SEPARATOR;
+		return new File(photoFile.getParentFile(), THUMBNAIL_DIR_NAME).listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(final File dir, final String name) {
+				return name.startsWith(prefix);
+			}
+		});
+	}
+}
@@ -0,0 +1,77 @@
+package de.eisfeldj.augendiagnosefx.util.imagefile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test of the collection of photos by the iris detection batch.
+ */
+public class IrisDetectionBatchTest {
+	/**
+	 * The temporary root folder of the photos.
+	 */
+	@Rule
+	public final TemporaryFolder mRootFolder = new TemporaryFolder();
+
+	/**
+	 * Check that photos in name folders are collected, while thumbnails and other hidden folders are skipped.
+	 *
+	 * @throws IOException
+	 *             if the test files cannot be created.
+	 */
+	@Test
+	public final void testCollectPhotosSkipsThumbnailsAndHiddenFolders() throws IOException {
+		File nameFolder = mRootFolder.newFolder("Jane Doe");
+		File rightPhoto = createFile(nameFolder, "Jane Doe 2016-01-01 rechts.jpg");
+		File leftPhoto = createFile(nameFolder, "Jane Doe 2016-01-01 links.JPG");
+		createFile(nameFolder, "notes.txt");
+
+		File thumbnailDir = new File(nameFolder, ThumbnailStore.THUMBNAIL_DIR_NAME);
+		createFile(thumbnailDir, "Jane Doe 2016-01-01 rechts.jpg_200_1234_5678.jpg");
+		createFile(new File(mRootFolder.getRoot(), ".hidden"), "photo.jpg");
+
+		List<String> expected = new ArrayList<>();
+		expected.add(rightPhoto.getAbsolutePath());
+		expected.add(leftPhoto.getAbsolutePath());
+		Collections.sort(expected);
+
+		List<String> actual = new ArrayList<>();
+		for (File photo : IrisDetectionBatch.collectPhotos(mRootFolder.getRoot())) {
+			actual.add(photo.getAbsolutePath());
+		}
+		Collections.sort(actual);
+
+		assertEquals(expected, actual);
+	}
+
+	/**
+	 * Create an empty file, including its folder.
+	 *
+	 * @param folder
+	 *            The folder.
+	 * @param name
+	 *            The file name.
+	 * @return The file.
+	 * @throws IOException
+	 *             if the file cannot be created.
+	 */
+	private static File createFile(final File folder, final String name) throws IOException {
+		if (!folder.isDirectory() && !folder.mkdirs()) {
+			throw new IOException("Cannot create folder " + folder.getAbsolutePath());
+		}
+		File file = new File(folder, name);
+		if (!file.createNewFile()) {
+			throw new IOException("Cannot create file " + file.getAbsolutePath());
+		}
+		return file;
+	}
+}
@@ -18,6 +18,7 @@ import java.util.Locale;
 import androidx.annotation.Nullable;
 import de.jeisfeld.augendiagnoselib.activities.SettingsActivity;
 import de.jeisfeld.augendiagnoselib.util.PreferenceUtil;
+import de.jeisfeld.augendiagnoselib.util.imagefile.BitmapCache;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 /**
@@ -88,6 +89,13 @@ public class Application extends android.app.Application {
 		PreferenceUtil.sendStatistics();
 	}
 
+	// OVERRIDABLE
+	@Override
+	public void onTrimMemory(final int level) {
+		super.onTrimMemory(level);
+		BitmapCache.trimMemory(level);
+	}
+
 	/**
 	 * Define custom ExceptionHandler which takes action on OutOfMemoryError.
 	 */
@@ -1,14 +1,16 @@
 package de.jeisfeld.augendiagnoselib.components;
 
-import android.app.Activity;
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.util.AttributeSet;
 import android.widget.ImageView;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import de.jeisfeld.augendiagnoselib.util.imagefile.BitmapCache;
 import de.jeisfeld.augendiagnoselib.util.imagefile.EyePhoto;
 import de.jeisfeld.augendiagnoselib.util.imagefile.MediaStoreUtil;
+import de.jeisfeld.augendiagnoselib.util.imagefile.ThumbnailLoader;
 
 /**
  * A view for displaying an eye image.
@@ -23,6 +25,11 @@ public class EyeImageView extends ImageView {
 	 * Indicates if the view is initialized.
 	 */
 	private boolean mInitialized = false;
+	/**
+	 * The callback of the thumbnail currently loading, if any.
+	 */
+	@Nullable
+	private ThumbnailLoader.Callback mLoadingCallback;
 
 	/**
 	 * Standard constructor to be implemented for all views.
@@ -61,41 +68,76 @@ public class EyeImageView extends ImageView {
 	/**
 	 * Set the eye photo and create the bitmap.
 	 *
-	 * @param activity       The activity holding the view.
 	 * @param newEyePhoto    The eyePhoto to be displayed.
 	 * @param postActivities Activities that may be run on the UI thread after loading the image.
 	 */
-	public final void setEyePhoto(@NonNull final Activity activity, @NonNull final EyePhoto newEyePhoto, @Nullable final Runnable postActivities) {
+	public final void setEyePhoto(@NonNull final EyePhoto newEyePhoto, @Nullable final Runnable postActivities) {
 		this.mEyePhoto = newEyePhoto;
-		// Fill pictures in separate thread, for performance reasons
-		Thread thread = new Thread() {
+		if (mLoadingCallback != null) {
+			ThumbnailLoader.cancel(mLoadingCallback);
+			mLoadingCallback = null;
+		}
+
+		Bitmap cachedBitmap = BitmapCache.get(newEyePhoto.getAbsolutePath(), MediaStoreUtil.MINI_THUMB_SIZE);
+		if (cachedBitmap != null) {
+			setImageBitmap(cachedBitmap);
+			invalidate();
+			mInitialized = true;
+			if (postActivities != null) {
+				postActivities.run();
+			}
+			return;
+		}
+
+		// Fill pictures in background, for performance reasons
+		mLoadingCallback = new ThumbnailLoader.Callback() {
 			@Override
-			public void run() {
-				newEyePhoto.precalculateImageBitmap(MediaStoreUtil.MINI_THUMB_SIZE);
-				activity.runOnUiThread(new Runnable() {
-					@Override
-					public void run() {
-						setImageBitmap(newEyePhoto.getImageBitmap(MediaStoreUtil.MINI_THUMB_SIZE));
-						invalidate();
-						mInitialized = true;
-						if (postActivities != null) {
-							postActivities.run();
-						}
-					}
-				});
+			public void onThumbnailLoaded(final Bitmap bitmap) {
+				mLoadingCallback = null;
+				setImageBitmap(bitmap);
+				invalidate();
+				mInitialized = true;
+				if (postActivities != null) {
+					postActivities.run();
+				}
 			}
 		};
-		thread.start();
+		ThumbnailLoader.load(newEyePhoto, MediaStoreUtil.MINI_THUMB_SIZE, mLoadingCallback);
 	}
 
 	/**
 	 * Clean the eye photo from the view.
 	 */
 	public final void cleanEyePhoto() {
+		cancelLoading();
 		this.mEyePhoto = null;
 		setImageBitmap(null);
 	}
 
+	/**
+	 * Cancel loading of the thumbnail, so that it is loaded again when the view is reused.
+	 */
+	private void cancelLoading() {
+		if (mLoadingCallback != null) {
+			ThumbnailLoader.cancel(mLoadingCallback);
+			mLoadingCallback = null;
+			mInitialized = false;
+		}
+	}
+
+	@Override
+	public final void onStartTemporaryDetach() {
+		// The view is moved to the recycler of the list.
+		super.onStartTemporaryDetach();
+		cancelLoading();
+	}
+
+	@Override
+	protected final void onDetachedFromWindow() {
+		cancelLoading();
+		super.onDetachedFromWindow();
+	}
+
 	/**
 	 * Retrieve the eyePhoto object.
 	 *
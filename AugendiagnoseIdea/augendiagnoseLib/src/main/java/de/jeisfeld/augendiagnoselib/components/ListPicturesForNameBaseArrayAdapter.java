@@ -103,7 +103,7 @@ public abstract class ListPicturesForNameBaseArrayAdapter extends ArrayAdapter<E
 		if (!imageListRight.isInitialized() && mEyePhotoPairs[position].getRightEye() != null) {
 			// Prevent duplicate initialization in case of multiple parallel calls - will happen in dialog
 			imageListRight.setInitialized();
-			imageListRight.setEyePhoto(mActivity, mEyePhotoPairs[position].getRightEye(), new Runnable() {
+			imageListRight.setEyePhoto(mEyePhotoPairs[position].getRightEye(), new Runnable() {
 				@Override
 				public void run() {
 					prepareViewForSelection(imageListRight);
@@ -113,7 +113,7 @@ public abstract class ListPicturesForNameBaseArrayAdapter extends ArrayAdapter<E
 		final EyeImageView imageListLeft = rowView.findViewById(R.id.imageListLeft);
 		if (!imageListLeft.isInitialized() && mEyePhotoPairs[position].getLeftEye() != null) {
 			imageListLeft.setInitialized();
-			imageListLeft.setEyePhoto(mActivity, mEyePhotoPairs[position].getLeftEye(), new Runnable() {
+			imageListLeft.setEyePhoto(mEyePhotoPairs[position].getLeftEye(), new Runnable() {
 				@Override
 				public void run() {
 					prepareViewForSelection(imageListLeft);
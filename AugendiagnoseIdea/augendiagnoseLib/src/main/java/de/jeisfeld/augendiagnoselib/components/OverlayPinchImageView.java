@@ -7,6 +7,10 @@ import android.content.res.TypedArray;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Paint;
+import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.LayerDrawable;
@@ -20,6 +24,8 @@ import android.view.ScaleGestureDetector;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -34,6 +40,7 @@ import de.jeisfeld.augendiagnoselib.util.imagefile.EyePhoto.RightLeft;
 import de.jeisfeld.augendiagnoselib.util.imagefile.ImageUtil;
 import de.jeisfeld.augendiagnoselib.util.imagefile.JpegMetadata;
 import de.jeisfeld.augendiagnoselib.util.imagefile.MediaStoreUtil;
+import de.jeisfeld.augendiagnoselib.util.imagefile.TiledRegionDecoder;
 
 import static de.jeisfeld.augendiagnoselib.components.OverlayPinchImageView.Resolution.FULL;
 import static de.jeisfeld.augendiagnoselib.components.OverlayPinchImageView.Resolution.FULL_HIGH;
@@ -96,6 +103,11 @@ public class OverlayPinchImageView extends PinchImageView {
 	 */
 	private static final float CONTRAST_LIMIT = 0.98f;
 
+	/**
+	 * The executor rendering the full resolution snapshots, one at a time.
+	 */
+	private static final ExecutorService RENDER_EXECUTOR = Executors.newSingleThreadExecutor();
+
 	/**
 	 * The color of the one-colored overlays.
 	 */
@@ -183,6 +195,43 @@ public class OverlayPinchImageView extends PinchImageView {
 	 */
 	private float mColorTemperature = 0f;
 
+	/**
+	 * The color matrix for the current color settings, updated in place.
+	 */
+	private final ColorMatrix mColorMatrix = new ColorMatrix();
+
+	/**
+	 * The color settings (contrast, brightness, saturation, color temperature) of the current color filter.
+	 */
+	private final float[] mColorFilterSettings = {1f, 0f, 1f, 0f};
+
+	/**
+	 * The paint used for drawing the image with the current color settings.
+	 */
+	private final Paint mColorPaint = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG);
+
+	/**
+	 * The target rectangle for drawing the image.
+	 */
+	private final Rect mImageRect = new Rect();
+
+	/**
+	 * Flag indicating if a refresh triggered from a seekbar is scheduled for the next frame.
+	 */
+	private boolean mIsColorRefreshScheduled = false;
+
+	/**
+	 * The refresh triggered from a seekbar, combining all seekbar changes within one frame.
+	 */
+	private final Runnable mColorRefreshRunnable = new Runnable() {
+		@Override
+		public void run() {
+			mIsColorRefreshScheduled = false;
+			cleanFullResolutionBitmaps(true);
+			refresh(mPartialBitmapFullResolution == null ? LOW : FULL);
+		}
+	};
+
 	/**
 	 * A small version of the bitmap.
 	 */
@@ -208,6 +257,22 @@ public class OverlayPinchImageView extends PinchImageView {
 	 */
 	private Bitmap mBitmapFull = null;
 
+	/**
+	 * The decoder for the visible part of the image in full resolution.
+	 */
+	@Nullable
+	private TiledRegionDecoder mRegionDecoder = null;
+
+	/**
+	 * Lock for the decoder for the visible part of the image. It is held only briefly, and never while reading the file.
+	 */
+	private final Object mRegionDecoderLock = new Object();
+
+	/**
+	 * The number of releases of the decoder. A decoder created meanwhile is discarded, as it may be outdated.
+	 */
+	private int mRegionDecoderGeneration = 0;
+
 	/**
 	 * The metadata of the image.
 	 */
@@ -239,9 +304,80 @@ public class OverlayPinchImageView extends PinchImageView {
 	private int mLastWidth;
 
 	/**
-	 * Thread showing the view in full resolution. The first is the running thread. Another one may be queuing.
+	 * Lock for the state of the full resolution rendering.
+	 */
+	private final Object mRenderLock = new Object();
+
+	/**
+	 * The number of the most recent full resolution request. Results of older requests are discarded.
+	 */
+	private int mRenderGeneration = 0;
+
+	/**
+	 * Flag indicating if a full resolution snapshot is requested and not yet started.
+	 */
+	private boolean mRenderRequested = false;
+
+	/**
+	 * Flag indicating if the render task of this view is queued in the executor.
+	 */
+	private boolean mRenderQueued = false;
+
+	/**
+	 * The thread currently rendering the full resolution snapshot of this view, if any.
 	 */
-	private final List<Thread> mFullResolutionThreads = new ArrayList<>();
+	@Nullable
+	private Thread mRenderThread = null;
+
+	/**
+	 * The task rendering the most recently requested full resolution snapshot.
+	 */
+	private final Runnable mRenderTask = new Runnable() {
+		@Override
+		public void run() {
+			final int generation;
+			synchronized (mRenderLock) {
+				mRenderQueued = false;
+				if (!mRenderRequested) {
+					return;
+				}
+				mRenderRequested = false;
+				generation = mRenderGeneration;
+				mRenderThread = Thread.currentThread();
+			}
+
+			final Bitmap partialBitmapWithOverlay;
+			try {
+				partialBitmapWithOverlay = getFullResolutionBitmapWithOverlay(generation);
+			}
+			finally {
+				synchronized (mRenderLock) {
+					mRenderThread = null;
+					// Clear the interruption, so that it does not affect the next task.
+					Thread.interrupted();
+				}
+			}
+
+			// Make a straight display of this bitmap without any matrix transformation.
+			// Will be reset by regular view as soon as the screen is touched again.
+			post(new Runnable() {
+				@Override
+				public void run() {
+					synchronized (mRenderLock) {
+						if (generation != mRenderGeneration) {
+							// A newer request has been made meanwhile.
+							return;
+						}
+					}
+					if (partialBitmapWithOverlay != null && mPartialBitmapFullResolution != null) {
+						setImageBitmap(partialBitmapWithOverlay);
+						mShowingFullResolution = true;
+						setMatrix();
+					}
+				}
+			});
+		}
+	};
 
 	/**
 	 * Callback class to update the GUI elements from the view.
@@ -488,53 +624,49 @@ public class OverlayPinchImageView extends PinchImageView {
 		// Determine overlays to be shown
 		List<Integer> overlayPositions = getOverlayPositions();
 
-		Drawable[] layers = new Drawable[overlayPositions.size() + 1];
-		Bitmap modBitmap;
+		int width = mBitmap.getWidth();
+		int height = mBitmap.getHeight();
 
 		// Even in full resolution, first calculate high resolution image.
-		if (resolution == LOW) {
-			// for performance reasons, use only low resolution bitmap while pinching
-			modBitmap = ImageUtil.changeBitmapColors(mBitmapSmall, mContrast, mBrightness, mSaturation, mColorTemperature);
-		}
-		else {
-			modBitmap = ImageUtil.changeBitmapColors(mBitmap, mContrast, mBrightness, mSaturation, mColorTemperature);
-		}
-
-		layers[0] = new BitmapDrawable(getResources(), modBitmap);
+		// The colors are applied while drawing, so that no intermediate bitmap is created.
+		updateColorFilter();
+		mImageRect.set(0, 0, width, height);
+		mCanvas.drawColor(Color.BLACK);
+		// for performance reasons, use only low resolution bitmap while pinching
+		mCanvas.drawBitmap(resolution == LOW ? mBitmapSmall : mBitmap, null, mImageRect, mColorPaint);
 
-		for (int i = 0; i < overlayPositions.size(); i++) {
-			layers[i + 1] = getOverlayDrawable(overlayPositions.get(i));
-		}
+		if (overlayPositions.size() > 0) {
+			Drawable[] layers = new Drawable[overlayPositions.size()];
+			for (int i = 0; i < overlayPositions.size(); i++) {
+				layers[i] = getOverlayDrawable(overlayPositions.get(i));
+			}
 
-		LayerDrawable layerDrawable = new LayerDrawable(layers);
+			LayerDrawable layerDrawable = new LayerDrawable(layers);
 
-		int width = mBitmap.getWidth();
-		int height = mBitmap.getHeight();
+			// position overlays
+			for (int i = 0; i < layerDrawable.getNumberOfLayers(); i++) {
+				boolean isPupil = overlayPositions.get(i) == OVERLAY_PUPIL_INDEX;
 
-		// position overlays
-		for (int i = 1; i < layerDrawable.getNumberOfLayers(); i++) {
-			boolean isPupil = overlayPositions.get(i - 1) == OVERLAY_PUPIL_INDEX;
-
-			if (isPupil) {
-				float totalPupilOverlayScaleFactor = mPupilOverlayScaleFactor * mOverlayScaleFactor * OVERLAY_SIZE / 2;
-				float overlayAbsoluteSize = mOverlayScaleFactor * OVERLAY_SIZE * OVERLAY_CIRCLE_RATIO;
-				layerDrawable.setLayerInset(i,
-						(int) (mPupilOverlayX * overlayAbsoluteSize + mOverlayX * width - totalPupilOverlayScaleFactor),
-						(int) (mPupilOverlayY * overlayAbsoluteSize + mOverlayY * height - totalPupilOverlayScaleFactor),
-						(int) (width - mPupilOverlayX * overlayAbsoluteSize - mOverlayX * width - totalPupilOverlayScaleFactor),
-						(int) (height - mPupilOverlayY * overlayAbsoluteSize - mOverlayY * height - totalPupilOverlayScaleFactor));
-			}
-			else {
-				layerDrawable.setLayerInset(i, (int) (mOverlayX * width - OVERLAY_SIZE / 2 * mOverlayScaleFactor),
-						(int) (mOverlayY * height - OVERLAY_SIZE / 2 * mOverlayScaleFactor),
-						(int) (width - mOverlayX * width - OVERLAY_SIZE / 2 * mOverlayScaleFactor),
-						(int) (height - mOverlayY * height - OVERLAY_SIZE / 2 * mOverlayScaleFactor));
+				if (isPupil) {
+					float totalPupilOverlayScaleFactor = mPupilOverlayScaleFactor * mOverlayScaleFactor * OVERLAY_SIZE / 2;
+					float overlayAbsoluteSize = mOverlayScaleFactor * OVERLAY_SIZE * OVERLAY_CIRCLE_RATIO;
+					layerDrawable.setLayerInset(i,
+							(int) (mPupilOverlayX * overlayAbsoluteSize + mOverlayX * width - totalPupilOverlayScaleFactor),
+							(int) (mPupilOverlayY * overlayAbsoluteSize + mOverlayY * height - totalPupilOverlayScaleFactor),
+							(int) (width - mPupilOverlayX * overlayAbsoluteSize - mOverlayX * width - totalPupilOverlayScaleFactor),
+							(int) (height - mPupilOverlayY * overlayAbsoluteSize - mOverlayY * height - totalPupilOverlayScaleFactor));
+				}
+				else {
+					layerDrawable.setLayerInset(i, (int) (mOverlayX * width - OVERLAY_SIZE / 2 * mOverlayScaleFactor),
+							(int) (mOverlayY * height - OVERLAY_SIZE / 2 * mOverlayScaleFactor),
+							(int) (width - mOverlayX * width - OVERLAY_SIZE / 2 * mOverlayScaleFactor),
+							(int) (height - mOverlayY * height - OVERLAY_SIZE / 2 * mOverlayScaleFactor));
+				}
 			}
-		}
 
-		layerDrawable.setBounds(0, 0, width, height);
-		mCanvas.drawColor(Color.BLACK);
-		layerDrawable.draw(mCanvas);
+			layerDrawable.setBounds(0, 0, width, height);
+			layerDrawable.draw(mCanvas);
+		}
 
 		if (resolution == FULL_HIGH) {
 			showFullResolutionSnapshot(true);
@@ -558,6 +690,28 @@ public class OverlayPinchImageView extends PinchImageView {
 		refresh(mFullResolutionFlag ? FULL_HIGH : HIGH);
 	}
 
+	/**
+	 * Update the color filter used for drawing the image, if the color settings have changed.
+	 */
+	private void updateColorFilter() {
+		if (mColorFilterSettings[0] == mContrast && mColorFilterSettings[1] == mBrightness
+				&& mColorFilterSettings[2] == mSaturation && mColorFilterSettings[3] == mColorTemperature) { // MAGIC_NUMBER
+			return;
+		}
+		mColorFilterSettings[0] = mContrast;
+		mColorFilterSettings[1] = mBrightness;
+		mColorFilterSettings[2] = mSaturation;
+		mColorFilterSettings[3] = mColorTemperature; // MAGIC_NUMBER
+
+		if (mContrast == 1 && mBrightness == 0 && mSaturation == 1 && mColorTemperature == 0) {
+			mColorPaint.setColorFilter(null);
+		}
+		else {
+			ImageUtil.setColorMatrix(mColorMatrix, mContrast, mBrightness, mSaturation, mColorTemperature);
+			mColorPaint.setColorFilter(new ColorMatrixColorFilter(mColorMatrix));
+		}
+	}
+
 	/**
 	 * Get the list of currently displayed overlay indices.
 	 *
@@ -796,6 +950,7 @@ public class OverlayPinchImageView extends PinchImageView {
 		if (mBitmapFull != null) {
 			mBitmapFull = ImageUtil.rotateBitmap(mBitmapFull, rotationAngle);
 		}
+		cleanRegionDecoder();
 		mRetainFragment.setBitmap(mBitmap);
 		mRetainFragment.setBitmapSmall(mBitmapSmall);
 		mCanvasBitmap = Bitmap.createBitmap(mBitmap.getWidth(), mBitmap.getHeight(), Bitmap.Config.ARGB_8888);
@@ -982,12 +1137,18 @@ public class OverlayPinchImageView extends PinchImageView {
 			mColorTemperature = colorTemperature;
 		}
 		mNeedsBitmapRefresh = true;
-		cleanFullResolutionBitmaps(true);
 
 		if (fromSeekbar) {
-			refresh(mPartialBitmapFullResolution == null ? LOW : FULL);
+			// Seekbar events may come more frequently than frames - refresh only once per frame.
+			if (!mIsColorRefreshScheduled) {
+				mIsColorRefreshScheduled = true;
+				postOnAnimation(mColorRefreshRunnable);
+			}
 		}
 		else {
+			removeCallbacks(mColorRefreshRunnable);
+			mIsColorRefreshScheduled = false;
+			cleanFullResolutionBitmaps(true);
 			refresh();
 		}
 	}
@@ -1327,6 +1488,15 @@ public class OverlayPinchImageView extends PinchImageView {
 		int offsetMaxX = Math.round(Math.max(rightX - mBitmap.getWidth(), 0) * mScaleFactor);
 		int offsetMaxY = Math.round(Math.max(lowerY - mBitmap.getHeight(), 0) * mScaleFactor);
 
+		TiledRegionDecoder regionDecoder = getRegionDecoder();
+		if (regionDecoder != null) {
+			// Decode only the visible part of the image.
+			Bitmap bitmapFullResolution = Bitmap.createBitmap(getWidth(), getHeight(), Bitmap.Config.ARGB_8888);
+			boolean success = regionDecoder.draw(new Canvas(bitmapFullResolution), mPosX, mPosY,
+					mBitmap.getWidth() * mScaleFactor, mBitmap.getHeight() * mScaleFactor);
+			return success ? bitmapFullResolution : null;
+		}
+
 		try {
 			Bitmap bitmapFull = mBitmapFull;
 			if (bitmapFull == null) {
@@ -1357,6 +1527,76 @@ public class OverlayPinchImageView extends PinchImageView {
 		}
 	}
 
+	/**
+	 * Get the decoder for the visible part of the image in full resolution.
+	 *
+	 * @return The decoder, or null if the image cannot be decoded by regions.
+	 */
+	@Nullable
+	private TiledRegionDecoder getRegionDecoder() {
+		String path = mEyePhoto.getAbsolutePath();
+		Short orientation = mMetadata == null ? null : mMetadata.getOrientation();
+		TiledRegionDecoder outdatedDecoder;
+		int generation;
+		synchronized (mRegionDecoderLock) {
+			if (mRegionDecoder != null && mRegionDecoder.getPath().equals(path)) {
+				return mRegionDecoder;
+			}
+			outdatedDecoder = mRegionDecoder;
+			mRegionDecoder = null;
+			generation = ++mRegionDecoderGeneration;
+		}
+		releaseRegionDecoder(outdatedDecoder);
+
+		// Create the decoder without holding the lock, as this reads the file.
+		TiledRegionDecoder regionDecoder = TiledRegionDecoder.create(path, orientation);
+		if (regionDecoder == null) {
+			return null;
+		}
+		synchronized (mRegionDecoderLock) {
+			if (generation == mRegionDecoderGeneration) {
+				mRegionDecoder = regionDecoder;
+				return regionDecoder;
+			}
+		}
+		// The decoder has been released meanwhile, e.g. by rotating the image.
+		releaseRegionDecoder(regionDecoder);
+		return null;
+	}
+
+	/**
+	 * Release the decoder for the visible part of the image. The UI thread does not wait for a running draw or
+	 * creation of the decoder.
+	 */
+	private void cleanRegionDecoder() {
+		TiledRegionDecoder regionDecoder;
+		synchronized (mRegionDecoderLock) {
+			regionDecoder = mRegionDecoder;
+			mRegionDecoder = null;
+			mRegionDecoderGeneration++;
+		}
+		releaseRegionDecoder(regionDecoder);
+	}
+
+	/**
+	 * Release a decoder for the visible part of the image. A running draw is cancelled, and the decoder is recycled on
+	 * the render thread.
+	 *
+	 * @param regionDecoder The decoder. May be null.
+	 */
+	private static void releaseRegionDecoder(@Nullable final TiledRegionDecoder regionDecoder) {
+		if (regionDecoder == null) {
+			return;
+		}
+		regionDecoder.cancel();
+		RENDER_EXECUTOR.execute(new Runnable() {
+			@Override
+			public void run() {
+				regionDecoder.recycle();
+			}
+		});
+	}
+
 	/**
 	 * Tell the view if it should automatically display in full resolution.
 	 *
@@ -1430,150 +1670,132 @@ public class OverlayPinchImageView extends PinchImageView {
 	}
 
 	/**
-	 * Show the current view in full resolution.
+	 * Show the current view in full resolution. The snapshot is rendered in the background, and only the most recent
+	 * request is rendered.
 	 *
-	 * @param async A flag indicating if the bitmap creation should happen in a separate thread.
+	 * @param automatic A flag indicating if the snapshot is triggered automatically. In this case, it is only rendered if
+	 *                  full resolution is allowed automatically.
 	 */
-	public final void showFullResolutionSnapshot(final boolean async) {
-		if (async && !mFullResolutionFlag) {
-			// Do not trigger full resolution thread if flag is configured for manual handling of full resolution.
+	public final void showFullResolutionSnapshot(final boolean automatic) {
+		if (automatic && !mFullResolutionFlag) {
+			// Do not trigger full resolution rendering if flag is configured for manual handling of full resolution.
 			return;
 		}
 
-		Thread fullResolutionThread = new Thread() {
-			@Override
-			public void run() {
-				final Bitmap partialBitmapWithOverlay = getFullResolutionBitmapWithOverlay();
-
-				if (isInterrupted()) {
-					// Do not display the result if the thread has been interrupted.
-					post(new Runnable() {
-						@Override
-						public void run() {
-							cleanFullResolutionBitmaps(false);
-						}
-					});
-				}
-				else {
-					// Make a straight display of this bitmap without any matrix transformation.
-					// Will be reset by regular view as soon as the screen is touched again.
-					post(new Runnable() {
-						@Override
-						public void run() {
-							if (mPartialBitmapFullResolution != null) {
-								setImageBitmap(partialBitmapWithOverlay);
-								mShowingFullResolution = true;
-								setMatrix();
-							}
-						}
-
-					});
-				}
-
-				if (async) {
-					// start next thread in queue
-					synchronized (mFullResolutionThreads) {
-						mFullResolutionThreads.remove(Thread.currentThread());
-						if (mFullResolutionThreads.size() > 0) {
-							mFullResolutionThreads.get(0).start();
-						}
-					}
-				}
+		synchronized (mRenderLock) {
+			mRenderGeneration++;
+			mRenderRequested = true;
+			if (mRenderThread != null) {
+				// The running rendering is outdated.
+				mRenderThread.interrupt();
 			}
-		};
-
-		if (async) {
-			synchronized (mFullResolutionThreads) {
-				if (mFullResolutionThreads.size() > 1) {
-					// at most two threads in list
-					mFullResolutionThreads.remove(1);
-				}
-				mFullResolutionThreads.add(fullResolutionThread);
-				if (mFullResolutionThreads.size() == 1) {
-					// only start if no thread is running
-					fullResolutionThread.start();
-				}
+			if (!mRenderQueued) {
+				mRenderQueued = true;
+				RENDER_EXECUTOR.execute(mRenderTask);
 			}
 		}
-		else {
-			try {
-				fullResolutionThread.start();
-				fullResolutionThread.join();
-			}
-			catch (InterruptedException e) {
-				// do nothing
-			}
-		}
-
 	}
 
 	/**
-	 * Create the full resolution bitmap including the overlay.
+	 * Create the full resolution bitmap including the overlay. Rendering in the background stops between the stages if
+	 * it is interrupted. The intermediate bitmaps are kept for reuse only if the request is still the most recent one,
+	 * so that an outdated rendering does not overwrite the cleaning of these bitmaps.
 	 *
-	 * @return The bitmap.
-	 */
-	private Bitmap getFullResolutionBitmapWithOverlay() {
-		if (mPartialBitmapFullResolution == null) {
+	 * @param generation The number of the full resolution request.
+	 * @return The bitmap, or null if it cannot be created or the rendering is interrupted or outdated.
+	 */
+	private Bitmap getFullResolutionBitmapWithOverlay(final int generation) {
+		Bitmap partialBitmap;
+		Bitmap partialBitmapWithBrightness;
+		synchronized (mRenderLock) {
+			if (generation != mRenderGeneration) {
+				return null;
+			}
+			partialBitmap = mPartialBitmapFullResolution;
+			partialBitmapWithBrightness = mPartialBitmapFullResolutionWithBrightness;
+		}
+
+		if (partialBitmap == null) {
+			partialBitmapWithBrightness = null;
 			try {
-				mPartialBitmapFullResolution = createFullResolutionBitmap();
+				partialBitmap = createFullResolutionBitmap();
 			}
 			catch (OutOfMemoryError e) {
 				Log.e(Application.TAG, "Out of memory while creating full resolution bitmap", e);
-				mPartialBitmapFullResolution = null;
 			}
 
-			if (mPartialBitmapFullResolution == null) {
+			if (partialBitmap == null) {
 				return null;
 			}
+			synchronized (mRenderLock) {
+				if (generation != mRenderGeneration) {
+					return null;
+				}
+				mPartialBitmapFullResolution = partialBitmap;
+			}
+		}
+		if (Thread.currentThread().isInterrupted()) {
+			return null;
 		}
 
-		if (mPartialBitmapFullResolutionWithBrightness == null) {
+		if (partialBitmapWithBrightness == null) {
 			try {
-				mPartialBitmapFullResolutionWithBrightness =
-						ImageUtil.changeBitmapColors(mPartialBitmapFullResolution, mContrast, mBrightness, mSaturation, mColorTemperature);
+				partialBitmapWithBrightness =
+						ImageUtil.changeBitmapColors(partialBitmap, mContrast, mBrightness, mSaturation, mColorTemperature);
 			}
 			catch (OutOfMemoryError e) {
 				Log.e(Application.TAG, "Out of memory while creating full resolution bitmap with brightness", e);
-				mPartialBitmapFullResolutionWithBrightness = null;
 			}
 
-			if (mPartialBitmapFullResolutionWithBrightness == null) {
+			if (partialBitmapWithBrightness == null) {
 				return null;
 			}
+			synchronized (mRenderLock) {
+				if (generation != mRenderGeneration) {
+					return null;
+				}
+				mPartialBitmapFullResolutionWithBrightness = partialBitmapWithBrightness;
+			}
+		}
+		if (Thread.currentThread().isInterrupted()) {
+			return null;
 		}
 
-		return addOverlayToPartialBitmap(mPartialBitmapFullResolutionWithBrightness);
+		return addOverlayToPartialBitmap(partialBitmapWithBrightness);
 	}
 
 	/**
-	 * Clean the cached full resolution bitmaps. In case of full cleaning, a normal resolution snapshot is displayed.
+	 * Clean the cached full resolution bitmaps. In case of full cleaning, a normal resolution snapshot is displayed. A
+	 * running rendering becomes outdated, so that it does not store or display its result.
 	 *
 	 * @param onlyBrightness Flag indicating if only the brightness/contrast bitmap is cleaned, but the position is kept.
 	 */
 	private void cleanFullResolutionBitmaps(final boolean onlyBrightness) {
-		mPartialBitmapFullResolutionWithBrightness = null;
-		if (!onlyBrightness) {
-			mPartialBitmapFullResolution = null;
-			if (mShowingFullResolution) {
-				setImageBitmap(mCanvasBitmap);
-				mShowingFullResolution = false;
-				setMatrix();
+		synchronized (mRenderLock) {
+			mRenderGeneration++;
+			mPartialBitmapFullResolutionWithBrightness = null;
+			if (!onlyBrightness) {
+				mPartialBitmapFullResolution = null;
 			}
 		}
+		if (!onlyBrightness && mShowingFullResolution) {
+			setImageBitmap(mCanvasBitmap);
+			mShowingFullResolution = false;
+			setMatrix();
+		}
 	}
 
 	/**
 	 * Interrupt the full resolution snapshot creation, if in process.
 	 */
 	private void interruptFullResolutionThread() {
-		synchronized (mFullResolutionThreads) {
-			if (mFullResolutionThreads.size() > 0) {
-				mFullResolutionThreads.get(0).interrupt();
-				if (mFullResolutionThreads.size() > 1) {
-					mFullResolutionThreads.remove(1);
-				}
+		synchronized (mRenderLock) {
+			mRenderRequested = false;
+			if (mRenderThread != null) {
+				mRenderThread.interrupt();
 			}
 		}
+		// This makes the running rendering outdated.
 		cleanFullResolutionBitmaps(false);
 	}
 
@@ -1598,7 +1820,11 @@ public class OverlayPinchImageView extends PinchImageView {
 	 */
 	public Uri getBitmapUri(final boolean currentView, final String tempFileName) {
 		if (currentView) {
-			return ImageUtil.getUriForFullResolutionBitmap(getFullResolutionBitmapWithOverlay(), tempFileName);
+			int generation;
+			synchronized (mRenderLock) {
+				generation = mRenderGeneration;
+			}
+			return ImageUtil.getUriForFullResolutionBitmap(getFullResolutionBitmapWithOverlay(generation), tempFileName);
 		}
 		else {
 			return MediaStoreUtil.getUriFromFile(getEyePhoto().getAbsolutePath());
@@ -1651,6 +1877,7 @@ public class OverlayPinchImageView extends PinchImageView {
 	 */
 	public final void cleanFullBitmap() {
 		mBitmapFull = null;
+		cleanRegionDecoder();
 		if (mRetainFragment != null) {
 			mRetainFragment.setBitmapFullResolution(null);
 		}
@@ -19,6 +19,7 @@ import android.widget.ImageView;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import de.jeisfeld.augendiagnoselib.util.imagefile.BitmapCache;
 import de.jeisfeld.augendiagnoselib.util.imagefile.ImageUtil;
 
 /**
@@ -192,6 +193,13 @@ public class PinchImageView extends ImageView {
 		}
 
 		mBitmap = retainFragment.getBitmap();
+		if (mBitmap == null) {
+			mBitmap = BitmapCache.get(pathName, mMaxBitmapSize);
+			if (mBitmap != null) {
+				retainFragment.setBitmap(mBitmap);
+				mPathName = pathName;
+			}
+		}
 
 		if (mBitmap == null) {
 			final Handler handler = new Handler();
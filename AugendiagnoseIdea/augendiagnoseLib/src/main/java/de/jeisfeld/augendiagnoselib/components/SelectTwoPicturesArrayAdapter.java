@@ -65,7 +65,7 @@ public class SelectTwoPicturesArrayAdapter extends ArrayAdapter<EyePhoto> {
 					parent, false);
 		}
 
-		eyeImageView.setEyePhoto(mActivity, mEyePhotos[position], new Runnable() {
+		eyeImageView.setEyePhoto(mEyePhotos[position], new Runnable() {
 			@Override
 			public void run() {
 				TwoImageSelectionHandler.getInstance().highlightIfSelected(eyeImageView);
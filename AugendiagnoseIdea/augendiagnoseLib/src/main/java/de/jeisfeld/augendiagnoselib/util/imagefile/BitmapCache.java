@@ -0,0 +1,159 @@
+package de.jeisfeld.augendiagnoselib.util.imagefile;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import java.io.File;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import de.jeisfeld.augendiagnoselib.Application;
+
+/**
+ * Process-wide cache of decoded eye photo bitmaps.
+ *
+ * <p>Entries are keyed by path, size and modification date of the file, so that changed files are decoded again. The
+ * budget is a fraction of the memory class of the device. Cached bitmaps are shared and must not be modified.
+ */
+public final class BitmapCache {
+	/**
+	 * The fraction of the available memory used by the cache.
+	 */
+	private static final int MEMORY_FRACTION = 8;
+
+	/**
+	 * The number of bytes in a megabyte.
+	 */
+	private static final int BYTES_PER_MB = 1024 * 1024;
+
+	/**
+	 * The separator between the parts of the key.
+	 */
+	private static final String SEPARATOR = "|";
+
+	/**
+	 * The cached bitmaps.
+	 */
+	private static final LruCache<String, Bitmap> CACHE = new LruCache<String, Bitmap>(getMaxBytes()) {
+		@Override
+		protected int sizeOf(final String key, @NonNull final Bitmap bitmap) {
+			return bitmap.getByteCount();
+		}
+	};
+
+	/**
+	 * Hide default constructor.
+	 */
+	private BitmapCache() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Get a cached bitmap.
+	 *
+	 * @param path    The file path of the image.
+	 * @param maxSize The maximum size of the bitmap.
+	 * @return The cached bitmap, or null if not cached.
+	 */
+	@Nullable
+	public static Bitmap get(@NonNull final String path, final int maxSize) {
+		return CACHE.get(getKey(path, maxSize));
+	}
+
+	/**
+	 * Store a bitmap in the cache.
+	 *
+	 * @param path    The file path of the image.
+	 * @param maxSize The maximum size of the bitmap.
+	 * @param bitmap  The bitmap.
+	 */
+	public static void put(@NonNull final String path, final int maxSize, @NonNull final Bitmap bitmap) {
+		CACHE.put(getKey(path, maxSize), bitmap);
+	}
+
+	/**
+	 * Remove all cached bitmaps of a file.
+	 *
+	 * @param path The file path of the image.
+	 */
+	public static void remove(@NonNull final String path) {
+		String prefix = path + SEPARATOR;
+		for (String key : CACHE.snapshot().keySet()) {
+			if (key.startsWith(prefix)) {
+				CACHE.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Release memory on request of the system.
+	 *
+	 * @param level The trim level, as passed to onTrimMemory.
+	 */
+	public static void trimMemory(final int level) {
+		if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+			CACHE.evictAll();
+		}
+		else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+			CACHE.trimToSize(CACHE.maxSize() / 2);
+		}
+	}
+
+	/**
+	 * Get the number of cache hits.
+	 *
+	 * @return The number of cache hits.
+	 */
+	public static int getHitCount() {
+		return CACHE.hitCount();
+	}
+
+	/**
+	 * Get the number of cache misses.
+	 *
+	 * @return The number of cache misses.
+	 */
+	public static int getMissCount() {
+		return CACHE.missCount();
+	}
+
+	/**
+	 * Get the rate of cache hits.
+	 *
+	 * @return The hit rate between 0 and 1.
+	 */
+	public static float getHitRate() {
+		int hitCount = CACHE.hitCount();
+		int requestCount = hitCount + CACHE.missCount();
+		return requestCount == 0 ? 0 : (float) hitCount / requestCount;
+	}
+
+	/**
+	 * Get the key of a cache entry.
+	 *
+	 * @param path    The file path of the image.
+	 * @param maxSize The maximum size of the bitmap.
+	 * @return The key.
+	 */
+	@NonNull
+	private static String getKey(@NonNull final String path, final int maxSize) {
+		return path + SEPARATOR + maxSize + SEPARATOR + new File(path).lastModified();
+	}
+
+	/**
+	 * Get the memory budget of the cache.
+	 *
+	 * @return The memory budget in bytes.
+	 */
+	private static int getMaxBytes() {
+		Context context = Application.getAppContext();
+		if (context == null) {
+			return (int) (Runtime.getRuntime().maxMemory() / MEMORY_FRACTION);
+		}
+		ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+		return activityManager.getMemoryClass() * BYTES_PER_MB / MEMORY_FRACTION;
+	}
+}
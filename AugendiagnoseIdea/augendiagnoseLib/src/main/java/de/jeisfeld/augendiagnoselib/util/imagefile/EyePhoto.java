@@ -63,16 +63,6 @@ public class EyePhoto {
 	 */
 	private String mSuffix;
 
-	/**
-	 * A cache of the bitmap (to avoid too frequent generation).
-	 */
-	private Bitmap mCachedBitmap;
-
-	/**
-	 * The size of the cached bitmap (to avoid getting a badly sized bitmap from the cache).
-	 */
-	private int mCachedSize;
-
 	/**
 	 * Create the EyePhoto, giving a filename.
 	 *
@@ -522,23 +512,19 @@ public class EyePhoto {
 	}
 
 	/**
-	 * Calculate a bitmap of this photo and store it for later retrieval.
+	 * Calculate a bitmap of this photo and store it in the cache for later retrieval.
 	 *
 	 * @param maxSize the target size of the bitmap
 	 */
-	public final synchronized void precalculateImageBitmap(final int maxSize) {
-		if (maxSize != mCachedSize || mCachedBitmap == null) {
-			mCachedBitmap = ImageUtil.getImageBitmap(getAbsolutePath(), maxSize);
-			mCachedSize = maxSize;
-		}
+	public final void precalculateImageBitmap(final int maxSize) {
+		ImageUtil.getImageBitmap(getAbsolutePath(), maxSize);
 	}
 
 	/**
-	 * Clean the cached bitmap.
+	 * Remove the cached bitmaps of this photo.
 	 */
-	public final synchronized void cleanCache() {
-		mCachedBitmap = null;
-		mCachedSize = 0;
+	public final void cleanCache() {
+		BitmapCache.remove(getAbsolutePath());
 	}
 
 	/**
@@ -548,8 +534,7 @@ public class EyePhoto {
 	 * @return the bitmap
 	 */
 	public final Bitmap getImageBitmap(final int maxSize) {
-		precalculateImageBitmap(maxSize);
-		return mCachedBitmap;
+		return ImageUtil.getImageBitmap(getAbsolutePath(), maxSize);
 	}
 
 	/**
@@ -131,13 +131,23 @@ public final class ImageUtil {
 		}
 	}
 
+	/**
+	 * Get the rotation of an image in degrees, as stored in the EXIF data.
+	 *
+	 * @param path The path of the image.
+	 * @return the rotation in degrees.
+	 */
+	static int getExifRotation(@NonNull final String path) {
+		return convertExifOrientationToRotation(getExifOrientation(path));
+	}
+
 	/**
 	 * Convert the orientation as stored in EXIF metadata into degrees.
 	 *
 	 * @param exifOrientation The orientation as stored in the exif data.
 	 * @return the rotation in degrees.
 	 */
-	private static int convertExifOrientationToRotation(final int exifOrientation) {
+	static int convertExifOrientationToRotation(final int exifOrientation) {
 		switch (exifOrientation) {
 		case ExifInterface.ORIENTATION_ROTATE_270:
 			return ROTATION_270;
@@ -212,6 +222,33 @@ public final class ImageUtil {
 	 */
 	@Nullable
 	public static Bitmap getImageBitmap(@NonNull final String path, final int maxSize) {
+		if (maxSize <= 0) {
+			// Full resolution bitmaps are too big for the cache.
+			return decodeImageBitmap(path, maxSize);
+		}
+
+		Bitmap bitmap = BitmapCache.get(path, maxSize);
+		if (bitmap == null) {
+			bitmap = decodeImageBitmap(path, maxSize);
+			if (bitmap == null) {
+				// cannot create bitmap - return dummy
+				Log.w(Application.TAG, "Cannot create bitmap from path " + path + " - return dummy bitmap");
+				return getDummyBitmap();
+			}
+			BitmapCache.put(path, maxSize, bitmap);
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Decode a bitmap of this photo.
+	 *
+	 * @param path    The file path of the image.
+	 * @param maxSize The maximum size of this bitmap. If bigger, it will be resized.
+	 * @return the bitmap, or null if it cannot be decoded.
+	 */
+	@Nullable
+	private static Bitmap decodeImageBitmap(@NonNull final String path, final int maxSize) {
 		Bitmap bitmap = null;
 
 		if (maxSize <= 0) {
@@ -240,9 +277,7 @@ public final class ImageUtil {
 					bitmap = BitmapFactory.decodeFile(path, options);
 
 					if (bitmap == null) {
-						// cannot create bitmap - return dummy
-						Log.w(Application.TAG, "Cannot create bitmap from path " + path + " - return dummy bitmap");
-						return getDummyBitmap();
+						return null;
 					}
 				}
 			}
@@ -408,6 +443,31 @@ public final class ImageUtil {
 			return bmp;
 		}
 
+		ColorMatrix cm = new ColorMatrix();
+		setColorMatrix(cm, contrast, brightness, saturation, colorTemperature);
+
+		Bitmap ret = Bitmap.createBitmap(bmp.getWidth(), bmp.getHeight(), bmp.getConfig());
+
+		Canvas canvas = new Canvas(ret);
+
+		Paint paint = new Paint();
+		paint.setColorFilter(new ColorMatrixColorFilter(cm));
+		canvas.drawBitmap(bmp, 0, 0, paint);
+
+		return ret;
+	}
+
+	/**
+	 * Set a color matrix to update contrast, brightness, saturation and color temperature.
+	 *
+	 * @param colorMatrix      the color matrix to be updated
+	 * @param contrast         0..infinity - 1 is default
+	 * @param brightness       -1..1 - 0 is default
+	 * @param saturation       1/3..infinity - 1 is default
+	 * @param colorTemperature -1..1 - 0 is default
+	 */
+	public static void setColorMatrix(@NonNull final ColorMatrix colorMatrix, final float contrast, final float brightness,
+									  final float saturation, final float colorTemperature) {
 		// some baseCalculations for the mapping matrix
 		int temperatureColor = ImageUtil.convertTemperatureToColor(colorTemperature);
 		float factorRed = (float) BYTE / Color.red(temperatureColor);
@@ -420,21 +480,11 @@ public final class ImageUtil {
 		float offset = BYTE / 2f * (1 - contrast + brightness * contrast + brightness);
 		float oppositeSaturation = (1 - saturation) / 2;
 
-		ColorMatrix cm = new ColorMatrix(new float[]{ //
+		colorMatrix.set(new float[]{ //
 				factorRed * saturation, factorGreen * oppositeSaturation, factorBlue * oppositeSaturation, 0, offset, //
 				factorRed * oppositeSaturation, factorGreen * saturation, factorBlue * oppositeSaturation, 0, offset, //
 				factorRed * oppositeSaturation, factorGreen * oppositeSaturation, factorBlue * saturation, 0, offset, //
 				0, 0, 0, 1, 0});
-
-		Bitmap ret = Bitmap.createBitmap(bmp.getWidth(), bmp.getHeight(), bmp.getConfig());
-
-		Canvas canvas = new Canvas(ret);
-
-		Paint paint = new Paint();
-		paint.setColorFilter(new ColorMatrixColorFilter(cm));
-		canvas.drawBitmap(bmp, 0, 0, paint);
-
-		return ret;
 	}
 
 	/**
@@ -3,7 +3,6 @@ package de.jeisfeld.augendiagnoselib.util.imagefile;
 import android.graphics.Bitmap;
 import android.graphics.Color;
 import android.util.Log;
-import android.util.SparseArray;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -13,6 +12,12 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import de.jeisfeld.augendiagnoselib.Application;
 import de.jeisfeld.augendiagnoselib.R;
@@ -109,6 +114,21 @@ public final class PupilAndIrisDetector {
 	 * The queue of iris detection threads.
 	 */
 	private static final List<Thread> THREAD_QUEUE = new ArrayList<>();
+	/**
+	 * The number of threads used for evaluating candidate pupil centers.
+	 */
+	private static final int CANDIDATE_THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+	/**
+	 * The executor used for evaluating candidate pupil centers in parallel.
+	 */
+	private static final ExecutorService CANDIDATE_EXECUTOR = Executors.newFixedThreadPool(CANDIDATE_THREAD_COUNT, new ThreadFactory() {
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			Thread thread = new Thread(runnable, "PupilCandidates");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
 
 	/**
 	 * The number of points on the boundaries of circles of sizes 0 - 2000.
@@ -216,6 +236,17 @@ public final class PupilAndIrisDetector {
 			12408, 12472, 12380, 12584, 12456, 12404, 12472, 12512, 12528, 12476, 12344, 12656, 12452, 12528, 12592, 12560, 12564, 12480, 12608,
 			12492, 12640};
 
+	/**
+	 * The start indices of the circles of sizes 0 - 2000 within an array containing the points of all circles.
+	 */
+	private static final int[] CIRCLE_STARTS = new int[CIRCLE_SIZES.length + 1];
+
+	static {
+		for (int i = 0; i < CIRCLE_SIZES.length; i++) {
+			CIRCLE_STARTS[i + 1] = CIRCLE_STARTS[i] + CIRCLE_SIZES[i];
+		}
+	}
+
 	/**
 	 * The image to be analyzed.
 	 */
@@ -485,28 +516,24 @@ public final class PupilAndIrisDetector {
 	 */
 	private void determineInitialParameterValues() {
 		Bitmap image = ImageUtil.resizeBitmap(mImage, PUPIL_SEARCH_RESOLUTIONS[0], false);
+		BrightnessPlane brightnessPlane = new BrightnessPlane(image, BrightnessPlane.Type.PUPIL);
 		List<PupilCenterInfo> pupilCenterInfoList = new ArrayList<>();
 
-		int[] pixels = new int[image.getWidth() * image.getHeight()];
-		image.getPixels(pixels, 0, image.getWidth(), 0, 0, image.getWidth(), image.getHeight());
-
 		for (int x = image.getWidth() / 4; x < image.getWidth() * 3 / 4; x++) { // MAGIC_NUMBER
 			for (int y = image.getHeight() / 4; y < image.getHeight() * 3 / 4; y++) { // MAGIC_NUMBER
-				PupilCenterInfo pupilCenterInfo = new PupilCenterInfo(image, pixels, x, y, PupilCenterInfo.Phase.INITIAL);
-				pupilCenterInfo.collectCircleInfo(Integer.MAX_VALUE);
-				pupilCenterInfoList.add(pupilCenterInfo);
+				pupilCenterInfoList.add(new PupilCenterInfo(brightnessPlane, x, y, PupilCenterInfo.Phase.INITIAL));
 			}
 		}
 
-		float maxLeapValue = Float.MIN_VALUE;
-		PupilCenterInfo bestPupilCenter = null;
-		for (PupilCenterInfo pupilCenterInfo : pupilCenterInfoList) {
-			pupilCenterInfo.calculateStatistics(0);
-			if (pupilCenterInfo.mLeapValue > maxLeapValue) {
-				maxLeapValue = pupilCenterInfo.mLeapValue;
-				bestPupilCenter = pupilCenterInfo;
+		forEachCandidate(pupilCenterInfoList, new CandidateAction() {
+			@Override
+			public void apply(final PupilCenterInfo pupilCenterInfo) {
+				pupilCenterInfo.collectCircleInfo(Integer.MAX_VALUE);
+				pupilCenterInfo.calculateStatistics(0);
 			}
-		}
+		});
+
+		PupilCenterInfo bestPupilCenter = getBestCandidate(pupilCenterInfoList);
 		if (bestPupilCenter != null) {
 			mPupilXCenter = (float) bestPupilCenter.mXCenter / image.getWidth();
 			mPupilYCenter = (float) bestPupilCenter.mYCenter / image.getHeight();
@@ -524,6 +551,7 @@ public final class PupilAndIrisDetector {
 	 */
 	private void refinePupilPosition(final int resolution) {
 		Bitmap image = ImageUtil.resizeBitmap(mImage, resolution, false);
+		BrightnessPlane brightnessPlane = new BrightnessPlane(image, BrightnessPlane.Type.PUPIL);
 		List<PupilCenterInfo> pupilCenterInfoList = new ArrayList<>();
 
 		int pupilXCenter = Math.round(mPupilXCenter * image.getWidth());
@@ -531,27 +559,33 @@ public final class PupilAndIrisDetector {
 		int pupilRadius = Math.round(mPupilRadius * Math.max(image.getWidth(), image.getHeight()));
 
 		boolean isStable = false;
-		int[] pixels = new int[image.getWidth() * image.getHeight()];
-		image.getPixels(pixels, 0, image.getWidth(), 0, 0, image.getWidth(), image.getHeight());
 
 		for (int step = 0; step < MAX_REFINEMENT_STEPS && !isStable; step++) {
+			List<PupilCenterInfo> newPupilCenterInfoList = new ArrayList<>();
 			for (int x = pupilXCenter - 1; x <= pupilXCenter + 1; x++) {
 				for (int y = pupilYCenter - 1; y <= pupilYCenter + 1; y++) {
-					PupilCenterInfo pupilCenterInfo = new PupilCenterInfo(image, pixels, x, y, PupilCenterInfo.Phase.PUPIL_REFINEMENT);
-					pupilCenterInfo.collectCircleInfo((int) (pupilRadius + MAX_REFINEMENT_STEPS + MAX_LEAP_WIDTH * resolution));
-					pupilCenterInfoList.add(pupilCenterInfo);
+					newPupilCenterInfoList.add(new PupilCenterInfo(brightnessPlane, x, y, PupilCenterInfo.Phase.PUPIL_REFINEMENT));
 				}
 			}
 
-			float maxLeapValue = Float.MIN_VALUE;
-			PupilCenterInfo bestPupilCenter = null;
-			for (PupilCenterInfo pupilCenterInfo : pupilCenterInfoList) {
-				pupilCenterInfo.calculateStatistics(pupilRadius);
-				if (pupilCenterInfo.mLeapValue > maxLeapValue) {
-					maxLeapValue = pupilCenterInfo.mLeapValue;
-					bestPupilCenter = pupilCenterInfo;
+			final int maxRelevantRadius = (int) (pupilRadius + MAX_REFINEMENT_STEPS + MAX_LEAP_WIDTH * resolution);
+			forEachCandidate(newPupilCenterInfoList, new CandidateAction() {
+				@Override
+				public void apply(final PupilCenterInfo pupilCenterInfo) {
+					pupilCenterInfo.collectCircleInfo(maxRelevantRadius);
 				}
-			}
+			});
+			pupilCenterInfoList.addAll(newPupilCenterInfoList);
+
+			final int baseRadius = pupilRadius;
+			forEachCandidate(pupilCenterInfoList, new CandidateAction() {
+				@Override
+				public void apply(final PupilCenterInfo pupilCenterInfo) {
+					pupilCenterInfo.calculateStatistics(baseRadius);
+				}
+			});
+
+			PupilCenterInfo bestPupilCenter = getBestCandidate(pupilCenterInfoList);
 
 			isStable = bestPupilCenter == null
 					|| (bestPupilCenter.mXCenter == pupilXCenter && bestPupilCenter.mYCenter == pupilYCenter
@@ -568,6 +602,69 @@ public final class PupilAndIrisDetector {
 		mPupilRadius = (float) pupilRadius / Math.max(image.getWidth(), image.getHeight());
 	}
 
+	/**
+	 * Apply an action to all candidate pupil centers, distributing them in equal chunks over the available processor cores.
+	 *
+	 * @param candidates The candidate pupil centers.
+	 * @param action The action to be applied. It must modify only the candidate on which it is applied.
+	 */
+	private static void forEachCandidate(final List<PupilCenterInfo> candidates, final CandidateAction action) {
+		int chunkCount = Math.min(CANDIDATE_THREAD_COUNT, candidates.size());
+		if (chunkCount <= 1) {
+			for (PupilCenterInfo candidate : candidates) {
+				action.apply(candidate);
+			}
+			return;
+		}
+
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int chunk = 0; chunk < chunkCount; chunk++) {
+			final List<PupilCenterInfo> chunkCandidates =
+					candidates.subList(chunk * candidates.size() / chunkCount, (chunk + 1) * candidates.size() / chunkCount);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (PupilCenterInfo candidate : chunkCandidates) {
+						action.apply(candidate);
+					}
+					return null;
+				}
+			});
+		}
+
+		try {
+			for (Future<Void> future : CANDIDATE_EXECUTOR.invokeAll(tasks)) {
+				future.get();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while evaluating pupil centers", e);
+		}
+		catch (ExecutionException e) {
+			throw new IllegalStateException("Failed to evaluate pupil centers", e.getCause());
+		}
+	}
+
+	/**
+	 * Get the candidate pupil center with the highest leap value. The statistics of the candidates must have been calculated
+	 * before.
+	 *
+	 * @param candidates The candidate pupil centers.
+	 * @return The best candidate. In case of equal leap values, the first one in the list.
+	 */
+	private static PupilCenterInfo getBestCandidate(final List<PupilCenterInfo> candidates) {
+		float maxLeapValue = Float.MIN_VALUE;
+		PupilCenterInfo bestPupilCenter = null;
+		for (PupilCenterInfo pupilCenterInfo : candidates) {
+			if (pupilCenterInfo.mLeapValue > maxLeapValue) {
+				maxLeapValue = pupilCenterInfo.mLeapValue;
+				bestPupilCenter = pupilCenterInfo;
+			}
+		}
+		return bestPupilCenter;
+	}
+
 	/**
 	 * Refine the iris position based on the previously found position.
 	 */
@@ -605,22 +702,31 @@ public final class PupilAndIrisDetector {
 		 */
 		private int mIrisRadius = 0;
 		/**
-		 * The image.
-		 */
-		private Bitmap mImage;
-		/**
-		 * The image pixels.
+		 * The brightnesses of the image.
 		 */
-		private int[] mPixels;
+		private BrightnessPlane mBrightnessPlane;
 		/**
 		 * The phase in which the info is used.
 		 */
 		private Phase mPhase;
 
 		/**
-		 * The information about the circles around this point.
+		 * The number of circles around this point (i.e. the maximum radius plus one).
+		 */
+		private int mCircleCount = 0;
+		/**
+		 * The brightnesses of the circles around this point. The brightnesses of the circle with radius r are stored from index
+		 * CIRCLE_STARTS[r] to CIRCLE_STARTS[r + 1] - 1.
+		 */
+		private int[] mBrightnesses;
+		/**
+		 * The brightness leaps at each radius used for pupil identification.
 		 */
-		private SparseArray<CircleInfo> mCircleInfos = new SparseArray<>();
+		private float[] mPupilLeapValues;
+		/**
+		 * The brightness leaps at each radius used for iris identification.
+		 */
+		private float[] mIrisLeapValues;
 
 		/**
 		 * The brightness leap value for this center.
@@ -630,17 +736,15 @@ public final class PupilAndIrisDetector {
 		/**
 		 * Create a PupilCenterInfo with certain coordinates.
 		 *
-		 * @param image the image.
-		 * @param pixels the image pixels.
+		 * @param brightnessPlane the brightnesses of the image.
 		 * @param xCoord The x coordinate.
 		 * @param yCoord The y coordinate.
 		 * @param phase The phase in which the info is used.
 		 */
-		private PupilCenterInfo(final Bitmap image, final int[] pixels, final int xCoord, final int yCoord, final Phase phase) {
+		private PupilCenterInfo(final BrightnessPlane brightnessPlane, final int xCoord, final int yCoord, final Phase phase) {
 			mXCenter = xCoord;
 			mYCenter = yCoord;
-			mImage = image;
-			mPixels = pixels;
+			mBrightnessPlane = brightnessPlane;
 			mPhase = phase;
 		}
 
@@ -650,51 +754,33 @@ public final class PupilAndIrisDetector {
 		 * @param maxRelevantRadius The maximal circle radius considered
 		 */
 		private void collectCircleInfo(final int maxRelevantRadius) {
-			int width = mImage.getWidth();
 			int maxPossibleRadius = Math.min(
-					Math.min(mImage.getWidth() - 1 - mXCenter, mXCenter),
-					Math.min(mImage.getHeight() - 1 - mYCenter, mYCenter));
+					Math.min(mBrightnessPlane.mWidth - 1 - mXCenter, mXCenter),
+					Math.min(mBrightnessPlane.mHeight - 1 - mYCenter, mYCenter));
 			int maxRadius = Math.min(maxRelevantRadius, maxPossibleRadius);
+			RingOffsets ringOffsets = RingOffsets.getInstance(maxRadius + 1);
+			mBrightnesses = new int[CIRCLE_STARTS[maxRadius + 2]];
+
+			// All circles up to maxRadius are complete.
+			for (int i = 0; i < CIRCLE_STARTS[maxRadius + 1]; i++) {
+				mBrightnesses[i] = mBrightnessPlane.getBrightness(mXCenter + ringOffsets.mXOffsets[i], mYCenter + ringOffsets.mYOffsets[i]);
+			}
+			mCircleCount = maxRadius + 1;
+
+			// The next circle is considered only partially - its remaining brightnesses stay 0.
 			long maxRadius2 = (maxRadius + 1) * (maxRadius + 1);
-			for (int x = mXCenter - maxRadius; x <= mXCenter + maxRadius; x++) {
-				for (int y = mYCenter - maxRadius; y <= mYCenter + maxRadius; y++) {
-					long d2 = (x - mXCenter) * (x - mXCenter) + (y - mYCenter) * (y - mYCenter);
-					if (d2 <= maxRadius2) {
-						int d = (int) Math.round(Math.sqrt(d2));
-						int brightness = getBrightness(mPixels[y * width + x]);
-						// short brightness = getBrightness(mImage.getPixel(x, y));
-						addInfo(d, brightness);
-					}
+			int index = CIRCLE_STARTS[maxRadius + 1];
+			for (int i = CIRCLE_STARTS[maxRadius + 1]; i < CIRCLE_STARTS[maxRadius + 2]; i++) {
+				int xOffset = ringOffsets.mXOffsets[i];
+				int yOffset = ringOffsets.mYOffsets[i];
+				if (xOffset * xOffset + yOffset * yOffset <= maxRadius2 && Math.abs(xOffset) <= maxRadius && Math.abs(yOffset) <= maxRadius) {
+					mBrightnesses[index++] = mBrightnessPlane.getBrightness(mXCenter + xOffset, mYCenter + yOffset);
+					mCircleCount = maxRadius + 2;
 				}
 			}
-		}
 
-		/**
-		 * Get a brightness value from a color.
-		 *
-		 * @param color The color
-		 * @return The brightness value.
-		 */
-		private static int getBrightness(final int color) {
-			int min = Math.min(Math.min(Color.red(color), Color.green(color)), Color.blue(color));
-			int sum = Color.red(color) + Color.green(color) + Color.blue(color);
-			// Ensure that colors count more than dark grey, but white counts more then colors.
-			return sum - min;
-		}
-
-		/**
-		 * Add pixel info for another pixel.
-		 *
-		 * @param distance The distance of the pixel.
-		 * @param brightness The brightness of the pixel.
-		 */
-		private void addInfo(final int distance, final int brightness) {
-			CircleInfo circleInfo = mCircleInfos.get(distance);
-			if (circleInfo == null) {
-				circleInfo = new CircleInfo(distance);
-				mCircleInfos.put(distance, circleInfo);
-			}
-			circleInfo.addBrightness(brightness);
+			mPupilLeapValues = new float[mCircleCount];
+			mIrisLeapValues = new float[mCircleCount];
 		}
 
 		/**
@@ -704,32 +790,34 @@ public final class PupilAndIrisDetector {
 		 */
 		private void calculateStatistics(final int baseRadius) {
 			// Base calculations for each circle.
-			for (int i = 0; i < mCircleInfos.size(); i++) {
-				mCircleInfos.valueAt(i).calculateStatistics();
+			for (int radius = 0; radius < mCircleCount; radius++) {
+				Arrays.sort(mBrightnesses, CIRCLE_STARTS[radius], CIRCLE_STARTS[radius + 1]);
 			}
 
-			int resolution = Math.max(mImage.getWidth(), mImage.getHeight());
+			int resolution = Math.max(mBrightnessPlane.mWidth, mBrightnessPlane.mHeight);
 			int maxRadius = mPhase == Phase.INITIAL
-					? mCircleInfos.size() - 1
-					: Math.min(mCircleInfos.size() - 1, baseRadius + MAX_REFINEMENT_STEPS + (int) (MAX_LEAP_WIDTH * resolution));
+					? mCircleCount - 1
+					: Math.min(mCircleCount - 1, baseRadius + MAX_REFINEMENT_STEPS + (int) (MAX_LEAP_WIDTH * resolution));
 			int minRadius = mPhase == Phase.INITIAL ? 0
 					: Math.max(0, baseRadius - MAX_REFINEMENT_STEPS - (int) (MAX_LEAP_WIDTH * resolution));
 
 			// Calculate the minimum of medians outside each circle.
 			float innerQuantileSum = 0;
-			float[] innerDarkness = new float[mCircleInfos.size()];
+			float[] innerDarkness = new float[mCircleCount];
 
 			for (int i = minRadius; i <= maxRadius; i++) {
-				float currentQuantile = mCircleInfos.get(i).getQuantile(MIN_BLACK_QUOTA);
+				float currentQuantile = getQuantile(i, MIN_BLACK_QUOTA);
 				innerQuantileSum += currentQuantile * i;
 				innerDarkness[i] = i == 0 ? 0 : 2 * innerQuantileSum / (i * (i + 1));
 			}
 
-			List<CircleInfo> relevantPupilCircles = new ArrayList<>();
-			List<CircleInfo> relevantIrisCircles = new ArrayList<>();
+			int[] relevantPupilRadii = new int[mCircleCount];
+			int relevantPupilRadiusCount = 0;
+			int[] relevantIrisRadii = new int[mCircleCount];
+			int relevantIrisRadiusCount = 0;
 			maxRadius = mPhase == Phase.INITIAL
-					? mCircleInfos.size() - 2
-					: Math.min(mCircleInfos.size() - 2, baseRadius + MAX_REFINEMENT_STEPS);
+					? mCircleCount - 2
+					: Math.min(mCircleCount - 2, baseRadius + MAX_REFINEMENT_STEPS);
 			minRadius = mPhase == Phase.INITIAL ? (int) (resolution * MIN_PUPIL_RADIUS)
 					: Math.max(1, baseRadius - MAX_REFINEMENT_STEPS);
 
@@ -738,7 +826,7 @@ public final class PupilAndIrisDetector {
 				for (int i = minRadius; i <= maxRadius; i++) {
 					float pupilLeapValue = 0;
 					int maxLeapDistance = Math.min(Math.round(MAX_LEAP_WIDTH * resolution),
-							Math.min(i / 2, (mCircleInfos.size() - 1 - i) / 2));
+							Math.min(i / 2, (mCircleCount - 1 - i) / 2));
 					for (int j = 1; j <= maxLeapDistance; j++) {
 						float diff = mPhase == Phase.INITIAL
 								? (ASSUMED_PUPIL_BRIGHTNESS + getMinMaxQuantile(MAX_BLACK_QUOTA, i + j, i + j + maxLeapDistance, false))
@@ -758,10 +846,9 @@ public final class PupilAndIrisDetector {
 						}
 					}
 					if (pupilLeapValue > 0) {
-						CircleInfo circleInfo = mCircleInfos.get(i);
 						// prefer big, dark circles
-						circleInfo.mPupilLeapValue = (float) (Math.sqrt(i) * pupilLeapValue / innerDarkness[i]);
-						relevantPupilCircles.add(circleInfo);
+						mPupilLeapValues[i] = (float) (Math.sqrt(i) * pupilLeapValue / innerDarkness[i]);
+						relevantPupilRadii[relevantPupilRadiusCount++] = i;
 					}
 				}
 			}
@@ -772,13 +859,13 @@ public final class PupilAndIrisDetector {
 					float irisLeapValue = 0;
 					float irisQuantileSum = 0;
 					int maxLeapDistance = Math.min(Math.round(MAX_LEAP_WIDTH * resolution),
-							Math.min(i, mCircleInfos.size() - 1 - i));
+							Math.min(i, mCircleCount - 1 - i));
 					for (int j = 1; j <= maxLeapDistance; j++) {
 						irisQuantileSum +=
-								(mCircleInfos.get(i + j).getQuantile(1 - MIN_WHITE_QUOTA)
-										- mCircleInfos.get(i - j).getQuantile(1 - MIN_WHITE_QUOTA)
-										+ mCircleInfos.get(i + j).getQuantile(1 - MIN_WHITE_QUOTA2)
-										- mCircleInfos.get(i - j).getQuantile(1 - MIN_WHITE_QUOTA2))
+								(getQuantile(i + j, 1 - MIN_WHITE_QUOTA)
+										- getQuantile(i - j, 1 - MIN_WHITE_QUOTA)
+										+ getQuantile(i + j, 1 - MIN_WHITE_QUOTA2)
+										- getQuantile(i - j, 1 - MIN_WHITE_QUOTA2))
 										/ (2 * Math.sqrt(j));
 						if (irisQuantileSum > 0) {
 							// prefer big jumps in small radius difference.
@@ -789,53 +876,66 @@ public final class PupilAndIrisDetector {
 						}
 					}
 					if (irisLeapValue > 0) {
-						CircleInfo circleInfo = mCircleInfos.get(i);
 						// prefer big radius in order to prevent selection of small spots.
 						// prefer dark inner area
-						circleInfo.mIrisLeapValue = irisLeapValue;
-						relevantIrisCircles.add(circleInfo);
+						mIrisLeapValues[i] = irisLeapValue;
+						relevantIrisRadii[relevantIrisRadiusCount++] = i;
 					}
 				}
 			}
 
 			switch (mPhase) {
 			case INITIAL:
-				for (CircleInfo pupilCircleInfo : relevantPupilCircles) {
-					for (CircleInfo irisCircleInfo : relevantIrisCircles) {
-						if (irisCircleInfo.mRadius - pupilCircleInfo.mRadius >= resolution
-								* MIN_IRIS_PUPIL_DISTANCE) {
-							float newLeapValue = pupilCircleInfo.mPupilLeapValue * (1 + irisCircleInfo.mIrisLeapValue);
+				for (int p = 0; p < relevantPupilRadiusCount; p++) {
+					int pupilRadius = relevantPupilRadii[p];
+					for (int q = 0; q < relevantIrisRadiusCount; q++) {
+						int irisRadius = relevantIrisRadii[q];
+						if (irisRadius - pupilRadius >= resolution * MIN_IRIS_PUPIL_DISTANCE) {
+							float newLeapValue = mPupilLeapValues[pupilRadius] * (1 + mIrisLeapValues[irisRadius]);
 							if (newLeapValue > mLeapValue) {
 								mLeapValue = newLeapValue;
-								mPupilRadius = pupilCircleInfo.mRadius;
-								mIrisRadius = irisCircleInfo.mRadius;
+								mPupilRadius = pupilRadius;
+								mIrisRadius = irisRadius;
 							}
 						}
 					}
 				}
 				break;
 			case PUPIL_REFINEMENT:
-				for (CircleInfo pupilCircleInfo : relevantPupilCircles) {
-					float newLeapValue = pupilCircleInfo.mPupilLeapValue;
+				for (int p = 0; p < relevantPupilRadiusCount; p++) {
+					int pupilRadius = relevantPupilRadii[p];
+					float newLeapValue = mPupilLeapValues[pupilRadius];
 					if (newLeapValue > mLeapValue) {
 						mLeapValue = newLeapValue;
-						mPupilRadius = pupilCircleInfo.mRadius;
+						mPupilRadius = pupilRadius;
 					}
 				}
 				break;
 			case IRIS_REFINEMENT:
 			default:
-				for (CircleInfo irisCircleInfo : relevantIrisCircles) {
-					float newLeapValue = irisCircleInfo.mIrisLeapValue;
+				for (int q = 0; q < relevantIrisRadiusCount; q++) {
+					int irisRadius = relevantIrisRadii[q];
+					float newLeapValue = mIrisLeapValues[irisRadius];
 					if (newLeapValue > mLeapValue) {
 						mLeapValue = newLeapValue;
-						mIrisRadius = irisCircleInfo.mRadius;
+						mIrisRadius = irisRadius;
 					}
 				}
 				break;
 			}
 		}
 
+		/**
+		 * Get the p-quantile of the brightnesses of a circle. Prerequisite: calculateStatistics must have been run before.
+		 *
+		 * @param radius The radius of the circle.
+		 * @param p the quantile parameter.
+		 * @return the p-quantile of the brightnesses (not considering equality).
+		 */
+		private int getQuantile(final int radius, final float p) {
+			return mBrightnesses[CIRCLE_STARTS[radius] + (int) (CIRCLE_SIZES[radius] * p)];
+		}
+
 		/**
 		 * Get the minimum p-quantile for a certain set of radii.
 		 *
@@ -848,7 +948,7 @@ public final class PupilAndIrisDetector {
 		private float getMinMaxQuantile(final float p, final int fromRadius, final int toRadius, final boolean max) {
 			float result = max ? Float.MIN_VALUE : Float.MAX_VALUE;
 			for (int radius = fromRadius; radius <= toRadius; radius++) {
-				float newValue = mCircleInfos.get(radius).getQuantile(p);
+				float newValue = getQuantile(radius, p);
 				if ((!max && newValue < result) || (max && newValue > result)) {
 					result = newValue;
 				}
@@ -876,66 +976,82 @@ public final class PupilAndIrisDetector {
 	}
 
 	/**
-	 * Class for storing information about a circle of points.
+	 * Table of the offsets of all points around a center, grouped by their rounded distance from the center. The offsets of the
+	 * circle with radius r are stored from index CIRCLE_STARTS[r] to CIRCLE_STARTS[r + 1] - 1.
 	 */
-	private static final class CircleInfo {
+	private static final class RingOffsets {
 		/**
-		 * Create a pixelInfo with certain coordinates.
-		 *
-		 * @param radius The radius.
+		 * The table covering the biggest radius requested so far.
 		 */
-		private CircleInfo(final int radius) {
-			mRadius = radius;
-			mBrightnesses = new int[CIRCLE_SIZES[radius]];
-			mCurrentIndex = 0;
-		}
+		private static volatile RingOffsets mInstance = null;
 
 		/**
-		 * The radius.
-		 */
-		private int mRadius;
-		/**
-		 * The brightnesses.
-		 */
-		private int[] mBrightnesses;
-		/**
-		 * The current index on the brightness array.
+		 * The maximum radius covered by the table.
 		 */
-		private int mCurrentIndex;
+		private final int mMaxRadius;
 		/**
-		 * The brightness leap at this radius used for pupil identification.
+		 * The horizontal offsets.
 		 */
-		private float mPupilLeapValue;
+		private final int[] mXOffsets;
 		/**
-		 * The brightness leap at this radius used for iris identification.
+		 * The vertical offsets.
 		 */
-		private float mIrisLeapValue;
+		private final int[] mYOffsets;
 
 		/**
-		 * Add a brightness to the information of this circle.
+		 * Create the table of offsets.
 		 *
-		 * @param brightness the brightness.
+		 * @param maxRadius The maximum radius to be covered.
 		 */
-		private void addBrightness(final int brightness) {
-			mBrightnesses[mCurrentIndex++] = brightness;
+		private RingOffsets(final int maxRadius) {
+			mMaxRadius = maxRadius;
+			mXOffsets = new int[CIRCLE_STARTS[maxRadius + 1]];
+			mYOffsets = new int[CIRCLE_STARTS[maxRadius + 1]];
+
+			int[] nextIndex = Arrays.copyOf(CIRCLE_STARTS, maxRadius + 1);
+			for (int x = -maxRadius; x <= maxRadius; x++) {
+				for (int y = -maxRadius; y <= maxRadius; y++) {
+					int d = (int) Math.round(Math.sqrt(x * x + y * y));
+					if (d <= maxRadius) {
+						mXOffsets[nextIndex[d]] = x;
+						mYOffsets[nextIndex[d]] = y;
+						nextIndex[d]++;
+					}
+				}
+			}
 		}
 
 		/**
-		 * Do statistical calculations after all brightnesses are available. Here, only sorting is required.
+		 * Get a table of offsets covering at least the given radius.
+		 *
+		 * @param maxRadius The maximum radius to be covered.
+		 * @return The table.
 		 */
-		private void calculateStatistics() {
-			Arrays.sort(mBrightnesses);
+		private static RingOffsets getInstance(final int maxRadius) {
+			RingOffsets instance = mInstance;
+			if (instance == null || instance.mMaxRadius < maxRadius) {
+				synchronized (RingOffsets.class) {
+					instance = mInstance;
+					if (instance == null || instance.mMaxRadius < maxRadius) {
+						instance = new RingOffsets(maxRadius);
+						mInstance = instance;
+					}
+				}
+			}
+			return instance;
 		}
+	}
 
+	/**
+	 * An action to be applied on a candidate pupil center.
+	 */
+	private interface CandidateAction {
 		/**
-		 * Get the p-quantile of the brightnesses. Prerequisite: calculateStatistics must have been run before.
+		 * Apply the action.
 		 *
-		 * @param p the quantile parameter.
-		 * @return the p-quantile of the brightnesses (not considering equality).
+		 * @param pupilCenterInfo The candidate pupil center.
 		 */
-		private int getQuantile(final float p) {
-			return mBrightnesses[(int) (mBrightnesses.length * p)];
-		}
+		void apply(PupilCenterInfo pupilCenterInfo);
 	}
 
 	/**
@@ -946,6 +1062,10 @@ public final class PupilAndIrisDetector {
 		 * The image.
 		 */
 		private Bitmap mImage;
+		/**
+		 * The brightnesses of the image rows relevant for the boundary search.
+		 */
+		private BrightnessPlane mBrightnessPlane;
 
 		/**
 		 * The x coordinate of the center.
@@ -988,6 +1108,10 @@ public final class PupilAndIrisDetector {
 		 * Search points on the iris boundary.
 		 */
 		private void determineBoundaryPoints() {
+			mBrightnessPlane = new BrightnessPlane(mImage, BrightnessPlane.Type.IRIS,
+					(int) Math.floor(mYCenter - mRadius * IRIS_BOUNDARY_SEARCH_RANGE),
+					(int) Math.ceil(mYCenter + mRadius * IRIS_BOUNDARY_SEARCH_RANGE));
+
 			for (int yCoord = mYCenter; yCoord <= mYCenter + mRadius * IRIS_BOUNDARY_SEARCH_RANGE && yCoord < mImage.getHeight(); yCoord++) {
 				determineBoundaryPoints(yCoord);
 			}
@@ -1035,7 +1159,7 @@ public final class PupilAndIrisDetector {
 			int leftBoundary = Math.max(mXCenter - expectedXDistance - xDistanceRange, 0);
 			int rightBoundary = Math.min(mXCenter - expectedXDistance + xDistanceRange, mImage.getWidth() - 1);
 			for (int x = leftBoundary; x <= rightBoundary; x++) {
-				brightnessSum += getBrightness(mImage.getPixel(x, yCoord));
+				brightnessSum += mBrightnessPlane.getBrightness(x, yCoord);
 			}
 			float avgBrightness = brightnessSum / (2 * xDistanceRange + 1);
 
@@ -1044,12 +1168,12 @@ public final class PupilAndIrisDetector {
 			int rightCounter = 0;
 			while (leftBoundary < rightBoundary) {
 				if (rightCounter > leftCounter) {
-					if (getBrightness(mImage.getPixel(leftBoundary++, yCoord)) < avgBrightness) {
+					if (mBrightnessPlane.getBrightness(leftBoundary++, yCoord) < avgBrightness) {
 						leftCounter++;
 					}
 				}
 				else {
-					if (getBrightness(mImage.getPixel(rightBoundary--, yCoord)) > avgBrightness) {
+					if (mBrightnessPlane.getBrightness(rightBoundary--, yCoord) > avgBrightness) {
 						rightCounter++;
 					}
 				}
@@ -1063,7 +1187,7 @@ public final class PupilAndIrisDetector {
 			int leftBoundary2 = Math.max(mXCenter + expectedXDistance - xDistanceRange, 0);
 			int rightBoundary2 = Math.min(mXCenter + expectedXDistance + xDistanceRange, mImage.getWidth() - 1);
 			for (int x = leftBoundary2; x <= rightBoundary2; x++) {
-				brightnessSum2 += getBrightness(mImage.getPixel(x, yCoord));
+				brightnessSum2 += mBrightnessPlane.getBrightness(x, yCoord);
 			}
 			float avgBrightness2 = brightnessSum2 / (2 * xDistanceRange + 1);
 
@@ -1072,12 +1196,12 @@ public final class PupilAndIrisDetector {
 			int rightCounter2 = 0;
 			while (leftBoundary2 < rightBoundary2) {
 				if (leftCounter2 > rightCounter2) {
-					if (getBrightness(mImage.getPixel(rightBoundary2--, yCoord)) < avgBrightness2) {
+					if (mBrightnessPlane.getBrightness(rightBoundary2--, yCoord) < avgBrightness2) {
 						rightCounter2++;
 					}
 				}
 				else {
-					if (getBrightness(mImage.getPixel(leftBoundary2++, yCoord)) > avgBrightness2) {
+					if (mBrightnessPlane.getBrightness(leftBoundary2++, yCoord) > avgBrightness2) {
 						leftCounter2++;
 					}
 				}
@@ -1173,18 +1297,113 @@ public final class PupilAndIrisDetector {
 
 			mRadius = Math.round(sum / (2 * mLeftPoints.size()));
 		}
+	}
+
+	/**
+	 * The brightnesses of the pixels of an image, extracted in a single pass, so that the searches need not access the
+	 * bitmap pixel by pixel.
+	 */
+	private static final class BrightnessPlane {
+		/**
+		 * The width of the image.
+		 */
+		private final int mWidth;
+		/**
+		 * The height of the image.
+		 */
+		private final int mHeight;
+		/**
+		 * The first image row contained in the plane.
+		 */
+		private final int mMinY;
+		/**
+		 * The brightnesses, row by row.
+		 */
+		private final int[] mBrightnesses;
+
+		/**
+		 * Extract the brightnesses of a complete image.
+		 *
+		 * @param image The image.
+		 * @param type The way in which the brightness is calculated.
+		 */
+		private BrightnessPlane(final Bitmap image, final Type type) {
+			this(image, type, 0, image.getHeight() - 1);
+		}
+
+		/**
+		 * Extract the brightnesses of a range of rows of an image.
+		 *
+		 * @param image The image.
+		 * @param type The way in which the brightness is calculated.
+		 * @param minY The first row to be extracted.
+		 * @param maxY The last row to be extracted.
+		 */
+		private BrightnessPlane(final Bitmap image, final Type type, final int minY, final int maxY) {
+			mWidth = image.getWidth();
+			mHeight = image.getHeight();
+			mMinY = Math.max(minY, 0);
+			int rowCount = Math.max(Math.min(maxY, mHeight - 1) - mMinY + 1, 0);
+			mBrightnesses = new int[mWidth * rowCount];
+
+			int[] rowPixels = new int[mWidth];
+			for (int row = 0; row < rowCount; row++) {
+				image.getPixels(rowPixels, 0, mWidth, 0, mMinY + row, mWidth, 1);
+				int offset = row * mWidth;
+				for (int x = 0; x < mWidth; x++) {
+					mBrightnesses[offset + x] = type == Type.PUPIL ? getPupilBrightness(rowPixels[x]) : getIrisBrightness(rowPixels[x]);
+				}
+			}
+		}
+
+		/**
+		 * Get the brightness of a pixel.
+		 *
+		 * @param x The x coordinate.
+		 * @param y The y coordinate.
+		 * @return The brightness value.
+		 */
+		private int getBrightness(final int x, final int y) {
+			return mBrightnesses[(y - mMinY) * mWidth + x];
+		}
 
 		/**
-		 * Get a brightness value from a color.
+		 * Get a brightness value from a color, as used for pupil detection.
 		 *
 		 * @param color The color
 		 * @return The brightness value.
 		 */
-		private static int getBrightness(final int color) {
+		private static int getPupilBrightness(final int color) {
+			int min = Math.min(Math.min(Color.red(color), Color.green(color)), Color.blue(color));
+			int sum = Color.red(color) + Color.green(color) + Color.blue(color);
+			// Ensure that colors count more than dark grey, but white counts more then colors.
+			return sum - min;
+		}
+
+		/**
+		 * Get a brightness value from a color, as used for iris boundary detection.
+		 *
+		 * @param color The color
+		 * @return The brightness value.
+		 */
+		private static int getIrisBrightness(final int color) {
 			// Blue seems to be particulary helpful in the separation.
 			return Math.min(Math.min(Color.red(color), Color.green(color)), Color.blue(color)) + Color.blue(color);
 		}
 
+		/**
+		 * The way in which the brightness of a pixel is calculated.
+		 */
+		private enum Type {
+			/**
+			 * Brightness used for pupil detection.
+			 */
+			PUPIL,
+			/**
+			 * Brightness used for iris boundary detection.
+			 */
+			IRIS
+		}
 	}
 
 }
@@ -0,0 +1,211 @@
+package de.jeisfeld.augendiagnoselib.util.imagefile;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Central loader for the thumbnails of eye photos shown in lists.
+ *
+ * <p>The thumbnails are decoded by a small pool of background threads. The most recent requests are processed first, so
+ * that the rows currently visible are loaded before the rows which have been scrolled away. Requests for the same path
+ * and size are combined, and requests are cancelled as soon as nobody waits for them any more.
+ *
+ * <p>All methods have to be called from the UI thread. The callbacks are called on the UI thread.
+ */
+public final class ThumbnailLoader {
+	/**
+	 * The number of threads decoding thumbnails.
+	 */
+	private static final int THREAD_COUNT = 2;
+
+	/**
+	 * The handler used for posting the loaded thumbnails to the UI thread.
+	 */
+	private static final Handler UI_HANDLER = new Handler(Looper.getMainLooper());
+
+	/**
+	 * The executor decoding the thumbnails, taking the most recent request first.
+	 */
+	private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, 0,
+			TimeUnit.MILLISECONDS, new LifoBlockingDeque(), new ThreadFactory() {
+		@Override
+		public Thread newThread(@NonNull final Runnable runnable) {
+			Thread thread = new Thread(runnable, "ThumbnailLoader");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}
+	});
+
+	/**
+	 * The pending requests, by path and size.
+	 */
+	private static final Map<String, LoadRequest> REQUESTS = new HashMap<>();
+
+	/**
+	 * The pending requests, by callback.
+	 */
+	private static final Map<Callback, LoadRequest> CALLBACK_REQUESTS = new HashMap<>();
+
+	/**
+	 * Hide default constructor.
+	 */
+	private ThumbnailLoader() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Load the thumbnail of an eye photo in the background. A previous request of the same callback is cancelled.
+	 *
+	 * @param eyePhoto The eye photo.
+	 * @param maxSize  The maximum size of the thumbnail.
+	 * @param callback The callback receiving the thumbnail.
+	 */
+	public static void load(@NonNull final EyePhoto eyePhoto, final int maxSize, @NonNull final Callback callback) {
+		cancel(callback);
+
+		String key = eyePhoto.getAbsolutePath() + ":" + maxSize;
+		synchronized (REQUESTS) {
+			LoadRequest request = REQUESTS.get(key);
+			if (request == null) {
+				request = new LoadRequest(key, eyePhoto, maxSize);
+				REQUESTS.put(key, request);
+				request.mCallbacks.add(callback);
+				CALLBACK_REQUESTS.put(callback, request);
+				EXECUTOR.execute(request);
+			}
+			else {
+				request.mCallbacks.add(callback);
+				CALLBACK_REQUESTS.put(callback, request);
+			}
+		}
+	}
+
+	/**
+	 * Cancel the pending request of a callback. The thumbnail is not decoded any more if no other callback waits for
+	 * it.
+	 *
+	 * @param callback The callback.
+	 */
+	public static void cancel(@NonNull final Callback callback) {
+		synchronized (REQUESTS) {
+			LoadRequest request = CALLBACK_REQUESTS.remove(callback);
+			if (request == null) {
+				return;
+			}
+			request.mCallbacks.remove(callback);
+			if (request.mCallbacks.isEmpty()) {
+				REQUESTS.remove(request.mKey);
+				EXECUTOR.remove(request);
+			}
+		}
+	}
+
+	/**
+	 * Callback receiving a loaded thumbnail.
+	 */
+	public interface Callback {
+		/**
+		 * Called on the UI thread when the thumbnail is loaded.
+		 *
+		 * @param bitmap The thumbnail.
+		 */
+		void onThumbnailLoaded(Bitmap bitmap);
+	}
+
+	/**
+	 * A request for loading a thumbnail.
+	 */
+	private static final class LoadRequest implements Runnable {
+		/**
+		 * The key of the request, consisting of path and size.
+		 */
+		private final String mKey;
+
+		/**
+		 * The eye photo.
+		 */
+		private final EyePhoto mEyePhoto;
+
+		/**
+		 * The maximum size of the thumbnail.
+		 */
+		private final int mMaxSize;
+
+		/**
+		 * The callbacks waiting for the thumbnail.
+		 */
+		private final List<Callback> mCallbacks = new ArrayList<>();
+
+		/**
+		 * Constructor.
+		 *
+		 * @param key      The key of the request.
+		 * @param eyePhoto The eye photo.
+		 * @param maxSize  The maximum size of the thumbnail.
+		 */
+		private LoadRequest(final String key, final EyePhoto eyePhoto, final int maxSize) {
+			mKey = key;
+			mEyePhoto = eyePhoto;
+			mMaxSize = maxSize;
+		}
+
+		@Override
+		public void run() {
+			synchronized (REQUESTS) {
+				if (mCallbacks.isEmpty()) {
+					return;
+				}
+			}
+
+			final Bitmap bitmap = mEyePhoto.getImageBitmap(mMaxSize);
+
+			UI_HANDLER.post(new Runnable() {
+				@Override
+				public void run() {
+					List<Callback> callbacks;
+					synchronized (REQUESTS) {
+						if (REQUESTS.get(mKey) == LoadRequest.this) {
+							REQUESTS.remove(mKey);
+						}
+						callbacks = new ArrayList<>(mCallbacks);
+						mCallbacks.clear();
+						for (Callback callback : callbacks) {
+							CALLBACK_REQUESTS.remove(callback);
+						}
+					}
+					for (Callback callback : callbacks) {
+						callback.onThumbnailLoaded(bitmap);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * A blocking queue handing out the most recently added element first.
+	 */
+	private static final class LifoBlockingDeque extends LinkedBlockingDeque<Runnable> {
+		/**
+		 * The default serial version id.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public boolean offer(@NonNull final Runnable runnable) {
+			return super.offerFirst(runnable);
+		}
+	}
+}
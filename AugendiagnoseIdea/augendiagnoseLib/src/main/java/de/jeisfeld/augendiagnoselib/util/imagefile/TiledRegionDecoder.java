@@ -0,0 +1,341 @@
+package de.jeisfeld.augendiagnoselib.util.imagefile;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Build.VERSION;
+import android.os.Build.VERSION_CODES;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import de.jeisfeld.augendiagnoselib.Application;
+
+/**
+ * Decoder of the visible part of an image in full resolution, avoiding to decode the whole image.
+ *
+ * <p>The image is decoded in tiles, at the sample size required for the current zoom level. Recently used tiles are
+ * kept, and the bitmaps of discarded tiles are reused for decoding further tiles.
+ */
+public final class TiledRegionDecoder {
+	/**
+	 * The size of a tile in decoded pixels.
+	 */
+	private static final int TILE_SIZE = 512;
+
+	/**
+	 * The maximum number of tiles kept in memory.
+	 */
+	private static final int MAX_CACHED_TILES = 16;
+
+	/**
+	 * The maximum number of bitmaps kept for reuse.
+	 */
+	private static final int MAX_POOLED_BITMAPS = 4;
+
+	/**
+	 * The paint used for drawing the tiles.
+	 */
+	private static final Paint TILE_PAINT = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+	/**
+	 * The path of the image.
+	 */
+	@NonNull
+	private final String mPath;
+
+	/**
+	 * The region decoder.
+	 */
+	@Nullable
+	private BitmapRegionDecoder mDecoder;
+
+	/**
+	 * The rotation of the image in degrees.
+	 */
+	private final int mRotation;
+
+	/**
+	 * Flag indicating that the decoder is about to be recycled, so that drawing should stop.
+	 */
+	private volatile boolean mCancelled = false;
+
+	/**
+	 * The decoded tiles, in order of access. The key contains sample size, column and row of the tile.
+	 */
+	private final Map<String, Bitmap> mTiles = new LinkedHashMap<>(MAX_CACHED_TILES, 0.75f, true); // MAGIC_NUMBER
+
+	/**
+	 * Bitmaps of discarded tiles which may be reused for decoding.
+	 */
+	private final List<Bitmap> mBitmapPool = new ArrayList<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param path     The path of the image.
+	 * @param decoder  The region decoder.
+	 * @param rotation The rotation of the image in degrees.
+	 */
+	private TiledRegionDecoder(@NonNull final String path, @NonNull final BitmapRegionDecoder decoder, final int rotation) {
+		mPath = path;
+		mDecoder = decoder;
+		mRotation = rotation;
+	}
+
+	/**
+	 * Create a decoder for an image.
+	 *
+	 * @param path        The path of the image.
+	 * @param orientation The EXIF orientation of the image, as stored in the metadata. If null, it is read from the file.
+	 *                    (The file may not yet contain the latest orientation, as metadata is stored in the background.)
+	 * @return The decoder, or null if the image cannot be decoded by regions.
+	 */
+	@Nullable
+	public static TiledRegionDecoder create(@NonNull final String path, @Nullable final Short orientation) {
+		int rotation = orientation == null ? ImageUtil.getExifRotation(path)
+				: ImageUtil.convertExifOrientationToRotation(orientation);
+		try {
+			return new TiledRegionDecoder(path, BitmapRegionDecoder.newInstance(path, false), rotation);
+		}
+		catch (IOException e) {
+			Log.w(Application.TAG, "Cannot create region decoder for " + path, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Get the path of the image.
+	 *
+	 * @return The path of the image.
+	 */
+	@NonNull
+	public String getPath() {
+		return mPath;
+	}
+
+	/**
+	 * Draw the visible part of the image in full resolution.
+	 *
+	 * @param canvas          The canvas of the view.
+	 * @param centerX         The relative horizontal position of the image shown in the view center.
+	 * @param centerY         The relative vertical position of the image shown in the view center.
+	 * @param displayedWidth  The width of the whole image on the canvas.
+	 * @param displayedHeight The height of the whole image on the canvas.
+	 * @return true if successful, false if interrupted or failed.
+	 */
+	public synchronized boolean draw(@NonNull final Canvas canvas, final float centerX, final float centerY,
+									 final float displayedWidth, final float displayedHeight) {
+		if (mDecoder == null) {
+			return false;
+		}
+		int width = mDecoder.getWidth();
+		int height = mDecoder.getHeight();
+
+		// Matrix from the pixels of the image file to the canvas.
+		Matrix matrix = new Matrix();
+		matrix.setRotate(mRotation);
+		RectF imageBounds = new RectF(0, 0, width, height);
+		matrix.mapRect(imageBounds);
+		matrix.postTranslate(-imageBounds.left, -imageBounds.top);
+		matrix.postScale(displayedWidth / imageBounds.width(), displayedHeight / imageBounds.height());
+		matrix.postTranslate(canvas.getWidth() / 2f - centerX * displayedWidth,
+				canvas.getHeight() / 2f - centerY * displayedHeight);
+
+		// The visible part of the image file.
+		Matrix inverse = new Matrix();
+		if (!matrix.invert(inverse)) {
+			return false;
+		}
+		RectF visibleRect = new RectF(0, 0, canvas.getWidth(), canvas.getHeight());
+		inverse.mapRect(visibleRect);
+		if (!visibleRect.intersect(0, 0, width, height)) {
+			return true;
+		}
+
+		int sampleSize = getSampleSize(matrix.mapRadius(1));
+		int tileSize = TILE_SIZE * sampleSize;
+		int minColumn = (int) (visibleRect.left / tileSize);
+		int maxColumn = (int) Math.ceil(visibleRect.right / tileSize);
+		int minRow = (int) (visibleRect.top / tileSize);
+		int maxRow = (int) Math.ceil(visibleRect.bottom / tileSize);
+
+		Matrix tileMatrix = new Matrix();
+		for (int column = minColumn; column < maxColumn; column++) {
+			for (int row = minRow; row < maxRow; row++) {
+				if (mCancelled || Thread.currentThread().isInterrupted()) {
+					return false;
+				}
+				Rect tileRect = new Rect(column * tileSize, row * tileSize,
+						Math.min((column + 1) * tileSize, width), Math.min((row + 1) * tileSize, height));
+				Bitmap tile = getTile(sampleSize, column, row, tileRect);
+				if (tile == null) {
+					return false;
+				}
+				tileMatrix.setScale((float) tileRect.width() / tile.getWidth(), (float) tileRect.height() / tile.getHeight());
+				tileMatrix.postTranslate(tileRect.left, tileRect.top);
+				tileMatrix.postConcat(matrix);
+				canvas.drawBitmap(tile, tileMatrix, TILE_PAINT);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Stop drawing as soon as possible, e.g. before recycling the decoder. Can be called from any thread without
+	 * waiting for a running draw.
+	 */
+	public void cancel() {
+		mCancelled = true;
+	}
+
+	/**
+	 * Release the decoder and all tiles.
+	 */
+	public synchronized void recycle() {
+		if (mDecoder != null) {
+			mDecoder.recycle();
+			mDecoder = null;
+		}
+		mTiles.clear();
+		mBitmapPool.clear();
+	}
+
+	/**
+	 * Get a tile, decoding it if not available.
+	 *
+	 * @param sampleSize The sample size.
+	 * @param column     The column of the tile.
+	 * @param row        The row of the tile.
+	 * @param tileRect   The region of the tile in the image file.
+	 * @return The tile, or null if it cannot be decoded.
+	 */
+	@Nullable
+	private Bitmap getTile(final int sampleSize, final int column, final int row, @NonNull final Rect tileRect) {
+		String key = sampleSize + ":" + column + ":" + row;
+		Bitmap tile = mTiles.get(key);
+		if (tile != null) {
+			return tile;
+		}
+
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inSampleSize = sampleSize;
+		options.inMutable = true;
+		options.inBitmap = takeFromPool(ceilDiv(tileRect.width(), sampleSize), ceilDiv(tileRect.height(), sampleSize),
+				sampleSize);
+		try {
+			tile = decodeRegion(tileRect, options);
+		}
+		catch (OutOfMemoryError e) {
+			Log.w(Application.TAG, "Out of memory when decoding tile of " + mPath);
+			releaseTiles();
+			return null;
+		}
+		if (tile == null) {
+			return null;
+		}
+
+		mTiles.put(key, tile);
+		Iterator<Bitmap> iterator = mTiles.values().iterator();
+		while (mTiles.size() > MAX_CACHED_TILES && iterator.hasNext()) {
+			Bitmap eldest = iterator.next();
+			iterator.remove();
+			if (mBitmapPool.size() < MAX_POOLED_BITMAPS) {
+				mBitmapPool.add(eldest);
+			}
+		}
+		return tile;
+	}
+
+	/**
+	 * Decode a region of the image, reusing the bitmap given in the options if possible.
+	 *
+	 * @param rect    The region of the image file.
+	 * @param options The decoding options.
+	 * @return The decoded bitmap.
+	 */
+	private Bitmap decodeRegion(@NonNull final Rect rect, @NonNull final BitmapFactory.Options options) {
+		try {
+			return mDecoder.decodeRegion(rect, options);
+		}
+		catch (IllegalArgumentException e) {
+			// The pooled bitmap is not suitable for reuse.
+			options.inBitmap = null;
+			return mDecoder.decodeRegion(rect, options);
+		}
+	}
+
+	/**
+	 * Release all tiles and pooled bitmaps, e.g. after running out of memory.
+	 */
+	private void releaseTiles() {
+		mTiles.clear();
+		mBitmapPool.clear();
+	}
+
+	/**
+	 * Take a bitmap from the pool which can be reused for decoding a tile.
+	 *
+	 * @param width      The width of the decoded tile.
+	 * @param height     The height of the decoded tile.
+	 * @param sampleSize The sample size.
+	 * @return The bitmap, or null if there is no suitable bitmap.
+	 */
+	@Nullable
+	private Bitmap takeFromPool(final int width, final int height, final int sampleSize) {
+		Iterator<Bitmap> iterator = mBitmapPool.iterator();
+		while (iterator.hasNext()) {
+			Bitmap bitmap = iterator.next();
+			boolean isSuitable;
+			if (VERSION.SDK_INT >= VERSION_CODES.KITKAT) {
+				isSuitable = bitmap.getAllocationByteCount() >= width * height * 4; // MAGIC_NUMBER
+			}
+			else {
+				// Before KitKat, only bitmaps of identical size can be reused, and only without sampling.
+				isSuitable = sampleSize == 1 && bitmap.getWidth() == width && bitmap.getHeight() == height;
+			}
+			if (isSuitable) {
+				iterator.remove();
+				return bitmap;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Get the sample size for decoding.
+	 *
+	 * @param scale The number of canvas pixels per image pixel.
+	 * @return The largest power of 2 not exceeding the number of image pixels per canvas pixel.
+	 */
+	private static int getSampleSize(final float scale) {
+		int sampleSize = 1;
+		while (sampleSize * 2 * scale <= 1) {
+			sampleSize *= 2;
+		}
+		return sampleSize;
+	}
+
+	/**
+	 * Divide, rounding up.
+	 *
+	 * @param dividend The dividend.
+	 * @param divisor  The divisor.
+	 * @return The quotient, rounded up.
+	 */
+	private static int ceilDiv(final int dividend, final int divisor) {
+		return (dividend + divisor - 1) / divisor;
+	}
+}